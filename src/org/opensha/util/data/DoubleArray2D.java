@@ -0,0 +1,415 @@
+package org.opensha.util.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import org.opensha.util.data.DoubleData.Operator;
+
+/**
+ * A two-dimensional array of {@code double} values stored in a single, flat
+ * {@code double[]}. Compared to a jagged {@code double[][]}, this type keeps
+ * all values contiguous in memory and avoids one object per row; operations
+ * on whole arrays run as a single loop over the backing data.
+ *
+ * <p>Arrays are indexed by row and column, or by axis (0 = rows, 1 =
+ * columns). Elements are addressed through an offset and a stride per axis,
+ * such that {@link #subArray(int, int, int, int) sub-arrays},
+ * {@link #transpose() transposes}, and {@link DoubleArray3D#slice(int, int)
+ * slices} of three-dimensional arrays are views that share, rather than copy,
+ * the backing data. Changes to a view are reflected in its parent, and vice
+ * versa. The in-place operators of this class are undefined for arguments
+ * that are overlapping views of the same data.
+ *
+ * <p>As with {@link DoubleData}, arithmetic operators modify an array in
+ * place and return a reference to it, do not check for finiteness or
+ * over/underflow, and throw an {@code IllegalArgumentException} if arrays of
+ * different shape are combined. This class is not synchronized.
+ *
+ * @author Peter Powers
+ * @see DoubleArray3D
+ */
+public final class DoubleArray2D {
+
+  final double[] data;
+  final int offset;
+  final int rows;
+  final int columns;
+  final int rowStride;
+  final int columnStride;
+
+  DoubleArray2D(
+      double[] data,
+      int offset,
+      int rows,
+      int columns,
+      int rowStride,
+      int columnStride) {
+
+    this.data = data;
+    this.offset = offset;
+    this.rows = rows;
+    this.columns = columns;
+    this.rowStride = rowStride;
+    this.columnStride = columnStride;
+  }
+
+  /**
+   * Create a new array of zeros.
+   *
+   * @param rows the number of rows
+   * @param columns the number of columns
+   * @throws IllegalArgumentException if either dimension is negative, or if
+   *         the array would have more than {@code Integer.MAX_VALUE} elements
+   */
+  public static DoubleArray2D create(int rows, int columns) {
+    checkArgument(rows >= 0 && columns >= 0, "Invalid dimensions [%s, %s]", rows, columns);
+    checkArgument(
+        (long) rows * columns <= Integer.MAX_VALUE,
+        "Array [%s x %s] too large", rows, columns);
+    return new DoubleArray2D(new double[rows * columns], 0, rows, columns, columns, 1);
+  }
+
+  /**
+   * Create a new array populated with the values of a jagged array.
+   *
+   * @param data to copy
+   * @throws IllegalArgumentException if the rows of {@code data} differ in
+   *         length
+   */
+  public static DoubleArray2D copyOf(double[][] data) {
+    int columns = (data.length == 0) ? 0 : data[0].length;
+    DoubleArray2D array = create(data.length, columns);
+    for (int i = 0; i < data.length; i++) {
+      checkArgument(
+          data[i].length == columns,
+          "Row [%s] length [%s] ≠ [%s]", i, data[i].length, columns);
+      System.arraycopy(data[i], 0, array.data, i * columns, columns);
+    }
+    return array;
+  }
+
+  /**
+   * Return a new, contiguous copy of this array.
+   */
+  public DoubleArray2D copy() {
+    DoubleArray2D copy = create(rows, columns);
+    if (isContiguous()) {
+      System.arraycopy(data, offset, copy.data, 0, rows * columns);
+      return copy;
+    }
+    for (int i = 0, k = 0; i < rows; i++) {
+      for (int j = 0, m = offset + i * rowStride; j < columns; j++, m += columnStride) {
+        copy.data[k++] = data[m];
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Return a new jagged array populated with the values of this array.
+   */
+  public double[][] toArray() {
+    double[][] out = new double[rows][];
+    for (int i = 0; i < rows; i++) {
+      out[i] = row(i);
+    }
+    return out;
+  }
+
+  /* Copy a row. */
+  double[] row(int row) {
+    double[] values = new double[columns];
+    for (int j = 0, k = offset + row * rowStride; j < columns; j++, k += columnStride) {
+      values[j] = data[k];
+    }
+    return values;
+  }
+
+  /**
+   * Return the number of rows.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns.
+   */
+  public int columns() {
+    return columns;
+  }
+
+  /**
+   * Return the length of the supplied axis.
+   *
+   * @param axis 0 (rows) or 1 (columns)
+   * @throws IndexOutOfBoundsException if {@code axis} is not 0 or 1
+   */
+  public int length(int axis) {
+    checkElementIndex(axis, 2, "axis");
+    return (axis == 0) ? rows : columns;
+  }
+
+  /**
+   * Return the value at the supplied row and column.
+   *
+   * @param row index
+   * @param column index
+   * @throws IndexOutOfBoundsException if either index is out of range
+   */
+  public double get(int row, int column) {
+    return data[index(row, column)];
+  }
+
+  /**
+   * Set the value at the supplied row and column.
+   *
+   * @param row index
+   * @param column index
+   * @param value to set
+   * @throws IndexOutOfBoundsException if either index is out of range
+   */
+  public void set(int row, int column, double value) {
+    data[index(row, column)] = value;
+  }
+
+  private int index(int row, int column) {
+    checkElementIndex(row, rows, "row");
+    checkElementIndex(column, columns, "column");
+    return offset + row * rowStride + column * columnStride;
+  }
+
+  /**
+   * Return a view of a rectangular region of this array.
+   *
+   * @param fromRow low row index, inclusive
+   * @param toRow high row index, exclusive
+   * @param fromColumn low column index, inclusive
+   * @param toColumn high column index, exclusive
+   * @throws IndexOutOfBoundsException if any index is out of range or a low
+   *         index is greater than a high index
+   */
+  public DoubleArray2D subArray(int fromRow, int toRow, int fromColumn, int toColumn) {
+    checkPositionIndexes(fromRow, toRow, rows);
+    checkPositionIndexes(fromColumn, toColumn, columns);
+    return new DoubleArray2D(
+        data,
+        offset + fromRow * rowStride + fromColumn * columnStride,
+        toRow - fromRow,
+        toColumn - fromColumn,
+        rowStride,
+        columnStride);
+  }
+
+  /**
+   * Return a transposed view of this array.
+   */
+  public DoubleArray2D transpose() {
+    return new DoubleArray2D(data, offset, columns, rows, columnStride, rowStride);
+  }
+
+  /**
+   * Add a {@code term} to the elements of this array in place.
+   *
+   * @param term to add
+   * @return a reference to this array
+   */
+  public DoubleArray2D add(double term) {
+    if (isContiguous()) {
+      DoubleData.uncheckedAdd(term, data, offset, 1, rows * columns);
+      return this;
+    }
+    for (int i = 0; i < rows; i++) {
+      DoubleData.uncheckedAdd(term, data, offset + i * rowStride, columnStride, columns);
+    }
+    return this;
+  }
+
+  /**
+   * Multiply ({@code scale}) the elements of this array in place.
+   *
+   * @param scale factor
+   * @return a reference to this array
+   */
+  public DoubleArray2D multiply(double scale) {
+    if (isContiguous()) {
+      DoubleData.uncheckedMultiply(scale, data, offset, 1, rows * columns);
+      return this;
+    }
+    for (int i = 0; i < rows; i++) {
+      DoubleData.uncheckedMultiply(scale, data, offset + i * rowStride, columnStride, columns);
+    }
+    return this;
+  }
+
+  /**
+   * Add the values of {@code that} to this array in place.
+   *
+   * @param that array to add
+   * @return a reference to this array
+   */
+  public DoubleArray2D add(DoubleArray2D that) {
+    return apply(Operator.ADD, that);
+  }
+
+  /**
+   * Subtract the values of {@code that} from this array in place.
+   *
+   * @param that array to subtract
+   * @return a reference to this array
+   */
+  public DoubleArray2D subtract(DoubleArray2D that) {
+    return apply(Operator.SUBTRACT, that);
+  }
+
+  /**
+   * Multiply the values of this array by those of {@code that} in place.
+   *
+   * @param that array to multiply by
+   * @return a reference to this array
+   */
+  public DoubleArray2D multiply(DoubleArray2D that) {
+    return apply(Operator.MULTIPLY, that);
+  }
+
+  /**
+   * Divide the values of this array by those of {@code that} in place.
+   *
+   * @param that array to divide by
+   * @return a reference to this array
+   */
+  public DoubleArray2D divide(DoubleArray2D that) {
+    return apply(Operator.DIVIDE, that);
+  }
+
+  private DoubleArray2D apply(Operator op, DoubleArray2D that) {
+    checkShape(that);
+    if (isContiguous() && that.isContiguous()) {
+      op.apply(data, offset, 1, that.data, that.offset, 1, rows * columns);
+      return this;
+    }
+    for (int i = 0; i < rows; i++) {
+      op.apply(
+          data, offset + i * rowStride, columnStride,
+          that.data, that.offset + i * that.rowStride, that.columnStride,
+          columns);
+    }
+    return this;
+  }
+
+  /**
+   * Sum the elements of this array. Method returns zero for an empty array.
+   * Values are accumulated in row-major order, such that results are identical
+   * for views and contiguous copies.
+   */
+  public double sum() {
+    if (isContiguous()) {
+      return DoubleData.uncheckedSum(data, offset, 1, rows * columns);
+    }
+    return sum(0.0);
+  }
+
+  /* Continue a row-major sum. */
+  double sum(double sum) {
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0, k = offset + i * rowStride; j < columns; j++, k += columnStride) {
+        sum += data[k];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the values of this array along the supplied axis into a new 1-D
+   * array. Collapsing axis 1 (columns) yields the sum of each row and is
+   * equivalent to {@link DoubleData#collapse(double[][])}; collapsing axis 0
+   * (rows) yields the sum of each column. Sums are accumulated in index order.
+   *
+   * @param axis to collapse
+   * @return a new array of sums
+   * @throws IndexOutOfBoundsException if {@code axis} is not 0 or 1
+   */
+  public double[] collapse(int axis) {
+    checkElementIndex(axis, 2, "axis");
+    if (axis == 1) {
+      double[] collapsed = new double[rows];
+      for (int i = 0; i < rows; i++) {
+        collapsed[i] = DoubleData.uncheckedSum(
+            data, offset + i * rowStride, columnStride, columns);
+      }
+      return collapsed;
+    }
+    double[] collapsed = new double[columns];
+    for (int i = 0; i < rows; i++) {
+      Operator.ADD.apply(
+          collapsed, 0, 1,
+          data, offset + i * rowStride, columnStride,
+          columns);
+    }
+    return collapsed;
+  }
+
+  /* Whether all values are packed row-major in a single run. */
+  boolean isContiguous() {
+    return columnStride == 1 && (rowStride == columns || rows <= 1);
+  }
+
+  private void checkShape(DoubleArray2D that) {
+    checkArgument(
+        rows == that.rows && columns == that.columns,
+        "Array shapes [%s x %s] and [%s x %s] differ",
+        rows, columns, that.rows, that.columns);
+  }
+
+  /**
+   * Return {@code true} if {@code obj} is a {@code DoubleArray2D} of the same
+   * shape and with the same values as this array, as determined by
+   * {@link java.util.Arrays#equals(double[], double[])}.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof DoubleArray2D)) {
+      return false;
+    }
+    DoubleArray2D that = (DoubleArray2D) obj;
+    if (rows != that.rows || columns != that.columns) {
+      return false;
+    }
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        double v1 = data[offset + i * rowStride + j * columnStride];
+        double v2 = that.data[that.offset + i * that.rowStride + j * that.columnStride];
+        if (Double.doubleToLongBits(v1) != Double.doubleToLongBits(v2)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 31 * rows + columns;
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        hash = 31 * hash + Double.hashCode(data[offset + i * rowStride + j * columnStride]);
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * Format this array for printing.
+   *
+   * @see DoubleData#toString(double[][])
+   */
+  @Override
+  public String toString() {
+    return DoubleData.toString(toArray());
+  }
+
+}
@@ -0,0 +1,428 @@
+package org.opensha.util.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import org.opensha.util.data.DoubleData.Operator;
+
+/**
+ * A three-dimensional array of {@code double} values stored in a single, flat
+ * {@code double[]}, for example, a hazard curve cube indexed by site, source
+ * type, and intensity measure level. Compared to a jagged
+ * {@code double[][][]}, this type keeps all values contiguous in memory and
+ * avoids one object per row and plane.
+ *
+ * <p>Arrays are indexed by axis (0, 1, 2). As with {@link DoubleArray2D},
+ * elements are addressed through an offset and a stride per axis, such that
+ * {@link #slice(int, int) slices} and {@link #subArray(int, int, int, int,
+ * int, int) sub-arrays} are views that share, rather than copy, the backing
+ * data, and {@link #collapse(int) collapsing} is supported along any axis.
+ * The in-place operators of this class are undefined for arguments that are
+ * overlapping views of the same data.
+ *
+ * <p>As with {@link DoubleData}, arithmetic operators modify an array in
+ * place and return a reference to it, do not check for finiteness or
+ * over/underflow, and throw an {@code IllegalArgumentException} if arrays of
+ * different shape are combined. This class is not synchronized.
+ *
+ * @author Peter Powers
+ * @see DoubleArray2D
+ */
+public final class DoubleArray3D {
+
+  final double[] data;
+  final int offset;
+  final int length0;
+  final int length1;
+  final int length2;
+  final int stride0;
+  final int stride1;
+  final int stride2;
+
+  DoubleArray3D(
+      double[] data,
+      int offset,
+      int length0,
+      int length1,
+      int length2,
+      int stride0,
+      int stride1,
+      int stride2) {
+
+    this.data = data;
+    this.offset = offset;
+    this.length0 = length0;
+    this.length1 = length1;
+    this.length2 = length2;
+    this.stride0 = stride0;
+    this.stride1 = stride1;
+    this.stride2 = stride2;
+  }
+
+  /**
+   * Create a new array of zeros.
+   *
+   * @param length0 the length of axis 0
+   * @param length1 the length of axis 1
+   * @param length2 the length of axis 2
+   * @throws IllegalArgumentException if any dimension is negative, or if the
+   *         array would have more than {@code Integer.MAX_VALUE} elements
+   */
+  public static DoubleArray3D create(int length0, int length1, int length2) {
+    checkArgument(
+        length0 >= 0 && length1 >= 0 && length2 >= 0,
+        "Invalid dimensions [%s, %s, %s]", length0, length1, length2);
+    checkArgument(
+        (long) length0 * length1 * length2 <= Integer.MAX_VALUE,
+        "Array [%s x %s x %s] too large", length0, length1, length2);
+    int size = length0 * length1 * length2;
+    return new DoubleArray3D(
+        new double[size], 0,
+        length0, length1, length2,
+        length1 * length2, length2, 1);
+  }
+
+  /**
+   * Create a new array populated with the values of a jagged array.
+   *
+   * @param data to copy
+   * @throws IllegalArgumentException if the planes or rows of {@code data}
+   *         differ in length
+   */
+  public static DoubleArray3D copyOf(double[][][] data) {
+    int length1 = (data.length == 0) ? 0 : data[0].length;
+    int length2 = (length1 == 0) ? 0 : data[0][0].length;
+    DoubleArray3D array = create(data.length, length1, length2);
+    for (int i = 0; i < data.length; i++) {
+      checkArgument(
+          data[i].length == length1,
+          "Plane [%s] length [%s] ≠ [%s]", i, data[i].length, length1);
+      for (int j = 0; j < length1; j++) {
+        checkArgument(
+            data[i][j].length == length2,
+            "Row [%s, %s] length [%s] ≠ [%s]", i, j, data[i][j].length, length2);
+        System.arraycopy(data[i][j], 0, array.data, (i * length1 + j) * length2, length2);
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Return a new, contiguous copy of this array.
+   */
+  public DoubleArray3D copy() {
+    DoubleArray3D copy = create(length0, length1, length2);
+    if (isContiguous()) {
+      System.arraycopy(data, offset, copy.data, 0, copy.data.length);
+      return copy;
+    }
+    int planeSize = length1 * length2;
+    for (int i = 0; i < length0; i++) {
+      DoubleArray2D plane = plane(i).copy();
+      System.arraycopy(plane.data, 0, copy.data, i * planeSize, planeSize);
+    }
+    return copy;
+  }
+
+  /**
+   * Return a new jagged array populated with the values of this array.
+   */
+  public double[][][] toArray() {
+    double[][][] out = new double[length0][][];
+    for (int i = 0; i < length0; i++) {
+      out[i] = plane(i).toArray();
+    }
+    return out;
+  }
+
+  /**
+   * Return the length of the supplied axis.
+   *
+   * @param axis 0, 1, or 2
+   * @throws IndexOutOfBoundsException if {@code axis} is not 0, 1, or 2
+   */
+  public int length(int axis) {
+    checkElementIndex(axis, 3, "axis");
+    return (axis == 0) ? length0 : (axis == 1) ? length1 : length2;
+  }
+
+  /**
+   * Return the value at the supplied indices.
+   *
+   * @param i index along axis 0
+   * @param j index along axis 1
+   * @param k index along axis 2
+   * @throws IndexOutOfBoundsException if any index is out of range
+   */
+  public double get(int i, int j, int k) {
+    return data[index(i, j, k)];
+  }
+
+  /**
+   * Set the value at the supplied indices.
+   *
+   * @param i index along axis 0
+   * @param j index along axis 1
+   * @param k index along axis 2
+   * @param value to set
+   * @throws IndexOutOfBoundsException if any index is out of range
+   */
+  public void set(int i, int j, int k, double value) {
+    data[index(i, j, k)] = value;
+  }
+
+  private int index(int i, int j, int k) {
+    checkElementIndex(i, length0, "i");
+    checkElementIndex(j, length1, "j");
+    checkElementIndex(k, length2, "k");
+    return offset + i * stride0 + j * stride1 + k * stride2;
+  }
+
+  /**
+   * Return a two-dimensional view of this array at a fixed index along the
+   * supplied axis. The remaining axes, in order, become the rows and columns
+   * of the view. For example, {@code slice(0, i)} is equivalent to the
+   * {@code data[i]} plane of a jagged array.
+   *
+   * @param axis to fix
+   * @param index along {@code axis}
+   * @throws IndexOutOfBoundsException if {@code axis} or {@code index} is out
+   *         of range
+   */
+  public DoubleArray2D slice(int axis, int index) {
+    checkElementIndex(index, length(axis), "index");
+    if (axis == 0) {
+      return plane(index);
+    }
+    if (axis == 1) {
+      return new DoubleArray2D(
+          data, offset + index * stride1,
+          length0, length2,
+          stride0, stride2);
+    }
+    return new DoubleArray2D(
+        data, offset + index * stride2,
+        length0, length1,
+        stride0, stride1);
+  }
+
+  /* Unchecked slice along axis 0. */
+  DoubleArray2D plane(int i) {
+    return new DoubleArray2D(data, offset + i * stride0, length1, length2, stride1, stride2);
+  }
+
+  /**
+   * Return a view of a rectangular region of this array. Low indices are
+   * inclusive and high indices are exclusive.
+   *
+   * @throws IndexOutOfBoundsException if any index is out of range or a low
+   *         index is greater than a high index
+   */
+  public DoubleArray3D subArray(int from0, int to0, int from1, int to1, int from2, int to2) {
+    checkPositionIndexes(from0, to0, length0);
+    checkPositionIndexes(from1, to1, length1);
+    checkPositionIndexes(from2, to2, length2);
+    return new DoubleArray3D(
+        data,
+        offset + from0 * stride0 + from1 * stride1 + from2 * stride2,
+        to0 - from0, to1 - from1, to2 - from2,
+        stride0, stride1, stride2);
+  }
+
+  /**
+   * Add a {@code term} to the elements of this array in place.
+   *
+   * @param term to add
+   * @return a reference to this array
+   */
+  public DoubleArray3D add(double term) {
+    if (isContiguous()) {
+      DoubleData.uncheckedAdd(term, data, offset, 1, length0 * length1 * length2);
+      return this;
+    }
+    for (int i = 0; i < length0; i++) {
+      plane(i).add(term);
+    }
+    return this;
+  }
+
+  /**
+   * Multiply ({@code scale}) the elements of this array in place.
+   *
+   * @param scale factor
+   * @return a reference to this array
+   */
+  public DoubleArray3D multiply(double scale) {
+    if (isContiguous()) {
+      DoubleData.uncheckedMultiply(scale, data, offset, 1, length0 * length1 * length2);
+      return this;
+    }
+    for (int i = 0; i < length0; i++) {
+      plane(i).multiply(scale);
+    }
+    return this;
+  }
+
+  /**
+   * Add the values of {@code that} to this array in place.
+   *
+   * @param that array to add
+   * @return a reference to this array
+   */
+  public DoubleArray3D add(DoubleArray3D that) {
+    return apply(Operator.ADD, that);
+  }
+
+  /**
+   * Subtract the values of {@code that} from this array in place.
+   *
+   * @param that array to subtract
+   * @return a reference to this array
+   */
+  public DoubleArray3D subtract(DoubleArray3D that) {
+    return apply(Operator.SUBTRACT, that);
+  }
+
+  /**
+   * Multiply the values of this array by those of {@code that} in place.
+   *
+   * @param that array to multiply by
+   * @return a reference to this array
+   */
+  public DoubleArray3D multiply(DoubleArray3D that) {
+    return apply(Operator.MULTIPLY, that);
+  }
+
+  /**
+   * Divide the values of this array by those of {@code that} in place.
+   *
+   * @param that array to divide by
+   * @return a reference to this array
+   */
+  public DoubleArray3D divide(DoubleArray3D that) {
+    return apply(Operator.DIVIDE, that);
+  }
+
+  private DoubleArray3D apply(Operator op, DoubleArray3D that) {
+    checkShape(that);
+    if (isContiguous() && that.isContiguous()) {
+      op.apply(data, offset, 1, that.data, that.offset, 1, length0 * length1 * length2);
+      return this;
+    }
+    for (int i = 0; i < length0; i++) {
+      DoubleArray2D plane1 = plane(i);
+      DoubleArray2D plane2 = that.plane(i);
+      for (int j = 0; j < length1; j++) {
+        op.apply(
+            plane1.data, plane1.offset + j * plane1.rowStride, plane1.columnStride,
+            plane2.data, plane2.offset + j * plane2.rowStride, plane2.columnStride,
+            length2);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Sum the elements of this array. Method returns zero for an empty array.
+   * Values are accumulated in index order, such that results are identical for
+   * views and contiguous copies.
+   */
+  public double sum() {
+    if (isContiguous()) {
+      return DoubleData.uncheckedSum(data, offset, 1, length0 * length1 * length2);
+    }
+    double sum = 0;
+    for (int i = 0; i < length0; i++) {
+      sum = plane(i).sum(sum);
+    }
+    return sum;
+  }
+
+  /**
+   * Sum the values of this array along the supplied axis into a new 2-D array
+   * whose rows and columns are the remaining axes, in order. Collapsing axis 2
+   * is equivalent to {@link DoubleData#collapse(double[][][])}. Sums are
+   * accumulated in index order.
+   *
+   * @param axis to collapse
+   * @return a new array of sums
+   * @throws IndexOutOfBoundsException if {@code axis} is not 0, 1, or 2
+   */
+  public DoubleArray2D collapse(int axis) {
+    checkElementIndex(axis, 3, "axis");
+    if (axis == 0) {
+      DoubleArray2D collapsed = DoubleArray2D.create(length1, length2);
+      for (int i = 0; i < length0; i++) {
+        collapsed.add(plane(i));
+      }
+      return collapsed;
+    }
+    int columns = (axis == 1) ? length2 : length1;
+    DoubleArray2D collapsed = DoubleArray2D.create(length0, columns);
+    for (int i = 0; i < length0; i++) {
+      double[] sums = plane(i).collapse(axis - 1);
+      System.arraycopy(sums, 0, collapsed.data, i * columns, columns);
+    }
+    return collapsed;
+  }
+
+  /* Whether all values are packed in a single run. */
+  boolean isContiguous() {
+    return stride2 == 1 &&
+        (stride1 == length2 || length1 <= 1) &&
+        (stride0 == length1 * length2 || length0 <= 1);
+  }
+
+  private void checkShape(DoubleArray3D that) {
+    checkArgument(
+        length0 == that.length0 && length1 == that.length1 && length2 == that.length2,
+        "Array shapes [%s x %s x %s] and [%s x %s x %s] differ",
+        length0, length1, length2, that.length0, that.length1, that.length2);
+  }
+
+  /**
+   * Return {@code true} if {@code obj} is a {@code DoubleArray3D} of the same
+   * shape and with the same values as this array, as determined by
+   * {@link java.util.Arrays#equals(double[], double[])}.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof DoubleArray3D)) {
+      return false;
+    }
+    DoubleArray3D that = (DoubleArray3D) obj;
+    if (length0 != that.length0 || length1 != that.length1 || length2 != that.length2) {
+      return false;
+    }
+    for (int i = 0; i < length0; i++) {
+      if (!plane(i).equals(that.plane(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 31 * (31 * length0 + length1) + length2;
+    for (int i = 0; i < length0; i++) {
+      hash = 31 * hash + plane(i).hashCode();
+    }
+    return hash;
+  }
+
+  /**
+   * Format this array for printing.
+   *
+   * @see DoubleData#toString(double[][][])
+   */
+  @Override
+  public String toString() {
+    return DoubleData.toString(toArray());
+  }
+
+}
@@ -18,6 +18,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Utilities for operating on {@code double}-valued data.
@@ -57,7 +59,16 @@ import java.util.Map;
  * arguments. Those overloaded methods that return a single result or
  * information about a supplied data set typically require a
  * {@code Collection<Double>} as an argument, whereas methods that transform
- * data in place require a {@code List<Double>} subtype.
+ * data in place require a {@code List<Double>} subtype. When supplied with a
+ * {@link DoubleList}, these methods operate directly on its backing array and
+ * neither box nor unbox any values.
+ *
+ * <p>The {@code double[][]} and {@code double[][][]} overloads of this class
+ * operate on jagged arrays. {@link DoubleArray2D} and {@link DoubleArray3D}
+ * provide the same operations over contiguous storage, and
+ * {@link ParallelDoubleData} provides parallel variants of the bulk operators
+ * for very large datasets. To apply a sequence of operations in a single pass
+ * over the data, use a {@link #pipe(double[]) pipeline}.
  *
  * <p>For other useful {@code Double} utilities, see the Google Guava
  * {@link Doubles} class.
@@ -94,6 +105,13 @@ public final class DoubleData {
    * @return a reference to the supplied {@code data}
    */
   public static List<Double> add(double term, List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] += term;
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, data.get(i) + term);
     }
@@ -151,6 +169,14 @@ public final class DoubleData {
    */
   public static List<Double> add(List<Double> data1, List<Double> data2) {
     checkSizes(data1, data2);
+    if (data1 instanceof DoubleList && data2 instanceof DoubleList) {
+      DoubleList list1 = (DoubleList) data1;
+      DoubleList list2 = (DoubleList) data2;
+      for (int i = 0; i < list1.size; i++) {
+        list1.data[i] += list2.data[i];
+      }
+      return data1;
+    }
     for (int i = 0; i < data1.size(); i++) {
       data1.set(i, data1.get(i) + data2.get(i));
     }
@@ -251,6 +277,14 @@ public final class DoubleData {
    */
   public static List<Double> subtract(List<Double> data1, List<Double> data2) {
     checkSizes(data1, data2);
+    if (data1 instanceof DoubleList && data2 instanceof DoubleList) {
+      DoubleList list1 = (DoubleList) data1;
+      DoubleList list2 = (DoubleList) data2;
+      for (int i = 0; i < list1.size; i++) {
+        list1.data[i] -= list2.data[i];
+      }
+      return data1;
+    }
     for (int i = 0; i < data1.size(); i++) {
       data1.set(i, data1.get(i) - data2.get(i));
     }
@@ -286,6 +320,13 @@ public final class DoubleData {
    * @return a reference to the supplied {@code data}
    */
   public static List<Double> multiply(double scale, List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] *= scale;
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, data.get(i) * scale);
     }
@@ -344,6 +385,14 @@ public final class DoubleData {
    */
   public static List<Double> multiply(List<Double> data1, List<Double> data2) {
     checkSizes(data1, data2);
+    if (data1 instanceof DoubleList && data2 instanceof DoubleList) {
+      DoubleList list1 = (DoubleList) data1;
+      DoubleList list2 = (DoubleList) data2;
+      for (int i = 0; i < list1.size; i++) {
+        list1.data[i] *= list2.data[i];
+      }
+      return data1;
+    }
     for (int i = 0; i < data1.size(); i++) {
       data1.set(i, data1.get(i) * data2.get(i));
     }
@@ -402,6 +451,14 @@ public final class DoubleData {
    */
   public static List<Double> divide(List<Double> data1, List<Double> data2) {
     checkSizes(data1, data2);
+    if (data1 instanceof DoubleList && data2 instanceof DoubleList) {
+      DoubleList list1 = (DoubleList) data1;
+      DoubleList list2 = (DoubleList) data2;
+      for (int i = 0; i < list1.size; i++) {
+        list1.data[i] /= list2.data[i];
+      }
+      return data1;
+    }
     for (int i = 0; i < data1.size(); i++) {
       data1.set(i, data1.get(i) / data2.get(i));
     }
@@ -416,6 +473,13 @@ public final class DoubleData {
    * @see Math#abs(double)
    */
   public static List<Double> abs(List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Math.abs(list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Math.abs(data.get(i)));
     }
@@ -445,6 +509,13 @@ public final class DoubleData {
    * @see Math#exp(double)
    */
   public static List<Double> exp(List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Math.exp(list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Math.exp(data.get(i)));
     }
@@ -474,6 +545,13 @@ public final class DoubleData {
    * @see Math#log(double)
    */
   public static List<Double> ln(List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Math.log(list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Math.log(data.get(i)));
     }
@@ -502,6 +580,13 @@ public final class DoubleData {
    * @see Math#pow(double, double)
    */
   public static List<Double> pow10(List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Math.pow(10, list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Math.pow(10, data.get(i)));
     }
@@ -530,6 +615,13 @@ public final class DoubleData {
    * @see Math#log10(double)
    */
   public static List<Double> log(List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Math.log10(list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Math.log10(data.get(i)));
     }
@@ -578,6 +670,10 @@ public final class DoubleData {
    * @return the sum of the supplied values
    */
   public static double sum(Collection<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      return sum(list.data, list.size);
+    }
     double sum = 0;
     for (double d : data) {
       sum += d;
@@ -593,9 +689,13 @@ public final class DoubleData {
    * @return the sum of the supplied values
    */
   public static double sum(double... data) {
+    return sum(data, data.length);
+  }
+
+  private static double sum(double[] data, int size) {
     double sum = 0;
-    for (double d : data) {
-      sum += d;
+    for (int i = 0; i < size; i++) {
+      sum += data[i];
     }
     return sum;
   }
@@ -639,6 +739,13 @@ public final class DoubleData {
    */
   public static List<Double> transform(Function<Double, Double> function, List<Double> data) {
     checkNotNull(function);
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = function.apply(list.data[i]);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, function.apply(data.get(i)));
     }
@@ -646,7 +753,8 @@ public final class DoubleData {
   }
 
   /**
-   * Transform {@code data} by a {@code function} in place.
+   * Transform {@code data} by a {@code function} in place. Each value is boxed
+   * and unboxed; prefer {@link #map(DoubleUnaryOperator, double...)}.
    *
    * @param function to apply
    * @param data to operate on
@@ -660,6 +768,246 @@ public final class DoubleData {
     return data;
   }
 
+  /*
+   * Primitive operators. These are named map(), mapIndexed(), and combine()
+   * rather than overloading transform() because an implicitly typed lambda
+   * would be ambiguous between a Function<Double, Double> and a
+   * DoubleUnaryOperator.
+   */
+
+  /**
+   * Transform {@code data} by an {@code operator} in place. Unlike
+   * {@link #transform(Function, double...)}, values are neither boxed nor
+   * unboxed.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   * @see ParallelDoubleData#map(DoubleUnaryOperator, double...)
+   */
+  public static double[] map(DoubleUnaryOperator operator, double... data) {
+    checkNotNull(operator);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = operator.applyAsDouble(data[i]);
+    }
+    return data;
+  }
+
+  /**
+   * Transform {@code data} by an {@code operator} in place.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   */
+  public static double[][] map(DoubleUnaryOperator operator, double[][] data) {
+    checkNotNull(operator);
+    for (double[] array : data) {
+      map(operator, array);
+    }
+    return data;
+  }
+
+  /**
+   * Transform {@code data} by an {@code operator} in place.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   */
+  public static double[][][] map(DoubleUnaryOperator operator, double[][][] data) {
+    checkNotNull(operator);
+    for (double[][] array : data) {
+      map(operator, array);
+    }
+    return data;
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the index of each value.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   */
+  public static double[] mapIndexed(IndexedOperator operator, double... data) {
+    checkNotNull(operator);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = operator.apply(i, data[i]);
+    }
+    return data;
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the indices of each value.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   */
+  public static double[][] mapIndexed(IndexedOperator2D operator, double[][] data) {
+    checkNotNull(operator);
+    for (int i = 0; i < data.length; i++) {
+      mapRow(operator, i, data[i]);
+    }
+    return data;
+  }
+
+  static void mapRow(IndexedOperator2D operator, int i, double[] row) {
+    for (int j = 0; j < row.length; j++) {
+      row[j] = operator.apply(i, j, row[j]);
+    }
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the indices of each value.
+   *
+   * @param operator to apply
+   * @param data to operate on
+   * @return a reference to the supplied {@code data}
+   */
+  public static double[][][] mapIndexed(IndexedOperator3D operator, double[][][] data) {
+    checkNotNull(operator);
+    for (int i = 0; i < data.length; i++) {
+      mapPlane(operator, i, data[i]);
+    }
+    return data;
+  }
+
+  static void mapPlane(IndexedOperator3D operator, int i, double[][] plane) {
+    for (int j = 0; j < plane.length; j++) {
+      double[] row = plane[j];
+      for (int k = 0; k < row.length; k++) {
+        row[k] = operator.apply(i, j, k, row[k]);
+      }
+    }
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place, such
+   * that {@code data1[i] = operator(data1[i], data2[i])}.
+   *
+   * @param operator to apply
+   * @param data1
+   * @param data2
+   * @return a reference to {@code data1}
+   */
+  public static double[] combine(DoubleBinaryOperator operator, double[] data1, double[] data2) {
+    checkNotNull(operator);
+    checkSizes(data1, data2);
+    return uncheckedCombine(operator, data1, data2, 0, data1.length);
+  }
+
+  static double[] uncheckedCombine(
+      DoubleBinaryOperator operator,
+      double[] data1,
+      double[] data2,
+      int from,
+      int to) {
+
+    for (int i = from; i < to; i++) {
+      data1[i] = operator.applyAsDouble(data1[i], data2[i]);
+    }
+    return data1;
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place.
+   *
+   * @param operator to apply
+   * @param data1
+   * @param data2
+   * @return a reference to {@code data1}
+   * @see #combine(DoubleBinaryOperator, double[], double[])
+   */
+  public static double[][] combine(
+      DoubleBinaryOperator operator,
+      double[][] data1,
+      double[][] data2) {
+
+    checkNotNull(operator);
+    checkSizes(data1, data2);
+    for (int i = 0; i < data1.length; i++) {
+      combine(operator, data1[i], data2[i]);
+    }
+    return data1;
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place.
+   *
+   * @param operator to apply
+   * @param data1
+   * @param data2
+   * @return a reference to {@code data1}
+   * @see #combine(DoubleBinaryOperator, double[], double[])
+   */
+  public static double[][][] combine(
+      DoubleBinaryOperator operator,
+      double[][][] data1,
+      double[][][] data2) {
+
+    checkNotNull(operator);
+    checkSizes(data1, data2);
+    for (int i = 0; i < data1.length; i++) {
+      combine(operator, data1[i], data2[i]);
+    }
+    return data1;
+  }
+
+  /**
+   * An operation on a single {@code double} value and its index.
+   */
+  @FunctionalInterface
+  public interface IndexedOperator {
+
+    /**
+     * Return the result of this operator.
+     *
+     * @param index of {@code value}
+     * @param value to operate on
+     */
+    double apply(int index, double value);
+  }
+
+  /**
+   * An operation on a single {@code double} value and its indices in a 2-D
+   * array.
+   */
+  @FunctionalInterface
+  public interface IndexedOperator2D {
+
+    /**
+     * Return the result of this operator.
+     *
+     * @param i index of {@code value} in the 1st dimension
+     * @param j index of {@code value} in the 2nd dimension
+     * @param value to operate on
+     */
+    double apply(int i, int j, double value);
+  }
+
+  /**
+   * An operation on a single {@code double} value and its indices in a 3-D
+   * array.
+   */
+  @FunctionalInterface
+  public interface IndexedOperator3D {
+
+    /**
+     * Return the result of this operator.
+     *
+     * @param i index of {@code value} in the 1st dimension
+     * @param j index of {@code value} in the 2nd dimension
+     * @param k index of {@code value} in the 3rd dimension
+     * @param value to operate on
+     */
+    double apply(int i, int j, int k, double value);
+  }
+
   private static final String NORM_DATA_ERROR = "Normalize: Data outside range [0..+Inf)";
   private static final String NORM_SUM_ERROR = "Normalize: Sum outside range (0..+Inf)";
 
@@ -708,6 +1056,13 @@ public final class DoubleData {
    * @see Maths#round(double, int)
    */
   public static List<Double> round(int scale, List<Double> data) {
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        list.data[i] = Maths.round(list.data[i], scale);
+      }
+      return data;
+    }
     for (int i = 0; i < data.size(); i++) {
       data.set(i, Maths.round(data.get(i), scale));
     }
@@ -789,6 +1144,44 @@ public final class DoubleData {
     return Math.abs(test - target) / target * 100.0;
   }
 
+  /* * * * * * * * * * * * * PIPELINES * * * * * * * * * * * * */
+
+  /**
+   * Create a lazy pipeline of operations over {@code data}. Operations are
+   * applied in a single pass when a terminal operation is invoked.
+   *
+   * @param data to operate on
+   * @return a new pipeline
+   * @see DoublePipe
+   */
+  public static DoublePipe<double[]> pipe(double[] data) {
+    return DoublePipe.create(checkNotNull(data));
+  }
+
+  /**
+   * Create a lazy pipeline of operations over {@code data}. Operations are
+   * applied in a single pass when a terminal operation is invoked.
+   *
+   * @param data to operate on
+   * @return a new pipeline
+   * @see DoublePipe
+   */
+  public static DoublePipe<DoubleArray2D> pipe(DoubleArray2D data) {
+    return DoublePipe.create(checkNotNull(data));
+  }
+
+  /**
+   * Create a lazy pipeline of operations over {@code data}. Operations are
+   * applied in a single pass when a terminal operation is invoked.
+   *
+   * @param data to operate on
+   * @return a new pipeline
+   * @see DoublePipe
+   */
+  public static DoublePipe<DoubleArray3D> pipe(DoubleArray3D data) {
+    return DoublePipe.create(checkNotNull(data));
+  }
+
   /* * * * * * * * * * * * * * STATE * * * * * * * * * * * * * */
 
   /**
@@ -832,6 +1225,15 @@ public final class DoubleData {
    */
   static boolean arePositiveAndReal(Collection<Double> data) {
     checkSize(1, data);
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        if (!isPositiveAndReal(list.data[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
     for (double d : data) {
       if (!isPositiveAndReal(d)) {
         return false;
@@ -881,6 +1283,15 @@ public final class DoubleData {
    */
   static boolean arePositiveAndRealOrZero(Collection<Double> data) {
     checkSize(1, data);
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        if (!isPositiveAndRealOrZero(list.data[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
     for (double d : data) {
       if (!isPositiveAndRealOrZero(d)) {
         return false;
@@ -916,6 +1327,15 @@ public final class DoubleData {
    */
   static boolean areZeroValued(Collection<Double> data) {
     checkSize(1, data);
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        if (list.data[i] != 0.0) {
+          return false;
+        }
+      }
+      return true;
+    }
     for (double d : data) {
       if (d != 0.0) {
         return false;
@@ -1011,6 +1431,13 @@ public final class DoubleData {
    */
   public static Collection<Double> checkFinite(Collection<Double> data) {
     checkSize(1, data);
+    if (data instanceof DoubleList) {
+      DoubleList list = (DoubleList) data;
+      for (int i = 0; i < list.size; i++) {
+        checkFinite(DATA_ERROR, list.data[i]);
+      }
+      return data;
+    }
     for (double d : data) {
       checkFinite(DATA_ERROR, d);
     }
@@ -1169,8 +1596,15 @@ public final class DoubleData {
    * @return a reference to the supplied {@code weights}
    */
   public static Collection<Double> checkWeights(Collection<Double> weights) {
-    for (double weight : weights) {
-      checkWeight(weight, true);
+    if (weights instanceof DoubleList) {
+      DoubleList list = (DoubleList) weights;
+      for (int i = 0; i < list.size; i++) {
+        checkWeight(list.data[i], true);
+      }
+    } else {
+      for (double weight : weights) {
+        checkWeight(weight, true);
+      }
     }
     double sum = sum(weights);
     checkArgument(DoubleMath.fuzzyEquals(sum, 1.0, WEIGHT_TOLERANCE),
@@ -1258,6 +1692,91 @@ public final class DoubleData {
     return sb.toString();
   }
 
+  /* * * * * * * * * * * * STRIDED KERNELS * * * * * * * * * * * */
+
+  /*
+   * Unchecked operators on strided runs of values in a flat array, as used by
+   * DoubleArray2D and DoubleArray3D. Each operates on size values starting at
+   * offset and separated by stride.
+   */
+
+  static void uncheckedAdd(double term, double[] data, int offset, int stride, int size) {
+    for (int i = 0, j = offset; i < size; i++, j += stride) {
+      data[j] += term;
+    }
+  }
+
+  static void uncheckedMultiply(double scale, double[] data, int offset, int stride, int size) {
+    for (int i = 0, j = offset; i < size; i++, j += stride) {
+      data[j] *= scale;
+    }
+  }
+
+  static double uncheckedSum(double[] data, int offset, int stride, int size) {
+    double sum = 0;
+    for (int i = 0, j = offset; i < size; i++, j += stride) {
+      sum += data[j];
+    }
+    return sum;
+  }
+
+  /* In-place binary operators on strided runs: data1 = data1 (op) data2. */
+  enum Operator {
+
+    ADD {
+      @Override
+      void apply(
+          double[] data1, int offset1, int stride1,
+          double[] data2, int offset2, int stride2,
+          int size) {
+        for (int i = 0, j1 = offset1, j2 = offset2; i < size; i++, j1 += stride1, j2 += stride2) {
+          data1[j1] += data2[j2];
+        }
+      }
+    },
+
+    SUBTRACT {
+      @Override
+      void apply(
+          double[] data1, int offset1, int stride1,
+          double[] data2, int offset2, int stride2,
+          int size) {
+        for (int i = 0, j1 = offset1, j2 = offset2; i < size; i++, j1 += stride1, j2 += stride2) {
+          data1[j1] -= data2[j2];
+        }
+      }
+    },
+
+    MULTIPLY {
+      @Override
+      void apply(
+          double[] data1, int offset1, int stride1,
+          double[] data2, int offset2, int stride2,
+          int size) {
+        for (int i = 0, j1 = offset1, j2 = offset2; i < size; i++, j1 += stride1, j2 += stride2) {
+          data1[j1] *= data2[j2];
+        }
+      }
+    },
+
+    DIVIDE {
+      @Override
+      void apply(
+          double[] data1, int offset1, int stride1,
+          double[] data2, int offset2, int stride2,
+          int size) {
+        for (int i = 0, j1 = offset1, j2 = offset2; i < size; i++, j1 += stride1, j2 += stride2) {
+          data1[j1] /= data2[j2];
+        }
+      }
+    };
+
+    abstract void apply(
+        double[] data1, int offset1, int stride1,
+        double[] data2, int offset2, int stride2,
+        int size);
+  }
+
   /*
    *
    *
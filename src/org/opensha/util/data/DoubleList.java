@@ -0,0 +1,313 @@
+package org.opensha.util.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of primitive {@code double} values backed by a
+ * {@code double[]}. This class implements {@code List<Double>} so that it may
+ * be used anywhere a list of boxed values is expected, however, the methods of
+ * {@link DoubleData} that accept a {@code List<Double>} recognize this type
+ * and operate directly on the backing array, and the primitive accessors
+ * ({@link #getDouble(int)}, {@link #setDouble(int, double)}, and
+ * {@link #addDouble(double)}) allow callers to avoid boxing altogether.
+ *
+ * <p>As with {@code ArrayList}, this class is not synchronized, iterators are
+ * fail-fast, and {@code null} elements are not permitted. Equality and hash
+ * codes are consistent with the {@code List} contract and the boxed
+ * {@link Double#equals(Object)}.
+ *
+ * @author Peter Powers
+ */
+public final class DoubleList extends AbstractList<Double> implements RandomAccess {
+
+  private static final int DEFAULT_CAPACITY = 10;
+  private static final double[] EMPTY = {};
+
+  /* Accessed directly by DoubleData. */
+  double[] data;
+  int size;
+
+  private DoubleList(double[] data, int size) {
+    this.data = data;
+    this.size = size;
+  }
+
+  /**
+   * Create a new, empty list.
+   */
+  public static DoubleList create() {
+    return new DoubleList(EMPTY, 0);
+  }
+
+  /**
+   * Create a new, empty list with the supplied initial capacity.
+   *
+   * @param capacity initial capacity
+   * @throws IllegalArgumentException if {@code capacity < 0}
+   */
+  public static DoubleList withCapacity(int capacity) {
+    checkArgument(capacity >= 0, "Capacity [%s] < 0", capacity);
+    return new DoubleList(new double[capacity], 0);
+  }
+
+  /**
+   * Create a new list containing a copy of the supplied values.
+   *
+   * @param values to copy
+   */
+  public static DoubleList of(double... values) {
+    return new DoubleList(Arrays.copyOf(values, values.length), values.length);
+  }
+
+  /**
+   * Create a new list containing a copy of the supplied values.
+   *
+   * @param values to copy
+   * @throws NullPointerException if {@code values} contains {@code null}
+   */
+  public static DoubleList copyOf(Collection<Double> values) {
+    if (values instanceof DoubleList) {
+      DoubleList list = (DoubleList) values;
+      return new DoubleList(Arrays.copyOf(list.data, list.size), list.size);
+    }
+    double[] data = new double[values.size()];
+    int i = 0;
+    for (double value : values) {
+      data[i++] = value;
+    }
+    return new DoubleList(data, data.length);
+  }
+
+  /**
+   * Return the value at {@code index}.
+   *
+   * @param index of value to return
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public double getDouble(int index) {
+    checkElementIndex(index, size);
+    return data[index];
+  }
+
+  /**
+   * Replace the value at {@code index}.
+   *
+   * @param index of value to replace
+   * @param value to set
+   * @return the value previously at {@code index}
+   * @throws IndexOutOfBoundsException if {@code index} is out of range
+   */
+  public double setDouble(int index, double value) {
+    checkElementIndex(index, size);
+    double previous = data[index];
+    data[index] = value;
+    return previous;
+  }
+
+  /**
+   * Append a value to the end of this list.
+   *
+   * @param value to append
+   */
+  public void addDouble(double value) {
+    modCount++;
+    if (size == data.length) {
+      grow(size + 1);
+    }
+    data[size++] = value;
+  }
+
+  /**
+   * Append values to the end of this list.
+   *
+   * @param values to append
+   */
+  public void addAll(double... values) {
+    modCount++;
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, data, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * Return a new array containing the values in this list.
+   */
+  public double[] toDoubleArray() {
+    return Arrays.copyOf(data, size);
+  }
+
+  /**
+   * Increase the capacity of this list, if necessary, so that it can hold at
+   * least {@code capacity} values without resizing.
+   *
+   * @param capacity minimum capacity
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > data.length) {
+      modCount++;
+      grow(capacity);
+    }
+  }
+
+  /**
+   * Reduce the capacity of this list to its current size.
+   */
+  public void trimToSize() {
+    if (size < data.length) {
+      modCount++;
+      data = Arrays.copyOf(data, size);
+    }
+  }
+
+  /* Grow by 50%, or to the supplied minimum if larger. */
+  private void grow(int minCapacity) {
+    checkArgument(minCapacity >= 0, "Capacity overflow");
+    int capacity = data.length + (data.length >> 1);
+    if (capacity - minCapacity < 0) {
+      capacity = Math.max(minCapacity, DEFAULT_CAPACITY);
+    }
+    if (capacity < 0) {
+      capacity = Integer.MAX_VALUE - 8;
+    }
+    data = Arrays.copyOf(data, capacity);
+  }
+
+  @Override
+  public Double get(int index) {
+    return getDouble(index);
+  }
+
+  @Override
+  public Double set(int index, Double value) {
+    return setDouble(index, value);
+  }
+
+  @Override
+  public boolean add(Double value) {
+    addDouble(value);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Double value) {
+    checkPositionIndex(index, size);
+    double v = value;
+    modCount++;
+    if (size == data.length) {
+      grow(size + 1);
+    }
+    System.arraycopy(data, index, data, index + 1, size - index);
+    data[index] = v;
+    size++;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Double> values) {
+    if (values instanceof DoubleList) {
+      DoubleList list = (DoubleList) values;
+      int count = list.size;
+      modCount++;
+      ensureCapacity(size + count);
+      System.arraycopy(list.data, 0, data, size, count);
+      size += count;
+      return count > 0;
+    }
+    return super.addAll(values);
+  }
+
+  @Override
+  public Double remove(int index) {
+    checkElementIndex(index, size);
+    modCount++;
+    double previous = data[index];
+    System.arraycopy(data, index + 1, data, index, size - index - 1);
+    size--;
+    return previous;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    modCount++;
+    System.arraycopy(data, toIndex, data, fromIndex, size - toIndex);
+    size -= toIndex - fromIndex;
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    if (o instanceof Double) {
+      long bits = Double.doubleToLongBits((Double) o);
+      for (int i = 0; i < size; i++) {
+        if (Double.doubleToLongBits(data[i]) == bits) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    if (o instanceof Double) {
+      long bits = Double.doubleToLongBits((Double) o);
+      for (int i = size - 1; i >= 0; i--) {
+        if (Double.doubleToLongBits(data[i]) == bits) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof DoubleList)) {
+      return super.equals(o);
+    }
+    DoubleList that = (DoubleList) o;
+    if (size != that.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (Double.doubleToLongBits(data[i]) != Double.doubleToLongBits(that.data[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+    for (int i = 0; i < size; i++) {
+      hash = 31 * hash + Double.hashCode(data[i]);
+    }
+    return hash;
+  }
+
+}
@@ -0,0 +1,605 @@
+package org.opensha.util.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * A lazy pipeline of element-wise operations over {@code double}-valued data.
+ * Operations such as {@link #ln()}, {@link #multiply(double)}, and
+ * {@link #exp()} are recorded rather than executed, and a terminal operation
+ * such as {@link #sum()} then applies all recorded operations in a single pass
+ * over the data. Obtain a pipeline using one of the {@code DoubleData.pipe()}
+ * methods, for example:
+ *
+ * <pre>
+ * double total = DoubleData.pipe(data).ln().multiply(w).exp().sum();
+ * </pre>
+ *
+ * <p>Pipelines operate on {@code double[]} and the packed
+ * {@link DoubleArray2D} and {@link DoubleArray3D} types, including views, in
+ * index (row-major) order. Intermediate operations return this pipeline, and
+ * terminal operations may be invoked more than once. Terminal operations are
+ * available to write results in place ({@link #apply()}) or to a new array
+ * ({@link #toArray()}), to reduce results ({@link #sum()}, {@link #min()},
+ * {@link #max()}), and to {@link #normalize()} results in place.
+ *
+ * <p>Serial pipelines yield results identical to applying the equivalent
+ * sequence of {@link DoubleData} methods to a one-dimensional copy of the
+ * data. Pipelines may also be run in {@link #parallel() parallel}, in which
+ * case all results are identical except {@link #sum()} and
+ * {@link #normalize()}, which sum values in the fixed blocks used by
+ * {@link ParallelDoubleData#sum(double...)} and are similarly reproducible.
+ * Pipelines are not synchronized.
+ *
+ * @author Peter Powers
+ * @param <T> the type of data in the pipeline
+ * @see DoubleData#pipe(double[])
+ */
+public final class DoublePipe<T> {
+
+  /*
+   * Developer notes: Rather than evaluate a chain of functions for each
+   * element, which requires a virtual call per operation per element, values
+   * are copied in chunks into a small buffer and each operation is applied to
+   * the whole buffer in a tight loop before the terminal operation consumes
+   * it. A chunk remains in L1 cache for the duration, so memory is read (and
+   * written) once, while each operation still runs as a simple, often
+   * vectorized, loop. Each operation performs the same arithmetic as its
+   * DoubleData counterpart, such that results are identical.
+   */
+
+  private static final int CHUNK = 512;
+
+  private enum Op {
+    ADD,
+    MULTIPLY,
+    ABS,
+    EXP,
+    LN,
+    POW10,
+    LOG,
+    TRANSFORM;
+  }
+
+  private final T source;
+  private final Layout layout;
+  private final Function<double[], T> wrapper;
+
+  private Op[] ops = new Op[4];
+  private double[] args = new double[4];
+  private DoubleUnaryOperator[] functions = new DoubleUnaryOperator[4];
+  private int opCount;
+  private ParallelDoubleData parallel;
+
+  private DoublePipe(T source, Layout layout, Function<double[], T> wrapper) {
+    this.source = source;
+    this.layout = layout;
+    this.wrapper = wrapper;
+  }
+
+  static DoublePipe<double[]> create(double[] data) {
+    return new DoublePipe<>(
+        data,
+        new Layout(data, data.length, 0, 1, data.length, 1, 0, 0),
+        values -> values);
+  }
+
+  static DoublePipe<DoubleArray2D> create(DoubleArray2D data) {
+    int size = data.rows * data.columns;
+    Layout layout = data.isContiguous()
+        ? new Layout(data.data, size, data.offset, 1, size, 1, 0, 0)
+        : new Layout(
+            data.data, size, data.offset,
+            data.columnStride, data.columns,
+            data.rows, 0, data.rowStride);
+    return new DoublePipe<>(
+        data,
+        layout,
+        values -> new DoubleArray2D(values, 0, data.rows, data.columns, data.columns, 1));
+  }
+
+  static DoublePipe<DoubleArray3D> create(DoubleArray3D data) {
+    int size = data.length0 * data.length1 * data.length2;
+    Layout layout = data.isContiguous()
+        ? new Layout(data.data, size, data.offset, 1, size, 1, 0, 0)
+        : new Layout(
+            data.data, size, data.offset,
+            data.stride2, data.length2,
+            data.length1, data.stride0, data.stride1);
+    return new DoublePipe<>(
+        data,
+        layout,
+        values -> new DoubleArray3D(
+            values, 0,
+            data.length0, data.length1, data.length2,
+            data.length1 * data.length2, data.length2, 1));
+  }
+
+  /* * * * * * * * * * * * * * * CONFIG * * * * * * * * * * * * * * */
+
+  /**
+   * Run terminal operations in parallel using the common
+   * {@code ForkJoinPool} and default threshold.
+   *
+   * @return this pipeline
+   * @see ParallelDoubleData#create()
+   */
+  public DoublePipe<T> parallel() {
+    return parallel(ParallelDoubleData.create());
+  }
+
+  /**
+   * Run terminal operations in parallel using the pool and threshold of the
+   * supplied {@code ParallelDoubleData}.
+   *
+   * @param parallel configuration
+   * @return this pipeline
+   */
+  public DoublePipe<T> parallel(ParallelDoubleData parallel) {
+    this.parallel = checkNotNull(parallel);
+    return this;
+  }
+
+  /**
+   * Run terminal operations serially in the calling thread. This is the
+   * default.
+   *
+   * @return this pipeline
+   */
+  public DoublePipe<T> serial() {
+    this.parallel = null;
+    return this;
+  }
+
+  /* * * * * * * * * * * * * * OPERATIONS * * * * * * * * * * * * * */
+
+  /**
+   * Add a {@code term} to each element.
+   *
+   * @param term to add
+   * @return this pipeline
+   * @see DoubleData#add(double, double...)
+   */
+  public DoublePipe<T> add(double term) {
+    return record(Op.ADD, term, null);
+  }
+
+  /**
+   * Multiply ({@code scale}) each element.
+   *
+   * @param scale factor
+   * @return this pipeline
+   * @see DoubleData#multiply(double, double...)
+   */
+  public DoublePipe<T> multiply(double scale) {
+    return record(Op.MULTIPLY, scale, null);
+  }
+
+  /**
+   * Flip the sign of each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#flip(double...)
+   */
+  public DoublePipe<T> flip() {
+    return multiply(-1);
+  }
+
+  /**
+   * Take the absolute value of each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#abs(double...)
+   */
+  public DoublePipe<T> abs() {
+    return record(Op.ABS, 0.0, null);
+  }
+
+  /**
+   * Raise Euler's number {@code e} to each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#exp(double...)
+   */
+  public DoublePipe<T> exp() {
+    return record(Op.EXP, 0.0, null);
+  }
+
+  /**
+   * Take the natural logarithm of each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#ln(double[])
+   */
+  public DoublePipe<T> ln() {
+    return record(Op.LN, 0.0, null);
+  }
+
+  /**
+   * Raise 10 to the power of each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#pow10(double...)
+   */
+  public DoublePipe<T> pow10() {
+    return record(Op.POW10, 0.0, null);
+  }
+
+  /**
+   * Take the base-10 logarithm of each element.
+   *
+   * @return this pipeline
+   * @see DoubleData#log(double...)
+   */
+  public DoublePipe<T> log() {
+    return record(Op.LOG, 0.0, null);
+  }
+
+  /**
+   * Transform each element by a {@code function}. Functions should be
+   * stateless when a pipeline is run in parallel.
+   *
+   * @param function to apply
+   * @return this pipeline
+   */
+  public DoublePipe<T> transform(DoubleUnaryOperator function) {
+    return record(Op.TRANSFORM, 0.0, checkNotNull(function));
+  }
+
+  private DoublePipe<T> record(Op op, double arg, DoubleUnaryOperator function) {
+    if (opCount == ops.length) {
+      ops = Arrays.copyOf(ops, opCount * 2);
+      args = Arrays.copyOf(args, opCount * 2);
+      functions = Arrays.copyOf(functions, opCount * 2);
+    }
+    ops[opCount] = op;
+    args[opCount] = arg;
+    functions[opCount] = function;
+    opCount++;
+    return this;
+  }
+
+  /* * * * * * * * * * * * * * TERMINALS * * * * * * * * * * * * * * */
+
+  /**
+   * Apply the operations of this pipeline to the source data in place.
+   *
+   * @return a reference to the source data
+   */
+  public T apply() {
+    Kernel kernel = kernel();
+    run((lo, hi) -> kernel.write(lo, hi, null));
+    return source;
+  }
+
+  /**
+   * Apply the operations of this pipeline to a copy of the source data. The
+   * source data are not modified. Copies of packed arrays are contiguous.
+   *
+   * @return a new array, of the same type and shape as the source data
+   */
+  public T toArray() {
+    Kernel kernel = kernel();
+    double[] out = new double[layout.size];
+    run((lo, hi) -> kernel.write(lo, hi, out));
+    return wrapper.apply(out);
+  }
+
+  /**
+   * Return the sum of the elements after applying the operations of this
+   * pipeline. Method returns zero for empty data. The source data are not
+   * modified.
+   *
+   * @see DoubleData#sum(double...)
+   * @see ParallelDoubleData#sum(double...)
+   */
+  public double sum() {
+    Kernel kernel = kernel();
+    if (parallel == null) {
+      return kernel.sum(0, layout.size);
+    }
+    return DoubleData.sum(parallel.partials(layout.size, kernel::sum));
+  }
+
+  /**
+   * Return the minimum element after applying the operations of this
+   * pipeline. The source data are not modified.
+   *
+   * @throws IllegalArgumentException if the data are empty
+   * @see Doubles#min(double...)
+   */
+  public double min() {
+    checkArgument(layout.size > 0, "Data are empty");
+    Kernel kernel = kernel();
+    if (parallel == null) {
+      return kernel.min(0, layout.size);
+    }
+    return Doubles.min(parallel.partials(layout.size, kernel::min));
+  }
+
+  /**
+   * Return the maximum element after applying the operations of this
+   * pipeline. The source data are not modified.
+   *
+   * @throws IllegalArgumentException if the data are empty
+   * @see Doubles#max(double...)
+   */
+  public double max() {
+    checkArgument(layout.size > 0, "Data are empty");
+    Kernel kernel = kernel();
+    if (parallel == null) {
+      return kernel.max(0, layout.size);
+    }
+    return Doubles.max(parallel.partials(layout.size, kernel::max));
+  }
+
+  /**
+   * Apply the operations of this pipeline to the source data in place and
+   * normalize the results such that they sum to 1. Unlike
+   * {@link DoubleData#normalize(double...)}, the source data are validated as
+   * they are written; if validation fails, the source data will have been
+   * transformed, in part or in full, but not normalized.
+   *
+   * @return a reference to the source data
+   * @throws IllegalArgumentException if the data are empty, contain values
+   *         outside the range {@code [0..+Inf)} after applying the operations
+   *         of this pipeline, or sum to a value outside the range
+   *         {@code (0..+Inf)}
+   * @see DoubleData#normalize(double...)
+   */
+  public T normalize() {
+    checkArgument(layout.size > 0, "Data are empty");
+    Kernel kernel = kernel();
+    double sum = (parallel == null)
+        ? kernel.normalize(0, layout.size)
+        : DoubleData.sum(parallel.partials(layout.size, kernel::normalize));
+    checkArgument(DoubleData.isPositiveAndReal(sum), "Normalize: Sum outside range (0..+Inf)");
+    Kernel scale = new Kernel(
+        layout,
+        new Op[] { Op.MULTIPLY },
+        new double[] { 1.0 / sum },
+        new DoubleUnaryOperator[1],
+        1);
+    run((lo, hi) -> scale.write(lo, hi, null));
+    return source;
+  }
+
+  /* Snapshot of the current operations. */
+  private Kernel kernel() {
+    return new Kernel(layout, ops.clone(), args.clone(), functions.clone(), opCount);
+  }
+
+  private void run(ParallelDoubleData.RangeAction action) {
+    if (parallel == null) {
+      if (layout.size > 0) {
+        action.apply(0, layout.size);
+      }
+      return;
+    }
+    parallel.apply(layout.size, parallel.threshold(), action);
+  }
+
+  /* * * * * * * * * * * * * * * * KERNEL * * * * * * * * * * * * * * */
+
+  /*
+   * The logical elements of a source, in index order, as runs of equal length
+   * and stride over a backing array. Runs are grouped such that the offset of
+   * run r is offset + (r / groupSize) * groupStride + (r % groupSize) *
+   * runStride.
+   */
+  private static final class Layout {
+
+    final double[] data;
+    final int size;
+    final int offset;
+    final int stride;
+    final int runLength;
+    final int groupSize;
+    final int groupStride;
+    final int runStride;
+
+    Layout(
+        double[] data,
+        int size,
+        int offset,
+        int stride,
+        int runLength,
+        int groupSize,
+        int groupStride,
+        int runStride) {
+
+      this.data = data;
+      this.size = size;
+      this.offset = offset;
+      this.stride = stride;
+      this.runLength = runLength;
+      this.groupSize = groupSize;
+      this.groupStride = groupStride;
+      this.runStride = runStride;
+    }
+
+    /* Copy n elements, starting at logical index lo, to or from a buffer. */
+    void copy(int lo, double[] buffer, int n, boolean read) {
+      int run = lo / runLength;
+      int position = lo % runLength;
+      for (int i = 0; i < n;) {
+        int count = Math.min(n - i, runLength - position);
+        int j = offset +
+            (run / groupSize) * groupStride +
+            (run % groupSize) * runStride +
+            position * stride;
+        if (stride == 1) {
+          if (read) {
+            System.arraycopy(data, j, buffer, i, count);
+          } else {
+            System.arraycopy(buffer, i, data, j, count);
+          }
+          i += count;
+        } else {
+          for (int k = 0; k < count; k++, i++, j += stride) {
+            if (read) {
+              buffer[i] = data[j];
+            } else {
+              data[j] = buffer[i];
+            }
+          }
+        }
+        run++;
+        position = 0;
+      }
+    }
+  }
+
+  /* Applies a fixed sequence of operations to ranges of a layout. */
+  private static final class Kernel {
+
+    final Layout layout;
+    final Op[] ops;
+    final double[] args;
+    final DoubleUnaryOperator[] functions;
+    final int opCount;
+
+    Kernel(
+        Layout layout,
+        Op[] ops,
+        double[] args,
+        DoubleUnaryOperator[] functions,
+        int opCount) {
+
+      this.layout = layout;
+      this.ops = ops;
+      this.args = args;
+      this.functions = functions;
+      this.opCount = opCount;
+    }
+
+    /* Write to the layout if out is null, otherwise to out by logical index. */
+    void write(int lo, int hi, double[] out) {
+      double[] buffer = new double[Math.min(CHUNK, hi - lo)];
+      for (int start = lo; start < hi; start += CHUNK) {
+        int n = Math.min(CHUNK, hi - start);
+        layout.copy(start, buffer, n, true);
+        process(buffer, n);
+        if (out == null) {
+          layout.copy(start, buffer, n, false);
+        } else {
+          System.arraycopy(buffer, 0, out, start, n);
+        }
+      }
+    }
+
+    double sum(int lo, int hi) {
+      double[] buffer = new double[Math.min(CHUNK, hi - lo)];
+      double sum = 0;
+      for (int start = lo; start < hi; start += CHUNK) {
+        int n = Math.min(CHUNK, hi - start);
+        layout.copy(start, buffer, n, true);
+        process(buffer, n);
+        for (int i = 0; i < n; i++) {
+          sum += buffer[i];
+        }
+      }
+      return sum;
+    }
+
+    double min(int lo, int hi) {
+      double[] buffer = new double[Math.min(CHUNK, hi - lo)];
+      double min = Double.POSITIVE_INFINITY;
+      for (int start = lo; start < hi; start += CHUNK) {
+        int n = Math.min(CHUNK, hi - start);
+        layout.copy(start, buffer, n, true);
+        process(buffer, n);
+        for (int i = 0; i < n; i++) {
+          min = Math.min(min, buffer[i]);
+        }
+      }
+      return min;
+    }
+
+    double max(int lo, int hi) {
+      double[] buffer = new double[Math.min(CHUNK, hi - lo)];
+      double max = Double.NEGATIVE_INFINITY;
+      for (int start = lo; start < hi; start += CHUNK) {
+        int n = Math.min(CHUNK, hi - start);
+        layout.copy(start, buffer, n, true);
+        process(buffer, n);
+        for (int i = 0; i < n; i++) {
+          max = Math.max(max, buffer[i]);
+        }
+      }
+      return max;
+    }
+
+    /* Write to the layout, validating values and returning their sum. */
+    double normalize(int lo, int hi) {
+      double[] buffer = new double[Math.min(CHUNK, hi - lo)];
+      double sum = 0;
+      for (int start = lo; start < hi; start += CHUNK) {
+        int n = Math.min(CHUNK, hi - start);
+        layout.copy(start, buffer, n, true);
+        process(buffer, n);
+        for (int i = 0; i < n; i++) {
+          checkArgument(
+              DoubleData.isPositiveAndRealOrZero(buffer[i]),
+              "Normalize: Data outside range [0..+Inf)");
+          sum += buffer[i];
+        }
+        layout.copy(start, buffer, n, false);
+      }
+      return sum;
+    }
+
+    private void process(double[] buffer, int n) {
+      for (int k = 0; k < opCount; k++) {
+        switch (ops[k]) {
+          case ADD:
+            DoubleData.uncheckedAdd(args[k], buffer, 0, 1, n);
+            break;
+          case MULTIPLY:
+            DoubleData.uncheckedMultiply(args[k], buffer, 0, 1, n);
+            break;
+          case ABS:
+            for (int i = 0; i < n; i++) {
+              buffer[i] = Math.abs(buffer[i]);
+            }
+            break;
+          case EXP:
+            for (int i = 0; i < n; i++) {
+              buffer[i] = Math.exp(buffer[i]);
+            }
+            break;
+          case LN:
+            for (int i = 0; i < n; i++) {
+              buffer[i] = Math.log(buffer[i]);
+            }
+            break;
+          case POW10:
+            for (int i = 0; i < n; i++) {
+              buffer[i] = Math.pow(10, buffer[i]);
+            }
+            break;
+          case LOG:
+            for (int i = 0; i < n; i++) {
+              buffer[i] = Math.log10(buffer[i]);
+            }
+            break;
+          case TRANSFORM:
+            DoubleUnaryOperator function = functions[k];
+            for (int i = 0; i < n; i++) {
+              buffer[i] = function.applyAsDouble(buffer[i]);
+            }
+            break;
+          default:
+            throw new IllegalStateException();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,626 @@
+package org.opensha.util.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import org.opensha.util.data.DoubleData.IndexedOperator;
+import org.opensha.util.data.DoubleData.IndexedOperator2D;
+import org.opensha.util.data.DoubleData.IndexedOperator3D;
+import org.opensha.util.data.DoubleData.Operator;
+
+/**
+ * Parallel variants of the bulk arithmetic operators of {@link DoubleData}.
+ * Large one-dimensional arrays are split into ranges, and two- and
+ * three-dimensional arrays are split along their outer dimension, with work
+ * distributed across a {@link ForkJoinPool}. Datasets with fewer elements than
+ * a configurable threshold are processed serially in the calling thread.
+ *
+ * <p>Unless otherwise noted, methods behave as their {@code DoubleData}
+ * counterparts: they operate on data in place, return a reference to the
+ * supplied data, throw an {@code IllegalArgumentException} if datasets differ
+ * in size, and yield results identical to the serial implementation. The
+ * exception is {@link #sum(double...)}, which accumulates fixed-size blocks of
+ * values and then sums the block totals in order. Its result is reproducible,
+ * and independent of the pool, the threshold, and thread scheduling, but may
+ * differ in the last few bits from {@link DoubleData#sum(double...)}.
+ * {@link #collapse(double[][])} and {@link #collapse(double[][][])} sum each
+ * innermost array serially and are identical to their serial counterparts.
+ *
+ * <p>Instances are immutable and may be shared across threads, however, the
+ * data supplied to concurrent calls should not overlap. The operators supplied
+ * to {@code map}, {@code mapIndexed}, and {@code combine} are invoked
+ * concurrently, in no particular order, and should be stateless.
+ *
+ * @author Peter Powers
+ * @see DoubleData
+ */
+public final class ParallelDoubleData {
+
+  /*
+   * Developer notes: Work is split at the midpoint of an index range until a
+   * range covers no more than grain indices; for jagged arrays, the grain is
+   * the number of outer indices that span roughly threshold elements, based
+   * on the average length of the outer dimension.
+   */
+
+  /** The default number of elements below which work is done serially. */
+  public static final int DEFAULT_THRESHOLD = 1 << 14;
+
+  /* Number of values in each partial sum; do not change. */
+  static final int SUM_BLOCK = 1 << 12;
+
+  private static final ParallelDoubleData DEFAULT =
+      new ParallelDoubleData(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  private ParallelDoubleData(ForkJoinPool pool, int threshold) {
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Return an instance that uses the common {@code ForkJoinPool} and the
+   * {@link #DEFAULT_THRESHOLD default threshold}.
+   */
+  public static ParallelDoubleData create() {
+    return DEFAULT;
+  }
+
+  /**
+   * Create an instance that uses the supplied pool and threshold.
+   *
+   * @param pool to run tasks in
+   * @param threshold number of elements below which work is done serially
+   * @throws IllegalArgumentException if {@code threshold < 1}
+   */
+  public static ParallelDoubleData create(ForkJoinPool pool, int threshold) {
+    checkNotNull(pool);
+    checkArgument(threshold > 0, "Threshold [%s] must be > 0", threshold);
+    return new ParallelDoubleData(pool, threshold);
+  }
+
+  /**
+   * Return the pool used by this instance.
+   */
+  public ForkJoinPool pool() {
+    return pool;
+  }
+
+  /**
+   * Return the number of elements below which work is done serially.
+   */
+  public int threshold() {
+    return threshold;
+  }
+
+  /* * * * * * * * * * * * * * 1D ARRAYS * * * * * * * * * * * * * */
+
+  /**
+   * Add a {@code term} to the elements of {@code data} in place.
+   *
+   * @see DoubleData#add(double, double...)
+   */
+  public double[] add(double term, double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      DoubleData.uncheckedAdd(term, data, lo, 1, hi - lo);
+    });
+    return data;
+  }
+
+  /**
+   * Add the values of {@code data2} to {@code data1} in place.
+   *
+   * @see DoubleData#add(double[], double[])
+   */
+  public double[] add(double[] data1, double[] data2) {
+    return apply(Operator.ADD, data1, data2);
+  }
+
+  /**
+   * Subtract the values of {@code data2} from {@code data1} in place.
+   *
+   * @see DoubleData#subtract(double[], double[])
+   */
+  public double[] subtract(double[] data1, double[] data2) {
+    return apply(Operator.SUBTRACT, data1, data2);
+  }
+
+  /**
+   * Multiply ({@code scale}) the elements of {@code data} in place.
+   *
+   * @see DoubleData#multiply(double, double...)
+   */
+  public double[] multiply(double scale, double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      DoubleData.uncheckedMultiply(scale, data, lo, 1, hi - lo);
+    });
+    return data;
+  }
+
+  /**
+   * Multiply the elements of {@code data1} by the elements of {@code data2} in
+   * place.
+   *
+   * @see DoubleData#multiply(double[], double[])
+   */
+  public double[] multiply(double[] data1, double[] data2) {
+    return apply(Operator.MULTIPLY, data1, data2);
+  }
+
+  /**
+   * Divide the elements of {@code data1} by the elements of {@code data2} in
+   * place.
+   *
+   * @see DoubleData#divide(double[], double[])
+   */
+  public double[] divide(double[] data1, double[] data2) {
+    return apply(Operator.DIVIDE, data1, data2);
+  }
+
+  private double[] apply(Operator op, double[] data1, double[] data2) {
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, threshold, (lo, hi) -> {
+      op.apply(data1, lo, 1, data2, lo, 1, hi - lo);
+    });
+    return data1;
+  }
+
+  /**
+   * Set the elements of {@code data} to their absolute value in place.
+   *
+   * @see DoubleData#abs(double...)
+   */
+  public double[] abs(double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = Math.abs(data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Raise Euler's number {@code e} to each of the elements of {@code data} in
+   * place.
+   *
+   * @see DoubleData#exp(double...)
+   */
+  public double[] exp(double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = Math.exp(data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Take the natural logarithm of the elements of {@code data} in place.
+   *
+   * @see DoubleData#ln(double[])
+   */
+  public double[] ln(double[] data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = Math.log(data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Raise the elements of {@code data} to the power of 10 in place.
+   *
+   * @see DoubleData#pow10(double...)
+   */
+  public double[] pow10(double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = Math.pow(10, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Take the base-10 logarithm of the elements of {@code data} in place.
+   *
+   * @see DoubleData#log(double...)
+   */
+  public double[] log(double... data) {
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = Math.log10(data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Transform {@code data} by an {@code operator} in place.
+   *
+   * @see DoubleData#map(DoubleUnaryOperator, double...)
+   */
+  public double[] map(DoubleUnaryOperator operator, double... data) {
+    checkNotNull(operator);
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = operator.applyAsDouble(data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the index of each value.
+   *
+   * @see DoubleData#mapIndexed(IndexedOperator, double...)
+   */
+  public double[] mapIndexed(IndexedOperator operator, double... data) {
+    checkNotNull(operator);
+    apply(data.length, threshold, (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        data[i] = operator.apply(i, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place.
+   *
+   * @see DoubleData#combine(DoubleBinaryOperator, double[], double[])
+   */
+  public double[] combine(DoubleBinaryOperator operator, double[] data1, double[] data2) {
+    checkNotNull(operator);
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, threshold, (lo, hi) -> {
+      DoubleData.uncheckedCombine(operator, data1, data2, lo, hi);
+    });
+    return data1;
+  }
+
+  /**
+   * Sum the elements of {@code data}. Method returns zero for an empty
+   * {@code data} argument or no varargs. Values are summed in blocks of a fixed
+   * size, and block totals are then summed in order, such that the result is
+   * reproducible regardless of how work is scheduled.
+   *
+   * @param data to sum
+   * @return the sum of the supplied values
+   */
+  public double sum(double... data) {
+    double[] partials = partials(data.length, (lo, hi) -> {
+      return DoubleData.uncheckedSum(data, lo, 1, hi - lo);
+    });
+    return DoubleData.sum(partials);
+  }
+
+  /* * * * * * * * * * * * * * 2D ARRAYS * * * * * * * * * * * * * */
+
+  /**
+   * Add a {@code term} to the elements of {@code data} in place.
+   *
+   * @see DoubleData#add(double, double[][])
+   */
+  public double[][] add(double term, double[][] data) {
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.add(term, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Multiply ({@code scale}) the elements of {@code data} in place.
+   *
+   * @see DoubleData#multiply(double, double[][])
+   */
+  public double[][] multiply(double scale, double[][] data) {
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.multiply(scale, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Add the values of {@code data2} to {@code data1} in place.
+   *
+   * @see DoubleData#add(double[][], double[][])
+   */
+  public double[][] add(double[][] data1, double[][] data2) {
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, grain(data1), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.add(data1[i], data2[i]);
+      }
+    });
+    return data1;
+  }
+
+  /**
+   * Transform {@code data} by an {@code operator} in place.
+   *
+   * @see DoubleData#map(DoubleUnaryOperator, double[][])
+   */
+  public double[][] map(DoubleUnaryOperator operator, double[][] data) {
+    checkNotNull(operator);
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.map(operator, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the indices of each value.
+   *
+   * @see DoubleData#mapIndexed(IndexedOperator2D, double[][])
+   */
+  public double[][] mapIndexed(IndexedOperator2D operator, double[][] data) {
+    checkNotNull(operator);
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.mapRow(operator, i, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place.
+   *
+   * @see DoubleData#combine(DoubleBinaryOperator, double[][], double[][])
+   */
+  public double[][] combine(DoubleBinaryOperator operator, double[][] data1, double[][] data2) {
+    checkNotNull(operator);
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, grain(data1), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.combine(operator, data1[i], data2[i]);
+      }
+    });
+    return data1;
+  }
+
+  /**
+   * Sum the arrays in the 2nd dimension of {@code data} into a new 1-D array.
+   *
+   * @see DoubleData#collapse(double[][])
+   */
+  public double[] collapse(double[][] data) {
+    double[] collapsed = new double[data.length];
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        collapsed[i] = DoubleData.sum(data[i]);
+      }
+    });
+    return collapsed;
+  }
+
+  /* * * * * * * * * * * * * * 3D ARRAYS * * * * * * * * * * * * * */
+
+  /**
+   * Add a {@code term} to the elements of {@code data} in place.
+   *
+   * @see DoubleData#add(double, double[][][])
+   */
+  public double[][][] add(double term, double[][][] data) {
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.add(term, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Multiply ({@code scale}) the elements of {@code data} in place.
+   *
+   * @see DoubleData#multiply(double, double[][][])
+   */
+  public double[][][] multiply(double scale, double[][][] data) {
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.multiply(scale, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Add the values of {@code data2} to {@code data1} in place.
+   *
+   * @see DoubleData#add(double[][][], double[][][])
+   */
+  public double[][][] add(double[][][] data1, double[][][] data2) {
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, grain(data1), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.add(data1[i], data2[i]);
+      }
+    });
+    return data1;
+  }
+
+  /**
+   * Transform {@code data} by an {@code operator} in place.
+   *
+   * @see DoubleData#map(DoubleUnaryOperator, double[][][])
+   */
+  public double[][][] map(DoubleUnaryOperator operator, double[][][] data) {
+    checkNotNull(operator);
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.map(operator, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Transform {@code data} in place by an {@code operator} that is also
+   * supplied the indices of each value.
+   *
+   * @see DoubleData#mapIndexed(IndexedOperator3D, double[][][])
+   */
+  public double[][][] mapIndexed(IndexedOperator3D operator, double[][][] data) {
+    checkNotNull(operator);
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.mapPlane(operator, i, data[i]);
+      }
+    });
+    return data;
+  }
+
+  /**
+   * Combine the values of {@code data2} with {@code data1} in place.
+   *
+   * @see DoubleData#combine(DoubleBinaryOperator, double[][][], double[][][])
+   */
+  public double[][][] combine(
+      DoubleBinaryOperator operator,
+      double[][][] data1,
+      double[][][] data2) {
+
+    checkNotNull(operator);
+    DoubleData.checkSizes(data1, data2);
+    apply(data1.length, grain(data1), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        DoubleData.combine(operator, data1[i], data2[i]);
+      }
+    });
+    return data1;
+  }
+
+  /**
+   * Sum the arrays in the 3rd dimension of {@code data} into the 2nd dimension
+   * of a new 2-D array.
+   *
+   * @see DoubleData#collapse(double[][][])
+   */
+  public double[][] collapse(double[][][] data) {
+    double[][] collapsed = new double[data.length][];
+    apply(data.length, grain(data), (lo, hi) -> {
+      for (int i = lo; i < hi; i++) {
+        collapsed[i] = DoubleData.collapse(data[i]);
+      }
+    });
+    return collapsed;
+  }
+
+  /* * * * * * * * * * * * * * EXECUTION * * * * * * * * * * * * * */
+
+  /* An action on the index range [lo, hi). */
+  @FunctionalInterface
+  interface RangeAction {
+    void apply(int lo, int hi);
+  }
+
+  /*
+   * Apply an action to the index range [0, size), splitting the range across
+   * the pool in pieces no larger than grain; small ranges run in the calling
+   * thread.
+   */
+  void apply(int size, int grain, RangeAction action) {
+    if (size <= grain) {
+      if (size > 0) {
+        action.apply(0, size);
+      }
+      return;
+    }
+    pool.invoke(new RangeTask(action, grain, 0, size));
+  }
+
+  /* A reduction of the index range [lo, hi). */
+  @FunctionalInterface
+  interface RangeFunction {
+    double apply(int lo, int hi);
+  }
+
+  /*
+   * Apply a reduction to consecutive blocks of SUM_BLOCK indices in the range
+   * [0, size), returning the result for each block. Block boundaries depend
+   * only on size, so that combining the results in order is reproducible.
+   */
+  double[] partials(int size, RangeFunction function) {
+    int blocks = (size + SUM_BLOCK - 1) / SUM_BLOCK;
+    double[] partials = new double[blocks];
+    apply(blocks, Math.max(1, threshold / SUM_BLOCK), (lo, hi) -> {
+      for (int b = lo; b < hi; b++) {
+        int start = b * SUM_BLOCK;
+        partials[b] = function.apply(start, Math.min(start + SUM_BLOCK, size));
+      }
+    });
+    return partials;
+  }
+
+  /* Outer indices spanning roughly threshold elements of a jagged array. */
+  private int grain(double[][] data) {
+    long elements = 0;
+    for (double[] row : data) {
+      elements += row.length;
+    }
+    return grain(data.length, elements);
+  }
+
+  private int grain(double[][][] data) {
+    long elements = 0;
+    for (double[][] plane : data) {
+      for (double[] row : plane) {
+        elements += row.length;
+      }
+    }
+    return grain(data.length, elements);
+  }
+
+  private int grain(int outer, long elements) {
+    if (elements <= threshold) {
+      return Math.max(outer, 1);
+    }
+    return (int) Math.max(1, (long) threshold * outer / elements);
+  }
+
+  @SuppressWarnings("serial")
+  private static final class RangeTask extends RecursiveAction {
+
+    final RangeAction action;
+    final int grain;
+    final int lo;
+    final int hi;
+
+    RangeTask(RangeAction action, int grain, int lo, int hi) {
+      this.action = action;
+      this.grain = grain;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo > grain) {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(
+            new RangeTask(action, grain, lo, mid),
+            new RangeTask(action, grain, mid, hi));
+        return;
+      }
+      action.apply(lo, hi);
+    }
+  }
+
+}
@@ -0,0 +1,261 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import org.opensha.util.Maths;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * An immutable spatial index of the {@code Location}s in a
+ * {@code LocationList} that buckets locations into the cells of a regular
+ * latitude-longitude grid. For roughly uniform sets of locations, such as the
+ * nodes of gridded seismic sources, radial queries visit only the cells that
+ * intersect the query radius and so run in time proportional to the number
+ * of locations returned. The index is built in time and space linear in the
+ * number of locations and may be shared across threads.
+ *
+ * <p>Cells are nominally {@code cellSize} km on a side at the center of the
+ * indexed locations, as determined by
+ * {@link Coordinates#degreesLatPerKm(Location)} and
+ * {@link Coordinates#degreesLonPerKm(Location)}, and narrow toward the poles.
+ * Cells are enlarged as necessary to limit the number of cells to a small
+ * multiple of the number of locations. Cell size should be comparable to the
+ * typical query radius or location spacing; for strongly clustered or sparse
+ * locations, consider a {@link LocationIndex} instead.
+ *
+ * <p>All distances are computed using
+ * {@link Locations#horzDistanceFast(Location, Location)} with the query
+ * location as the first argument, and results are identical to those of
+ * {@link LocationIndex#indicesWithin(Location, double)}. As with
+ * {@code horzDistanceFast}, this index does not support lists or queries that
+ * span ±180°.
+ *
+ * @author Peter Powers
+ * @see LocationIndex
+ */
+public final class BucketIndex {
+
+  /*
+   * Developer notes: Locations are stored in primitive arrays sorted by cell
+   * using a counting sort, preserving list order within each cell. Cell
+   * coordinates are computed in decimal degrees with the same (monotonic)
+   * arithmetic at build and query time, so a cell range derived from a
+   * conservative bound on latitude and longitude always includes every
+   * location within that bound.
+   */
+
+  /* Relative padding of query bounds to absorb rounding error. */
+  private static final double PAD = 1.0 + 1e-9;
+
+  /* Maximum number of cells per location, and for small lists. */
+  private static final int CELLS_PER_LOCATION = 4;
+  private static final int MIN_CELLS = 64;
+
+  private final LocationList locs;
+  private final double cellSize;
+
+  /* Grid of cells, in decimal degrees. */
+  private final double minLat;
+  private final double maxLat;
+  private final double minLon;
+  private final double Δlat;
+  private final double Δlon;
+  private final int rows;
+  private final int columns;
+
+  /* Locations in cell c are in [cellStart[c], cellStart[c + 1]). */
+  private final int[] cellStart;
+
+  /* Locations in cell order; coordinates in radians. */
+  private final double[] lats;
+  private final double[] lons;
+  private final int[] indices;
+
+  private BucketIndex(LocationList locs, double cellSize) {
+    this.locs = locs;
+    this.cellSize = cellSize;
+    int size = locs.size();
+
+    double latMin = Double.POSITIVE_INFINITY;
+    double latMax = Double.NEGATIVE_INFINITY;
+    double lonMin = Double.POSITIVE_INFINITY;
+    double lonMax = Double.NEGATIVE_INFINITY;
+    for (Location loc : locs) {
+      latMin = min(latMin, loc.latitude);
+      latMax = max(latMax, loc.latitude);
+      lonMin = min(lonMin, loc.longitude);
+      lonMax = max(lonMax, loc.longitude);
+    }
+    Location center = Location.create((latMin + latMax) * 0.5, (lonMin + lonMax) * 0.5);
+    minLat = latMin;
+    maxLat = latMax;
+    minLon = lonMin;
+    double latSpacing = cellSize * Coordinates.degreesLatPerKm(center);
+    double lonSpacing = cellSize * Coordinates.degreesLonPerKm(center);
+
+    // enlarge cells until their number is bounded by the number of locations
+    long maxCells = max((long) size * CELLS_PER_LOCATION, MIN_CELLS);
+    long rowCount = (long) cell(latMax, minLat, latSpacing) + 1;
+    long columnCount = (long) cell(lonMax, minLon, lonSpacing) + 1;
+    while (rowCount * columnCount > maxCells) {
+      double scale = max(Math.sqrt((double) rowCount * columnCount / maxCells), 1.25);
+      latSpacing *= scale;
+      lonSpacing *= scale;
+      rowCount = (long) cell(latMax, minLat, latSpacing) + 1;
+      columnCount = (long) cell(lonMax, minLon, lonSpacing) + 1;
+    }
+    Δlat = latSpacing;
+    Δlon = lonSpacing;
+    rows = (int) rowCount;
+    columns = (int) columnCount;
+
+    // counting sort by cell
+    int[] cells = new int[size];
+    cellStart = new int[rows * columns + 1];
+    int i = 0;
+    for (Location loc : locs) {
+      int cell = cell(loc.latitude, loc.longitude);
+      cells[i++] = cell;
+      cellStart[cell + 1]++;
+    }
+    for (int c = 0; c < rows * columns; c++) {
+      cellStart[c + 1] += cellStart[c];
+    }
+    int[] next = Arrays.copyOf(cellStart, rows * columns);
+    lats = new double[size];
+    lons = new double[size];
+    indices = new int[size];
+    i = 0;
+    for (Location loc : locs) {
+      int j = next[cells[i]]++;
+      lats[j] = loc.latRad;
+      lons[j] = loc.lonRad;
+      indices[j] = i++;
+    }
+  }
+
+  /**
+   * Create a new index of the supplied locations.
+   *
+   * @param locs to index
+   * @param cellSize the nominal width and height of index cells, in km
+   * @throws IllegalArgumentException if {@code locs} is empty or if
+   *         {@code cellSize} is not positive and real
+   */
+  public static BucketIndex create(LocationList locs, double cellSize) {
+    checkArgument(!locs.isEmpty(), "Empty location list");
+    checkArgument(
+        Doubles.isFinite(cellSize) && cellSize > 0.0,
+        "Cell size [%s] must be positive, real number", cellSize);
+    return new BucketIndex(locs, cellSize);
+  }
+
+  /**
+   * Return the list of locations backing this index.
+   */
+  public LocationList locations() {
+    return locs;
+  }
+
+  /**
+   * Return the nominal width and height of index cells, in km, as supplied at
+   * creation. Actual cells may be larger.
+   */
+  public double cellSize() {
+    return cellSize;
+  }
+
+  /**
+   * Return the indices, in increasing order, of all locations that are at or
+   * within the specified {@code distance} of the supplied {@code Location}.
+   *
+   * @param loc {@code Location} of interest
+   * @param distance (in km) of search
+   * @throws IllegalArgumentException if {@code distance} is negative or not
+   *         finite
+   */
+  public int[] indicesWithin(Location loc, double distance) {
+    IntBuffer hits = new IntBuffer();
+    forEachWithin(loc, distance, hits);
+    int[] result = hits.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Supply the index of every location that is at or within the specified
+   * {@code distance} of the supplied {@code Location} to an action. Indices
+   * are supplied in no particular order.
+   *
+   * @param loc {@code Location} of interest
+   * @param distance (in km) of search
+   * @param action to perform on each index
+   * @throws IllegalArgumentException if {@code distance} is negative or not
+   *         finite
+   */
+  public void forEachWithin(Location loc, double distance, IntConsumer action) {
+    checkArgument(
+        Doubles.isFinite(distance) && distance >= 0.0,
+        "Distance [%s] must be positive, real number", distance);
+
+    // distance bounds latitude separation, independent of longitude
+    double dLat = distance / EARTH_RADIUS_MEAN * Maths.TO_DEGREES * PAD;
+    int minRow = max(cell(loc.latitude - dLat, minLat, Δlat), 0);
+    int maxRow = min(cell(loc.latitude + dLat, minLat, Δlat), rows - 1);
+    double lat = loc.latRad;
+    double lon = loc.lonRad;
+
+    for (int row = minRow; row <= maxRow; row++) {
+      /*
+       * horzDistanceFast() scales longitude by the cosine of the mean of the
+       * query and location latitudes, which is smallest at one of the
+       * latitude extremes of the locations in the row.
+       */
+      double rowMinLat = (minLat + row * Δlat) * Maths.TO_RADIANS;
+      double rowMaxLat = min(minLat + (row + 1) * Δlat, maxLat) * Maths.TO_RADIANS;
+      double lonScale = min(cos((lat + rowMinLat) * 0.5), cos((lat + rowMaxLat) * 0.5));
+      double dLon = distance / (EARTH_RADIUS_MEAN * lonScale) * Maths.TO_DEGREES * PAD;
+      int minColumn = 0;
+      int maxColumn = columns - 1;
+      // near the poles every column is a candidate
+      if (dLon >= 0.0 && dLon < 360.0) {
+        minColumn = max(cell(loc.longitude - dLon, minLon, Δlon), 0);
+        maxColumn = min(cell(loc.longitude + dLon, minLon, Δlon), columns - 1);
+        if (minColumn > maxColumn) {
+          continue;
+        }
+      }
+      int rowStart = row * columns;
+      int end = cellStart[rowStart + maxColumn + 1];
+      for (int i = cellStart[rowStart + minColumn]; i < end; i++) {
+        if (Locations.horzDistanceFast(lat, lon, lats[i], lons[i]) <= distance) {
+          action.accept(indices[i]);
+        }
+      }
+    }
+  }
+
+  /* Index of the cell containing a location. */
+  private int cell(double lat, double lon) {
+    return cell(lat, minLat, Δlat) * columns + cell(lon, minLon, Δlon);
+  }
+
+  /*
+   * Row or column of a coordinate; values far outside the grid are clamped to
+   * avoid integer overflow, but may still be outside [0, rows or columns).
+   */
+  private static int cell(double value, double origin, double spacing) {
+    double cell = floor((value - origin) / spacing);
+    return (int) max(min(cell, Integer.MAX_VALUE - 1), -1);
+  }
+
+}
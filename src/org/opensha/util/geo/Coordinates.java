@@ -86,8 +86,8 @@ public class Coordinates {
    * @return the earth's radius at the supplied {@code location}
    */
   public static double radiusAtLocation(Location location) {
-    double cosL = Math.cos(location.latRad);
-    double sinL = Math.sin(location.latRad);
+    double cosL = location.cosLat;
+    double sinL = location.sinLat;
     double C1 = cosL * EARTH_RADIUS_EQUATORIAL;
     double C2 = C1 * EARTH_RADIUS_EQUATORIAL;
     double C3 = sinL * EARTH_RADIUS_POLAR;
@@ -123,7 +123,7 @@ public class Coordinates {
    *         {@code location}
    */
   public static double degreesLonPerKm(Location location) {
-    return Maths.TO_DEGREES / (EARTH_RADIUS_EQUATORIAL * Math.cos(location.latRad));
+    return Maths.TO_DEGREES / (EARTH_RADIUS_EQUATORIAL * location.cosLat);
   }
 
   /**
@@ -0,0 +1,434 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utilities for computing the distances between every pair of locations in two
+ * {@code LocationList}s (e.g. sites and rupture points). Matrices are stored
+ * in row-major order in a flat {@code double[]} or {@code DoubleBuffer} such
+ * that the distance between {@code rows.get(i)} and {@code columns.get(j)} is
+ * at index {@code i * columns.size() + j}.
+ *
+ * <p>Matrices are computed in parallel in the common {@link ForkJoinPool},
+ * with each task filling a block of rows one tile of columns at a time so that
+ * column coordinates remain in cache. Distances are identical to those
+ * computed by the corresponding {@link Locations} method for each
+ * {@link Metric}, with the row location as the first argument. An optional
+ * cutoff distance may be supplied, beyond which
+ * {@code Double.POSITIVE_INFINITY} is stored instead; for
+ * {@link Metric#HORIZONTAL_FAST}, whole tiles of columns beyond the cutoff are
+ * skipped without computing distances.
+ *
+ * <p>For very large matrices, consider supplying a memory-mapped buffer via
+ * {@link #compute(LocationList, LocationList, Metric, double, Path)}. In
+ * all cases, the number of elements in a matrix may not exceed
+ * {@code Integer.MAX_VALUE}.
+ *
+ * @author Peter Powers
+ */
+public final class DistanceMatrix {
+
+  /*
+   * Developer notes: Tasks split on rows until a block holds ROW_BLOCK rows or
+   * fewer; small matrices are computed on the calling thread. Each cell is
+   * written exactly once so results do not depend on scheduling.
+   */
+
+  private static final int ROW_BLOCK = 32;
+  private static final int COLUMN_TILE = 512;
+  private static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+
+  private DistanceMatrix() {}
+
+  /**
+   * Distance metrics supported by {@code DistanceMatrix}.
+   */
+  public enum Metric {
+
+    /** {@link Locations#horzDistance(Location, Location)} */
+    HORIZONTAL,
+
+    /** {@link Locations#horzDistanceFast(Location, Location)} */
+    HORIZONTAL_FAST,
+
+    /** {@link Locations#linearDistance(Location, Location)} */
+    LINEAR;
+  }
+
+  /**
+   * Compute a row-major matrix of the distances between each row location and
+   * each column location.
+   *
+   * @param rows locations
+   * @param columns locations
+   * @param metric to use
+   * @return a new {@code double[]} of size {@code rows.size() * columns.size()}
+   * @throws IllegalArgumentException if the matrix would have more than
+   *         {@code Integer.MAX_VALUE} elements
+   */
+  public static double[] compute(LocationList rows, LocationList columns, Metric metric) {
+    return compute(rows, columns, metric, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Compute a row-major matrix of the distances between each row location and
+   * each column location, storing {@code Double.POSITIVE_INFINITY} for any
+   * distance greater than {@code cutoff}.
+   *
+   * @param rows locations
+   * @param columns locations
+   * @param metric to use
+   * @param cutoff distance (in km) beyond which distances are not stored
+   * @return a new {@code double[]} of size {@code rows.size() * columns.size()}
+   * @throws IllegalArgumentException if {@code cutoff} is negative or
+   *         {@code NaN}, or if the matrix would have more than
+   *         {@code Integer.MAX_VALUE} elements
+   */
+  public static double[] compute(
+      LocationList rows,
+      LocationList columns,
+      Metric metric,
+      double cutoff) {
+
+    double[] out = new double[size(rows, columns, cutoff)];
+    compute(rows, columns, metric, cutoff, new ArrayTarget(out));
+    return out;
+  }
+
+  /**
+   * Compute a row-major matrix of the distances between each row location and
+   * each column location, storing {@code Double.POSITIVE_INFINITY} for any
+   * distance greater than {@code cutoff}. Values are written using absolute
+   * indices starting at 0; the position and limit of {@code out} are ignored.
+   *
+   * @param rows locations
+   * @param columns locations
+   * @param metric to use
+   * @param cutoff distance (in km) beyond which distances are not stored
+   * @param out buffer to populate
+   * @return {@code out}
+   * @throws IllegalArgumentException if {@code cutoff} is negative or
+   *         {@code NaN}, if the matrix would have more than
+   *         {@code Integer.MAX_VALUE} elements, or if the capacity of
+   *         {@code out} is insufficient
+   */
+  public static DoubleBuffer compute(
+      LocationList rows,
+      LocationList columns,
+      Metric metric,
+      double cutoff,
+      DoubleBuffer out) {
+
+    int size = size(rows, columns, cutoff);
+    checkArgument(
+        out.capacity() >= size,
+        "Buffer capacity [%s] < matrix size [%s]", out.capacity(), size);
+    compute(rows, columns, metric, cutoff, new BufferTarget(out));
+    return out;
+  }
+
+  /**
+   * Compute a row-major matrix of the distances between each row location and
+   * each column location into a memory-mapped file, storing
+   * {@code Double.POSITIVE_INFINITY} for any distance greater than
+   * {@code cutoff}. Any existing file is replaced. Values are stored in native
+   * byte order.
+   *
+   * @param rows locations
+   * @param columns locations
+   * @param metric to use
+   * @param cutoff distance (in km) beyond which distances are not stored
+   * @param file to write
+   * @return a {@code DoubleBuffer} view of the mapped file
+   * @throws IllegalArgumentException if {@code cutoff} is negative or
+   *         {@code NaN}, or if the matrix would have more than
+   *         {@code Integer.MAX_VALUE} elements
+   * @throws IOException if an I/O error occurs
+   */
+  public static DoubleBuffer compute(
+      LocationList rows,
+      LocationList columns,
+      Metric metric,
+      double cutoff,
+      Path file) throws IOException {
+
+    int size = size(rows, columns, cutoff);
+    try (FileChannel channel =
+        FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+      DoubleBuffer out = channel
+          .map(MapMode.READ_WRITE, 0, (long) size * Double.BYTES)
+          .order(ByteOrder.nativeOrder())
+          .asDoubleBuffer();
+      return compute(rows, columns, metric, cutoff, out);
+    }
+  }
+
+  private static int size(LocationList rows, LocationList columns, double cutoff) {
+    checkArgument(cutoff >= 0.0, "Cutoff [%s] must be ≥ 0", cutoff);
+    long size = (long) rows.size() * columns.size();
+    checkArgument(
+        size <= Integer.MAX_VALUE,
+        "Matrix size [%s x %s] too large", rows.size(), columns.size());
+    return (int) size;
+  }
+
+  private static void compute(
+      LocationList rows,
+      LocationList columns,
+      Metric metric,
+      double cutoff,
+      Target out) {
+
+    Coords r = new Coords(rows);
+    Coords c = new Coords(columns);
+    Block task = new Block(r, c, metric, cutoff, out, 0, r.size);
+    if ((long) r.size * c.size <= SEQUENTIAL_THRESHOLD) {
+      task.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    }
+  }
+
+  /* Fills rows [lo, hi) of the matrix. */
+  @SuppressWarnings("serial")
+  private static final class Block extends RecursiveAction {
+
+    final Coords rows;
+    final Coords cols;
+    final Metric metric;
+    final double cutoff;
+    final Target out;
+    final int lo;
+    final int hi;
+
+    Block(Coords rows, Coords cols, Metric metric, double cutoff, Target out, int lo, int hi) {
+      this.rows = rows;
+      this.cols = cols;
+      this.metric = metric;
+      this.cutoff = cutoff;
+      this.out = out;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo > ROW_BLOCK) {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(
+            new Block(rows, cols, metric, cutoff, out, lo, mid),
+            new Block(rows, cols, metric, cutoff, out, mid, hi));
+        return;
+      }
+      double[] tile = new double[min(COLUMN_TILE, cols.size)];
+      for (int j0 = 0; j0 < cols.size; j0 += COLUMN_TILE) {
+        int j1 = min(j0 + COLUMN_TILE, cols.size);
+        boolean prune = metric == Metric.HORIZONTAL_FAST && cutoff < Double.POSITIVE_INFINITY;
+        TileBounds bounds = prune ? new TileBounds(cols, j0, j1) : null;
+        for (int i = lo; i < hi; i++) {
+          if (bounds != null && bounds.lowerBound(rows, i) > cutoff) {
+            out.fill(i * cols.size + j0, j1 - j0, Double.POSITIVE_INFINITY);
+            continue;
+          }
+          switch (metric) {
+            case HORIZONTAL:
+              horzDistance(rows, i, cols, j0, j1, tile);
+              break;
+            case HORIZONTAL_FAST:
+              horzDistanceFast(rows, i, cols, j0, j1, tile);
+              break;
+            case LINEAR:
+              linearDistance(rows, i, cols, j0, j1, tile);
+              break;
+            default:
+              throw new IllegalStateException();
+          }
+          if (cutoff < Double.POSITIVE_INFINITY) {
+            for (int k = 0; k < j1 - j0; k++) {
+              if (tile[k] > cutoff) {
+                tile[k] = Double.POSITIVE_INFINITY;
+              }
+            }
+          }
+          out.put(i * cols.size + j0, tile, j1 - j0);
+        }
+      }
+    }
+  }
+
+  /*
+   * Kernels reproduce the operation order of the corresponding Locations
+   * methods so that results are identical.
+   */
+
+  private static void horzDistanceFast(
+      Coords r, int i, Coords c, int j0, int j1, double[] tile) {
+
+    double lat1 = r.lat[i];
+    double lon1 = r.lon[i];
+    for (int j = j0, k = 0; j < j1; j++, k++) {
+      double lat2 = c.lat[j];
+      double dLat = lat1 - lat2;
+      double dLon = (lon1 - c.lon[j]) * cos((lat1 + lat2) * 0.5);
+      tile[k] = EARTH_RADIUS_MEAN * sqrt(dLat * dLat + dLon * dLon);
+    }
+  }
+
+  private static void horzDistance(
+      Coords r, int i, Coords c, int j0, int j1, double[] tile) {
+
+    double lat1 = r.lat[i];
+    double lon1 = r.lon[i];
+    double cosLat1 = r.cosLat[i];
+    for (int j = j0, k = 0; j < j1; j++, k++) {
+      tile[k] = EARTH_RADIUS_MEAN * angle(lat1, lon1, cosLat1, c.lat[j], c.lon[j], c.cosLat[j]);
+    }
+  }
+
+  private static void linearDistance(
+      Coords r, int i, Coords c, int j0, int j1, double[] tile) {
+
+    double lat1 = r.lat[i];
+    double lon1 = r.lon[i];
+    double cosLat1 = r.cosLat[i];
+    double R1 = EARTH_RADIUS_MEAN - r.depth[i];
+    for (int j = j0, k = 0; j < j1; j++, k++) {
+      double alpha = angle(lat1, lon1, cosLat1, c.lat[j], c.lon[j], c.cosLat[j]);
+      double R2 = EARTH_RADIUS_MEAN - c.depth[j];
+      double B = R1 * sin(alpha);
+      double C = R2 - R1 * cos(alpha);
+      tile[k] = sqrt(B * B + C * C);
+    }
+  }
+
+  private static double angle(
+      double lat1, double lon1, double cosLat1,
+      double lat2, double lon2, double cosLat2) {
+
+    double sinDlatBy2 = sin((lat2 - lat1) / 2.0);
+    double sinDlonBy2 = sin((lon2 - lon1) / 2.0);
+    double c = (sinDlatBy2 * sinDlatBy2) +
+        (cosLat1 * cosLat2 * sinDlonBy2 * sinDlonBy2);
+    return 2.0 * atan2(sqrt(c), sqrt(1 - c));
+  }
+
+  /* Primitive coordinate columns; angles in radians. */
+  private static final class Coords {
+
+    final int size;
+    final double[] lat;
+    final double[] lon;
+    final double[] cosLat;
+    final double[] depth;
+
+    Coords(LocationList locs) {
+      size = locs.size();
+      lat = new double[size];
+      lon = new double[size];
+      cosLat = new double[size];
+      depth = new double[size];
+      for (int i = 0; i < size; i++) {
+        Location loc = locs.get(i);
+        lat[i] = loc.latRad;
+        lon[i] = loc.lonRad;
+        cosLat[i] = loc.cosLat;
+        depth[i] = loc.depth;
+      }
+    }
+  }
+
+  /* Bounding box of a column tile in radians. */
+  private static final class TileBounds {
+
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double minLon = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+
+    TileBounds(Coords c, int j0, int j1) {
+      for (int j = j0; j < j1; j++) {
+        minLat = Math.min(minLat, c.lat[j]);
+        maxLat = Math.max(maxLat, c.lat[j]);
+        minLon = Math.min(minLon, c.lon[j]);
+        maxLon = Math.max(maxLon, c.lon[j]);
+      }
+    }
+
+    double lowerBound(Coords r, int i) {
+      return Locations.distanceLowerBound(r.lat[i], r.lon[i], minLat, maxLat, minLon, maxLon);
+    }
+  }
+
+  /* Destination of matrix values. */
+  private interface Target {
+
+    void put(int index, double[] values, int length);
+
+    void fill(int index, int length, double value);
+  }
+
+  private static final class ArrayTarget implements Target {
+
+    final double[] out;
+
+    ArrayTarget(double[] out) {
+      this.out = out;
+    }
+
+    @Override
+    public void put(int index, double[] values, int length) {
+      System.arraycopy(values, 0, out, index, length);
+    }
+
+    @Override
+    public void fill(int index, int length, double value) {
+      Arrays.fill(out, index, index + length, value);
+    }
+  }
+
+  /* Each task writes through its own duplicate to avoid sharing position. */
+  private static final class BufferTarget implements Target {
+
+    final DoubleBuffer out;
+
+    BufferTarget(DoubleBuffer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void put(int index, double[] values, int length) {
+      DoubleBuffer view = out.duplicate();
+      view.clear();
+      view.position(index);
+      view.put(values, 0, length);
+    }
+
+    @Override
+    public void fill(int index, int length, double value) {
+      for (int i = index; i < index + length; i++) {
+        out.put(i, value);
+      }
+    }
+  }
+
+}
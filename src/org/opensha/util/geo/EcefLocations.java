@@ -0,0 +1,452 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.abs;
+import static java.lang.Math.asin;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
+
+import org.opensha.util.Maths;
+
+/**
+ * An immutable representation of the {@code Location}s in a
+ * {@code LocationList} as earth-centered, earth-fixed (ECEF) Cartesian
+ * vectors on a sphere of radius {@link Coordinates#EARTH_RADIUS_MEAN}. Each
+ * location is stored as a unit vector and a radius, {@code R - depth}, such
+ * that conversion from spherical coordinates occurs once, when an instance is
+ * created, and subsequent distance calculations reduce to dot products,
+ * differences, and square roots.
+ *
+ * <p>Linear (3D) distances are computed as the straight-line distance between
+ * vectors and require no trig operations. Horizontal distances are computed
+ * from the chord between unit vectors, requiring a single {@code asin()}.
+ * Distances to great-circle segments use the plane of the segment and are
+ * valid at any separation and across ±180°. All methods produce results that
+ * agree with the equivalent spherical methods in {@link Locations} to within
+ * floating-point precision, but results are not bit-identical; use
+ * {@link #accuracy(Location)} to quantify any differences for a given data
+ * set.
+ *
+ * @author Peter Powers
+ * @see Locations#horzDistance(Location, Location)
+ * @see Locations#linearDistance(Location, Location)
+ * @see Locations#distanceToSegment(Location, Location, Location)
+ */
+public final class EcefLocations {
+
+  /*
+   * Developer notes: Unit vector components are stored in parallel arrays; x
+   * points toward (0°, 0°), y toward (0°, 90°E), and z toward the north pole.
+   * Horizontal distances are derived from chord length c as 2R·asin(c/2),
+   * which, unlike acos(u1·u2), is well conditioned at small separations.
+   */
+
+  private final LocationList locs;
+  private final double[] x;
+  private final double[] y;
+  private final double[] z;
+  private final double[] r;
+
+  private EcefLocations(LocationList locs) {
+    this.locs = locs;
+    int size = locs.size();
+    x = new double[size];
+    y = new double[size];
+    z = new double[size];
+    r = new double[size];
+    for (int i = 0; i < size; i++) {
+      Location loc = locs.get(i);
+      x[i] = loc.cosLat * cos(loc.lonRad);
+      y[i] = loc.cosLat * sin(loc.lonRad);
+      z[i] = loc.sinLat;
+      r[i] = EARTH_RADIUS_MEAN - loc.depth;
+    }
+  }
+
+  /**
+   * Create a new Cartesian representation of the supplied locations.
+   *
+   * @param locs to convert
+   */
+  public static EcefLocations create(LocationList locs) {
+    return new EcefLocations(locs);
+  }
+
+  /**
+   * Return the list of locations backing this instance.
+   */
+  public LocationList locations() {
+    return locs;
+  }
+
+  /**
+   * Return the number of locations.
+   */
+  public int size() {
+    return x.length;
+  }
+
+  /**
+   * Return the Cartesian coordinates {@code [x, y, z]} (in km) of the location
+   * at {@code index}.
+   *
+   * @param index of the location of interest
+   */
+  public double[] vector(int index) {
+    double ri = r[index];
+    return new double[] { x[index] * ri, y[index] * ri, z[index] * ri };
+  }
+
+  /**
+   * Return the {@code Location} at {@code index} as recovered from its
+   * Cartesian representation. The result may differ from
+   * {@code locations().get(index)} in the last few bits of each coordinate.
+   *
+   * @param index of the location of interest
+   */
+  public Location location(int index) {
+    return location(x[index] * r[index], y[index] * r[index], z[index] * r[index]);
+  }
+
+  /**
+   * Return the Cartesian coordinates {@code [x, y, z]} (in km) of the supplied
+   * {@code Location}.
+   *
+   * @param loc to convert
+   */
+  public static double[] vector(Location loc) {
+    double rl = EARTH_RADIUS_MEAN - loc.depth;
+    return new double[] {
+        loc.cosLat * cos(loc.lonRad) * rl,
+        loc.cosLat * sin(loc.lonRad) * rl,
+        loc.sinLat * rl };
+  }
+
+  /**
+   * Return the {@code Location} corresponding to the supplied Cartesian
+   * coordinates (in km). Longitudes are returned in the range (-180°, 180°] and
+   * depth is computed as {@code R - |v|}.
+   *
+   * @param x coordinate
+   * @param y coordinate
+   * @param z coordinate
+   * @throws IllegalArgumentException if the resulting depth is out of range
+   * @see Coordinates
+   */
+  public static Location location(double x, double y, double z) {
+    double rxy = sqrt(x * x + y * y);
+    double rl = sqrt(rxy * rxy + z * z);
+    return Location.create(
+        atan2(z, rxy) * Maths.TO_DEGREES,
+        atan2(y, x) * Maths.TO_DEGREES,
+        EARTH_RADIUS_MEAN - rl);
+  }
+
+  /**
+   * Return the horizontal (great-circle) distance (in km) between the supplied
+   * {@code Location} and the location at {@code index}. Depths are ignored.
+   *
+   * @param loc {@code Location} of interest
+   * @param index of the location to measure to
+   * @see Locations#horzDistance(Location, Location)
+   */
+  public double horzDistance(Location loc, int index) {
+    Query q = new Query(loc);
+    return horzDistance(q.x, q.y, q.z, index);
+  }
+
+  /**
+   * Return the linear (3D) distance (in km) between the supplied
+   * {@code Location} and the location at {@code index}.
+   *
+   * @param loc {@code Location} of interest
+   * @param index of the location to measure to
+   * @see Locations#linearDistance(Location, Location)
+   */
+  public double linearDistance(Location loc, int index) {
+    Query q = new Query(loc);
+    return linearDistance(q.x, q.y, q.z, q.r, index);
+  }
+
+  /**
+   * Compute the horizontal distance (in km) between the supplied
+   * {@code Location} and every location, storing results in {@code out}.
+   *
+   * @param loc {@code Location} of interest
+   * @param out array to populate
+   * @return {@code out}
+   * @throws IllegalArgumentException if {@code out.length < size()}
+   */
+  public double[] horzDistances(Location loc, double[] out) {
+    checkOut(out);
+    Query q = new Query(loc);
+    for (int i = 0; i < x.length; i++) {
+      out[i] = horzDistance(q.x, q.y, q.z, i);
+    }
+    return out;
+  }
+
+  /**
+   * Compute the linear distance (in km) between the supplied {@code Location}
+   * and every location, storing results in {@code out}.
+   *
+   * @param loc {@code Location} of interest
+   * @param out array to populate
+   * @return {@code out}
+   * @throws IllegalArgumentException if {@code out.length < size()}
+   */
+  public double[] linearDistances(Location loc, double[] out) {
+    checkOut(out);
+    Query q = new Query(loc);
+    for (int i = 0; i < x.length; i++) {
+      out[i] = linearDistance(q.x, q.y, q.z, q.r, i);
+    }
+    return out;
+  }
+
+  /**
+   * Return the minimum linear distance (in km) between the supplied
+   * {@code Location} and any location. When the locations represent a
+   * discretized rupture surface, this is rRup.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public double minLinearDistance(Location loc) {
+    Query q = new Query(loc);
+    double min = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < x.length; i++) {
+      double dx = q.x * q.r - x[i] * r[i];
+      double dy = q.y * q.r - y[i] * r[i];
+      double dz = q.z * q.r - z[i] * r[i];
+      min = min(min, dx * dx + dy * dy + dz * dz);
+    }
+    return sqrt(min);
+  }
+
+  /**
+   * Return the horizontal distance (in km) between the supplied
+   * {@code Location} and the great-circle segment connecting the locations at
+   * {@code index} and {@code index + 1}. Depths are ignored. If the location
+   * does not project onto the segment, the distance to the nearer endpoint is
+   * returned.
+   *
+   * @param loc {@code Location} of interest
+   * @param index of the first point of the segment
+   * @see Locations#distanceToSegment(Location, Location, Location)
+   */
+  public double distanceToSegment(Location loc, int index) {
+    checkArgument(
+        index >= 0 && index < x.length - 1,
+        "Segment index [%s] out of range [0..%s)", index, x.length - 1);
+    Query q = new Query(loc);
+    return distanceToSegment(q.x, q.y, q.z, index);
+  }
+
+  /**
+   * Return the minimum horizontal distance (in km) between the supplied
+   * {@code Location} and the line (great-circle segments) connecting all
+   * locations. For a single location, the horizontal distance to that location
+   * is returned.
+   *
+   * @param loc {@code Location} of interest
+   * @see Locations#minDistanceToLine(Location, LocationList)
+   */
+  public double minDistanceToLine(Location loc) {
+    Query q = new Query(loc);
+    if (x.length == 1) {
+      return horzDistance(q.x, q.y, q.z, 0);
+    }
+    double min = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < x.length - 1; i++) {
+      min = min(min, distanceToSegment(q.x, q.y, q.z, i));
+    }
+    return min;
+  }
+
+  /**
+   * Return the minimum linear distance (in km) between the supplied
+   * {@code Location} and the straight 3D segments connecting consecutive
+   * locations. Because segments are treated as chords rather than arcs, this
+   * is appropriate for a trace or row of a rupture surface with short
+   * (e.g. ≤10 km) spacing, for which it yields an rRup that, unlike
+   * {@link #minLinearDistance(Location)}, does not depend on discretization.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public double minLinearDistanceToLine(Location loc) {
+    Query q = new Query(loc);
+    double px = q.x * q.r;
+    double py = q.y * q.r;
+    double pz = q.z * q.r;
+    double ax = x[0] * r[0];
+    double ay = y[0] * r[0];
+    double az = z[0] * r[0];
+    double min = sq(px - ax, py - ay, pz - az);
+    for (int i = 1; i < x.length; i++) {
+      double bx = x[i] * r[i];
+      double by = y[i] * r[i];
+      double bz = z[i] * r[i];
+      double abx = bx - ax;
+      double aby = by - ay;
+      double abz = bz - az;
+      double ab2 = abx * abx + aby * aby + abz * abz;
+      double t = (ab2 > 0.0)
+          ? ((px - ax) * abx + (py - ay) * aby + (pz - az) * abz) / ab2
+          : 0.0;
+      t = max(0.0, min(1.0, t));
+      min = min(min, sq(px - ax - t * abx, py - ay - t * aby, pz - az - t * abz));
+      ax = bx;
+      ay = by;
+      az = bz;
+    }
+    return sqrt(min);
+  }
+
+  /**
+   * Compare the horizontal, linear, and segment distances computed by this
+   * instance from the supplied {@code Location} to those computed by the
+   * equivalent spherical methods in {@link Locations}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public Accuracy accuracy(Location loc) {
+    Query q = new Query(loc);
+    double horz = 0.0;
+    double linear = 0.0;
+    double segment = 0.0;
+    for (int i = 0; i < x.length; i++) {
+      Location p = locs.get(i);
+      horz = max(horz, abs(
+          horzDistance(q.x, q.y, q.z, i) -
+              Locations.horzDistance(loc, p)));
+      linear = max(linear, abs(
+          linearDistance(q.x, q.y, q.z, q.r, i) -
+              Locations.linearDistance(loc, p)));
+      if (i < x.length - 1) {
+        segment = max(segment, abs(
+            distanceToSegment(q.x, q.y, q.z, i) -
+                sphericalDistanceToSegment(p, locs.get(i + 1), loc)));
+      }
+    }
+    return new Accuracy(horz, linear, segment);
+  }
+
+  /**
+   * The maximum absolute differences (in km) between distances computed from
+   * Cartesian vectors and those computed by {@link Locations}.
+   */
+  public static final class Accuracy {
+
+    /** Maximum difference in horizontal distance. */
+    public final double horzDistance;
+
+    /** Maximum difference in linear distance. */
+    public final double linearDistance;
+
+    /** Maximum difference in distance to segment. */
+    public final double segmentDistance;
+
+    private Accuracy(double horzDistance, double linearDistance, double segmentDistance) {
+      this.horzDistance = horzDistance;
+      this.linearDistance = linearDistance;
+      this.segmentDistance = segmentDistance;
+    }
+
+    @Override
+    public String toString() {
+      return "EcefLocations.Accuracy [horzDistance: " + horzDistance +
+          ", linearDistance: " + linearDistance +
+          ", segmentDistance: " + segmentDistance + "]";
+    }
+  }
+
+  /*
+   * Locations.distanceToSegment() measures to p2 for any point more than one
+   * segment length behind p1; evaluating the segment in both directions
+   * yields the true minimum.
+   */
+  static double sphericalDistanceToSegment(Location p1, Location p2, Location p3) {
+    return min(
+        Locations.distanceToSegment(p1, p2, p3),
+        Locations.distanceToSegment(p2, p1, p3));
+  }
+
+  private void checkOut(double[] out) {
+    checkArgument(
+        out.length >= x.length,
+        "Output array length [%s] < size [%s]", out.length, x.length);
+  }
+
+  private double horzDistance(double qx, double qy, double qz, int i) {
+    return arc(sqrt(sq(qx - x[i], qy - y[i], qz - z[i])));
+  }
+
+  private double linearDistance(double qx, double qy, double qz, double qr, int i) {
+    double ri = r[i];
+    return sqrt(sq(qx * qr - x[i] * ri, qy * qr - y[i] * ri, qz * qr - z[i] * ri));
+  }
+
+  /*
+   * Distance from unit vector q to the arc a-b. The point projects onto the
+   * arc if it lies on the inner side of the planes through the origin, the
+   * segment normal n = a × b, and each endpoint.
+   */
+  private double distanceToSegment(double qx, double qy, double qz, int i) {
+    int j = i + 1;
+    double ax = x[i];
+    double ay = y[i];
+    double az = z[i];
+    double bx = x[j];
+    double by = y[j];
+    double bz = z[j];
+    double nx = ay * bz - az * by;
+    double ny = az * bx - ax * bz;
+    double nz = ax * by - ay * bx;
+    double n = sqrt(nx * nx + ny * ny + nz * nz);
+    if (n > 0.0) {
+      // (a × q) · n and (q × b) · n
+      double inA = (ay * qz - az * qy) * nx +
+          (az * qx - ax * qz) * ny +
+          (ax * qy - ay * qx) * nz;
+      double inB = (qy * bz - qz * by) * nx +
+          (qz * bx - qx * bz) * ny +
+          (qx * by - qy * bx) * nz;
+      if (inA >= 0.0 && inB >= 0.0) {
+        double sinXt = abs(qx * nx + qy * ny + qz * nz) / n;
+        return asin(min(sinXt, 1.0)) * EARTH_RADIUS_MEAN;
+      }
+    }
+    return min(horzDistance(qx, qy, qz, i), horzDistance(qx, qy, qz, j));
+  }
+
+  /* Great-circle distance from chord length between unit vectors. */
+  private static double arc(double chord) {
+    return 2.0 * asin(min(chord * 0.5, 1.0)) * EARTH_RADIUS_MEAN;
+  }
+
+  private static double sq(double dx, double dy, double dz) {
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  /* Unit vector and radius of a query location. */
+  private static final class Query {
+
+    final double x;
+    final double y;
+    final double z;
+    final double r;
+
+    Query(Location loc) {
+      x = loc.cosLat * cos(loc.lonRad);
+      y = loc.cosLat * sin(loc.lonRad);
+      z = loc.sinLat;
+      r = EARTH_RADIUS_MEAN - loc.depth;
+    }
+  }
+
+}
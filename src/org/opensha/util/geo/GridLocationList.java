@@ -0,0 +1,482 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static org.opensha.util.geo.Coordinates.checkLatitude;
+import static org.opensha.util.geo.Coordinates.checkLongitude;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * A {@code LocationList} of the nodes of a regular grid in latitude and
+ * longitude, defined only by the south-west origin node, the latitude and
+ * longitude spacing, and the number of rows (of constant latitude) and columns
+ * (of constant longitude). Nodes are ordered by row, from south to north, and
+ * within each row from west to east. Node {@code Location}s are computed on
+ * demand, so the memory footprint of a grid is constant regardless of its
+ * size, and {@link #get(int)}, {@link #size()}, {@link #bounds()}, and
+ * {@link #nearestIndex(Location)} are all constant time operations. All nodes
+ * share the depth of the origin.
+ *
+ * <p>A grid may optionally be {@link #mask(BitSet) masked}, in which case the
+ * list contains only the active nodes of the grid, in the same order. Masked
+ * grids store the mask and small rank and select directories (typically about
+ * two, and at most about four, bits per node) to preserve constant time
+ * access.
+ *
+ * <p>The bulk filters in {@code Locations}, for example
+ * {@link Locations#filterByDistance(LocationList, Location, double)}, only
+ * visit the nodes in the range of rows and columns that could satisfy a
+ * filter when supplied a grid.
+ *
+ * @author Peter Powers
+ */
+public final class GridLocationList extends AbstractList<Location>
+    implements LocationList, RandomAccess {
+
+  /*
+   * Developer notes: The coordinates of the node in row r and column c are
+   * always computed as lat0 + r * Δlat and lon0 + c * Δlon, which are monotonic
+   * in r and c. In masked grids, grid indices (r * columns + c) are mapped to
+   * list indices using the cumulative count of active nodes preceding each
+   * word of the mask (ranks). The reverse mapping (select) divides active
+   * nodes into blocks of SAMPLE; for a block spanning fewer than SELECT_SPAN
+   * words, the word holding its first node is stored and at most SELECT_SPAN
+   * words are scanned; the grid indices of the nodes in sparser blocks are
+   * stored explicitly.
+   */
+
+  private static final int SAMPLE = 64;
+  private static final int SELECT_SPAN = 16;
+
+  private final double lat0;
+  private final double lon0;
+  private final double depth;
+  private final double Δlat;
+  private final double Δlon;
+  private final int rows;
+  private final int columns;
+
+  /* Masked grids only; null otherwise. */
+  private final long[] mask;
+  private final int[] ranks;
+  private final int[] samples;
+  private final int[] positions;
+
+  private final int size;
+
+  /* Extent of active nodes. */
+  private final int minRow;
+  private final int maxRow;
+  private final int minColumn;
+  private final int maxColumn;
+
+  private GridLocationList(
+      double lat0,
+      double lon0,
+      double depth,
+      double Δlat,
+      double Δlon,
+      int rows,
+      int columns,
+      long[] mask) {
+
+    this.lat0 = lat0;
+    this.lon0 = lon0;
+    this.depth = depth;
+    this.Δlat = Δlat;
+    this.Δlon = Δlon;
+    this.rows = rows;
+    this.columns = columns;
+    this.mask = mask;
+    if (mask == null) {
+      ranks = null;
+      samples = null;
+      positions = null;
+      size = rows * columns;
+      minRow = 0;
+      maxRow = rows - 1;
+      minColumn = 0;
+      maxColumn = columns - 1;
+    } else {
+      ranks = new int[mask.length + 1];
+      int minRow = rows;
+      int maxRow = -1;
+      int minColumn = columns;
+      int maxColumn = -1;
+      for (int w = 0; w < mask.length; w++) {
+        ranks[w + 1] = ranks[w] + Long.bitCount(mask[w]);
+        for (long word = mask[w]; word != 0; word &= word - 1) {
+          int node = (w << 6) + Long.numberOfTrailingZeros(word);
+          int row = node / columns;
+          int column = node - row * columns;
+          minRow = Math.min(minRow, row);
+          maxRow = Math.max(maxRow, row);
+          minColumn = Math.min(minColumn, column);
+          maxColumn = Math.max(maxColumn, column);
+        }
+      }
+      size = ranks[mask.length];
+      checkArgument(size > 0, "Mask has no active nodes");
+      this.minRow = minRow;
+      this.maxRow = maxRow;
+      this.minColumn = minColumn;
+      this.maxColumn = maxColumn;
+
+      /*
+       * Store the first word of dense blocks and flag sparse blocks with the
+       * complement of their first word; then replace the flags with the
+       * complement of each sparse block's offset in positions.
+       */
+      samples = new int[(size + SAMPLE - 1) / SAMPLE];
+      int sparse = 0;
+      for (int b = 0, first = 0, last = 0; b < samples.length; b++) {
+        int lo = b * SAMPLE;
+        int hi = Math.min(lo + SAMPLE, size) - 1;
+        first = word(ranks, first, lo);
+        last = word(ranks, Math.max(first, last), hi);
+        if (last - first < SELECT_SPAN) {
+          samples[b] = first;
+        } else {
+          samples[b] = ~first;
+          sparse++;
+        }
+      }
+      positions = new int[sparse * SAMPLE];
+      for (int b = 0, p = 0; b < samples.length; b++) {
+        if (samples[b] >= 0) {
+          continue;
+        }
+        int lo = b * SAMPLE;
+        int hi = Math.min(lo + SAMPLE, size);
+        int offset = p * SAMPLE;
+        for (int w = ~samples[b], rank = ranks[w]; rank < hi; w++) {
+          for (long word = mask[w]; word != 0 && rank < hi; word &= word - 1, rank++) {
+            if (rank >= lo) {
+              positions[offset + rank - lo] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+          }
+        }
+        samples[b] = ~offset;
+        p++;
+      }
+    }
+  }
+
+  /* Index of the mask word, at or after from, holding the active node k. */
+  private static int word(int[] ranks, int from, int k) {
+    int w = from;
+    while (ranks[w + 1] <= k) {
+      w++;
+    }
+    return w;
+  }
+
+  /**
+   * Create a new grid.
+   *
+   * @param origin the south-west node of the grid
+   * @param latSpacing the spacing between rows, in decimal degrees
+   * @param lonSpacing the spacing between columns, in decimal degrees
+   * @param rows the number of rows of constant latitude
+   * @param columns the number of columns of constant longitude
+   * @throws IllegalArgumentException if either spacing is not positive and
+   *         real, if {@code rows} or {@code columns} is less than 1, if the
+   *         grid would contain more than {@code Integer.MAX_VALUE} nodes, or if
+   *         any node would have an invalid latitude or longitude
+   */
+  public static GridLocationList create(
+      Location origin,
+      double latSpacing,
+      double lonSpacing,
+      int rows,
+      int columns) {
+
+    checkArgument(
+        Doubles.isFinite(latSpacing) && latSpacing > 0.0,
+        "Latitude spacing must be positive, real number");
+    checkArgument(
+        Doubles.isFinite(lonSpacing) && lonSpacing > 0.0,
+        "Longitude spacing must be positive, real number");
+    checkArgument(rows > 0 && columns > 0, "Grid dimensions must be ≥ 1");
+    checkArgument(
+        (long) rows * columns <= Integer.MAX_VALUE,
+        "Grid size [%s x %s] too large", rows, columns);
+    checkLatitude(origin.latitude + (rows - 1) * latSpacing);
+    checkLongitude(origin.longitude + (columns - 1) * lonSpacing);
+    return new GridLocationList(
+        origin.latitude,
+        origin.longitude,
+        origin.depth,
+        latSpacing,
+        lonSpacing,
+        rows,
+        columns,
+        null);
+  }
+
+  /**
+   * Create a new grid of the nodes, aligned with an anchor location, that are
+   * inside a polygon. Nodes are identical to those of a grid that covers the
+   * bounds of the border and is masked by
+   * {@link PolygonIndex#contains(LocationList)}, but interior nodes are
+   * computed row by row from the crossings of the border with each row
+   * (scanline rasterization), rather than by testing every node. All nodes
+   * share the depth of the anchor.
+   *
+   * @param border of the polygon
+   * @param spacing of grid nodes in latitude and longitude, in decimal degrees
+   * @param anchor a location that is aligned with grid nodes; it need not be
+   *        inside the border
+   * @throws IllegalArgumentException if {@code border} is empty, if
+   *         {@code spacing} is not positive and real, if the grid would
+   *         contain more than {@code Integer.MAX_VALUE} nodes, or if no nodes
+   *         are inside the border
+   * @see PolygonIndex
+   */
+  public static GridLocationList interior(LocationList border, double spacing, Location anchor) {
+    checkArgument(
+        Doubles.isFinite(spacing) && spacing > 0.0,
+        "Spacing must be positive, real number");
+    PolygonIndex polygon = PolygonIndex.create(border);
+    int minRow = alignedIndex(polygon.minLat, anchor.latitude, spacing, true);
+    int maxRow = alignedIndex(polygon.maxLat, anchor.latitude, spacing, false);
+    int minColumn = alignedIndex(polygon.minLon, anchor.longitude, spacing, true);
+    int maxColumn = alignedIndex(polygon.maxLon, anchor.longitude, spacing, false);
+    checkArgument(
+        minRow <= maxRow && minColumn <= maxColumn,
+        "No grid nodes inside border");
+    Location origin = Location.create(
+        anchor.latitude + minRow * spacing,
+        anchor.longitude + minColumn * spacing,
+        anchor.depth);
+    GridLocationList grid = create(
+        origin,
+        spacing,
+        spacing,
+        maxRow - minRow + 1,
+        maxColumn - minColumn + 1);
+    BitSet mask = polygon.containsNodes(grid);
+    checkArgument(!mask.isEmpty(), "No grid nodes inside border");
+    return grid.mask(mask);
+  }
+
+  /*
+   * Index, relative to an anchor, of the first aligned coordinate at or above
+   * (or last at or below) a bound.
+   */
+  private static int alignedIndex(double bound, double anchor, double spacing, boolean min) {
+    double index = (bound - anchor) / spacing;
+    index = min ? Math.ceil(index) : Math.floor(index);
+    checkArgument(Math.abs(index) < Integer.MAX_VALUE / 2, "Spacing too small");
+    int i = (int) index;
+    if (min) {
+      while (anchor + i * spacing < bound) {
+        i++;
+      }
+    } else {
+      while (anchor + i * spacing > bound) {
+        i--;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Return a new grid that contains only the nodes of this grid whose bits
+   * are set in the supplied mask. Bits are indexed by node in an unmasked grid,
+   * {@code row * columns() + column}. Any mask on this grid is replaced.
+   *
+   * @param mask of active nodes
+   * @throws IllegalArgumentException if {@code mask} has no bits set or has
+   *         bits set beyond the last node of the grid
+   */
+  public GridLocationList mask(BitSet mask) {
+    int nodes = rows * columns;
+    checkArgument(mask.length() <= nodes, "Mask has bits set beyond node [%s]", nodes - 1);
+    long[] words = Arrays.copyOf(mask.toLongArray(), (nodes + 63) >>> 6);
+    return new GridLocationList(lat0, lon0, depth, Δlat, Δlon, rows, columns, words);
+  }
+
+  /**
+   * Return the number of rows of constant latitude in the grid.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns of constant longitude in the grid.
+   */
+  public int columns() {
+    return columns;
+  }
+
+  /**
+   * Return the spacing between rows, in decimal degrees.
+   */
+  public double latSpacing() {
+    return Δlat;
+  }
+
+  /**
+   * Return the spacing between columns, in decimal degrees.
+   */
+  public double lonSpacing() {
+    return Δlon;
+  }
+
+  /**
+   * Return whether this grid is masked.
+   */
+  public boolean isMasked() {
+    return mask != null;
+  }
+
+  /**
+   * Return the index of the grid node nearest to the supplied
+   * {@code Location} in latitude and longitude, or {@code -1} if the nearest
+   * node lies outside the grid (i.e. {@code loc} is more than half a spacing
+   * outside the grid) or is not active in a masked grid.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public int nearestIndex(Location loc) {
+    double row = Math.rint((loc.latitude - lat0) / Δlat);
+    double column = Math.rint((loc.longitude - lon0) / Δlon);
+    if (!(row >= 0 && row < rows && column >= 0 && column < columns)) {
+      return -1;
+    }
+    return index((int) row * columns + (int) column);
+  }
+
+  @Override
+  public Location get(int index) {
+    checkElementIndex(index, size);
+    int node = (mask == null) ? index : select(index);
+    int row = node / columns;
+    return Location.create(lat(row), lon(node - row * columns), depth);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double depth() {
+    return depth;
+  }
+
+  @Override
+  public Bounds bounds() {
+    return new Bounds(lat(minRow), lon(minColumn), lat(maxRow), lon(maxColumn));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return super.equals(obj) && (obj instanceof LocationList);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return Locations.toStringHelper(this);
+  }
+
+  /* Latitude of row r. */
+  double lat(int r) {
+    return lat0 + r * Δlat;
+  }
+
+  /* Longitude of column c. */
+  double lon(int c) {
+    return lon0 + c * Δlon;
+  }
+
+  /* Lowest row with latitude ≥ lat, or rows if there is none. */
+  int rowAtOrAbove(double lat) {
+    return ceilIndex(lat, lat0, Δlat, rows, true);
+  }
+
+  /* Lowest column with longitude ≥ lon, or columns if there is none. */
+  int columnAtOrAbove(double lon) {
+    return ceilIndex(lon, lon0, Δlon, columns, false);
+  }
+
+  /*
+   * Estimate the index arithmetically and then step to correct for rounding
+   * so that results are consistent with lat(r) and lon(c).
+   */
+  private int ceilIndex(double value, double origin, double spacing, int count, boolean lat) {
+    if (!(value > origin)) {
+      return 0;
+    }
+    double estimate = Math.ceil((value - origin) / spacing);
+    if (!(estimate < count)) {
+      estimate = count;
+    }
+    int i = (int) estimate;
+    while (i > 0 && coordinate(i - 1, lat) >= value) {
+      i--;
+    }
+    while (i < count && coordinate(i, lat) < value) {
+      i++;
+    }
+    return i;
+  }
+
+  private double coordinate(int i, boolean lat) {
+    return lat ? lat(i) : lon(i);
+  }
+
+  /*
+   * Return the list index of the node at the supplied grid index, or -1 if it
+   * is not active.
+   */
+  int index(int node) {
+    if (mask == null) {
+      return node;
+    }
+    int w = node >>> 6;
+    long bit = 1L << node;
+    if ((mask[w] & bit) == 0) {
+      return -1;
+    }
+    return ranks[w] + Long.bitCount(mask[w] & (bit - 1));
+  }
+
+  /* Grid index of the node at list index i in a masked grid. */
+  private int select(int i) {
+    int sample = samples[i / SAMPLE];
+    if (sample < 0) {
+      return positions[~sample + i % SAMPLE];
+    }
+    int w = word(ranks, sample, i);
+    return (w << 6) + select(mask[w], i - ranks[w]);
+  }
+
+  /* Position of the n-th set bit of a word, by halving. */
+  private static int select(long word, int n) {
+    int position = 0;
+    for (int width = 32; width > 0; width >>>= 1) {
+      int count = Long.bitCount(word & ((1L << width) - 1));
+      if (n >= count) {
+        n -= count;
+        word >>>= width;
+        position += width;
+      }
+    }
+    return position;
+  }
+
+}
@@ -0,0 +1,34 @@
+package org.opensha.util.geo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Minimal growable {@code int} array used to collect the results of spatial
+ * index queries.
+ *
+ * @author Peter Powers
+ * @see LocationIndex
+ * @see BucketIndex
+ */
+final class IntBuffer implements IntConsumer {
+
+  private int[] values = new int[16];
+  private int size;
+
+  void add(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+  }
+
+  @Override
+  public void accept(int value) {
+    add(value);
+  }
+
+  int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
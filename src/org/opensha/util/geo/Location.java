@@ -5,15 +5,11 @@ import static org.opensha.util.Earthquakes.checkDepth;
 import static org.opensha.util.geo.Coordinates.checkLatitude;
 import static org.opensha.util.geo.Coordinates.checkLongitude;
 
-import java.util.List;
 import java.util.Objects;
 
 import org.opensha.util.Maths;
 
 import com.google.common.base.Converter;
-import com.google.common.base.Splitter;
-import com.google.common.collect.FluentIterable;
-import com.google.common.primitives.Doubles;
 
 /**
  * A {@code Location} represents a point with reference to the earth's
@@ -41,6 +37,12 @@ public final class Location implements Comparable<Location> {
    * double-precision operations, so it is prefereable to preserve both the
    * original decimal degrees values used to initialize the location along with
    * radian formatted values for computational efficiency.
+   *
+   * The sine and cosine of latitude are also precomputed. Nearly every
+   * spherical geometry method in Locations requires one or both, and, as
+   * hazard calculations typically evaluate the same site and source locations
+   * many times over, caching these terms avoids a large number of repeat trig
+   * operations at the cost of two doubles per instance.
    */
 
   /** The latitude of this {@code Location} in decimal degrees. */
@@ -54,6 +56,8 @@ public final class Location implements Comparable<Location> {
 
   final double latRad;
   final double lonRad;
+  final double sinLat;
+  final double cosLat;
 
   /**
    * Create a new {@code Location} with the supplied longitude, latitude, and
@@ -84,6 +88,8 @@ public final class Location implements Comparable<Location> {
     this.depth = checkDepth(depth);
     this.lonRad = longitude * Maths.TO_RADIANS;
     this.latRad = latitude * Maths.TO_RADIANS;
+    this.sinLat = Math.sin(latRad);
+    this.cosLat = Math.cos(latRad);
   }
 
   /**
@@ -126,7 +132,7 @@ public final class Location implements Comparable<Location> {
    * @see #stringConverter()
    */
   public static Location fromString(String s) {
-    return StringConverter.INSTANCE.reverse().convert(s);
+    return LocationParser.location(checkNotNull(s));
   }
 
   /**
@@ -158,7 +164,6 @@ public final class Location implements Comparable<Location> {
   private static final class StringConverter extends Converter<Location, String> {
 
     static final StringConverter INSTANCE = new StringConverter();
-    static final Splitter SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
     static final String FORMAT = "%.5f,%.5f,%.5f";
 
     @Override
@@ -168,11 +173,7 @@ public final class Location implements Comparable<Location> {
 
     @Override
     protected Location doBackward(String s) {
-      List<Double> values = FluentIterable
-          .from(SPLITTER.split(checkNotNull(s)))
-          .transform(Doubles.stringConverter())
-          .toList();
-      return create(values.get(1), values.get(0), values.get(2));
+      return LocationParser.location(checkNotNull(s));
     }
   }
 
@@ -0,0 +1,345 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * An immutable spatial index of the {@code Location}s in a
+ * {@code LocationList} that supports nearest-neighbor, k-nearest-neighbor, and
+ * radial queries in logarithmic time. Internally, the index is a k-d tree
+ * over latitude and longitude that is built once and may be shared across
+ * threads.
+ *
+ * <p>All distances are computed using
+ * {@link Locations#horzDistanceFast(Location, Location)} with the query
+ * location as the first argument, and results are identical to those of a
+ * linear scan (e.g. {@link Locations#closestPoint(Location, LocationList)}).
+ * When multiple locations are equidistant from a query location, the one with
+ * the lowest index in the source list is preferred. As with
+ * {@code horzDistanceFast}, this index does not support lists or queries that
+ * span ±180°.
+ *
+ * @author Peter Powers
+ * @see Locations#closestPoint(Location, LocationList)
+ * @see Locations#minDistanceToLocations(Location, LocationList)
+ */
+public final class LocationIndex {
+
+  /*
+   * Developer notes: Points are stored in tree order in primitive arrays so
+   * that leaf scans are contiguous. Each node carries its bounding box in
+   * radians, which is used to compute a lower bound on the distance from a
+   * query point to any point in the node; see Locations.distanceLowerBound().
+   */
+
+  private static final int LEAF_SIZE = 8;
+
+  private final LocationList locs;
+
+  /* Points in tree order. */
+  private final double[] lats;
+  private final double[] lons;
+  private final int[] indices;
+
+  /* Nodes. */
+  private final int[] start;
+  private final int[] end;
+  private final int[] left;
+  private final int[] right;
+  private final double[] minLat;
+  private final double[] maxLat;
+  private final double[] minLon;
+  private final double[] maxLon;
+  private int nodeCount;
+
+  private LocationIndex(LocationList locs) {
+    this.locs = locs;
+    int size = locs.size();
+    lats = new double[size];
+    lons = new double[size];
+    indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      Location loc = locs.get(i);
+      lats[i] = loc.latRad;
+      lons[i] = loc.lonRad;
+      indices[i] = i;
+    }
+    // median splits ensure leaves hold at least LEAF_SIZE / 2 points
+    int capacity = 2 * (size / (LEAF_SIZE / 2) + 1) + 1;
+    start = new int[capacity];
+    end = new int[capacity];
+    left = new int[capacity];
+    right = new int[capacity];
+    minLat = new double[capacity];
+    maxLat = new double[capacity];
+    minLon = new double[capacity];
+    maxLon = new double[capacity];
+    build(0, size);
+  }
+
+  /**
+   * Create a new index of the supplied locations.
+   *
+   * @param locs to index
+   */
+  public static LocationIndex create(LocationList locs) {
+    return new LocationIndex(locs);
+  }
+
+  /**
+   * Return the list of locations backing this index.
+   */
+  public LocationList locations() {
+    return locs;
+  }
+
+  /**
+   * Return the index of the location closest to the supplied
+   * {@code Location}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public int nearestIndex(Location loc) {
+    Search search = new Search(loc, 1);
+    nearest(0, search);
+    return search.indices[0];
+  }
+
+  /**
+   * Return the location closest to the supplied {@code Location}. This is
+   * equivalent to {@link Locations#closestPoint(Location, LocationList)}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public Location closestPoint(Location loc) {
+    return locs.get(nearestIndex(loc));
+  }
+
+  /**
+   * Return the horizontal distance (in km) from the supplied {@code Location}
+   * to the closest location in this index. This is equivalent to
+   * {@link Locations#minDistanceToLocations(Location, LocationList)}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public double minDistance(Location loc) {
+    Search search = new Search(loc, 1);
+    nearest(0, search);
+    return search.distances[0];
+  }
+
+  /**
+   * Return the indices of the {@code k} locations closest to the supplied
+   * {@code Location}, ordered by increasing distance. If {@code k} exceeds the
+   * number of indexed locations, the indices of all locations are returned.
+   *
+   * @param loc {@code Location} of interest
+   * @param k the number of indices to return
+   * @throws IllegalArgumentException if {@code k < 1}
+   */
+  public int[] nearestIndices(Location loc, int k) {
+    checkArgument(k > 0, "k [%s] must be greater than 0", k);
+    Search search = new Search(loc, min(k, indices.length));
+    nearest(0, search);
+    return search.indices;
+  }
+
+  /**
+   * Return the indices, in increasing order, of all locations that are at or
+   * within the specified {@code distance} of the supplied {@code Location}.
+   *
+   * @param loc {@code Location} of interest
+   * @param distance (in km) of search
+   * @throws IllegalArgumentException if {@code distance} is negative or not
+   *         finite
+   */
+  public int[] indicesWithin(Location loc, double distance) {
+    checkArgument(
+        Doubles.isFinite(distance) && distance >= 0.0,
+        "Distance [%s] must be positive, real number", distance);
+    IntBuffer hits = new IntBuffer();
+    within(0, loc.latRad, loc.lonRad, distance, hits);
+    int[] result = hits.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /* Recursively build the tree over the point range [lo, hi). */
+  private int build(int lo, int hi) {
+    int node = nodeCount++;
+    start[node] = lo;
+    end[node] = hi;
+    double latMin = Double.POSITIVE_INFINITY;
+    double latMax = Double.NEGATIVE_INFINITY;
+    double lonMin = Double.POSITIVE_INFINITY;
+    double lonMax = Double.NEGATIVE_INFINITY;
+    for (int i = lo; i < hi; i++) {
+      latMin = min(latMin, lats[i]);
+      latMax = max(latMax, lats[i]);
+      lonMin = min(lonMin, lons[i]);
+      lonMax = max(lonMax, lons[i]);
+    }
+    minLat[node] = latMin;
+    maxLat[node] = latMax;
+    minLon[node] = lonMin;
+    maxLon[node] = lonMax;
+
+    if (hi - lo <= LEAF_SIZE) {
+      left[node] = -1;
+      right[node] = -1;
+      return node;
+    }
+    double lonExtent = (lonMax - lonMin) * cos((latMin + latMax) * 0.5);
+    boolean splitLat = (latMax - latMin) >= lonExtent;
+    int mid = (lo + hi) >>> 1;
+    select(splitLat ? lats : lons, lo, hi - 1, mid);
+    left[node] = build(lo, mid);
+    right[node] = build(mid, hi);
+    return node;
+  }
+
+  /* Quickselect on key over [lo, hi] such that element k is in sort order. */
+  private void select(double[] key, int lo, int hi, int k) {
+    while (hi > lo) {
+      int mid = (lo + hi) >>> 1;
+      double pivot = key[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (key[i] < pivot) {
+          i++;
+        }
+        while (key[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int i, int j) {
+    double lat = lats[i];
+    lats[i] = lats[j];
+    lats[j] = lat;
+    double lon = lons[i];
+    lons[i] = lons[j];
+    lons[j] = lon;
+    int index = indices[i];
+    indices[i] = indices[j];
+    indices[j] = index;
+  }
+
+  /* Lower bound on horzDistanceFast from a point to any point in a node. */
+  private double lowerBound(int node, double lat, double lon) {
+    return Locations.distanceLowerBound(
+        lat, lon,
+        minLat[node], maxLat[node],
+        minLon[node], maxLon[node]);
+  }
+
+  private void nearest(int node, Search search) {
+    if (left[node] < 0) {
+      for (int i = start[node]; i < end[node]; i++) {
+        double r = Locations.horzDistanceFast(search.lat, search.lon, lats[i], lons[i]);
+        search.offer(r, indices[i]);
+      }
+      return;
+    }
+    int near = left[node];
+    int far = right[node];
+    double nearBound = lowerBound(near, search.lat, search.lon);
+    double farBound = lowerBound(far, search.lat, search.lon);
+    if (farBound < nearBound) {
+      int node0 = near;
+      near = far;
+      far = node0;
+      double bound0 = nearBound;
+      nearBound = farBound;
+      farBound = bound0;
+    }
+    if (nearBound <= search.limit()) {
+      nearest(near, search);
+    }
+    if (farBound <= search.limit()) {
+      nearest(far, search);
+    }
+  }
+
+  private void within(int node, double lat, double lon, double distance, IntBuffer hits) {
+    if (lowerBound(node, lat, lon) > distance) {
+      return;
+    }
+    if (left[node] < 0) {
+      for (int i = start[node]; i < end[node]; i++) {
+        if (Locations.horzDistanceFast(lat, lon, lats[i], lons[i]) <= distance) {
+          hits.add(indices[i]);
+        }
+      }
+      return;
+    }
+    within(left[node], lat, lon, distance, hits);
+    within(right[node], lat, lon, distance, hits);
+  }
+
+  /*
+   * Mutable state of a k-nearest search: a sorted list of the best k
+   * candidates ordered by distance, then index.
+   */
+  private static final class Search {
+
+    final double lat;
+    final double lon;
+    final double[] distances;
+    final int[] indices;
+    int size;
+
+    Search(Location loc, int k) {
+      this.lat = loc.latRad;
+      this.lon = loc.lonRad;
+      this.distances = new double[k];
+      this.indices = new int[k];
+    }
+
+    /* The distance beyond which candidates are rejected. */
+    double limit() {
+      return (size < distances.length)
+          ? Double.POSITIVE_INFINITY
+          : distances[size - 1];
+    }
+
+    void offer(double r, int index) {
+      int k = distances.length;
+      if (size == k && !precedes(r, index, size - 1)) {
+        return;
+      }
+      int i = (size < k) ? size++ : k - 1;
+      while (i > 0 && precedes(r, index, i - 1)) {
+        distances[i] = distances[i - 1];
+        indices[i] = indices[i - 1];
+        i--;
+      }
+      distances[i] = r;
+      indices[i] = index;
+    }
+
+    private boolean precedes(double r, int index, int i) {
+      return r < distances[i] || (r == distances[i] && index < indices[i]);
+    }
+  }
+
+}
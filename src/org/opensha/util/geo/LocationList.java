@@ -2,15 +2,15 @@ package org.opensha.util.geo;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.opensha.util.Text.WHITESPACE_SPLITTER;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.List;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
-import com.google.common.primitives.Doubles;
 
 /**
  * A list of {@link Location}s.
@@ -29,6 +29,9 @@ import com.google.common.primitives.Doubles;
  * {@link #resample(double)} , {@link #reverse()}, and
  * {@link #translate(LocationVector)}.
  *
+ * <p>Derived geometry (e.g. {@link #length()} and {@link #bounds()}) is
+ * recomputed on every call unless a list is {@link #memoize() memoized}.
+ *
  * @author Peter Powers
  */
 public interface LocationList extends List<Location> {
@@ -104,6 +107,31 @@ public interface LocationList extends List<Location> {
     return Locations.bounds(this);
   }
 
+  /**
+   * Lazily compute the centroid of the locations in the list. Method delegates
+   * to {@link Locations#centroid(Iterable)}.
+   */
+  default Location centroid() {
+    return Locations.centroid(this);
+  }
+
+  /**
+   * Return a view of this list that computes derived geometry
+   * ({@link #length()}, {@link #depth()}, {@link #distances()},
+   * {@link #bounds()} and {@link #centroid()}) once, in a single pass, and
+   * caches the results for use by subsequent calls, including those made
+   * internally by {@link #partition(double)} and {@link #resample(double)}.
+   * Cached values are identical to those computed by this list. The returned
+   * list is safe for use by concurrent readers, and memoizing an
+   * already-memoized list returns the same list.
+   *
+   * <p>Consider memoizing lists whose geometry is queried repeatedly, such as
+   * fault traces.
+   */
+  default LocationList memoize() {
+    return MemoizedLocationList.wrap(this);
+  }
+
   /**
    * Partition this list into sub-lists of desired {@code length}. The actual
    * length of the returned lists will likely differ, as the lengths of the
@@ -115,50 +143,25 @@ public interface LocationList extends List<Location> {
    * @param length target length of sub-lists
    */
   default List<LocationList> partition(double length) {
-    checkArgument(
-        Doubles.isFinite(length) && length > 0.0,
-        "Length must be positive, real number");
-
-    double totalLength = this.length();
-    if (totalLength <= length) {
-      return ImmutableList.of(this);
-    }
+    return Resampler.partition(this, length);
+  }
 
-    ImmutableList.Builder<LocationList> partitions = ImmutableList.builder();
-    double partitionLength = totalLength / Math.rint(totalLength / length);
-
-    double[] distances = distances();
-    LocationList.Builder partition = LocationList.builder();
-    double residual = 0.0;
-    for (int i = 0; i < distances.length; i++) {
-      Location start = get(i);
-      partition.add(start);
-      double distance = distances[i] + residual;
-      while (partitionLength < distance) {
-        /*
-         * Catch the edge case where, on the last segment of a trace that needs
-         * to be partitioned we just undershoot the last point. In the absence
-         * of this we can end up with a final section of length ≈ 0.
-         * 
-         */
-        if (i == distances.length - 1 && distance < 1.5 * partitionLength) {
-          break;
-        }
-        LocationVector v = LocationVector.create(start, get(i + 1));
-        Location end = Locations.location(start, v.azimuth, partitionLength - residual);
-        partition.add(end);
-        partitions.add(partition.build());
-        partition = LocationList.builder();
-        partition.add(end);
-        start = end;
-        distance -= partitionLength;
-        residual = 0.0;
-      }
-      residual = distance;
-    }
-    partition.add(last());
-    partitions.add(partition.build());
-    return partitions.build();
+  /**
+   * Partition this list into sub-lists of desired {@code length}, emitting the
+   * vertices of each sub-list to the supplied {@code sink} followed by a call
+   * to {@link Sink#end()}. Emitted vertices are identical to those of the lists
+   * returned by {@link #partition(double)}, but no intermediate lists or
+   * {@code Location}s are created. Note that adjacent sub-lists share an
+   * endpoint, which is emitted for each.
+   *
+   * <p>If {@code this.length() < length}, the vertices of this list are
+   * emitted.
+   *
+   * @param length target length of sub-lists
+   * @param sink to receive vertices
+   */
+  default void partition(double length, Sink sink) {
+    Resampler.partition(this, length, sink);
   }
 
   /**
@@ -173,43 +176,31 @@ public interface LocationList extends List<Location> {
    * @param spacing resample interval
    */
   default LocationList resample(double spacing) {
-    checkArgument(
-        Doubles.isFinite(spacing) && spacing > 0.0,
-        "Spacing must be positive, real number");
-
-    double length = this.length();
-    if (length <= spacing) {
-      return this;
-    }
-
     /*
      * TODO Consider using rint() and/or providing a maxFlag which will keep the
      * actual spacing closer to the target spacing, albeit sometimes larger.
      * 
      * TODO consder using round() instead of ceil() which will in some cases be
      * closer to the target spacing, albeit greater.
-     * 
-     * TODO consider immutList.Builder for resampled below
      */
+    return Resampler.resample(this, spacing);
+  }
 
-    spacing = length / Math.ceil(length / spacing);
-    List<Location> resampled = Lists.newArrayList();
-    Location start = this.first();
-    resampled.add(start);
-    double walker = spacing;
-    for (Location loc : Iterables.skip(this, 1)) {
-      LocationVector v = LocationVector.create(start, loc);
-      double distance = Locations.horzDistanceFast(start, loc);
-      while (walker <= distance) {
-        resampled.add(Locations.location(start, v.azimuth, walker));
-        walker += spacing;
-      }
-      start = loc;
-      walker -= distance;
-    }
-    // replace last point to be exact
-    resampled.set(resampled.size() - 1, this.last());
-    return LocationList.create(resampled);
+  /**
+   * Resample this list to the desired maximum spacing, emitting the resampled
+   * vertices to the supplied {@code sink} followed by a call to
+   * {@link Sink#end()}. Emitted vertices are identical to those of the list
+   * returned by {@link #resample(double)}, but no intermediate lists or
+   * {@code Location}s are created.
+   *
+   * <p>If {@code this.length() < spacing}, the vertices of this list are
+   * emitted.
+   *
+   * @param spacing resample interval
+   * @param sink to receive vertices
+   */
+  default void resample(double spacing, Sink sink) {
+    Resampler.resample(this, spacing, sink);
   }
 
   /**
@@ -222,17 +213,16 @@ public interface LocationList extends List<Location> {
 
   /**
    * Return a new {@code LocationList} with each {@code Location} translated
-   * according to the supplied vector.
+   * according to the supplied vector. Results are identical to those of
+   * {@link Locations#location(Location, LocationVector)}, but the trig terms
+   * of the vector are computed once. Packed lists are translated into new
+   * packed lists.
    *
    * @param vector to translate list by
    */
   default LocationList translate(LocationVector vector) {
     // TODO consider adding translate to LocationVector
-    // --> .map(vector::translate)
-    return create(this.stream()
-        .map(loc -> Locations.location(loc, vector))
-        .collect(ImmutableList.toImmutableList()));
-
+    return Locations.translate(this, vector);
   }
 
   // TODO need toString equals hashcode
@@ -273,24 +263,131 @@ public interface LocationList extends List<Location> {
     return builder().addAll(locations).build();
   }
 
+  /**
+   * Create a new {@code LocationList} containing the supplied
+   * {@code locations} that stores coordinates in primitive arrays rather than
+   * as individual {@code Location} instances. Such lists have a much smaller
+   * memory footprint than those returned by {@link #create(Iterable)} and
+   * compute derived geometry (e.g. {@link #length()}) more efficiently, but
+   * create a new {@code Location} on every call to {@link #get(int)}. Packed
+   * lists are therefore best suited to large site and source grids that are
+   * processed in bulk. If {@code locations} is already a packed list, it is
+   * returned as is.
+   *
+   * @param locations to populate list with
+   * @throws IllegalArgumentException if {@code locations} is empty
+   */
+  static LocationList packed(Iterable<Location> locations) {
+    return PackedLocationList.copyOf(locations);
+  }
+
   /**
    * Create a new {@code LocationList} from the supplied {@code String}. This
    * method assumes that {@code s} is formatted as one or more space-delimited
    * {@code [longitude, latitude, depth]} tuples (comma-delimited); see
-   * {@link Location#fromString(String)}.
+   * {@link Location#fromString(String)}. Any {@code CharSequence}, such as a
+   * {@code CharBuffer} view of a file, may be supplied. Values are parsed in
+   * place and the returned list is {@link #packed(Iterable) packed}.
    *
    * @param s {@code String} to read
    * @return a new {@code LocationList}
+   * @throws NumberFormatException if any value is unparseable
+   * @throws IndexOutOfBoundsException if any tuple contains fewer than 3
+   *         values
+   * @throws IllegalArgumentException if {@code s} contains no tuples or any
+   *         value is out of range
    * @see Location#fromString(String)
    */
-  static LocationList fromString(String s) {
-    return create(Iterables.transform(
-        WHITESPACE_SPLITTER.split(checkNotNull(s)),
-        Location.stringConverter().reverse()));
+  static LocationList fromString(CharSequence s) {
+    return LocationParser.list(checkNotNull(s));
+  }
+
+  /**
+   * Create a new {@code LocationList} from the remaining bytes of the supplied
+   * buffer, which are assumed to contain ASCII or UTF-8 encoded text formatted
+   * as described in {@link #fromString(CharSequence)}. Only ASCII whitespace
+   * delimits tuples. Bytes are read in place and the position of the buffer is
+   * not changed; a memory-mapped file may be supplied directly.
+   *
+   * @param bytes to read
+   * @return a new {@code LocationList}
+   * @throws NumberFormatException if any value is unparseable
+   * @throws IndexOutOfBoundsException if any tuple contains fewer than 3
+   *         values
+   * @throws IllegalArgumentException if {@code bytes} contains no tuples or
+   *         any value is out of range
+   * @see #fromString(CharSequence)
+   */
+  static LocationList fromBytes(ByteBuffer bytes) {
+    return LocationParser.list(checkNotNull(bytes));
+  }
+
+  /**
+   * Write the supplied {@code LocationList} to a compact binary file that may
+   * later be {@link #map(Path) mapped}. Coordinates are stored as primitive
+   * latitude, longitude, and depth columns; see {@link #map(Path)}. Any
+   * existing file is replaced by a temporary file, written in the same
+   * directory, such that a list mapped from {@code file} may safely be written
+   * back to it.
+   *
+   * @param locs to write
+   * @param file to write to
+   * @throws IOException if an I/O error occurs or {@code locs} is too large
+   *         for the file format
+   * @see #map(Path)
+   */
+  static void write(LocationList locs, Path file) throws IOException {
+    MappedLocationList.write(checkNotNull(locs), file);
+  }
+
+  /**
+   * Return a {@code LocationList} view of a file created by
+   * {@link #write(LocationList, Path)}. The file is memory-mapped and
+   * coordinates are read directly from the mapping rather than being copied
+   * to the heap, so many large lists (e.g. site grids) may be opened quickly
+   * and shared by the operating system across processes. As with
+   * {@link #packed(Iterable) packed} lists, a new {@code Location} is created
+   * on every call to {@link #get(int)}. Files may be read on platforms with a
+   * different byte order than that of the platform that wrote them.
+   *
+   * <p>The returned list is immutable, but reflects the contents of the file,
+   * which should not be modified while the list is in use.
+   *
+   * @param file to map
+   * @throws IOException if an I/O error occurs or {@code file} is not a
+   *         location file
+   * @see #write(LocationList, Path)
+   */
+  static LocationList map(Path file) throws IOException {
+    return MappedLocationList.map(file);
   }
 
   // TODO check tuple order lon,lat,depth in tests
 
+  /**
+   * A receiver of the vertices of a {@code LocationList}, expressed as
+   * primitive values, that is used by streaming variants of methods that would
+   * otherwise return new lists (e.g. {@link #resample(double, Sink)}).
+   */
+  @FunctionalInterface
+  interface Sink {
+
+    /**
+     * Accept a vertex.
+     *
+     * @param latitude in decimal degrees
+     * @param longitude in decimal degrees
+     * @param depth in km (positive down)
+     */
+    void add(double latitude, double longitude, double depth);
+
+    /**
+     * Called when all the vertices of a list have been emitted. The default
+     * implementation does nothing.
+     */
+    default void end() {}
+  }
+
   /**
    * Return a new builder.
    */
@@ -0,0 +1,358 @@
+package org.opensha.util.geo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.CharMatcher;
+
+/**
+ * Parser for {@code Location} and {@code LocationList} strings that reads
+ * characters or bytes in place. Whitespace-delimited
+ * {@code longitude,latitude,depth} tuples are split and their values parsed
+ * without creating intermediate {@code String}s, and lists are assembled
+ * directly in packed form.
+ *
+ * <p>Doubles with at most 19 significant digits and a small decimal exponent
+ * (which includes everything written by {@link Location#toString()}) are
+ * parsed exactly using a single multiplication or division by a power of ten
+ * (see Clinger, 1990). All other values, including {@code NaN},
+ * {@code Infinity}, and hexadecimal forms, are handed off to
+ * {@link Double#parseDouble(String)}. Results are therefore identical to
+ * those of {@code Double.valueOf(String)}, and values that it rejects throw a
+ * {@code NumberFormatException}.
+ *
+ * <p>Tokenization matches that of {@link Location#stringConverter()} and
+ * {@link LocationList#fromString(CharSequence)}: tuples are split on
+ * whitespace, values on commas, and empty values are skipped. Values beyond
+ * the third in a tuple are parsed, but ignored. Byte input is assumed to be
+ * ASCII-compatible (e.g. UTF-8) and only ASCII whitespace delimits tuples.
+ *
+ * @author Peter Powers
+ */
+final class LocationParser {
+
+  private LocationParser() {}
+
+  /* Exact powers of ten; 10^22 is the largest exactly representable. */
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /* Largest mantissa that converts to a double without rounding. */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  /* Most significant digits that always fit in a long; 19 nines overflow. */
+  private static final int MAX_DIGITS = 18;
+
+  /* Parse a single location; see Location.fromString(). */
+  static Location location(CharSequence s) {
+    double[] values = new double[3];
+    int count = parseValues(new CharInput(s), 0, s.length(), values, false);
+    if (count < 3) {
+      throw new IndexOutOfBoundsException(
+          "Location string [" + s + "] has " + count + " values; 3 required");
+    }
+    return Location.create(values[1], values[0], values[2]);
+  }
+
+  /* Parse a packed list; see LocationList.fromString(). */
+  static PackedLocationList list(CharSequence s) {
+    PackedLocationList.Builder builder = new PackedLocationList.Builder(s.length() / 24 + 1);
+    parse(s, 0, s.length(), builder::add);
+    return builder.build();
+  }
+
+  /* Parse a packed list from the remaining bytes; buffer is not modified. */
+  static PackedLocationList list(ByteBuffer bytes) {
+    PackedLocationList.Builder builder = new PackedLocationList.Builder(bytes.remaining() / 24 + 1);
+    parse(bytes, bytes.position(), bytes.limit(), builder::add);
+    return builder.build();
+  }
+
+  /* Stream each tuple in s[start, end) to sink. */
+  static void parse(CharSequence s, int start, int end, LocationList.Sink sink) {
+    parse(new CharInput(s), start, end, sink);
+  }
+
+  /* Stream each tuple in bytes[start, end) to sink. */
+  static void parse(ByteBuffer bytes, int start, int end, LocationList.Sink sink) {
+    parse(new ByteInput(bytes), start, end, sink);
+  }
+
+  private static void parse(Input in, int start, int end, LocationList.Sink sink) {
+    double[] values = new double[3];
+    int i = start;
+    while (i < end) {
+      if (in.isWhitespace(i)) {
+        i++;
+        continue;
+      }
+      int tupleEnd = i + 1;
+      while (tupleEnd < end && !in.isWhitespace(tupleEnd)) {
+        tupleEnd++;
+      }
+      int count = parseValues(in, i, tupleEnd, values, true);
+      if (count < 3) {
+        throw new IndexOutOfBoundsException(
+            "Location string [" + in.string(i, tupleEnd) + "] has " +
+                count + " values; 3 required");
+      }
+      sink.add(values[1], values[0], values[2]);
+      i = tupleEnd;
+    }
+  }
+
+  /*
+   * Parse the comma-separated values in [start, end), storing the first three
+   * in out, and return the total number of values. Values are trimmed of
+   * whitespace unless the range is known to contain none.
+   */
+  private static int parseValues(Input in, int start, int end, double[] out, boolean trimmed) {
+    int count = 0;
+    int i = start;
+    while (i <= end) {
+      int valueEnd = i;
+      while (valueEnd < end && in.get(valueEnd) != ',') {
+        valueEnd++;
+      }
+      int a = i;
+      int b = valueEnd;
+      if (!trimmed) {
+        while (a < b && in.isWhitespace(a)) {
+          a++;
+        }
+        while (b > a && in.isWhitespace(b - 1)) {
+          b--;
+        }
+      }
+      if (a < b) {
+        double value = parseDouble(in, a, b);
+        if (count < out.length) {
+          out[count] = value;
+        }
+        count++;
+      }
+      i = valueEnd + 1;
+    }
+    return count;
+  }
+
+  /*
+   * Parser for the records of a delimited text file backed by a byte buffer;
+   * see LocationReader. Values are separated by any combination of commas and
+   * ASCII whitespace.
+   */
+  static final class RecordParser {
+
+    private final ByteInput in;
+
+    RecordParser(ByteBuffer bytes) {
+      this.in = new ByteInput(bytes);
+    }
+
+    /*
+     * Parse the values in [start, end), storing the first out.length values in
+     * out, and return the total number of values.
+     */
+    int parse(int start, int end, double[] out) {
+      int count = 0;
+      int i = start;
+      while (i < end) {
+        if (isDelimiter(i)) {
+          i++;
+          continue;
+        }
+        int valueEnd = i + 1;
+        while (valueEnd < end && !isDelimiter(valueEnd)) {
+          valueEnd++;
+        }
+        double value = parseDouble(in, i, valueEnd);
+        if (count < out.length) {
+          out[count] = value;
+        }
+        count++;
+        i = valueEnd;
+      }
+      return count;
+    }
+
+    /* Return the record in [start, end) for use in error messages. */
+    String string(int start, int end) {
+      return in.string(start, end);
+    }
+
+    private boolean isDelimiter(int index) {
+      return in.get(index) == ',' || in.isWhitespace(index);
+    }
+  }
+
+  /*
+   * Parse a double from [start, end), which has been trimmed of whitespace.
+   * Digits are accumulated in a long; if the result is exactly representable
+   * and the decimal exponent is small, a single correctly rounded floating
+   * point operation yields the correctly rounded result. Everything else falls
+   * back to Double.parseDouble().
+   */
+  private static double parseDouble(Input in, int start, int end) {
+    int i = start;
+    char c = in.get(i);
+    boolean negative = c == '-';
+    if (negative || c == '+') {
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean anyDigits = false;
+
+    for (; i < end; i++) {
+      int d = in.get(i) - '0';
+      if (d < 0 || d > 9) {
+        break;
+      }
+      anyDigits = true;
+      if (mantissa == 0 && d == 0) {
+        continue;
+      }
+      if (++digits > MAX_DIGITS) {
+        return fallback(in, start, end);
+      }
+      mantissa = mantissa * 10 + d;
+    }
+
+    if (i < end && in.get(i) == '.') {
+      for (i++; i < end; i++) {
+        int d = in.get(i) - '0';
+        if (d < 0 || d > 9) {
+          break;
+        }
+        anyDigits = true;
+        exponent--;
+        if (mantissa == 0 && d == 0) {
+          continue;
+        }
+        if (++digits > MAX_DIGITS) {
+          return fallback(in, start, end);
+        }
+        mantissa = mantissa * 10 + d;
+      }
+    }
+
+    if (!anyDigits) {
+      return fallback(in, start, end);
+    }
+
+    if (i < end && (in.get(i) == 'e' || in.get(i) == 'E')) {
+      i++;
+      boolean negativeExp = false;
+      if (i < end && (in.get(i) == '-' || in.get(i) == '+')) {
+        negativeExp = in.get(i) == '-';
+        i++;
+      }
+      int expStart = i;
+      int exp = 0;
+      for (; i < end; i++) {
+        int d = in.get(i) - '0';
+        if (d < 0 || d > 9) {
+          break;
+        }
+        if (exp > 1000) {
+          return fallback(in, start, end);
+        }
+        exp = exp * 10 + d;
+      }
+      if (i == expStart) {
+        return fallback(in, start, end);
+      }
+      exponent += negativeExp ? -exp : exp;
+    }
+
+    // trailing characters (e.g. 'd' or 'f' suffixes) or malformed input
+    if (i != end) {
+      return fallback(in, start, end);
+    }
+
+    if (mantissa == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+    if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+      return fallback(in, start, end);
+    }
+    double value = (exponent < 0)
+        ? mantissa / POW10[-exponent]
+        : mantissa * POW10[exponent];
+    return negative ? -value : value;
+  }
+
+  private static double fallback(Input in, int start, int end) {
+    return Double.parseDouble(in.string(start, end));
+  }
+
+  /* Random access to characters or bytes. */
+  private abstract static class Input {
+
+    abstract char get(int index);
+
+    abstract String string(int start, int end);
+
+    /* Consistent with CharMatcher.whitespace(). */
+    boolean isWhitespace(int index) {
+      char c = get(index);
+      if (c < 128) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+      }
+      return CharMatcher.whitespace().matches(c);
+    }
+  }
+
+  private static final class CharInput extends Input {
+
+    final CharSequence s;
+
+    CharInput(CharSequence s) {
+      this.s = s;
+    }
+
+    @Override
+    char get(int index) {
+      return s.charAt(index);
+    }
+
+    @Override
+    String string(int start, int end) {
+      return s.subSequence(start, end).toString();
+    }
+  }
+
+  private static final class ByteInput extends Input {
+
+    final ByteBuffer bytes;
+
+    ByteInput(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    /* Non-ASCII bytes map to chars ≥ 128, which are never digits or delimiters. */
+    @Override
+    char get(int index) {
+      return (char) (bytes.get(index) & 0xff);
+    }
+
+    @Override
+    boolean isWhitespace(int index) {
+      char c = get(index);
+      return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    @Override
+    String string(int start, int end) {
+      byte[] b = new byte[end - start];
+      for (int i = 0; i < b.length; i++) {
+        b[i] = bytes.get(start + i);
+      }
+      return new String(b, StandardCharsets.UTF_8);
+    }
+  }
+
+}
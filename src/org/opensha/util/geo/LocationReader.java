@@ -0,0 +1,573 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.opensha.util.Earthquakes.checkDepth;
+import static org.opensha.util.geo.Coordinates.checkLatitude;
+import static org.opensha.util.geo.Coordinates.checkLongitude;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Streaming reader of delimited text files of locations (e.g. earthquake
+ * catalogs and site files) that may be too large to hold in memory as
+ * {@code Location}s. Each line of a file is a record of
+ * {@code longitude, latitude[, depth]} values separated by commas and/or
+ * whitespace, consistent with the coordinate order of
+ * {@link Location#toString()}. Depth is optional and defaults to 0 km; any
+ * additional values in a record are ignored. Blank lines and lines beginning
+ * with {@code '#'} are skipped. Files are assumed to be ASCII or UTF-8
+ * encoded.
+ *
+ * <p>Files are read with positional NIO channel reads into a reusable buffer
+ * and values are parsed in place. Records are handed out in reusable
+ * {@link Batch}es of primitive coordinate arrays that may be supplied
+ * directly to the array-based distance methods in {@link Locations}, and a
+ * {@link Summary} accumulates the {@link Bounds} and centroid of a file
+ * incrementally. Values are validated using
+ * {@link Coordinates#checkLatitude(double)},
+ * {@link Coordinates#checkLongitude(double)}, and
+ * {@link org.opensha.util.Earthquakes#checkDepth(double)}; invalid or
+ * unparseable values throw an exception that identifies the byte offset of the
+ * offending record.
+ *
+ * <p>Use {@link #open(Path, int)} to iterate a file sequentially, or
+ * {@link #parallel(Path, int, Consumer)} to parse contiguous, line-aligned
+ * chunks of a single file concurrently in the common {@link ForkJoinPool}.
+ *
+ * @author Peter Powers
+ */
+public final class LocationReader implements Closeable {
+
+  /*
+   * Developer notes: A Chunk reads the lines that start within a byte range of
+   * a file. A chunk that does not start at the beginning of a file skips the
+   * partial line that precedes its first full line, and the last line of a
+   * chunk may extend beyond the end of its range. A sequential reader is a
+   * single chunk spanning the entire file. FileChannel positional reads are
+   * safe for concurrent use.
+   */
+
+  /** The default number of records in a {@code Batch}. */
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+  private final FileChannel channel;
+  private final Chunk chunk;
+  private final Batch batch;
+
+  private LocationReader(FileChannel channel, int batchSize) throws IOException {
+    this.channel = channel;
+    this.chunk = new Chunk(channel, 0, channel.size());
+    this.batch = new Batch(batchSize);
+  }
+
+  /**
+   * Open a reader of the supplied file that returns batches of
+   * {@link #DEFAULT_BATCH_SIZE} records.
+   *
+   * @param file to read
+   * @throws IOException if an I/O error occurs opening the file
+   */
+  public static LocationReader open(Path file) throws IOException {
+    return open(file, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Open a reader of the supplied file that returns batches of up to
+   * {@code batchSize} records.
+   *
+   * @param file to read
+   * @param batchSize maximum number of records per batch
+   * @throws IllegalArgumentException if {@code batchSize < 1}
+   * @throws IOException if an I/O error occurs opening the file
+   */
+  public static LocationReader open(Path file, int batchSize) throws IOException {
+    checkBatchSize(batchSize);
+    FileChannel channel = FileChannel.open(file, READ);
+    try {
+      return new LocationReader(channel, batchSize);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Return the next batch of records, or {@code null} if the file has been
+   * read in its entirety. The same {@code Batch} instance is returned on every
+   * call and its contents are replaced.
+   *
+   * @throws IOException if an I/O error occurs
+   * @throws NumberFormatException if a value is unparseable
+   * @throws IllegalArgumentException if a value is out of range or a record
+   *         contains fewer than 2 values
+   */
+  public Batch next() throws IOException {
+    return chunk.fill(batch) ? batch : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Parse the supplied file in parallel, passing batches of up to
+   * {@code batchSize} records to {@code action}. The file is split into
+   * contiguous chunks of whole lines that are parsed concurrently, each into
+   * its own reusable {@code Batch}; {@code action} must therefore be safe for
+   * concurrent use. Batches are not supplied in file order. Method returns
+   * once the entire file has been read.
+   *
+   * @param file to read
+   * @param batchSize maximum number of records per batch
+   * @param action to receive each batch
+   * @throws IllegalArgumentException if {@code batchSize < 1}
+   * @throws IOException if an I/O error occurs
+   * @throws NumberFormatException if a value is unparseable
+   * @throws IllegalArgumentException if a value is out of range or a record
+   *         contains fewer than 2 values
+   */
+  public static void parallel(
+      Path file,
+      int batchSize,
+      Consumer<Batch> action) throws IOException {
+
+    parallel(file, batchSize, action, 0);
+  }
+
+  /* Parallel read using the supplied number of chunks, if positive. */
+  @VisibleForTesting
+  static void parallel(
+      Path file,
+      int batchSize,
+      Consumer<Batch> action,
+      int chunks) throws IOException {
+
+    checkBatchSize(batchSize);
+    checkNotNull(action);
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      long size = channel.size();
+      long count = chunks;
+      if (count < 1) {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        count = Math.min((size + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE, parallelism * 4L);
+      }
+      Chunks task = new Chunks(channel, size, (int) Math.max(count, 1), batchSize, action);
+      try {
+        if (task.count == 1) {
+          task.compute();
+        } else {
+          ForkJoinPool.commonPool().invoke(task);
+        }
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  private static void checkBatchSize(int batchSize) {
+    checkArgument(batchSize > 0, "Batch size [%s] must be > 0", batchSize);
+  }
+
+  /* Reads chunks [lo, hi) of a file. */
+  @SuppressWarnings("serial")
+  private static final class Chunks extends RecursiveAction {
+
+    final FileChannel channel;
+    final long size;
+    final int count;
+    final int batchSize;
+    final Consumer<Batch> action;
+    final int lo;
+    final int hi;
+
+    Chunks(FileChannel channel, long size, int count, int batchSize, Consumer<Batch> action) {
+      this(channel, size, count, batchSize, action, 0, count);
+    }
+
+    private Chunks(
+        FileChannel channel,
+        long size,
+        int count,
+        int batchSize,
+        Consumer<Batch> action,
+        int lo,
+        int hi) {
+
+      this.channel = channel;
+      this.size = size;
+      this.count = count;
+      this.batchSize = batchSize;
+      this.action = action;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo > 1) {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(
+            new Chunks(channel, size, count, batchSize, action, lo, mid),
+            new Chunks(channel, size, count, batchSize, action, mid, hi));
+        return;
+      }
+      try {
+        Chunk chunk = new Chunk(channel, start(lo), start(lo + 1));
+        Batch batch = new Batch(batchSize);
+        while (chunk.fill(batch)) {
+          action.accept(batch);
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    private long start(int index) {
+      return size / count * index + Math.min(index, size % count);
+    }
+  }
+
+  /* Reads the lines of a file that start in [start, end). */
+  private static final class Chunk {
+
+    final FileChannel channel;
+    final long end;
+    final double[] values = new double[3];
+
+    byte[] bytes = new byte[BUFFER_SIZE];
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    LocationParser.RecordParser parser = new LocationParser.RecordParser(buffer);
+
+    long offset; // file position of bytes[0]
+    int position; // start of the next line in bytes
+    int limit; // end of valid data in bytes
+    boolean eof;
+
+    Chunk(FileChannel channel, long start, long end) throws IOException {
+      this.channel = channel;
+      this.end = end;
+      if (start > 0) {
+        // skip through the end of the line that precedes start
+        offset = start - 1;
+        int lineEnd = lineEnd();
+        position = (lineEnd < 0) ? limit : lineEnd + 1;
+      }
+    }
+
+    /* Fill batch with the next records; returns false if there are none. */
+    boolean fill(Batch batch) throws IOException {
+      batch.clear();
+      while (batch.size < batch.capacity) {
+        if (offset + position >= end) {
+          break;
+        }
+        int lineEnd = lineEnd();
+        int lineStart = position;
+        if (lineEnd < 0) {
+          if (lineStart == limit) {
+            break;
+          }
+          lineEnd = limit;
+        }
+        position = Math.min(lineEnd + 1, limit);
+        parse(batch, lineStart, lineEnd);
+      }
+      batch.trim();
+      return batch.size > 0;
+    }
+
+    private void parse(Batch batch, int start, int end) {
+      int first = start;
+      // bytes are signed; mask so non-ASCII bytes are not whitespace
+      while (first < end && (bytes[first] & 0xff) <= ' ') {
+        first++;
+      }
+      if (first == end || bytes[first] == '#') {
+        return;
+      }
+      try {
+        int count = parser.parse(start, end, values);
+        checkArgument(count > 1, "Record has fewer than 2 values");
+        int i = batch.size;
+        batch.lons[i] = checkLongitude(values[0]);
+        batch.lats[i] = checkLatitude(values[1]);
+        batch.depths[i] = (count > 2) ? checkDepth(values[2]) : 0.0;
+        batch.size++;
+      } catch (NumberFormatException nfe) {
+        NumberFormatException e = new NumberFormatException(message(start, end, nfe));
+        e.initCause(nfe);
+        throw e;
+      } catch (IllegalArgumentException iae) {
+        throw new IllegalArgumentException(message(start, end, iae), iae);
+      }
+    }
+
+    private String message(int start, int end, Exception e) {
+      return "Invalid record [" + parser.string(start, end).trim() + "] at byte [" +
+          (offset + start) + "]: " + e.getMessage();
+    }
+
+    /*
+     * Return the index of the '\n' that ends the line starting at position,
+     * reading more of the file as necessary, or -1 if the file ends first. The
+     * buffer may be compacted, changing position.
+     */
+    private int lineEnd() throws IOException {
+      int scan = position;
+      while (true) {
+        for (; scan < limit; scan++) {
+          if (bytes[scan] == '\n') {
+            return scan;
+          }
+        }
+        int shift = position;
+        if (!read()) {
+          return -1;
+        }
+        scan -= shift;
+      }
+    }
+
+    /*
+     * Discard consumed bytes, growing the buffer if it holds only a partial
+     * line, and read more of the file. Returns false at end of file.
+     */
+    private boolean read() throws IOException {
+      if (eof) {
+        return false;
+      }
+      if (position > 0) {
+        System.arraycopy(bytes, position, bytes, 0, limit - position);
+        offset += position;
+        limit -= position;
+        position = 0;
+      }
+      if (limit == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        buffer = ByteBuffer.wrap(bytes);
+        parser = new LocationParser.RecordParser(buffer);
+      }
+      buffer.limit(bytes.length).position(limit);
+      int n = channel.read(buffer, offset + limit);
+      if (n < 0) {
+        eof = true;
+        return false;
+      }
+      limit += n;
+      return true;
+    }
+  }
+
+  /**
+   * A reusable batch of records. Coordinates are exposed as primitive arrays
+   * that are exactly {@link #size()} elements long and may be supplied to the
+   * array-based methods in {@link Locations}, for example
+   * {@link Locations#horzDistanceFast(Location, double[], double[], double[])}.
+   * Arrays and their contents are replaced as a reader advances and should not
+   * be retained; use {@link #toList()} to copy a batch.
+   */
+  public static final class Batch {
+
+    private final int capacity;
+    private double[] lats;
+    private double[] lons;
+    private double[] depths;
+    private int size;
+
+    private Batch(int capacity) {
+      this.capacity = capacity;
+      allocate(capacity);
+    }
+
+    private void allocate(int length) {
+      lats = new double[length];
+      lons = new double[length];
+      depths = new double[length];
+    }
+
+    private void clear() {
+      if (lats.length < capacity) {
+        allocate(capacity);
+      }
+      size = 0;
+    }
+
+    /* Shorten arrays to size; only occurs for the last batch of a chunk. */
+    private void trim() {
+      if (size < lats.length) {
+        lats = Arrays.copyOf(lats, size);
+        lons = Arrays.copyOf(lons, size);
+        depths = Arrays.copyOf(depths, size);
+      }
+    }
+
+    /**
+     * Return the number of records in this batch.
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Return the latitudes (in decimal degrees) of the records in this batch.
+     */
+    public double[] latitudes() {
+      return lats;
+    }
+
+    /**
+     * Return the longitudes (in decimal degrees) of the records in this batch.
+     */
+    public double[] longitudes() {
+      return lons;
+    }
+
+    /**
+     * Return the depths (in km) of the records in this batch.
+     */
+    public double[] depths() {
+      return depths;
+    }
+
+    /**
+     * Return a new {@code Location} for the record at {@code index}.
+     *
+     * @param index of the record
+     */
+    public Location location(int index) {
+      checkIndex(index);
+      return Location.create(lats[index], lons[index], depths[index]);
+    }
+
+    /**
+     * Return a packed copy of this batch. Such lists do not create a
+     * {@code Location} per record until accessed; see
+     * {@link LocationList#packed(Iterable)}.
+     */
+    public LocationList toList() {
+      checkArgument(size > 0, "Batch is empty");
+      return new PackedLocationList(lats.clone(), lons.clone(), depths.clone());
+    }
+
+    private void checkIndex(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index [" + index + "] size [" + size + "]");
+      }
+    }
+  }
+
+  /**
+   * Incremental accumulator of the number, {@link Bounds}, and centroid of the
+   * records in one or more batches. When fed every batch of a file in order,
+   * the bounds and centroid are identical to those computed by
+   * {@link Locations#bounds(Iterable)} and
+   * {@link Locations#centroid(Iterable)} for a list of all records. Summaries
+   * of the chunks of a file parsed in parallel may be {@link #combine(Summary)
+   * combined}; in this case the centroid may differ slightly due to
+   * floating-point summation order. Summaries are not safe for concurrent use.
+   */
+  public static final class Summary implements Consumer<Batch> {
+
+    private long count;
+    private double minLon = Double.POSITIVE_INFINITY;
+    private double maxLon = Double.NEGATIVE_INFINITY;
+    private double minLat = Double.POSITIVE_INFINITY;
+    private double maxLat = Double.NEGATIVE_INFINITY;
+    private double lonSum;
+    private double latSum;
+    private double depthSum;
+
+    /**
+     * Add the records of the supplied batch to this summary.
+     *
+     * @param batch to add
+     */
+    @Override
+    public void accept(Batch batch) {
+      double[] lats = batch.lats;
+      double[] lons = batch.lons;
+      double[] depths = batch.depths;
+      for (int i = 0; i < batch.size; i++) {
+        lonSum += lons[i];
+        latSum += lats[i];
+        depthSum += depths[i];
+        minLon = lons[i] < minLon ? lons[i] : minLon;
+        maxLon = lons[i] > maxLon ? lons[i] : maxLon;
+        minLat = lats[i] < minLat ? lats[i] : minLat;
+        maxLat = lats[i] > maxLat ? lats[i] : maxLat;
+      }
+      count += batch.size;
+    }
+
+    /**
+     * Add the records of the supplied summary to this summary.
+     *
+     * @param other summary to add
+     * @return this summary
+     */
+    public Summary combine(Summary other) {
+      lonSum += other.lonSum;
+      latSum += other.latSum;
+      depthSum += other.depthSum;
+      minLon = Math.min(minLon, other.minLon);
+      maxLon = Math.max(maxLon, other.maxLon);
+      minLat = Math.min(minLat, other.minLat);
+      maxLat = Math.max(maxLat, other.maxLat);
+      count += other.count;
+      return this;
+    }
+
+    /**
+     * Return the number of records summarized.
+     */
+    public long count() {
+      return count;
+    }
+
+    /**
+     * Return the bounds of the records summarized.
+     *
+     * @throws IllegalStateException if no records have been summarized
+     * @see Locations#bounds(Iterable)
+     */
+    public Bounds bounds() {
+      checkState();
+      return new Bounds(minLat, minLon, maxLat, maxLon);
+    }
+
+    /**
+     * Return the centroid of the records summarized.
+     *
+     * @throws IllegalStateException if no records have been summarized
+     * @see Locations#centroid(Iterable)
+     */
+    public Location centroid() {
+      checkState();
+      return Location.create(latSum / count, lonSum / count, depthSum / count);
+    }
+
+    private void checkState() {
+      if (count == 0) {
+        throw new IllegalStateException("Summary is empty");
+      }
+    }
+  }
+
+}
@@ -18,13 +18,19 @@ import static org.opensha.util.geo.Coordinates.LON_RANGE;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
-import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
 
+import org.opensha.util.Earthquakes;
 import org.opensha.util.Maths;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.math.DoubleMath;
+import com.google.common.primitives.Doubles;
 
 /**
  * Static utility methods to operate on geographic {@code Location} data.
@@ -82,7 +88,7 @@ public final class Locations {
     double sinDlonBy2 = sin((p2.lonRad - p1.lonRad) / 2.0);
     // half length of chord connecting points
     double c = (sinDlatBy2 * sinDlatBy2) +
-        (cos(p1.latRad) * cos(p2.latRad) * sinDlonBy2 * sinDlonBy2);
+        (p1.cosLat * p2.cosLat * sinDlonBy2 * sinDlonBy2);
     return 2.0 * atan2(sqrt(c), sqrt(1 - c));
   }
 
@@ -120,11 +126,16 @@ public final class Locations {
    * @see #horzDistance(Location, Location)
    */
   public static double horzDistanceFast(Location p1, Location p2) {
+    return horzDistanceFast(p1.latRad, p1.lonRad, p2.latRad, p2.lonRad);
+  }
+
+  /* Helper assumes radians; shared with primitive LocationList implementations. */
+  static double horzDistanceFast(double lat1, double lon1, double lat2, double lon2) {
     // modified from J. Zechar:
     // calculates distance between two points, using formula
     // as specifed by P. Shebalin via email 5.8.2004
-    double dLat = p1.latRad - p2.latRad;
-    double dLon = (p1.lonRad - p2.lonRad) * cos((p1.latRad + p2.latRad) * 0.5);
+    double dLat = lat1 - lat2;
+    double dLon = (lon1 - lon2) * cos((lat1 + lat2) * 0.5);
     return EARTH_RADIUS_MEAN * sqrt(dLat * dLat + dLon * dLon);
   }
 
@@ -189,6 +200,327 @@ public final class Locations {
     return sqrt(h * h + v * v);
   }
 
+  /*
+   * Batch distance and azimuth methods: Each method computes values between an
+   * origin and every location in a list (or in arrays of lat-lon-depth values)
+   * and writes them to a caller-supplied array to avoid allocation. Packed
+   * lists (see LocationList.packed()) are processed directly from their
+   * radian-valued coordinate arrays; supplied degree-valued arrays are scaled
+   * to radians in-loop. Kernel loops are kept free of calls other than Math
+   * intrinsics and branches so that the JIT can unroll them. Results are
+   * identical to those of the single-pair methods.
+   */
+
+  /**
+   * Compute the approximate horizontal distance from an {@code origin} to each
+   * {@code Location} in a list. Results are written to the first
+   * {@code locs.size()} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param locs to compute distances to
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if {@code out.length < locs.size()}
+   * @see #horzDistanceFast(Location, Location)
+   */
+  public static double[] horzDistanceFast(Location origin, LocationList locs, double[] out) {
+    int size = checkBatchSize(locs.size(), out);
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      return horzDistanceFast(origin, packed.latRads, packed.lonRads, 1.0, out, size);
+    }
+    for (int i = 0; i < size; i++) {
+      out[i] = horzDistanceFast(origin, locs.get(i));
+    }
+    return out;
+  }
+
+  /**
+   * Compute the approximate horizontal distance from an {@code origin} to each
+   * of the points defined by the supplied latitude and longitude arrays.
+   * Values are not validated. Results are written to the first
+   * {@code lats.length} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param lats latitudes in decimal degrees
+   * @param lons longitudes in decimal degrees
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if coordinate array sizes differ or
+   *         {@code out.length < lats.length}
+   * @see #horzDistanceFast(Location, Location)
+   */
+  public static double[] horzDistanceFast(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double[] out) {
+
+    int size = checkBatchSize(lats, lons, out);
+    return horzDistanceFast(origin, lats, lons, Maths.TO_RADIANS, out, size);
+  }
+
+  private static double[] horzDistanceFast(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double scale,
+      double[] out,
+      int size) {
+
+    double lat1 = origin.latRad;
+    double lon1 = origin.lonRad;
+    for (int i = 0; i < size; i++) {
+      double lat2 = lats[i] * scale;
+      double dLat = lat1 - lat2;
+      double dLon = (lon1 - lons[i] * scale) * cos((lat1 + lat2) * 0.5);
+      out[i] = EARTH_RADIUS_MEAN * sqrt(dLat * dLat + dLon * dLon);
+    }
+    return out;
+  }
+
+  /**
+   * Compute the great circle surface distance from an {@code origin} to each
+   * {@code Location} in a list. Results are written to the first
+   * {@code locs.size()} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param locs to compute distances to
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if {@code out.length < locs.size()}
+   * @see #horzDistance(Location, Location)
+   */
+  public static double[] horzDistance(Location origin, LocationList locs, double[] out) {
+    int size = checkBatchSize(locs.size(), out);
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      return horzDistance(origin, packed.latRads, packed.lonRads, 1.0, out, size);
+    }
+    for (int i = 0; i < size; i++) {
+      out[i] = horzDistance(origin, locs.get(i));
+    }
+    return out;
+  }
+
+  /**
+   * Compute the great circle surface distance from an {@code origin} to each
+   * of the points defined by the supplied latitude and longitude arrays.
+   * Values are not validated. Results are written to the first
+   * {@code lats.length} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param lats latitudes in decimal degrees
+   * @param lons longitudes in decimal degrees
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if coordinate array sizes differ or
+   *         {@code out.length < lats.length}
+   * @see #horzDistance(Location, Location)
+   */
+  public static double[] horzDistance(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double[] out) {
+
+    int size = checkBatchSize(lats, lons, out);
+    return horzDistance(origin, lats, lons, Maths.TO_RADIANS, out, size);
+  }
+
+  private static double[] horzDistance(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double scale,
+      double[] out,
+      int size) {
+
+    double lat1 = origin.latRad;
+    double lon1 = origin.lonRad;
+    double cosLat1 = origin.cosLat;
+    for (int i = 0; i < size; i++) {
+      double lat2 = lats[i] * scale;
+      double sinDlatBy2 = sin((lat2 - lat1) / 2.0);
+      double sinDlonBy2 = sin((lons[i] * scale - lon1) / 2.0);
+      double c = (sinDlatBy2 * sinDlatBy2) +
+          (cosLat1 * cos(lat2) * sinDlonBy2 * sinDlonBy2);
+      out[i] = EARTH_RADIUS_MEAN * (2.0 * atan2(sqrt(c), sqrt(1 - c)));
+    }
+    return out;
+  }
+
+  /**
+   * Compute the straight line distance, taking into account depth, from an
+   * {@code origin} to each {@code Location} in a list. Results are written to
+   * the first {@code locs.size()} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param locs to compute distances to
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if {@code out.length < locs.size()}
+   * @see #linearDistance(Location, Location)
+   */
+  public static double[] linearDistance(Location origin, LocationList locs, double[] out) {
+    int size = checkBatchSize(locs.size(), out);
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      return linearDistance(
+          origin, packed.latRads, packed.lonRads, packed.depths, 1.0, out, size);
+    }
+    for (int i = 0; i < size; i++) {
+      out[i] = linearDistance(origin, locs.get(i));
+    }
+    return out;
+  }
+
+  /**
+   * Compute the straight line distance, taking into account depth, from an
+   * {@code origin} to each of the points defined by the supplied latitude,
+   * longitude, and depth arrays. Values are not validated. Results are written
+   * to the first {@code lats.length} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param lats latitudes in decimal degrees
+   * @param lons longitudes in decimal degrees
+   * @param depths in km (positive down)
+   * @param out array to receive distances in km
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if coordinate array sizes differ or
+   *         {@code out.length < lats.length}
+   * @see #linearDistance(Location, Location)
+   */
+  public static double[] linearDistance(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double[] depths,
+      double[] out) {
+
+    int size = checkBatchSize(lats, lons, out);
+    checkArgument(depths.length == size, "Depth array size [%s] ≠ %s", depths.length, size);
+    return linearDistance(origin, lats, lons, depths, Maths.TO_RADIANS, out, size);
+  }
+
+  private static double[] linearDistance(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double[] depths,
+      double scale,
+      double[] out,
+      int size) {
+
+    double lat1 = origin.latRad;
+    double lon1 = origin.lonRad;
+    double cosLat1 = origin.cosLat;
+    double R1 = EARTH_RADIUS_MEAN - origin.depth;
+    for (int i = 0; i < size; i++) {
+      double lat2 = lats[i] * scale;
+      double sinDlatBy2 = sin((lat2 - lat1) / 2.0);
+      double sinDlonBy2 = sin((lons[i] * scale - lon1) / 2.0);
+      double c = (sinDlatBy2 * sinDlatBy2) +
+          (cosLat1 * cos(lat2) * sinDlonBy2 * sinDlonBy2);
+      double alpha = 2.0 * atan2(sqrt(c), sqrt(1 - c));
+      double R2 = EARTH_RADIUS_MEAN - depths[i];
+      double B = R1 * sin(alpha);
+      double C = R2 - R1 * cos(alpha);
+      out[i] = sqrt(B * B + C * C);
+    }
+    return out;
+  }
+
+  /**
+   * Compute the initial azimuth (in decimal degrees) from an {@code origin} to
+   * each {@code Location} in a list. Results are written to the first
+   * {@code locs.size()} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param locs to compute azimuths to
+   * @param out array to receive azimuths
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if {@code out.length < locs.size()}
+   * @see #azimuth(Location, Location)
+   */
+  public static double[] azimuth(Location origin, LocationList locs, double[] out) {
+    int size = checkBatchSize(locs.size(), out);
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      return azimuth(origin, packed.latRads, packed.lonRads, 1.0, out, size);
+    }
+    for (int i = 0; i < size; i++) {
+      out[i] = azimuth(origin, locs.get(i));
+    }
+    return out;
+  }
+
+  /**
+   * Compute the initial azimuth (in decimal degrees) from an {@code origin} to
+   * each of the points defined by the supplied latitude and longitude arrays.
+   * Values are not validated. Results are written to the first
+   * {@code lats.length} elements of {@code out}.
+   *
+   * @param origin {@code Location}
+   * @param lats latitudes in decimal degrees
+   * @param lons longitudes in decimal degrees
+   * @param out array to receive azimuths
+   * @return a reference to {@code out}
+   * @throws IllegalArgumentException if coordinate array sizes differ or
+   *         {@code out.length < lats.length}
+   * @see #azimuth(Location, Location)
+   */
+  public static double[] azimuth(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double[] out) {
+
+    int size = checkBatchSize(lats, lons, out);
+    return azimuth(origin, lats, lons, Maths.TO_RADIANS, out, size);
+  }
+
+  private static double[] azimuth(
+      Location origin,
+      double[] lats,
+      double[] lons,
+      double scale,
+      double[] out,
+      int size) {
+
+    double lat1 = origin.latRad;
+    double lon1 = origin.lonRad;
+    double cosLat1 = origin.cosLat;
+    if (cosLat1 < TOLERANCE) {
+      Arrays.fill(out, 0, size, ((lat1 > 0) ? PI : 0) * Maths.TO_DEGREES);
+      return out;
+    }
+    double sinLat1 = origin.sinLat;
+    for (int i = 0; i < size; i++) {
+      double lat2 = lats[i] * scale;
+      double dLon = lons[i] * scale - lon1;
+      double cosLat2 = cos(lat2);
+      double azRad = atan2(
+          sin(dLon) * cosLat2,
+          cosLat1 * sin(lat2) - sinLat1 * cosLat2 * cos(dLon));
+      out[i] = ((azRad + Maths.TWO_PI) % Maths.TWO_PI) * Maths.TO_DEGREES;
+    }
+    return out;
+  }
+
+  private static int checkBatchSize(int size, double[] out) {
+    checkArgument(out.length >= size, "Output array size [%s] < %s", out.length, size);
+    return size;
+  }
+
+  private static int checkBatchSize(double[] lats, double[] lons, double[] out) {
+    checkArgument(
+        lats.length == lons.length,
+        "Latitude array size [%s] ≠ longitude array size [%s]",
+        lats.length, lons.length);
+    return checkBatchSize(lats.length, out);
+  }
+
   /**
    * Computes the shortest distance between a point and a line (great-circle).
    * that extends infinitely in both directions. Both the line and point are
@@ -383,16 +715,51 @@ public final class Locations {
    * @see #distanceToLineFast(Location, Location, Location)
    */
   public static double distanceToSegmentFast(Location p1, Location p2, Location p3) {
+    return distanceToSegmentFast(
+        p1.latRad, p1.lonRad,
+        p2.latRad, p2.lonRad,
+        p3.latRad, p3.lonRad);
+  }
+
+  /* Helper assumes radians; shared with spatial indices. */
+  static double distanceToSegmentFast(
+      double lat1, double lon1,
+      double lat2, double lon2,
+      double lat3, double lon3) {
+
     // use average latitude to scale longitude
-    double lonScale = cos(0.5 * p3.latRad + 0.25 * p1.latRad + 0.25 * p2.latRad);
+    double lonScale = cos(0.5 * lat3 + 0.25 * lat1 + 0.25 * lat2);
     // first point on line transformed to origin; others scaled by lon
-    double x2 = (p2.lonRad - p1.lonRad) * lonScale;
-    double y2 = p2.latRad - p1.latRad;
-    double x3 = (p3.lonRad - p1.lonRad) * lonScale;
-    double y3 = p3.latRad - p1.latRad;
+    double x2 = (lon2 - lon1) * lonScale;
+    double y2 = lat2 - lat1;
+    double x3 = (lon3 - lon1) * lonScale;
+    double y3 = lat3 - lat1;
     return Line2D.ptSegDist(0, 0, x2, y2, x3, y3) * EARTH_RADIUS_MEAN;
   }
 
+  /*
+   * Lower bound on the distance computed by horzDistanceFast() and
+   * distanceToSegmentFast() from a point to any point or segment within a
+   * lat-lon box (all values in radians). Both methods scale longitude by the
+   * cosine of a mean latitude; over the box, that scale is smallest at one of
+   * its latitude extremes because cosine is concave over [-π/2, π/2]. The
+   * result is reduced by a small relative tolerance so that it may be safely
+   * used to prune spatial searches without rounding artifacts.
+   */
+  static double distanceLowerBound(
+      double lat, double lon,
+      double minLat, double maxLat,
+      double minLon, double maxLon) {
+
+    double dLat = max(0.0, max(minLat - lat, lat - maxLat));
+    double dLon = max(0.0, max(minLon - lon, lon - maxLon));
+    double lonScale = min(cos((lat + minLat) * 0.5), cos((lat + maxLat) * 0.5));
+    dLon *= lonScale;
+    return EARTH_RADIUS_MEAN * sqrt(dLat * dLat + dLon * dLon) * BOUND_TOLERANCE;
+  }
+
+  private static final double BOUND_TOLERANCE = 1.0 - 1e-12;
+
   /**
    * Computes the initial azimuth (bearing) when moving from one
    * {@code Location} to another. See <a
@@ -410,16 +777,32 @@ public final class Locations {
    * @see #azimuth(Location, Location)
    */
   public static double azimuthRad(Location p1, Location p2) {
+    return azimuthRad(
+        p1.latRad, p1.sinLat, p1.cosLat, p1.lonRad,
+        p2.sinLat, p2.cosLat, p2.lonRad);
+  }
+
+  /* Helper assumes radians; shared with primitive LocationList implementations. */
+  static double azimuthRad(double lat1, double lon1, double lat2, double lon2) {
+    return azimuthRad(
+        lat1, sin(lat1), cos(lat1), lon1,
+        sin(lat2), cos(lat2), lon2);
+  }
+
+  /* Helper assumes radians and precomputed latitude trig terms. */
+  private static double azimuthRad(
+      double lat1, double sinLat1, double cosLat1, double lon1,
+      double sinLat2, double cosLat2, double lon2) {
+
     // check the poles using a small number ~ machine precision
-    if (isPole(p1)) {
-      return ((p1.latRad > 0) ? PI : 0); // N : S pole
+    if (cosLat1 < TOLERANCE) {
+      return ((lat1 > 0) ? PI : 0); // N : S pole
     }
     // for starting points other than the poles:
-    double dLon = p2.lonRad - p1.lonRad;
-    double cosLat2 = cos(p2.latRad);
+    double dLon = lon2 - lon1;
     double azRad = atan2(
         sin(dLon) * cosLat2,
-        cos(p1.latRad) * sin(p2.latRad) - sin(p1.latRad) * cosLat2 * cos(dLon));
+        cosLat1 * sinLat2 - sinLat1 * cosLat2 * cos(dLon));
     return (azRad + Maths.TWO_PI) % Maths.TWO_PI;
   }
 
@@ -451,7 +834,7 @@ public final class Locations {
    * @return the end location
    */
   public static Location location(Location p, double azimuth, double distance) {
-    return location(p.lonRad, p.latRad, p.depth, azimuth, distance, 0);
+    return location(p.lonRad, p.sinLat, p.cosLat, p.depth, azimuth, distance, 0);
   }
 
   /**
@@ -465,20 +848,19 @@ public final class Locations {
    * @return the end location
    */
   public static Location location(Location p, LocationVector d) {
-    return location(p.lonRad, p.latRad, p.depth, d.azimuth, d.Δh, d.Δv);
+    return location(p.lonRad, p.sinLat, p.cosLat, p.depth, d.azimuth, d.Δh, d.Δv);
   }
 
   /* Helper assumes radians and kilometers. */
   private static Location location(
       double lon,
-      double lat,
+      double sinLat1,
+      double cosLat1,
       double depth,
       double az,
       double Δh,
       double Δv) {
 
-    double sinLat1 = sin(lat);
-    double cosLat1 = cos(lat);
     double ad = Δh / EARTH_RADIUS_MEAN; // angular distance
     double sinD = sin(ad);
     double cosD = cos(ad);
@@ -487,6 +869,80 @@ public final class Locations {
     return Location.create(lat2 * Maths.TO_DEGREES, lon2 * Maths.TO_DEGREES, depth + Δv);
   }
 
+  /*
+   * Batch form of location(Location, LocationVector) for the points in
+   * [from, to) of primitive source arrays (sine and cosine of latitude,
+   * longitude in radians, and depth). Results, in decimal degrees, are written
+   * to the destination arrays starting at offset and are identical to those of
+   * the single point method, including validation; the trig terms of the
+   * azimuth and angular distance are computed once.
+   */
+  static void locations(
+      double[] sinLats,
+      double[] cosLats,
+      double[] lonRads,
+      double[] depths,
+      int from,
+      int to,
+      double azimuth,
+      double Δh,
+      double Δv,
+      double[] lats2,
+      double[] lons2,
+      double[] depths2,
+      int offset) {
+
+    double ad = Δh / EARTH_RADIUS_MEAN;
+    double sinD = sin(ad);
+    double cosD = cos(ad);
+    double sinAz = sin(azimuth);
+    double cosAz = cos(azimuth);
+    for (int i = from, j = offset; i < to; i++, j++) {
+      double sinLat1 = sinLats[i];
+      double cosLat1 = cosLats[i];
+      double lat2 = asin(sinLat1 * cosD + cosLat1 * sinD * cosAz);
+      double lon2 = lonRads[i] + atan2(sinAz * sinD * cosLat1, cosD - sinLat1 * sin(lat2));
+      lats2[j] = Coordinates.checkLatitude(lat2 * Maths.TO_DEGREES);
+      lons2[j] = Coordinates.checkLongitude(lon2 * Maths.TO_DEGREES);
+      depths2[j] = Earthquakes.checkDepth(depths[i] + Δv);
+    }
+  }
+
+  /*
+   * Translate a list using the batch form of location(); packed lists yield
+   * packed results.
+   */
+  static LocationList translate(LocationList locs, LocationVector vector) {
+    int size = locs.size();
+    double[] sinLats = new double[size];
+    double[] cosLats = new double[size];
+    double[] lonRads = new double[size];
+    double[] depths = new double[size];
+    int i = 0;
+    for (Location loc : locs) {
+      sinLats[i] = loc.sinLat;
+      cosLats[i] = loc.cosLat;
+      lonRads[i] = loc.lonRad;
+      depths[i] = loc.depth;
+      i++;
+    }
+    double[] lats2 = new double[size];
+    double[] lons2 = new double[size];
+    double[] depths2 = new double[size];
+    locations(
+        sinLats, cosLats, lonRads, depths, 0, size,
+        vector.azimuth, vector.Δh, vector.Δv,
+        lats2, lons2, depths2, 0);
+    if (locs instanceof PackedLocationList) {
+      return new PackedLocationList(lats2, lons2, depths2);
+    }
+    LocationList.Builder translated = LocationList.builder();
+    for (i = 0; i < size; i++) {
+      translated.add(lats2[i], lons2[i], depths2[i]);
+    }
+    return translated.build();
+  }
+
   /**
    * Returns the angle (in decimal degrees) of a line between the first and
    * second location relative to horizontal. This method is intended for use at
@@ -535,7 +991,7 @@ public final class Locations {
    *         poles, {@code false} otherwise.
    */
   public static boolean isPole(Location p) {
-    return cos(p.latRad) < TOLERANCE;
+    return p.cosLat < TOLERANCE;
   }
 
   /**
@@ -577,6 +1033,21 @@ public final class Locations {
     return new Bounds(minLat, minLon, maxLat, maxLon);
   }
 
+  /* Helper for primitive LocationList implementations; assumes degrees. */
+  static Bounds bounds(double[] lats, double[] lons) {
+    double minLon = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < lats.length; i++) {
+      minLon = lons[i] < minLon ? lons[i] : minLon;
+      maxLon = lons[i] > maxLon ? lons[i] : maxLon;
+      minLat = lats[i] < minLat ? lats[i] : minLat;
+      maxLat = lats[i] > maxLat ? lats[i] : maxLat;
+    }
+    return new Bounds(minLat, minLon, maxLat, maxLon);
+  }
+
   /**
    * Computes a centroid for a group of {@code Location}s as the average of
    * latitude, longitude, and depth;
@@ -597,6 +1068,30 @@ public final class Locations {
     return Location.create(cLat / size, cLon / size, cDepth / size);
   }
 
+  /**
+   * Resample each of the supplied lists to the desired maximum spacing. Lists
+   * are resampled in parallel in the common {@code ForkJoinPool}, and the
+   * returned list preserves the iteration order of {@code traces}. Each
+   * resampled list is identical to that returned by
+   * {@link LocationList#resample(double)}.
+   *
+   * @param traces to resample
+   * @param spacing resample interval
+   * @throws IllegalArgumentException if {@code spacing} is not positive and
+   *         real
+   */
+  public static List<LocationList> resample(
+      Collection<? extends LocationList> traces,
+      double spacing) {
+
+    checkArgument(
+        Doubles.isFinite(spacing) && spacing > 0.0,
+        "Spacing must be positive, real number");
+    return traces.parallelStream()
+        .map(trace -> trace.resample(spacing))
+        .collect(ImmutableList.toImmutableList());
+  }
+
   /**
    * Return a closed, straight-line {@link Path2D} representation of the
    * supplied list, ignoring depth.
@@ -748,10 +1243,10 @@ public final class Locations {
   }
 
   private static class RectangleFilter implements Predicate<Location> {
-    private final Rectangle2D rect;
+    private final Rectangle rect;
 
     private RectangleFilter(Location origin, double distance) {
-      rect = rectangle(origin, distance);
+      rect = new Rectangle(origin, distance);
     }
 
     @Override
@@ -811,22 +1306,208 @@ public final class Locations {
   }
 
   /*
-   * Create a geographic (Mercator) {@link Rectangle2D} with coordinates in
-   * decimal degrees that is centered on {@code loc} and has a width and height
-   * of {@code 2 * distance}. The returned rectangle is intended for use in
-   * quick contains operations and is constrained to minimum and maximum
-   * longitudes and latitudes {@see GeoTools}.
-   */
-  private static Rectangle2D rectangle(Location loc, double distance) {
-    double Δlon = distance * Coordinates.degreesLonPerKm(loc);
-    double Δlat = distance * Coordinates.degreesLatPerKm(loc);
-    double minLon = max(loc.longitude - Δlon, LON_RANGE.lowerEndpoint());
-    double maxLon = min(loc.longitude + Δlon, LON_RANGE.upperEndpoint());
-    double minLat = max(loc.latitude - Δlat, LAT_RANGE.lowerEndpoint());
-    double maxLat = min(loc.latitude + Δlat, LAT_RANGE.upperEndpoint());
-    return new Rectangle2D.Double(minLon, minLat, maxLon - minLon, maxLat - minLat);
-  }
-  
+   * Bulk filters: Each method applies the same criterion as the corresponding
+   * Predicate filter above to every location in a list in a single primitive
+   * loop, setting the bits of the indices of matching locations. Packed lists
+   * are read directly from their coordinate arrays.
+   */
+
+  /**
+   * Return the indices of the locations in a list that are at or within a
+   * radial distance of an origin as a {@code BitSet}. Results are identical to
+   * those of {@link #distanceFilter(Location, double)} and may be combined
+   * with those of other bulk filters using {@link BitSet#and(BitSet)} and
+   * {@link BitSet#or(BitSet)}; use {@code BitSet.stream().toArray()} to
+   * obtain an {@code int[]} of indices.
+   *
+   * @param locs to filter
+   * @param origin of filter
+   * @param distance beyond which locations are excluded
+   * @see #distanceFilter(Location, double)
+   */
+  public static BitSet filterByDistance(LocationList locs, Location origin, double distance) {
+    return filter(locs, origin, distance, null);
+  }
+
+  /**
+   * Return the indices of the locations in a list that are inside a rectangle
+   * centered on an origin as a {@code BitSet}. Results are identical to those
+   * of {@link #rectangleFilter(Location, double)}.
+   *
+   * @param locs to filter
+   * @param origin (center) of filter
+   * @param distance half-width and half-height of rectangle outside of which
+   *        locations are excluded
+   * @see #rectangleFilter(Location, double)
+   * @see #filterByDistance(LocationList, Location, double)
+   */
+  public static BitSet filterByRectangle(LocationList locs, Location origin, double distance) {
+    return filter(locs, null, Double.NaN, new Rectangle(origin, distance));
+  }
+
+  /**
+   * Return the indices of the locations in a list that are inside a rectangle
+   * centered on an origin and also at or within a radial distance of that
+   * origin as a {@code BitSet}. Results are identical to those of
+   * {@link #distanceAndRectangleFilter(Location, double)}.
+   *
+   * @param locs to filter
+   * @param origin of filter
+   * @param distance beyond which locations are excluded
+   * @see #distanceAndRectangleFilter(Location, double)
+   * @see #filterByDistance(LocationList, Location, double)
+   */
+  public static BitSet filterByRectangleAndDistance(
+      LocationList locs,
+      Location origin,
+      double distance) {
+    return filter(locs, origin, distance, new Rectangle(origin, distance));
+  }
+
+  /* A null origin or rectangle disables the corresponding criterion. */
+  private static BitSet filter(
+      LocationList locs,
+      Location origin,
+      double distance,
+      Rectangle rect) {
+
+    if (locs instanceof GridLocationList && (origin == null || distance >= 0.0)) {
+      return filter((GridLocationList) locs, origin, distance, rect);
+    }
+    int size = locs.size();
+    BitSet bits = new BitSet(size);
+    double lat1 = (origin == null) ? 0.0 : origin.latRad;
+    double lon1 = (origin == null) ? 0.0 : origin.lonRad;
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      for (int i = 0; i < size; i++) {
+        if (rect != null && !rect.contains(packed.lons[i], packed.lats[i])) {
+          continue;
+        }
+        if (origin != null &&
+            horzDistanceFast(lat1, lon1, packed.latRads[i], packed.lonRads[i]) > distance) {
+          continue;
+        }
+        bits.set(i);
+      }
+      return bits;
+    }
+    int i = 0;
+    for (Location loc : locs) {
+      if ((rect == null || rect.contains(loc.longitude, loc.latitude)) &&
+          (origin == null || horzDistanceFast(lat1, lon1, loc.latRad, loc.lonRad) <= distance)) {
+        bits.set(i);
+      }
+      i++;
+    }
+    return bits;
+  }
+
+  /* Relative padding of distance filter bounds to absorb rounding error. */
+  private static final double GRID_FILTER_PAD = 1.0 + 1e-9;
+
+  /*
+   * Grids only visit the rows and columns that may pass a filter. Rectangle
+   * ranges are exact. Distance ranges derive from bounding each term of
+   * horzDistanceFast(), using the smallest cosine in the band of candidate
+   * rows, and are padded by one node. The predicates applied to each
+   * candidate node are identical to those of the list filter.
+   */
+  private static BitSet filter(
+      GridLocationList grid,
+      Location origin,
+      double distance,
+      Rectangle rect) {
+
+    BitSet bits = new BitSet(grid.size());
+    int minRow = 0;
+    int maxRow = grid.rows();
+    int minColumn = 0;
+    int maxColumn = grid.columns();
+    if (rect != null) {
+      minRow = grid.rowAtOrAbove(rect.minLat);
+      maxRow = grid.rowAtOrAbove(rect.maxLat);
+      minColumn = grid.columnAtOrAbove(rect.minLon);
+      maxColumn = grid.columnAtOrAbove(rect.maxLon);
+    }
+    double lat1 = 0.0;
+    double lon1 = 0.0;
+    if (origin != null) {
+      lat1 = origin.latRad;
+      lon1 = origin.lonRad;
+      double Δlat = distance / EARTH_RADIUS_MEAN * Maths.TO_DEGREES * GRID_FILTER_PAD;
+      minRow = max(minRow, grid.rowAtOrAbove(origin.latitude - Δlat) - 1);
+      maxRow = min(maxRow, grid.rowAtOrAbove(origin.latitude + Δlat) + 1);
+      if (minRow < maxRow) {
+        double maxLat = max(
+            abs(origin.latitude),
+            max(abs(grid.lat(minRow)), abs(grid.lat(maxRow - 1))));
+        double cosLat = cos(maxLat * Maths.TO_RADIANS);
+        double Δlon = distance / (EARTH_RADIUS_MEAN * cosLat) * Maths.TO_DEGREES *
+            GRID_FILTER_PAD;
+        // near the poles every column is a candidate
+        if (Δlon < 360.0) {
+          minColumn = max(minColumn, grid.columnAtOrAbove(origin.longitude - Δlon) - 1);
+          maxColumn = min(maxColumn, grid.columnAtOrAbove(origin.longitude + Δlon) + 1);
+        }
+      }
+    }
+    int columns = grid.columns();
+    for (int row = minRow; row < maxRow; row++) {
+      double lat = grid.lat(row);
+      double latRad = lat * Maths.TO_RADIANS;
+      for (int column = minColumn; column < maxColumn; column++) {
+        int index = grid.index(row * columns + column);
+        if (index < 0) {
+          continue;
+        }
+        double lon = grid.lon(column);
+        if (rect != null && !rect.contains(lon, lat)) {
+          continue;
+        }
+        if (origin != null &&
+            horzDistanceFast(lat1, lon1, latRad, lon * Maths.TO_RADIANS) > distance) {
+          continue;
+        }
+        bits.set(index);
+      }
+    }
+    return bits;
+  }
+
+  /*
+   * A geographic (Mercator) rectangle with coordinates in decimal degrees that
+   * is centered on a location and has a width and height of 2 * distance. The
+   * rectangle is constrained to minimum and maximum longitudes and latitudes
+   * (see Coordinates). Containment is half-open and identical to that of
+   * Rectangle2D.contains(x, y), which this class replaces, including the
+   * computation of the far edges as origin + width and origin + height.
+   */
+  private static final class Rectangle {
+
+    final double minLon;
+    final double minLat;
+    final double maxLon;
+    final double maxLat;
+
+    Rectangle(Location loc, double distance) {
+      double Δlon = distance * Coordinates.degreesLonPerKm(loc);
+      double Δlat = distance * Coordinates.degreesLatPerKm(loc);
+      double minLon = max(loc.longitude - Δlon, LON_RANGE.lowerEndpoint());
+      double maxLon = min(loc.longitude + Δlon, LON_RANGE.upperEndpoint());
+      double minLat = max(loc.latitude - Δlat, LAT_RANGE.lowerEndpoint());
+      double maxLat = min(loc.latitude + Δlat, LAT_RANGE.upperEndpoint());
+      this.minLon = minLon;
+      this.minLat = minLat;
+      this.maxLon = minLon + (maxLon - minLon);
+      this.maxLat = minLat + (maxLat - minLat);
+    }
+
+    boolean contains(double lon, double lat) {
+      return lon >= minLon && lat >= minLat && lon < maxLon && lat < maxLat;
+    }
+  }
+
   /* Helper method for LocationList implementations */
   static String toStringHelper(LocationList locations) {
     return NEWLINE + Joiner.on(NEWLINE).join(locations) + NEWLINE;
@@ -0,0 +1,229 @@
+package org.opensha.util.geo;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.opensha.util.Maths;
+
+/**
+ * {@code LocationList} implementation backed by the primitive columns of a
+ * memory-mapped binary file. Coordinates are read directly from the mapped
+ * file and are never copied to the heap; as with packed lists, a new
+ * {@code Location} is created on every call to {@link #get(int)}.
+ *
+ * <p>The file format consists of a 16-byte header followed by three columns
+ * of {@code size} doubles each: latitude, longitude, and depth. The header
+ * contains, in order, the int magic number {@code 0x4C4F4353} ("LOCS"), the
+ * int format version, the int size, and an int that is currently unused. All
+ * values are written in native byte order; the byte order of a file is
+ * detected from its magic number when read, so files may be shared across
+ * platforms.
+ *
+ * <p>Values are validated when written; values read from a file are only
+ * validated as {@code Location}s are created. Each column is mapped
+ * separately and so may not exceed 2GB, which limits lists to ~268 million
+ * locations.
+ *
+ * @author Peter Powers
+ */
+final class MappedLocationList extends AbstractList<Location>
+    implements LocationList, RandomAccess {
+
+  private static final int MAGIC = 0x4C4F4353;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int MAX_SIZE = Integer.MAX_VALUE / Double.BYTES;
+
+  /* Accessed directly by Resampler. */
+  final DoubleBuffer lats;
+  final DoubleBuffer lons;
+  final DoubleBuffer depths;
+  private final int size;
+
+  private MappedLocationList(DoubleBuffer lats, DoubleBuffer lons, DoubleBuffer depths) {
+    this.lats = lats;
+    this.lons = lons;
+    this.depths = depths;
+    this.size = lats.capacity();
+  }
+
+  /*
+   * Write locs to file, replacing any existing file. Data are written to a
+   * temporary file in the same directory that then replaces file, so locs may
+   * be a list mapped from file itself.
+   */
+  static void write(LocationList locs, Path file) throws IOException {
+    int size = locs.size();
+    if (size > MAX_SIZE) {
+      throw new IOException("List size [" + size + "] too large for file format");
+    }
+    Path dir = file.toAbsolutePath().getParent();
+    Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    try {
+      write(locs, size, tmp);
+      try {
+        Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static void write(LocationList locs, int size, Path file) throws IOException {
+    ByteOrder order = ByteOrder.nativeOrder();
+    try (FileChannel channel =
+        FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+      ByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_BYTES).order(order);
+      header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0);
+      DoubleBuffer lats = map(channel, MapMode.READ_WRITE, 0, size, order);
+      DoubleBuffer lons = map(channel, MapMode.READ_WRITE, 1, size, order);
+      DoubleBuffer depths = map(channel, MapMode.READ_WRITE, 2, size, order);
+      for (Location loc : locs) {
+        lats.put(loc.latitude);
+        lons.put(loc.longitude);
+        depths.put(loc.depth);
+      }
+    }
+  }
+
+  /* Map the list in file. */
+  static MappedLocationList map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("File [" + file + "] is not a location file");
+      }
+      ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_BYTES);
+      ByteOrder order = ByteOrder.BIG_ENDIAN;
+      if (header.getInt(0) != MAGIC) {
+        order = ByteOrder.LITTLE_ENDIAN;
+        header.order(order);
+        if (header.getInt(0) != MAGIC) {
+          throw new IOException("File [" + file + "] is not a location file");
+        }
+      }
+      int version = header.getInt(4);
+      if (version != VERSION) {
+        throw new IOException("Unsupported location file version [" + version + "]");
+      }
+      int size = header.getInt(8);
+      long expected = HEADER_BYTES + 3L * size * Double.BYTES;
+      if (size < 1 || size > MAX_SIZE || channel.size() != expected) {
+        throw new IOException(
+            "Location file size [" + channel.size() + "] inconsistent with header");
+      }
+      return new MappedLocationList(
+          map(channel, MapMode.READ_ONLY, 0, size, order),
+          map(channel, MapMode.READ_ONLY, 1, size, order),
+          map(channel, MapMode.READ_ONLY, 2, size, order));
+    }
+  }
+
+  private static DoubleBuffer map(
+      FileChannel channel,
+      MapMode mode,
+      int column,
+      int size,
+      ByteOrder order) throws IOException {
+
+    long bytes = (long) size * Double.BYTES;
+    return channel.map(mode, HEADER_BYTES + column * bytes, bytes)
+        .order(order)
+        .asDoubleBuffer();
+  }
+
+  @Override
+  public Location get(int index) {
+    return Location.create(lats.get(index), lons.get(index), depths.get(index));
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public double length() {
+    double sum = 0.0;
+    double latRad1 = lats.get(0) * Maths.TO_RADIANS;
+    double lonRad1 = lons.get(0) * Maths.TO_RADIANS;
+    for (int i = 1; i < size; i++) {
+      double latRad2 = lats.get(i) * Maths.TO_RADIANS;
+      double lonRad2 = lons.get(i) * Maths.TO_RADIANS;
+      sum += Locations.horzDistanceFast(latRad1, lonRad1, latRad2, lonRad2);
+      latRad1 = latRad2;
+      lonRad1 = lonRad2;
+    }
+    return sum;
+  }
+
+  @Override
+  public double depth() {
+    double depth = 0.0;
+    for (int i = 0; i < size; i++) {
+      depth += depths.get(i);
+    }
+    return depth / size;
+  }
+
+  @Override
+  public double[] distances() {
+    double[] distances = new double[size - 1];
+    double latRad1 = lats.get(0) * Maths.TO_RADIANS;
+    double lonRad1 = lons.get(0) * Maths.TO_RADIANS;
+    for (int i = 0; i < distances.length; i++) {
+      double latRad2 = lats.get(i + 1) * Maths.TO_RADIANS;
+      double lonRad2 = lons.get(i + 1) * Maths.TO_RADIANS;
+      distances[i] = Locations.horzDistanceFast(latRad1, lonRad1, latRad2, lonRad2);
+      latRad1 = latRad2;
+      lonRad1 = lonRad2;
+    }
+    return distances;
+  }
+
+  @Override
+  public Location centroid() {
+    double cLon = 0.0;
+    double cLat = 0.0;
+    double cDepth = 0.0;
+    for (int i = 0; i < size; i++) {
+      cLon += lons.get(i);
+      cLat += lats.get(i);
+      cDepth += depths.get(i);
+    }
+    return Location.create(cLat / size, cLon / size, cDepth / size);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return super.equals(obj) && (obj instanceof LocationList);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return Locations.toStringHelper(this);
+  }
+
+}
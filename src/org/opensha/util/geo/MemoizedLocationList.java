@@ -0,0 +1,174 @@
+package org.opensha.util.geo;
+
+import java.util.List;
+
+import com.google.common.collect.ForwardingList;
+
+/**
+ * {@code LocationList} wrapper that computes derived geometry ({@code length()},
+ * {@code depth()}, {@code distances()}, {@code bounds()} and
+ * {@code centroid()}) once, in a single pass over the wrapped list, on the
+ * first call to any of those methods. Subsequent calls return cached values.
+ * Because {@code partition()} and {@code resample()} are implemented in terms
+ * of {@code length()} and {@code distances()}, they also benefit.
+ *
+ * <p>Cached values are identical to those computed by the default
+ * {@code LocationList} methods. Instances are safe for use by concurrent
+ * readers; geometry is computed at most once.
+ *
+ * @author Peter Powers
+ */
+final class MemoizedLocationList extends ForwardingList<Location> implements LocationList {
+
+  private final LocationList locs;
+  private volatile Geometry geometry;
+  private volatile Bounds bounds;
+
+  private MemoizedLocationList(LocationList locs) {
+    this.locs = locs;
+  }
+
+  /* Wrap the supplied list, unless it is already memoized. */
+  static MemoizedLocationList wrap(LocationList locs) {
+    if (locs instanceof MemoizedLocationList) {
+      return (MemoizedLocationList) locs;
+    }
+    return new MemoizedLocationList(locs);
+  }
+
+  @Override
+  protected List<Location> delegate() {
+    return locs;
+  }
+
+  @Override
+  public double length() {
+    return geometry().length;
+  }
+
+  @Override
+  public double depth() {
+    return geometry().depth;
+  }
+
+  @Override
+  public double[] distances() {
+    return geometry().distances.clone();
+  }
+
+  @Override
+  public Bounds bounds() {
+    /*
+     * Bounds are created on demand, rather than with the rest of the geometry,
+     * so that failures in bounds creation are confined to calls to bounds().
+     * Racing threads may each create equal instances.
+     */
+    Bounds b = bounds;
+    if (b == null) {
+      bounds = b = geometry().bounds();
+    }
+    return b;
+  }
+
+  @Override
+  public Location centroid() {
+    return geometry().centroid;
+  }
+
+  @Override
+  public LocationList memoize() {
+    return this;
+  }
+
+  @Override
+  public LocationList reverse() {
+    return new MemoizedLocationList(locs.reverse());
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return super.equals(obj) && (obj instanceof LocationList);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return Locations.toStringHelper(this);
+  }
+
+  private Geometry geometry() {
+    Geometry g = geometry;
+    if (g == null) {
+      synchronized (this) {
+        g = geometry;
+        if (g == null) {
+          geometry = g = new Geometry(locs);
+        }
+      }
+    }
+    return g;
+  }
+
+  /*
+   * Immutable derived geometry. Operation order matches that of the default
+   * LocationList methods, Locations.bounds(), and Locations.centroid().
+   */
+  private static final class Geometry {
+
+    final double length;
+    final double depth;
+    final double[] distances;
+    final double minLon;
+    final double maxLon;
+    final double minLat;
+    final double maxLat;
+    final Location centroid;
+
+    Geometry(LocationList locs) {
+      int size = locs.size();
+      distances = new double[size - 1];
+      double length = 0.0;
+      double depthSum = 0.0;
+      double lonSum = 0.0;
+      double latSum = 0.0;
+      double minLon = Double.POSITIVE_INFINITY;
+      double maxLon = Double.NEGATIVE_INFINITY;
+      double minLat = Double.POSITIVE_INFINITY;
+      double maxLat = Double.NEGATIVE_INFINITY;
+      Location prev = null;
+      int i = 0;
+      for (Location loc : locs) {
+        if (prev != null) {
+          double distance = Locations.horzDistanceFast(prev, loc);
+          distances[i - 1] = distance;
+          length += distance;
+        }
+        depthSum += loc.depth;
+        lonSum += loc.longitude;
+        latSum += loc.latitude;
+        minLon = loc.longitude < minLon ? loc.longitude : minLon;
+        maxLon = loc.longitude > maxLon ? loc.longitude : maxLon;
+        minLat = loc.latitude < minLat ? loc.latitude : minLat;
+        maxLat = loc.latitude > maxLat ? loc.latitude : maxLat;
+        prev = loc;
+        i++;
+      }
+      this.length = length;
+      this.depth = depthSum / size;
+      this.minLon = minLon;
+      this.maxLon = maxLon;
+      this.minLat = minLat;
+      this.maxLat = maxLat;
+      this.centroid = Location.create(latSum / size, lonSum / size, depthSum / size);
+    }
+
+    Bounds bounds() {
+      return new Bounds(minLat, minLon, maxLat, maxLon);
+    }
+  }
+
+}
@@ -0,0 +1,213 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.opensha.util.Earthquakes.checkDepth;
+import static org.opensha.util.geo.Coordinates.checkLatitude;
+import static org.opensha.util.geo.Coordinates.checkLongitude;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.opensha.util.Maths;
+
+
+/**
+ * {@code LocationList} implementation backed by parallel primitive arrays of
+ * latitude, longitude, and depth along with their radian equivalents.
+ * {@code Location}s are only created on calls to {@link #get(int)} and
+ * iteration, so repeat calls for the same index return equal, but not
+ * identical, instances.
+ *
+ * <p>Derived geometry ({@code length()}, {@code distances()},
+ * {@code bounds()}, {@code centroid()}, {@code resample()} and
+ * {@code partition()}) is computed directly from the coordinate arrays and
+ * yields results identical to those of the default {@code Location}-based
+ * implementations.
+ *
+ * @author Peter Powers
+ */
+final class PackedLocationList extends AbstractList<Location>
+    implements LocationList, RandomAccess {
+
+  final double[] lats;
+  final double[] lons;
+  final double[] depths;
+  final double[] latRads;
+  final double[] lonRads;
+
+  /*
+   * Supplied arrays are assumed to be validated, of equal length, and not
+   * referenced elsewhere.
+   */
+  PackedLocationList(double[] lats, double[] lons, double[] depths) {
+    checkArgument(lats.length > 0, "Location lists may not by empty");
+    this.lats = lats;
+    this.lons = lons;
+    this.depths = depths;
+    this.latRads = new double[lats.length];
+    this.lonRads = new double[lats.length];
+    for (int i = 0; i < lats.length; i++) {
+      latRads[i] = lats[i] * Maths.TO_RADIANS;
+      lonRads[i] = lons[i] * Maths.TO_RADIANS;
+    }
+  }
+
+  /* Copy the supplied locations into a new list. */
+  static PackedLocationList copyOf(Iterable<Location> locations) {
+    if (locations instanceof PackedLocationList) {
+      return (PackedLocationList) locations;
+    }
+    Builder builder = new Builder();
+    for (Location loc : locations) {
+      builder.add(loc);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public Location get(int index) {
+    return Location.create(lats[index], lons[index], depths[index]);
+  }
+
+  @Override
+  public int size() {
+    return lats.length;
+  }
+
+  @Override
+  public double length() {
+    double sum = 0.0;
+    for (int i = 1; i < latRads.length; i++) {
+      sum += Locations.horzDistanceFast(
+          latRads[i - 1], lonRads[i - 1],
+          latRads[i], lonRads[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public double depth() {
+    double depth = 0.0;
+    for (double d : depths) {
+      depth += d;
+    }
+    return depth / depths.length;
+  }
+
+  @Override
+  public double[] distances() {
+    double[] distances = new double[latRads.length - 1];
+    for (int i = 0; i < distances.length; i++) {
+      distances[i] = Locations.horzDistanceFast(
+          latRads[i], lonRads[i],
+          latRads[i + 1], lonRads[i + 1]);
+    }
+    return distances;
+  }
+
+  @Override
+  public Bounds bounds() {
+    return Locations.bounds(lats, lons);
+  }
+
+  @Override
+  public Location centroid() {
+    double cLon = 0.0;
+    double cLat = 0.0;
+    double cDepth = 0.0;
+    for (int i = 0; i < lats.length; i++) {
+      cLon += lons[i];
+      cLat += lats[i];
+      cDepth += depths[i];
+    }
+    int size = lats.length;
+    return Location.create(cLat / size, cLon / size, cDepth / size);
+  }
+
+  @Override
+  public LocationList reverse() {
+    int size = lats.length;
+    double[] rLats = new double[size];
+    double[] rLons = new double[size];
+    double[] rDepths = new double[size];
+    for (int i = 0, j = size - 1; i < size; i++, j--) {
+      rLats[i] = lats[j];
+      rLons[i] = lons[j];
+      rDepths[i] = depths[j];
+    }
+    return new PackedLocationList(rLats, rLons, rDepths);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return super.equals(obj) && (obj instanceof LocationList);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return Locations.toStringHelper(this);
+  }
+
+  /*
+   * Growable column storage used to assemble packed lists without creating
+   * intermediate Locations. Values are validated as they are added.
+   */
+  static final class Builder {
+
+    double[] lats;
+    double[] lons;
+    double[] depths;
+    int size;
+
+    Builder() {
+      this(16);
+    }
+
+    Builder(int capacity) {
+      capacity = Math.max(capacity, 1);
+      lats = new double[capacity];
+      lons = new double[capacity];
+      depths = new double[capacity];
+    }
+
+    Builder add(Location loc) {
+      return addUnchecked(loc.latitude, loc.longitude, loc.depth);
+    }
+
+    Builder add(double lat, double lon, double depth) {
+      return addUnchecked(
+          checkLatitude(lat),
+          checkLongitude(lon),
+          checkDepth(depth));
+    }
+
+    private Builder addUnchecked(double lat, double lon, double depth) {
+      if (size == lats.length) {
+        int capacity = size + (size >> 1) + 1;
+        lats = Arrays.copyOf(lats, capacity);
+        lons = Arrays.copyOf(lons, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+      }
+      lats[size] = lat;
+      lons[size] = lon;
+      depths[size] = depth;
+      size++;
+      return this;
+    }
+
+    PackedLocationList build() {
+      checkArgument(size > 0, "Location lists may not by empty");
+      return new PackedLocationList(
+          Arrays.copyOf(lats, size),
+          Arrays.copyOf(lons, size),
+          Arrays.copyOf(depths, size));
+    }
+  }
+
+}
@@ -0,0 +1,342 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable index of a polygon, defined by the {@code Location}s of a
+ * border, that supports fast point-in-polygon tests, individually or in bulk.
+ * The polygon is closed, straight-line, and ignores depth, and containment is
+ * identical to that of {@code Locations.toPath(border).contains(lon, lat)},
+ * which uses the even-odd rule; points on the boundary are inside only where
+ * the interior lies immediately east (or north, on east-west edges) of them.
+ *
+ * <p>Internally, polygon edges are sorted into horizontal slabs of equal
+ * latitude extent so that each test only considers the few edges that span
+ * the latitude of a point, rather than every edge of the border. Points
+ * outside the bounds of the border are rejected without consulting any edges.
+ * Indices may be shared across threads.
+ *
+ * <p>As with {@link Locations#toPath(LocationList)}, this index does not
+ * support polygons that span ±180°.
+ *
+ * @author Peter Powers
+ * @see Locations#toPath(LocationList)
+ */
+public final class PolygonIndex {
+
+  /*
+   * Developer notes: Path2D.contains(x, y) counts crossings of a ray cast from
+   * a point in the +x direction; see sun.awt.geom.Curve.pointCrossingsForLine.
+   * The even-odd test here applies the same arithmetic to the same edges, in
+   * their original direction, so results are bit-for-bit identical. Edges of
+   * constant latitude never cross a ray and are dropped. Each remaining edge
+   * spans the half-open latitude range [min, max) and is assigned to every
+   * slab that range overlaps; slab assignment is monotonic in latitude, so the
+   * slab of a point always lists every edge that spans it.
+   *
+   * There is nominally one slab per edge, but borders with many tall edges
+   * (e.g. combs or zig-zags) would then store O(n²) slab entries. The number
+   * of slabs is therefore limited such that the summed latitude extent of all
+   * edges spans at most REPLICATION slabs per edge; as each edge spans at most
+   * two slabs more than its extent, there are at most (REPLICATION + 2) * n
+   * entries.
+   */
+
+  private static final int REPLICATION = 4;
+  private static final int MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+  private final LocationList border;
+
+  /* Bounds of the border, in decimal degrees. */
+  final double minLon;
+  final double minLat;
+  final double maxLon;
+  final double maxLat;
+
+  /* Edges with original direction. */
+  private final double[] x0;
+  private final double[] y0;
+  private final double[] x1;
+  private final double[] y1;
+
+  /* Edges in slab s are slabEdges[slabStart[s]] to slabEdges[slabStart[s + 1] - 1]. */
+  private final int slabCount;
+  private final double slabScale;
+  private final int[] slabStart;
+  private final int[] slabEdges;
+
+  private PolygonIndex(LocationList border) {
+    this.border = border;
+    int size = border.size();
+    double[] lons = new double[size];
+    double[] lats = new double[size];
+    double lonMin = Double.POSITIVE_INFINITY;
+    double latMin = Double.POSITIVE_INFINITY;
+    double lonMax = Double.NEGATIVE_INFINITY;
+    double latMax = Double.NEGATIVE_INFINITY;
+    int i = 0;
+    for (Location loc : border) {
+      lons[i] = loc.longitude;
+      lats[i] = loc.latitude;
+      lonMin = min(lonMin, loc.longitude);
+      latMin = min(latMin, loc.latitude);
+      lonMax = max(lonMax, loc.longitude);
+      latMax = max(latMax, loc.latitude);
+      i++;
+    }
+    minLon = lonMin;
+    minLat = latMin;
+    maxLon = lonMax;
+    maxLat = latMax;
+
+    // edges, including closing edge, that are not of constant latitude
+    int edgeCount = 0;
+    for (i = 0; i < size; i++) {
+      if (lats[i] != lats[(i + 1) % size]) {
+        edgeCount++;
+      }
+    }
+    x0 = new double[edgeCount];
+    y0 = new double[edgeCount];
+    x1 = new double[edgeCount];
+    y1 = new double[edgeCount];
+    int edge = 0;
+    for (i = 0; i < size; i++) {
+      int j = (i + 1) % size;
+      if (lats[i] != lats[j]) {
+        x0[edge] = lons[i];
+        y0[edge] = lats[i];
+        x1[edge] = lons[j];
+        y1[edge] = lats[j];
+        edge++;
+      }
+    }
+
+    // size slabs to bound replication of tall edges
+    double extent = 0.0;
+    for (edge = 0; edge < edgeCount; edge++) {
+      extent += Math.abs(y1[edge] - y0[edge]);
+    }
+    double height = maxLat - minLat;
+    double maxSlabs = (edgeCount > 0)
+        ? floor(REPLICATION * (double) edgeCount * height / extent)
+        : 1.0;
+    slabCount = (int) max(min(edgeCount, maxSlabs), 1);
+    slabScale = (maxLat > minLat) ? slabCount / height : 0.0;
+
+    // bucket edges by slab using a counting sort
+    slabStart = new int[slabCount + 1];
+    for (edge = 0; edge < edgeCount; edge++) {
+      int last = slab(max(y0[edge], y1[edge]));
+      for (int s = slab(min(y0[edge], y1[edge])); s <= last; s++) {
+        slabStart[s + 1]++;
+      }
+    }
+    long entries = 0;
+    for (int s = 0; s < slabCount; s++) {
+      entries += slabStart[s + 1];
+      checkArgument(entries <= MAX_ENTRIES, "Border too large [%s edges]", edgeCount);
+      slabStart[s + 1] = (int) entries;
+    }
+    slabEdges = new int[slabStart[slabCount]];
+    int[] next = new int[slabCount];
+    System.arraycopy(slabStart, 0, next, 0, slabCount);
+    for (edge = 0; edge < edgeCount; edge++) {
+      int last = slab(max(y0[edge], y1[edge]));
+      for (int s = slab(min(y0[edge], y1[edge])); s <= last; s++) {
+        slabEdges[next[s]++] = edge;
+      }
+    }
+  }
+
+  /**
+   * Create a new index of the polygon with the supplied border. The border is
+   * implicitly closed; there is no need to repeat the first location.
+   *
+   * @param border of the polygon
+   * @throws IllegalArgumentException if {@code border} is empty or too large
+   *         to index
+   */
+  public static PolygonIndex create(LocationList border) {
+    checkArgument(!border.isEmpty(), "Border may not be empty");
+    return new PolygonIndex(border);
+  }
+
+  /**
+   * Return the border of this polygon.
+   */
+  public LocationList border() {
+    return border;
+  }
+
+  /**
+   * Return whether the supplied {@code Location} is inside this polygon.
+   *
+   * @param loc {@code Location} to test
+   */
+  public boolean contains(Location loc) {
+    return contains(loc.latitude, loc.longitude);
+  }
+
+  /**
+   * Return the indices of the locations in a list that are inside this
+   * polygon as a {@code BitSet}.
+   *
+   * @param locs to test
+   */
+  public BitSet contains(LocationList locs) {
+    if (locs instanceof GridLocationList) {
+      return contains((GridLocationList) locs);
+    }
+    if (locs instanceof PackedLocationList) {
+      PackedLocationList packed = (PackedLocationList) locs;
+      return contains(packed.lats, packed.lons);
+    }
+    BitSet bits = new BitSet(locs.size());
+    int i = 0;
+    for (Location loc : locs) {
+      if (contains(loc.latitude, loc.longitude)) {
+        bits.set(i);
+      }
+      i++;
+    }
+    return bits;
+  }
+
+  /**
+   * Return the indices of the points, supplied as arrays of latitudes and
+   * longitudes in decimal degrees, that are inside this polygon as a
+   * {@code BitSet}.
+   *
+   * @param lats point latitudes
+   * @param lons point longitudes
+   * @throws IllegalArgumentException if {@code lats} and {@code lons} differ
+   *         in length
+   */
+  public BitSet contains(double[] lats, double[] lons) {
+    checkArgument(lats.length == lons.length, "Array lengths differ");
+    BitSet bits = new BitSet(lats.length);
+    for (int i = 0; i < lats.length; i++) {
+      if (contains(lats[i], lons[i])) {
+        bits.set(i);
+      }
+    }
+    return bits;
+  }
+
+  /* Map node containment to list indices. */
+  private BitSet contains(GridLocationList grid) {
+    BitSet nodes = containsNodes(grid);
+    if (!grid.isMasked()) {
+      return nodes;
+    }
+    BitSet bits = new BitSet(grid.size());
+    for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+      int index = grid.index(node);
+      if (index >= 0) {
+        bits.set(index);
+      }
+    }
+    return bits;
+  }
+
+  /*
+   * Return the nodes of a grid, ignoring any mask, that are inside this
+   * polygon, using scanline rasterization: each row is tested against only the
+   * edges that span its latitude. A ray from (px, py) crosses an edge if and
+   * only if px is less than the intercept computed by crosses(), clamped to the
+   * longitude range of the edge, so the nodes of a row that are inside are
+   * those in alternate intervals between the sorted, clamped intercepts. Grid
+   * indices are row * columns + column.
+   */
+  BitSet containsNodes(GridLocationList grid) {
+    int columns = grid.columns();
+    BitSet nodes = new BitSet(grid.rows() * columns);
+    double[] intercepts = new double[x0.length];
+    for (int row = 0; row < grid.rows(); row++) {
+      double py = grid.lat(row);
+      if (!(py >= minLat && py < maxLat)) {
+        continue;
+      }
+      int s = slab(py);
+      int count = 0;
+      for (int k = slabStart[s]; k < slabStart[s + 1]; k++) {
+        int edge = slabEdges[k];
+        double ey0 = y0[edge];
+        double ey1 = y1[edge];
+        if ((py < ey0 && py < ey1) || (py >= ey0 && py >= ey1)) {
+          continue;
+        }
+        double ex0 = x0[edge];
+        double ex1 = x1[edge];
+        double xIntercept = ex0 + (py - ey0) * (ex1 - ex0) / (ey1 - ey0);
+        intercepts[count++] = min(max(xIntercept, min(ex0, ex1)), max(ex0, ex1));
+      }
+      Arrays.sort(intercepts, 0, count);
+      // a node in interval k (preceded by k intercepts) crosses count - k edges
+      int rowStart = row * columns;
+      for (int k = 1 - (count & 1); k <= count; k += 2) {
+        int start = (k == 0) ? 0 : grid.columnAtOrAbove(intercepts[k - 1]);
+        int end = (k == count) ? columns : grid.columnAtOrAbove(intercepts[k]);
+        if (start < end) {
+          nodes.set(rowStart + start, rowStart + end);
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private boolean contains(double lat, double lon) {
+    // also rejects NaN
+    if (!(lat >= minLat && lat < maxLat && lon >= minLon && lon < maxLon)) {
+      return false;
+    }
+    int s = slab(lat);
+    boolean inside = false;
+    for (int k = slabStart[s]; k < slabStart[s + 1]; k++) {
+      int edge = slabEdges[k];
+      if (crosses(lon, lat, x0[edge], y0[edge], x1[edge], y1[edge])) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  /* Slab of a latitude within the bounds. */
+  private int slab(double lat) {
+    double s = floor((lat - minLat) * slabScale);
+    return (int) min(s, slabCount - 1);
+  }
+
+  /*
+   * Return whether a ray cast from (px, py) in the +x direction crosses an
+   * edge; mirrors Curve.pointCrossingsForLine.
+   */
+  private static boolean crosses(
+      double px, double py,
+      double x0, double y0,
+      double x1, double y1) {
+
+    if (py < y0 && py < y1) {
+      return false;
+    }
+    if (py >= y0 && py >= y1) {
+      return false;
+    }
+    if (px >= x0 && px >= x1) {
+      return false;
+    }
+    if (px < x0 && px < x1) {
+      return true;
+    }
+    double xIntercept = x0 + (py - y0) * (x1 - x0) / (y1 - y0);
+    return px < xIntercept;
+  }
+
+}
@@ -0,0 +1,538 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.asin;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
+
+import java.util.List;
+
+import org.opensha.util.Maths;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Doubles;
+
+/**
+ * Streaming implementations of {@link LocationList#resample(double)} and
+ * {@link LocationList#partition(double)}. Vertices are emitted to a target as
+ * they are computed rather than being assembled in intermediate lists, and
+ * output lists are sized up front from the known number of resampled points
+ * or partitions. The sines and cosines of the start latitude and azimuth of
+ * each segment are computed once and shared by all resampled points along it,
+ * and packed lists are read directly from their coordinate arrays.
+ *
+ * <p>Results are identical to those of the original {@code Location}-based
+ * algorithms. When assembling lists of {@code Location}s, original vertices
+ * are reused rather than copied.
+ *
+ * @author Peter Powers
+ */
+final class Resampler {
+
+  private Resampler() {}
+
+  /* Resampled list of the same type as locs, or locs if it is too short. */
+  static LocationList resample(LocationList locs, double spacing) {
+    Source src = Source.of(locs);
+    ListTarget target = ListTarget.create(src);
+    return resample(src, spacing, target) ? target.lists.build().get(0) : locs;
+  }
+
+  /* Stream resampled vertices, or the vertices of locs if it is too short. */
+  static void resample(LocationList locs, double spacing, LocationList.Sink sink) {
+    Source src = Source.of(locs);
+    SinkTarget target = new SinkTarget(src, sink);
+    if (!resample(src, spacing, target)) {
+      target.emitAll();
+    }
+  }
+
+  /* Partitions of the same type as locs, or [locs] if it is too short. */
+  static List<LocationList> partition(LocationList locs, double length) {
+    Source src = Source.of(locs);
+    ListTarget target = ListTarget.create(src);
+    return partition(src, length, target) ? target.lists.build() : ImmutableList.of(locs);
+  }
+
+  /* Stream partition vertices, or the vertices of locs if it is too short. */
+  static void partition(LocationList locs, double length, LocationList.Sink sink) {
+    Source src = Source.of(locs);
+    SinkTarget target = new SinkTarget(src, sink);
+    if (!partition(src, length, target)) {
+      target.emitAll();
+    }
+  }
+
+  /*
+   * Emit the vertices of a list resampled to the supplied spacing to target,
+   * followed by a call to end(). If the list is shorter than spacing, nothing
+   * is emitted and method returns false.
+   */
+  private static boolean resample(Source src, double spacing, Target target) {
+    checkArgument(
+        Doubles.isFinite(spacing) && spacing > 0.0,
+        "Spacing must be positive, real number");
+
+    double length = src.locs.length();
+    if (length <= spacing) {
+      return false;
+    }
+    double count = Math.ceil(length / spacing);
+    spacing = length / count;
+    // rounding may yield one extra point on the final segment
+    target.expect(1, (int) count + 2);
+    Lookahead out = new Lookahead(target);
+    out.vertex(0);
+    double walker = spacing;
+    for (int i = 1; i < src.size; i++) {
+      double lat1 = src.latRad(i - 1);
+      double lon1 = src.lonRad(i - 1);
+      double lat2 = src.latRad(i);
+      double lon2 = src.lonRad(i);
+      double distance = Locations.horzDistanceFast(lat1, lon1, lat2, lon2);
+      if (walker <= distance) {
+        double az = Locations.azimuthRad(lat1, lon1, lat2, lon2);
+        double sinLat = sin(lat1);
+        double cosLat = cos(lat1);
+        double sinAz = sin(az);
+        double cosAz = cos(az);
+        double depth = src.depth(i - 1);
+        while (walker <= distance) {
+          out.destination(lat1, lon1, depth, sinLat, cosLat, sinAz, cosAz, walker);
+          walker += spacing;
+        }
+      }
+      walker -= distance;
+    }
+    // replace last point to be exact
+    out.pending = false;
+    target.vertex(src.size - 1);
+    target.end();
+    return true;
+  }
+
+  /*
+   * Emit the vertices of each partition of a list to target, with each
+   * partition followed by a call to end(). If the list is shorter than length,
+   * nothing is emitted and method returns false.
+   */
+  private static boolean partition(Source src, double length, Target target) {
+    checkArgument(
+        Doubles.isFinite(length) && length > 0.0,
+        "Length must be positive, real number");
+
+    double totalLength = src.locs.length();
+    if (totalLength <= length) {
+      return false;
+    }
+    double count = Math.rint(totalLength / length);
+    double partitionLength = totalLength / count;
+    target.expect((int) count, (int) (src.size / count) + 3);
+    double[] distances = src.locs.distances();
+    Lookahead out = new Lookahead(target);
+    double residual = 0.0;
+    for (int i = 0; i < distances.length; i++) {
+      double lat = src.lat(i);
+      double lon = src.lon(i);
+      double depth = src.depth(i);
+      target.vertex(i);
+      double distance = distances[i] + residual;
+      while (partitionLength < distance) {
+        /*
+         * Catch the edge case where, on the last segment of a trace that needs
+         * to be partitioned we just undershoot the last point. In the absence
+         * of this we can end up with a final section of length ≈ 0.
+         */
+        if (i == distances.length - 1 && distance < 1.5 * partitionLength) {
+          break;
+        }
+        /*
+         * The azimuth is recomputed from the start of each partition, rather
+         * than shared across the segment, to preserve original results.
+         */
+        double latRad = lat * Maths.TO_RADIANS;
+        double lonRad = lon * Maths.TO_RADIANS;
+        double az = Locations.azimuthRad(latRad, lonRad, src.latRad(i + 1), src.lonRad(i + 1));
+        out.destination(
+            latRad, lonRad, depth,
+            sin(latRad), cos(latRad),
+            sin(az), cos(az),
+            partitionLength - residual);
+        lat = out.lat;
+        lon = out.lon;
+        out.flush();
+        target.end();
+        target.point(lat, lon, depth);
+        distance -= partitionLength;
+        residual = 0.0;
+      }
+      residual = distance;
+    }
+    target.vertex(src.size - 1);
+    target.end();
+    return true;
+  }
+
+  /* Receiver of original vertices, by index, and new points. */
+  private interface Target {
+
+    /* Sizing hint; the expected number of lists and points per list. */
+    default void expect(int lists, int points) {}
+
+    void vertex(int index);
+
+    void point(double lat, double lon, double depth);
+
+    void end();
+  }
+
+  /*
+   * Holds the most recently added vertex or point until the next is added so
+   * that the final resampled point may be replaced by the last vertex of a
+   * list.
+   */
+  private static final class Lookahead {
+
+    final Target target;
+    boolean pending;
+    int index;
+    double lat;
+    double lon;
+    double depth;
+
+    Lookahead(Target target) {
+      this.target = target;
+    }
+
+    void vertex(int index) {
+      flush();
+      this.index = index;
+      pending = true;
+    }
+
+    void point(double lat, double lon, double depth) {
+      flush();
+      this.index = -1;
+      this.lat = lat;
+      this.lon = lon;
+      this.depth = depth;
+      pending = true;
+    }
+
+    void flush() {
+      if (pending) {
+        if (index < 0) {
+          target.point(lat, lon, depth);
+        } else {
+          target.vertex(index);
+        }
+        pending = false;
+      }
+    }
+
+    /*
+     * Add the point at the supplied distance and azimuth from an origin. This
+     * mirrors Locations.location(...), but takes precomputed sines and cosines
+     * of origin latitude and azimuth. Results are identical.
+     */
+    void destination(
+        double lat,
+        double lon,
+        double depth,
+        double sinLat,
+        double cosLat,
+        double sinAz,
+        double cosAz,
+        double Δh) {
+
+      double ad = Δh / EARTH_RADIUS_MEAN; // angular distance
+      double sinD = sin(ad);
+      double cosD = cos(ad);
+      double lat2 = asin(sinLat * cosD + cosLat * sinD * cosAz);
+      double lon2 = lon + atan2(sinAz * sinD * cosLat, cosD - sinLat * sin(lat2));
+      point(lat2 * Maths.TO_DEGREES, lon2 * Maths.TO_DEGREES, depth);
+    }
+  }
+
+  /* Forwards primitive values to a public sink. */
+  private static final class SinkTarget implements Target {
+
+    final Source src;
+    final LocationList.Sink sink;
+
+    SinkTarget(Source src, LocationList.Sink sink) {
+      this.src = src;
+      this.sink = sink;
+    }
+
+    @Override
+    public void vertex(int index) {
+      sink.add(src.lat(index), src.lon(index), src.depth(index));
+    }
+
+    @Override
+    public void point(double lat, double lon, double depth) {
+      sink.add(lat, lon, depth);
+    }
+
+    @Override
+    public void end() {
+      sink.end();
+    }
+
+    /* Emit the source list unchanged. */
+    void emitAll() {
+      for (int i = 0; i < src.size; i++) {
+        vertex(i);
+      }
+      end();
+    }
+  }
+
+  /* Assembles lists of the same type as a source. */
+  private abstract static class ListTarget implements Target {
+
+    ImmutableList.Builder<LocationList> lists = ImmutableList.builder();
+    int capacity = 16;
+
+    @Override
+    public void expect(int lists, int points) {
+      this.lists = ImmutableList.builderWithExpectedSize(lists);
+      this.capacity = points;
+    }
+
+    static ListTarget create(Source src) {
+      return (src instanceof PackedSource)
+          ? new PackedListTarget(src)
+          : new RegularListTarget(src.locs);
+    }
+  }
+
+  private static final class RegularListTarget extends ListTarget {
+
+    final LocationList locs;
+    ImmutableList.Builder<Location> list;
+
+    RegularListTarget(LocationList locs) {
+      this.locs = locs;
+    }
+
+    @Override
+    public void vertex(int index) {
+      list().add(locs.get(index));
+    }
+
+    @Override
+    public void point(double lat, double lon, double depth) {
+      list().add(Location.create(lat, lon, depth));
+    }
+
+    @Override
+    public void end() {
+      lists.add(new RegularLocationList(list.build()));
+      list = null;
+    }
+
+    private ImmutableList.Builder<Location> list() {
+      if (list == null) {
+        list = ImmutableList.builderWithExpectedSize(capacity);
+      }
+      return list;
+    }
+  }
+
+  private static final class PackedListTarget extends ListTarget {
+
+    final Source src;
+    PackedLocationList.Builder list;
+
+    PackedListTarget(Source src) {
+      this.src = src;
+    }
+
+    @Override
+    public void vertex(int index) {
+      point(src.lat(index), src.lon(index), src.depth(index));
+    }
+
+    @Override
+    public void point(double lat, double lon, double depth) {
+      if (list == null) {
+        list = new PackedLocationList.Builder(capacity);
+      }
+      list.add(lat, lon, depth);
+    }
+
+    @Override
+    public void end() {
+      lists.add(list.build());
+      list = null;
+    }
+  }
+
+  /* Primitive coordinate access that avoids creating Locations. */
+  private abstract static class Source {
+
+    /* The supplied list; may be memoized. */
+    final LocationList locs;
+    final int size;
+
+    Source(LocationList locs) {
+      this.locs = locs;
+      this.size = locs.size();
+    }
+
+    static Source of(LocationList locs) {
+      List<Location> list = (locs instanceof MemoizedLocationList)
+          ? ((MemoizedLocationList) locs).delegate()
+          : locs;
+      if (list instanceof PackedLocationList) {
+        return new PackedSource(locs, (PackedLocationList) list);
+      }
+      if (list instanceof MappedLocationList) {
+        return new MappedSource(locs, (MappedLocationList) list);
+      }
+      return new ListSource(locs);
+    }
+
+    abstract double lat(int i);
+
+    abstract double lon(int i);
+
+    abstract double depth(int i);
+
+    abstract double latRad(int i);
+
+    abstract double lonRad(int i);
+  }
+
+  private static final class PackedSource extends Source {
+
+    final PackedLocationList packed;
+
+    PackedSource(LocationList locs, PackedLocationList packed) {
+      super(locs);
+      this.packed = packed;
+    }
+
+    @Override
+    double lat(int i) {
+      return packed.lats[i];
+    }
+
+    @Override
+    double lon(int i) {
+      return packed.lons[i];
+    }
+
+    @Override
+    double depth(int i) {
+      return packed.depths[i];
+    }
+
+    @Override
+    double latRad(int i) {
+      return packed.latRads[i];
+    }
+
+    @Override
+    double lonRad(int i) {
+      return packed.lonRads[i];
+    }
+  }
+
+  /* Reads the coordinate buffers of a memory-mapped list directly. */
+  private static final class MappedSource extends Source {
+
+    final MappedLocationList mapped;
+
+    MappedSource(LocationList locs, MappedLocationList mapped) {
+      super(locs);
+      this.mapped = mapped;
+    }
+
+    @Override
+    double lat(int i) {
+      return mapped.lats.get(i);
+    }
+
+    @Override
+    double lon(int i) {
+      return mapped.lons.get(i);
+    }
+
+    @Override
+    double depth(int i) {
+      return mapped.depths.get(i);
+    }
+
+    @Override
+    double latRad(int i) {
+      return mapped.lats.get(i) * Maths.TO_RADIANS;
+    }
+
+    @Override
+    double lonRad(int i) {
+      return mapped.lons.get(i) * Maths.TO_RADIANS;
+    }
+  }
+
+  /*
+   * Lists may create a Location on each call to get(), as grids do, so the two
+   * most recently read vertices are cached; resample() and partition() only
+   * ever revisit the previous or next vertex.
+   */
+  private static final class ListSource extends Source {
+
+    private int index1 = -1;
+    private int index2 = -1;
+    private Location loc1;
+    private Location loc2;
+
+    ListSource(LocationList locs) {
+      super(locs);
+    }
+
+    private Location loc(int i) {
+      if (i == index1) {
+        return loc1;
+      }
+      if (i == index2) {
+        return loc2;
+      }
+      index2 = index1;
+      loc2 = loc1;
+      index1 = i;
+      loc1 = locs.get(i);
+      return loc1;
+    }
+
+    @Override
+    double lat(int i) {
+      return loc(i).latitude;
+    }
+
+    @Override
+    double lon(int i) {
+      return loc(i).longitude;
+    }
+
+    @Override
+    double depth(int i) {
+      return loc(i).depth;
+    }
+
+    @Override
+    double latRad(int i) {
+      return loc(i).latRad;
+    }
+
+    @Override
+    double lonRad(int i) {
+      return loc(i).lonRad;
+    }
+  }
+
+}
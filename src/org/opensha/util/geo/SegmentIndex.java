@@ -0,0 +1,344 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An immutable spatial index of the line segments that connect the
+ * {@code Location}s of one or more traces ({@code LocationList}s). The index
+ * supports queries for the minimum horizontal distance from a
+ * {@code Location} to a trace along with the trace and segment that are
+ * closest. Internally, the index is a bounding volume hierarchy (a form of
+ * R-tree) over segments that is built once and may be shared across threads.
+ * Queries prune entire subtrees using a lower bound on distance such that, for
+ * large trace sets, cost grows logarithmically with the number of segments.
+ *
+ * <p>Distances are computed using
+ * {@link Locations#distanceToSegmentFast(Location, Location, Location)}, or
+ * {@link Locations#horzDistanceFast(Location, Location)} for traces that
+ * contain a single location, and are identical to those of
+ * {@link Locations#minDistanceToLine(Location, LocationList)}. When multiple
+ * segments are equidistant from a query location, the one with the lowest
+ * trace and segment index is preferred, consistent with
+ * {@link Locations#minDistanceIndex(Location, LocationList)}. This index is
+ * only appropriate for use at short to moderate separations (e.g. ≤200 km)
+ * and does not support traces or queries that span ±180°.
+ *
+ * @author Peter Powers
+ * @see Locations#minDistanceToLine(Location, LocationList)
+ * @see Locations#minDistanceIndex(Location, LocationList)
+ */
+public final class SegmentIndex {
+
+  private static final int LEAF_SIZE = 8;
+
+  private final List<LocationList> traces;
+
+  /* Segments in tree order; single location traces have p1 == p2. */
+  private final boolean[] points;
+  private final double[] lat1;
+  private final double[] lon1;
+  private final double[] lat2;
+  private final double[] lon2;
+  private final int[] traceIds;
+  private final int[] segmentIds;
+  private final int[] order;
+
+  /* Nodes. */
+  private final int[] start;
+  private final int[] end;
+  private final int[] left;
+  private final int[] right;
+  private final double[] minLat;
+  private final double[] maxLat;
+  private final double[] minLon;
+  private final double[] maxLon;
+  private int nodeCount;
+
+  private SegmentIndex(List<LocationList> traces) {
+    checkArgument(!traces.isEmpty(), "Traces may not be empty");
+    this.traces = traces;
+    int size = 0;
+    for (LocationList trace : traces) {
+      size += max(trace.size() - 1, 1);
+    }
+    points = new boolean[size];
+    lat1 = new double[size];
+    lon1 = new double[size];
+    lat2 = new double[size];
+    lon2 = new double[size];
+    traceIds = new int[size];
+    segmentIds = new int[size];
+    order = new int[size];
+    int index = 0;
+    for (int i = 0; i < traces.size(); i++) {
+      LocationList trace = traces.get(i);
+      Location p1 = trace.first();
+      int segments = max(trace.size() - 1, 1);
+      for (int j = 0; j < segments; j++) {
+        Location p2 = (trace.size() == 1) ? p1 : trace.get(j + 1);
+        points[index] = trace.size() == 1;
+        lat1[index] = p1.latRad;
+        lon1[index] = p1.lonRad;
+        lat2[index] = p2.latRad;
+        lon2[index] = p2.lonRad;
+        traceIds[index] = i;
+        segmentIds[index] = j;
+        order[index] = index;
+        index++;
+        p1 = p2;
+      }
+    }
+    int capacity = 2 * (size / (LEAF_SIZE / 2) + 1) + 1;
+    start = new int[capacity];
+    end = new int[capacity];
+    left = new int[capacity];
+    right = new int[capacity];
+    minLat = new double[capacity];
+    maxLat = new double[capacity];
+    minLon = new double[capacity];
+    maxLon = new double[capacity];
+    build(0, size);
+  }
+
+  /**
+   * Create a new index of the segments of a single trace.
+   *
+   * @param trace to index
+   */
+  public static SegmentIndex create(LocationList trace) {
+    return new SegmentIndex(ImmutableList.of(trace));
+  }
+
+  /**
+   * Create a new index of the segments of multiple traces. The index of each
+   * trace in the supplied list serves as its ID in query results.
+   *
+   * @param traces to index
+   * @throws IllegalArgumentException if {@code traces} is empty
+   */
+  public static SegmentIndex create(List<LocationList> traces) {
+    return new SegmentIndex(ImmutableList.copyOf(traces));
+  }
+
+  /**
+   * Return the traces backing this index.
+   */
+  public List<LocationList> traces() {
+    return traces;
+  }
+
+  /**
+   * Return the minimum horizontal distance (in km) from the supplied
+   * {@code Location} to any indexed trace. For a single trace, this is
+   * equivalent to {@link Locations#minDistanceToLine(Location, LocationList)}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public double minDistance(Location loc) {
+    return nearest(loc).distance;
+  }
+
+  /**
+   * Return the nearest trace and segment to the supplied {@code Location}.
+   *
+   * @param loc {@code Location} of interest
+   */
+  public Nearest nearest(Location loc) {
+    Search search = new Search(loc.latRad, loc.lonRad);
+    nearest(0, search);
+    int i = search.index;
+    return new Nearest(traceIds[i], segmentIds[i], search.distance);
+  }
+
+  /**
+   * The result of a nearest segment query.
+   */
+  public static final class Nearest {
+
+    /** The ID (index in the source list) of the nearest trace. */
+    public final int trace;
+
+    /**
+     * The index of the nearest segment in the nearest trace; the indices of the
+     * segment endpoints in the trace are {@code [segment, segment + 1]}. For
+     * single location traces, the segment index is always 0.
+     */
+    public final int segment;
+
+    /** The horizontal distance (in km) to the nearest segment. */
+    public final double distance;
+
+    private Nearest(int trace, int segment, double distance) {
+      this.trace = trace;
+      this.segment = segment;
+      this.distance = distance;
+    }
+
+    @Override
+    public String toString() {
+      return "SegmentIndex.Nearest [trace: " + trace + ", segment: " + segment +
+          ", distance: " + distance + "]";
+    }
+  }
+
+  /* Recursively build the tree over the segment range [lo, hi). */
+  private int build(int lo, int hi) {
+    int node = nodeCount++;
+    start[node] = lo;
+    end[node] = hi;
+    double latMin = Double.POSITIVE_INFINITY;
+    double latMax = Double.NEGATIVE_INFINITY;
+    double lonMin = Double.POSITIVE_INFINITY;
+    double lonMax = Double.NEGATIVE_INFINITY;
+    for (int i = lo; i < hi; i++) {
+      latMin = min(latMin, min(lat1[i], lat2[i]));
+      latMax = max(latMax, max(lat1[i], lat2[i]));
+      lonMin = min(lonMin, min(lon1[i], lon2[i]));
+      lonMax = max(lonMax, max(lon1[i], lon2[i]));
+    }
+    minLat[node] = latMin;
+    maxLat[node] = latMax;
+    minLon[node] = lonMin;
+    maxLon[node] = lonMax;
+
+    if (hi - lo <= LEAF_SIZE) {
+      left[node] = -1;
+      right[node] = -1;
+      return node;
+    }
+    // split on segment midpoints along the longer box dimension
+    double lonExtent = (lonMax - lonMin) * cos((latMin + latMax) * 0.5);
+    boolean splitLat = (latMax - latMin) >= lonExtent;
+    int mid = (lo + hi) >>> 1;
+    select(splitLat ? lat1 : lon1, splitLat ? lat2 : lon2, lo, hi - 1, mid);
+    left[node] = build(lo, mid);
+    right[node] = build(mid, hi);
+    return node;
+  }
+
+  /* Quickselect on segment midpoint over [lo, hi] such that k is in order. */
+  private void select(double[] k1, double[] k2, int lo, int hi, int k) {
+    while (hi > lo) {
+      int mid = (lo + hi) >>> 1;
+      double pivot = k1[mid] + k2[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (k1[i] + k2[i] < pivot) {
+          i++;
+        }
+        while (k1[j] + k2[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int i, int j) {
+    boolean point = points[i];
+    points[i] = points[j];
+    points[j] = point;
+    swap(lat1, i, j);
+    swap(lon1, i, j);
+    swap(lat2, i, j);
+    swap(lon2, i, j);
+    swap(traceIds, i, j);
+    swap(segmentIds, i, j);
+    swap(order, i, j);
+  }
+
+  private static void swap(double[] values, int i, int j) {
+    double value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+  private static void swap(int[] values, int i, int j) {
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+  private double lowerBound(int node, double lat, double lon) {
+    return Locations.distanceLowerBound(
+        lat, lon,
+        minLat[node], maxLat[node],
+        minLon[node], maxLon[node]);
+  }
+
+  private double distance(int i, double lat, double lon) {
+    if (points[i]) {
+      return Locations.horzDistanceFast(lat, lon, lat1[i], lon1[i]);
+    }
+    return Locations.distanceToSegmentFast(lat1[i], lon1[i], lat2[i], lon2[i], lat, lon);
+  }
+
+  private void nearest(int node, Search search) {
+    if (left[node] < 0) {
+      for (int i = start[node]; i < end[node]; i++) {
+        search.offer(distance(i, search.lat, search.lon), i, order[i]);
+      }
+      return;
+    }
+    int near = left[node];
+    int far = right[node];
+    double nearBound = lowerBound(near, search.lat, search.lon);
+    double farBound = lowerBound(far, search.lat, search.lon);
+    if (farBound < nearBound) {
+      int node0 = near;
+      near = far;
+      far = node0;
+      double bound0 = nearBound;
+      nearBound = farBound;
+      farBound = bound0;
+    }
+    if (nearBound <= search.distance) {
+      nearest(near, search);
+    }
+    if (farBound <= search.distance) {
+      nearest(far, search);
+    }
+  }
+
+  /* Mutable state of a nearest segment search. */
+  private static final class Search {
+
+    final double lat;
+    final double lon;
+    double distance = Double.POSITIVE_INFINITY;
+    int index = -1;
+    int rank = Integer.MAX_VALUE;
+
+    Search(double lat, double lon) {
+      this.lat = lat;
+      this.lon = lon;
+    }
+
+    /* Rank is the segment's position in trace-major source order. */
+    void offer(double r, int index, int rank) {
+      if (r < distance || (r == distance && rank < this.rank)) {
+        this.distance = r;
+        this.index = index;
+        this.rank = rank;
+      }
+    }
+  }
+
+}
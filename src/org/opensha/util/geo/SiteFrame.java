@@ -0,0 +1,356 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.cos;
+import static java.lang.Math.sqrt;
+import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
+
+import java.awt.geom.Line2D;
+
+import org.opensha.util.Maths;
+
+/**
+ * A local, flat-earth reference frame centered on a site {@code Location}.
+ * Locations are projected into Cartesian {@code [x, y]} coordinates in km with
+ * x positive east and y positive north of the site, such that repeat
+ * site-to-source distance calculations reduce to plain 2D arithmetic. Hazard
+ * calculations typically fix a site and iterate over many sources; creating a
+ * frame once per site and projecting each source trace once amortizes all
+ * trig operations across the source loop.
+ *
+ * <p>As with {@link Locations#horzDistanceFast(Location, Location)}, the
+ * longitudinal offset of each projected point is scaled by the cosine of the
+ * mean of the site and point latitudes. As a result, projected distances to
+ * points are equal to those computed by {@code horzDistanceFast()}, save for
+ * rounding, and distances to lines and segments closely approximate those
+ * computed by {@link Locations#distanceToLineFast(Location, Location, Location)}
+ * and {@link Locations#distanceToSegmentFast(Location, Location, Location)}.
+ * Depths are ignored. A frame is only appropriate for use at short to
+ * moderate separations (e.g. ≤200 km) and does not support locations that
+ * span ±180° with respect to the site.
+ *
+ * @author Peter Powers
+ * @see Locations#horzDistanceFast(Location, Location)
+ * @see Locations#distanceToSegmentFast(Location, Location, Location)
+ */
+public final class SiteFrame {
+
+  private final Location site;
+  private final double lat;
+  private final double lon;
+
+  private SiteFrame(Location site) {
+    this.site = site;
+    this.lat = site.latRad;
+    this.lon = site.lonRad;
+  }
+
+  /**
+   * Create a new frame centered on the supplied site.
+   *
+   * @param site {@code Location} at the origin of the frame
+   */
+  public static SiteFrame create(Location site) {
+    return new SiteFrame(site);
+  }
+
+  /**
+   * Return the site {@code Location} at the origin of this frame.
+   */
+  public Location site() {
+    return site;
+  }
+
+  /**
+   * Return the projected {@code [x, y]} coordinates (in km) of the supplied
+   * {@code Location}.
+   *
+   * @param loc to project
+   */
+  public double[] project(Location loc) {
+    return new double[] { x(loc.latRad, loc.lonRad), y(loc.latRad) };
+  }
+
+  /**
+   * Project the supplied {@code LocationList} into this frame.
+   *
+   * @param locs to project
+   */
+  public Projection project(LocationList locs) {
+    return new Projection(this, locs);
+  }
+
+  /**
+   * Return the {@code Location}, at a depth of 0 km, corresponding to the
+   * supplied projected coordinates. This is the exact inverse of
+   * {@link #project(Location)}, save for rounding.
+   *
+   * @param x offset (in km) east of the site
+   * @param y offset (in km) north of the site
+   * @throws IllegalArgumentException if the resulting latitude or longitude is
+   *         out of range
+   */
+  public Location location(double x, double y) {
+    double latRad = lat + y / EARTH_RADIUS_MEAN;
+    double lonRad = lon + x / (EARTH_RADIUS_MEAN * cos((lat + latRad) * 0.5));
+    return Location.create(latRad * Maths.TO_DEGREES, lonRad * Maths.TO_DEGREES);
+  }
+
+  /**
+   * Return the horizontal distance (in km) from the site to the supplied
+   * {@code Location}.
+   *
+   * @param loc {@code Location} of interest
+   * @see Locations#horzDistanceFast(Location, Location)
+   */
+  public double distance(Location loc) {
+    return distance(x(loc.latRad, loc.lonRad), y(loc.latRad));
+  }
+
+  /**
+   * Return the signed distance (in km) from the site to the line that passes
+   * through the supplied points. The sign of the result indicates which side
+   * of the line the site is on (right:[+] left:[-]).
+   *
+   * @param p1 the first {@code Location} point on the line
+   * @param p2 the second {@code Location} point on the line
+   * @see Locations#distanceToLineFast(Location, Location, Location)
+   */
+  public double distanceToLine(Location p1, Location p2) {
+    return distanceToLine(
+        x(p1.latRad, p1.lonRad), y(p1.latRad),
+        x(p2.latRad, p2.lonRad), y(p2.latRad));
+  }
+
+  /**
+   * Return the distance (in km) from the site to the segment that connects the
+   * supplied points.
+   *
+   * @param p1 the first {@code Location} point on the segment
+   * @param p2 the second {@code Location} point on the segment
+   * @see Locations#distanceToSegmentFast(Location, Location, Location)
+   */
+  public double distanceToSegment(Location p1, Location p2) {
+    return distanceToSegment(
+        x(p1.latRad, p1.lonRad), y(p1.latRad),
+        x(p2.latRad, p2.lonRad), y(p2.latRad));
+  }
+
+  /* Projection of a point (in radians) to km. */
+  private double x(double latRad, double lonRad) {
+    return (lonRad - lon) * cos((lat + latRad) * 0.5) * EARTH_RADIUS_MEAN;
+  }
+
+  private double y(double latRad) {
+    return (latRad - lat) * EARTH_RADIUS_MEAN;
+  }
+
+  private static double distance(double x, double y) {
+    return sqrt(x * x + y * y);
+  }
+
+  /* Site is at the origin; consistent with Locations.distanceToLineFast(). */
+  private static double distanceToLine(double x1, double y1, double x2, double y2) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    return (dx * y1 - x1 * dy) / sqrt(dx * dx + dy * dy);
+  }
+
+  private static double distanceToSegment(double x1, double y1, double x2, double y2) {
+    return Line2D.ptSegDist(x1, y1, x2, y2, 0.0, 0.0);
+  }
+
+  /**
+   * A {@code LocationList} projected into a {@code SiteFrame}. Distances are
+   * measured from the site at the origin of the parent frame.
+   */
+  public static final class Projection {
+
+    private final SiteFrame frame;
+    private final LocationList locs;
+    private final double[] x;
+    private final double[] y;
+
+    private Projection(SiteFrame frame, LocationList locs) {
+      this.frame = frame;
+      this.locs = locs;
+      int size = locs.size();
+      x = new double[size];
+      y = new double[size];
+      for (int i = 0; i < size; i++) {
+        Location loc = locs.get(i);
+        x[i] = frame.x(loc.latRad, loc.lonRad);
+        y[i] = frame.y(loc.latRad);
+      }
+    }
+
+    /**
+     * Return the frame this list was projected into.
+     */
+    public SiteFrame frame() {
+      return frame;
+    }
+
+    /**
+     * Return the list of locations backing this projection.
+     */
+    public LocationList locations() {
+      return locs;
+    }
+
+    /**
+     * Return the number of projected locations.
+     */
+    public int size() {
+      return x.length;
+    }
+
+    /**
+     * Return the projected x-coordinate (in km) of the location at
+     * {@code index}.
+     *
+     * @param index of the location of interest
+     */
+    public double x(int index) {
+      return x[index];
+    }
+
+    /**
+     * Return the projected y-coordinate (in km) of the location at
+     * {@code index}.
+     *
+     * @param index of the location of interest
+     */
+    public double y(int index) {
+      return y[index];
+    }
+
+    /**
+     * Return the horizontal distance (in km) from the site to the location at
+     * {@code index}.
+     *
+     * @param index of the location of interest
+     */
+    public double distance(int index) {
+      return SiteFrame.distance(x[index], y[index]);
+    }
+
+    /**
+     * Compute the horizontal distance (in km) from the site to every location,
+     * storing results in {@code out}.
+     *
+     * @param out array to populate
+     * @return {@code out}
+     * @throws IllegalArgumentException if {@code out.length < size()}
+     */
+    public double[] distances(double[] out) {
+      checkArgument(
+          out.length >= x.length,
+          "Output array length [%s] < size [%s]", out.length, x.length);
+      for (int i = 0; i < x.length; i++) {
+        out[i] = SiteFrame.distance(x[i], y[i]);
+      }
+      return out;
+    }
+
+    /**
+     * Return the index of the location closest to the site. If multiple
+     * locations are equidistant, the lowest index is returned.
+     */
+    public int closestIndex() {
+      double min = Double.POSITIVE_INFINITY;
+      int minIndex = -1;
+      for (int i = 0; i < x.length; i++) {
+        double r = x[i] * x[i] + y[i] * y[i];
+        if (r < min) {
+          min = r;
+          minIndex = i;
+        }
+      }
+      return minIndex;
+    }
+
+    /**
+     * Return the horizontal distance (in km) from the site to the closest
+     * location.
+     *
+     * @see Locations#minDistanceToLocations(Location, LocationList)
+     */
+    public double minDistance() {
+      return distance(closestIndex());
+    }
+
+    /**
+     * Return the signed distance (in km) from the site to the line that passes
+     * through the locations at {@code index} and {@code index + 1}. The sign of
+     * the result indicates which side of the line the site is on (right:[+]
+     * left:[-]).
+     *
+     * @param index of the first point on the line
+     * @see Locations#distanceToLineFast(Location, Location, Location)
+     */
+    public double distanceToLine(int index) {
+      checkSegment(index);
+      return SiteFrame.distanceToLine(x[index], y[index], x[index + 1], y[index + 1]);
+    }
+
+    /**
+     * Return the distance (in km) from the site to the segment that connects
+     * the locations at {@code index} and {@code index + 1}.
+     *
+     * @param index of the first point of the segment
+     * @see Locations#distanceToSegmentFast(Location, Location, Location)
+     */
+    public double distanceToSegment(int index) {
+      checkSegment(index);
+      return SiteFrame.distanceToSegment(x[index], y[index], x[index + 1], y[index + 1]);
+    }
+
+    /**
+     * Return the shortest horizontal distance (in km) from the site to the line
+     * defined by connecting the projected locations. For a single location, the
+     * distance to that location is returned.
+     *
+     * @see Locations#minDistanceToLine(Location, LocationList)
+     */
+    public double minDistanceToLine() {
+      if (x.length == 1) {
+        return distance(0);
+      }
+      double min = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < x.length - 1; i++) {
+        min = Math.min(min, SiteFrame.distanceToSegment(x[i], y[i], x[i + 1], y[i + 1]));
+      }
+      return min;
+    }
+
+    /**
+     * Return the index of the segment closest to the site. There are
+     * {@code size() - 1} segment indices. The indices of the segment endpoints
+     * in the original location list are {@code [n, n+1]}.
+     *
+     * @throws IllegalArgumentException if {@code size() < 2}
+     * @see Locations#minDistanceIndex(Location, LocationList)
+     */
+    public int minDistanceIndex() {
+      checkArgument(x.length > 1);
+      double min = Double.POSITIVE_INFINITY;
+      int minIndex = -1;
+      for (int i = 0; i < x.length - 1; i++) {
+        double r = SiteFrame.distanceToSegment(x[i], y[i], x[i + 1], y[i + 1]);
+        if (r < min) {
+          min = r;
+          minIndex = i;
+        }
+      }
+      return minIndex;
+    }
+
+    private void checkSegment(int index) {
+      checkArgument(
+          index >= 0 && index < x.length - 1,
+          "Segment index [%s] out of range [0..%s)", index, x.length - 1);
+    }
+  }
+
+}
@@ -0,0 +1,391 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An immutable engine for computing the distance metrics commonly used in
+ * ground motion models from a site to a gridded rupture surface. A surface is
+ * supplied as a {@code LocationList} of nodes in row-major order: the first
+ * row is the upper trace of the surface, ordered along strike such that the
+ * surface dips to the right, and subsequent rows are offset down-dip (e.g.
+ * using {@link Locations#location(Location, LocationVector)}). The metrics
+ * computed are:
+ *
+ * <ul><li>{@code rRup}: the minimum distance from a site to any node of the
+ * surface, combining {@link Locations#horzDistanceFast(Location, Location)}
+ * and the difference in depth.</li>
+ *
+ * <li>{@code rJB}: the minimum horizontal distance from a site to any node of
+ * the surface, or zero if the site is inside the surface projection, the
+ * polygon formed by the first and last rows and columns of the surface (with
+ * containment as defined by {@link PolygonIndex}). Surfaces with a single row
+ * have no interior.</li>
+ *
+ * <li>{@code rX}: the horizontal distance from a site to the line through the
+ * first and last nodes of the upper trace, computed using
+ * {@link Locations#distanceToLineFast(Location, Location, Location)}; it is
+ * positive on the hanging wall side of the surface.</li></ul>
+ *
+ * <p>Results are identical to those of a brute-force scan of every node of
+ * the surface. However, the nodes of each row are grouped into blocks, and
+ * both the surface rows and the blocks within them carry latitude, longitude,
+ * and depth bounds. Each query first visits the row and block that are
+ * nearest by bound, and then skips any row or block whose lower bound on
+ * distance is no smaller than the best distance found so far, such that only a
+ * few nodes of a large surface are typically visited, regardless of the
+ * distance to a site. As with {@code horzDistanceFast}, this engine is only
+ * appropriate for use at short to moderate separations (e.g. ≤200 km) and does
+ * not support surfaces or sites that span ±180°.
+ *
+ * @author Peter Powers
+ * @see Locations#horzDistanceFast(Location, Location)
+ * @see Locations#distanceToLineFast(Location, Location, Location)
+ */
+public final class SurfaceDistances {
+
+  /*
+   * Developer notes: Lower bounds on horizontal distance are computed with
+   * Locations.distanceLowerBound(). Because floating-point addition,
+   * multiplication, and subtraction are monotonic, a bound computed from the
+   * extreme latitudes, longitudes, and depths of a row or block never exceeds
+   * the distance computed to any of its nodes, and pruning on bound >= best
+   * never changes a result.
+   */
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final LocationList surface;
+  private final int rows;
+  private final int columns;
+  private final int blocksPerRow;
+
+  /* Nodes; lat and lon in radians. */
+  private final double[] lats;
+  private final double[] lons;
+  private final double[] depths;
+
+  /* Row and block bounds; lat and lon in radians. */
+  private final Bounds3D rowBounds;
+  private final Bounds3D blockBounds;
+
+  /* Surface projection; null for single-row surfaces. */
+  private final PolygonIndex projection;
+
+  private final Location traceStart;
+  private final Location traceEnd;
+
+  private SurfaceDistances(LocationList surface, int columns) {
+    this.surface = surface;
+    this.columns = columns;
+    int size = surface.size();
+    rows = size / columns;
+    blocksPerRow = (columns + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+    lats = new double[size];
+    lons = new double[size];
+    depths = new double[size];
+    int i = 0;
+    for (Location loc : surface) {
+      lats[i] = loc.latRad;
+      lons[i] = loc.lonRad;
+      depths[i] = loc.depth;
+      i++;
+    }
+
+    rowBounds = new Bounds3D(rows);
+    blockBounds = new Bounds3D(rows * blocksPerRow);
+    for (int row = 0; row < rows; row++) {
+      for (int block = 0; block < blocksPerRow; block++) {
+        int start = row * columns + block * BLOCK_SIZE;
+        int end = min(start + BLOCK_SIZE, (row + 1) * columns);
+        for (i = start; i < end; i++) {
+          blockBounds.add(row * blocksPerRow + block, lats[i], lons[i], depths[i]);
+          rowBounds.add(row, lats[i], lons[i], depths[i]);
+        }
+      }
+    }
+
+    traceStart = surface.get(0);
+    traceEnd = surface.get(columns - 1);
+    projection = (rows > 1) ? PolygonIndex.create(perimeter(surface, rows, columns)) : null;
+  }
+
+  /**
+   * Create a new distance engine for the supplied gridded surface.
+   *
+   * @param surface nodes, in row-major order
+   * @param columns the number of nodes in each row
+   * @throws IllegalArgumentException if {@code columns < 2} or the size of
+   *         {@code surface} is not a multiple of {@code columns}
+   */
+  public static SurfaceDistances create(LocationList surface, int columns) {
+    checkArgument(columns > 1, "Surface must have at least 2 columns");
+    checkArgument(
+        surface.size() % columns == 0,
+        "Surface size [%s] is not a multiple of columns [%s]",
+        surface.size(), columns);
+    return new SurfaceDistances(surface, columns);
+  }
+
+  /**
+   * Return the surface nodes.
+   */
+  public LocationList surface() {
+    return surface;
+  }
+
+  /**
+   * Return the number of rows in the surface.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns in the surface.
+   */
+  public int columns() {
+    return columns;
+  }
+
+  /**
+   * Return {@code rRup}, the minimum distance (in km) from the supplied site to
+   * any node of the surface.
+   *
+   * @param site {@code Location} of interest
+   */
+  public double rRup(Location site) {
+    return sqrt(minDistance(site, true));
+  }
+
+  /**
+   * Return {@code rJB}, the minimum horizontal distance (in km) from the
+   * supplied site to the surface projection.
+   *
+   * @param site {@code Location} of interest
+   */
+  public double rJB(Location site) {
+    if (projection != null && projection.contains(site)) {
+      return 0.0;
+    }
+    return minDistance(site, false);
+  }
+
+  /**
+   * Return {@code rX}, the horizontal distance (in km) from the supplied site
+   * to the line through the first and last nodes of the upper trace.
+   *
+   * @param site {@code Location} of interest
+   */
+  public double rX(Location site) {
+    return Locations.distanceToLineFast(traceStart, traceEnd, site);
+  }
+
+  /**
+   * Return {@code rRup}, {@code rJB}, and {@code rX} for the supplied site.
+   *
+   * @param site {@code Location} of interest
+   */
+  public Distance distance(Location site) {
+    return new Distance(rRup(site), rJB(site), rX(site));
+  }
+
+  /**
+   * Return {@code rRup}, {@code rJB}, and {@code rX} for each of the supplied
+   * sites.
+   *
+   * @param sites of interest
+   */
+  public List<Distance> distances(LocationList sites) {
+    ImmutableList.Builder<Distance> distances = ImmutableList.builderWithExpectedSize(sites.size());
+    for (Location site : sites) {
+      distances.add(distance(site));
+    }
+    return distances.build();
+  }
+
+  /**
+   * The distance metrics from a site to a rupture surface.
+   */
+  public static final class Distance {
+
+    /** The minimum distance to any node of the surface. */
+    public final double rRup;
+
+    /** The minimum horizontal distance to the surface projection. */
+    public final double rJB;
+
+    /** The signed horizontal distance to the extended upper trace. */
+    public final double rX;
+
+    private Distance(double rRup, double rJB, double rX) {
+      this.rRup = rRup;
+      this.rJB = rJB;
+      this.rX = rX;
+    }
+
+    @Override
+    public String toString() {
+      return "SurfaceDistances.Distance [rRup: " + rRup +
+          ", rJB: " + rJB +
+          ", rX: " + rX + "]";
+    }
+  }
+
+  /*
+   * Return the minimum squared linear distance, or the minimum horizontal
+   * distance, from a site to any node. The row (and within each row, the
+   * block) with the smallest bound is visited first.
+   */
+  private double minDistance(Location site, boolean linear) {
+    Query q = new Query(site, linear);
+    double[] bounds = new double[rows];
+    int nearest = 0;
+    for (int row = 0; row < rows; row++) {
+      bounds[row] = q.bound(rowBounds, row);
+      if (bounds[row] < bounds[nearest]) {
+        nearest = row;
+      }
+    }
+    double best = row(q, nearest, Double.POSITIVE_INFINITY);
+    for (int row = 0; row < rows; row++) {
+      if (row != nearest && bounds[row] < best) {
+        best = row(q, row, best);
+      }
+    }
+    return best;
+  }
+
+  private double row(Query q, int row, double best) {
+    int first = row * blocksPerRow;
+    int last = first + blocksPerRow;
+    int nearest = first;
+    double nearestBound = Double.POSITIVE_INFINITY;
+    for (int block = first; block < last; block++) {
+      double bound = q.bound(blockBounds, block);
+      if (bound < nearestBound) {
+        nearest = block;
+        nearestBound = bound;
+      }
+    }
+    if (nearestBound < best) {
+      best = block(q, row, nearest - first, best);
+    }
+    for (int block = first; block < last; block++) {
+      if (block != nearest && q.bound(blockBounds, block) < best) {
+        best = block(q, row, block - first, best);
+      }
+    }
+    return best;
+  }
+
+  private double block(Query q, int row, int block, double best) {
+    int start = row * columns + block * BLOCK_SIZE;
+    int end = min(start + BLOCK_SIZE, (row + 1) * columns);
+    for (int i = start; i < end; i++) {
+      double h = Locations.horzDistanceFast(q.lat, q.lon, lats[i], lons[i]);
+      if (q.linear) {
+        double v = depths[i] - q.depth;
+        h = h * h + v * v;
+      }
+      if (h < best) {
+        best = h;
+      }
+    }
+    return best;
+  }
+
+  /* Site coordinates in radians and the metric of interest. */
+  private static final class Query {
+
+    final double lat;
+    final double lon;
+    final double depth;
+    final boolean linear;
+
+    Query(Location site, boolean linear) {
+      this.lat = site.latRad;
+      this.lon = site.lonRad;
+      this.depth = site.depth;
+      this.linear = linear;
+    }
+
+    /* Lower bound, squared if linear, on the distance to any node in a box. */
+    double bound(Bounds3D b, int i) {
+      double h = Locations.distanceLowerBound(
+          lat, lon,
+          b.minLat[i], b.maxLat[i],
+          b.minLon[i], b.maxLon[i]);
+      if (!linear) {
+        return h;
+      }
+      double v = max(0.0, max(b.minDepth[i] - depth, depth - b.maxDepth[i]));
+      return h * h + v * v;
+    }
+  }
+
+  /* Bounding boxes of rows or blocks. */
+  private static final class Bounds3D {
+
+    final double[] minLat;
+    final double[] maxLat;
+    final double[] minLon;
+    final double[] maxLon;
+    final double[] minDepth;
+    final double[] maxDepth;
+
+    Bounds3D(int size) {
+      minLat = filled(size, Double.POSITIVE_INFINITY);
+      maxLat = filled(size, Double.NEGATIVE_INFINITY);
+      minLon = filled(size, Double.POSITIVE_INFINITY);
+      maxLon = filled(size, Double.NEGATIVE_INFINITY);
+      minDepth = filled(size, Double.POSITIVE_INFINITY);
+      maxDepth = filled(size, Double.NEGATIVE_INFINITY);
+    }
+
+    void add(int i, double lat, double lon, double depth) {
+      minLat[i] = min(minLat[i], lat);
+      maxLat[i] = max(maxLat[i], lat);
+      minLon[i] = min(minLon[i], lon);
+      maxLon[i] = max(maxLon[i], lon);
+      minDepth[i] = min(minDepth[i], depth);
+      maxDepth[i] = max(maxDepth[i], depth);
+    }
+
+    private static double[] filled(int size, double value) {
+      double[] values = new double[size];
+      Arrays.fill(values, value);
+      return values;
+    }
+  }
+
+  /*
+   * The perimeter of a surface: the upper trace, the last column, the lower
+   * trace reversed, and the first column reversed.
+   */
+  private static LocationList perimeter(LocationList surface, int rows, int columns) {
+    LocationList.Builder perimeter = LocationList.builder();
+    for (int c = 0; c < columns; c++) {
+      perimeter.add(surface.get(c));
+    }
+    for (int r = 1; r < rows; r++) {
+      perimeter.add(surface.get(r * columns + columns - 1));
+    }
+    for (int c = columns - 2; c >= 0; c--) {
+      perimeter.add(surface.get((rows - 1) * columns + c));
+    }
+    for (int r = rows - 2; r > 0; r--) {
+      perimeter.add(surface.get(r * columns));
+    }
+    return perimeter.build();
+  }
+
+}
@@ -0,0 +1,311 @@
+package org.opensha.util.geo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.tan;
+import static org.opensha.util.Earthquakes.checkDepth;
+
+import java.util.stream.IntStream;
+
+import org.opensha.util.Maths;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * A rupture surface gridded down-dip from a fault trace. The trace is
+ * resampled at the grid spacing to form the columns of the grid, and each
+ * resampled trace location is projected along the dip direction to a series
+ * of evenly spaced rows that span the upper and lower depths of the surface.
+ * The node in row {@code k} below a trace location at depth {@code d} is
+ * identical to
+ * {@code Locations.location(trace.get(i), LocationVector.create(dipDir, Δh, Δv))}
+ * with
+ *
+ * <pre>
+ *   Δv = (upperDepth - d) + k * rowSpacing * sin(dip)
+ *   Δh = (upperDepth - d) / tan(dip) + k * rowSpacing * cos(dip)
+ * </pre>
+ *
+ * where the row spacing evenly divides the down-dip width into the number of
+ * rows nearest the requested spacing. Nodes are computed directly into packed
+ * primitive storage without creating intermediate {@code Location}s, sharing
+ * the trig terms of the dip direction, the trace, and each row. Rows are
+ * computed in parallel for large surfaces.
+ *
+ * <p>Use a {@link #builder() builder} to create a new surface. The dip
+ * direction defaults to 90° clockwise from the azimuth between the first and
+ * last trace locations, consistent with the Aki-Richards convention that a
+ * surface dips to the right of its trace.
+ *
+ * @author Peter Powers
+ * @see SurfaceDistances
+ */
+public final class SurfaceGrid {
+
+  /* Minimum number of nodes to compute rows in parallel. */
+  private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+  private final LocationList locs;
+  private final int rows;
+  private final int columns;
+  private final double rowSpacing;
+
+  private SurfaceGrid(LocationList locs, int rows, int columns, double rowSpacing) {
+    this.locs = locs;
+    this.rows = rows;
+    this.columns = columns;
+    this.rowSpacing = rowSpacing;
+  }
+
+  /**
+   * Return the nodes of the surface in row-major order, starting with the
+   * upper trace.
+   */
+  public LocationList locations() {
+    return locs;
+  }
+
+  /**
+   * Return the number of rows in the surface.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Return the number of columns in the surface.
+   */
+  public int columns() {
+    return columns;
+  }
+
+  /**
+   * Return the actual down-dip spacing of rows, in km.
+   */
+  public double rowSpacing() {
+    return rowSpacing;
+  }
+
+  /**
+   * Return a new distance engine for this surface.
+   *
+   * @throws IllegalArgumentException if the surface has only one column
+   */
+  public SurfaceDistances distances() {
+    return SurfaceDistances.create(locs, columns);
+  }
+
+  /**
+   * Return a new surface grid builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * A single-use {@code SurfaceGrid} builder.
+   */
+  public static final class Builder {
+
+    private LocationList trace;
+    private Double dip;
+    private Double dipDirection;
+    private Double upperDepth;
+    private Double lowerDepth;
+    private Double spacing;
+    private boolean built;
+
+    private Builder() {}
+
+    /**
+     * Set the fault trace.
+     *
+     * @param trace of the surface
+     */
+    public Builder trace(LocationList trace) {
+      this.trace = trace;
+      return this;
+    }
+
+    /**
+     * Set the dip of the surface.
+     *
+     * @param dip in decimal degrees
+     * @throws IllegalArgumentException if {@code dip} is not in the range
+     *         (0..90]
+     */
+    public Builder dip(double dip) {
+      checkArgument(dip > 0.0 && dip <= 90.0, "Dip [%s] not in range (0..90]", dip);
+      this.dip = dip;
+      return this;
+    }
+
+    /**
+     * Set the dip direction of the surface. If not set, the dip direction is
+     * 90° clockwise from the azimuth of the trace.
+     *
+     * @param dipDirection in decimal degrees
+     * @throws IllegalArgumentException if {@code dipDirection} is not real
+     */
+    public Builder dipDirection(double dipDirection) {
+      checkArgument(Doubles.isFinite(dipDirection), "Dip direction must be real");
+      this.dipDirection = dipDirection;
+      return this;
+    }
+
+    /**
+     * Set the upper and lower depths of the surface.
+     *
+     * @param upperDepth in km
+     * @param lowerDepth in km
+     * @throws IllegalArgumentException if either depth is out of range, or if
+     *         {@code lowerDepth <= upperDepth}
+     */
+    public Builder depths(double upperDepth, double lowerDepth) {
+      checkDepth(upperDepth);
+      checkDepth(lowerDepth);
+      checkArgument(
+          lowerDepth > upperDepth,
+          "Lower depth [%s] must be greater than upper depth [%s]",
+          lowerDepth, upperDepth);
+      this.upperDepth = upperDepth;
+      this.lowerDepth = lowerDepth;
+      return this;
+    }
+
+    /**
+     * Set the target spacing of grid nodes, along strike and down-dip.
+     *
+     * @param spacing in km
+     * @throws IllegalArgumentException if {@code spacing} is not positive and
+     *         real
+     */
+    public Builder spacing(double spacing) {
+      checkArgument(
+          Doubles.isFinite(spacing) && spacing > 0.0,
+          "Spacing must be positive, real number");
+      this.spacing = spacing;
+      return this;
+    }
+
+    /**
+     * Return a newly created {@code SurfaceGrid}.
+     *
+     * @throws IllegalStateException if the trace, dip, depths, or spacing have
+     *         not been set, or if this builder has already been used
+     * @throws IllegalArgumentException if any node of the surface has an
+     *         invalid latitude, longitude, or depth
+     */
+    public SurfaceGrid build() {
+      checkState(!built, "This builder has already been used");
+      checkState(trace != null, "Trace not set");
+      checkState(dip != null, "Dip not set");
+      checkState(upperDepth != null, "Depths not set");
+      checkState(spacing != null, "Spacing not set");
+      built = true;
+
+      LocationList columns = trace.resample(spacing);
+      double dipRad = dip * Maths.TO_RADIANS;
+      double dipDirRad = (dipDirection == null)
+          ? Locations.azimuthRad(trace.first(), trace.last()) + Maths.PI_BY_2
+          : dipDirection * Maths.TO_RADIANS;
+      double width = (lowerDepth - upperDepth) / sin(dipRad);
+      int rows = (int) Math.max(Math.round(width / spacing), 1) + 1;
+      double rowSpacing = width / (rows - 1);
+
+      Grid grid = new Grid(columns, rows, upperDepth, dipRad, dipDirRad, rowSpacing);
+      IntStream rowIndices = IntStream.range(0, rows);
+      if (grid.size >= PARALLEL_THRESHOLD) {
+        rowIndices = rowIndices.parallel();
+      }
+      rowIndices.forEach(grid::row);
+      return new SurfaceGrid(
+          new PackedLocationList(grid.lats, grid.lons, grid.depths),
+          rows,
+          grid.columns,
+          rowSpacing);
+    }
+  }
+
+  /* Node arrays and the shared terms of the trace. */
+  private static final class Grid {
+
+    final int columns;
+    final int size;
+    final double upperDepth;
+    final double sinDip;
+    final double cosDip;
+    final double tanDip;
+    final double dipDir;
+    final double rowSpacing;
+
+    final double[] sinLats;
+    final double[] cosLats;
+    final double[] lonRads;
+    final double[] traceDepths;
+
+    final double[] lats;
+    final double[] lons;
+    final double[] depths;
+
+    Grid(
+        LocationList trace,
+        int rows,
+        double upperDepth,
+        double dip,
+        double dipDir,
+        double rowSpacing) {
+
+      columns = trace.size();
+      checkArgument(
+          (long) rows * columns <= Integer.MAX_VALUE,
+          "Surface [%s x %s] too large", rows, columns);
+      size = rows * columns;
+      this.upperDepth = upperDepth;
+      this.sinDip = sin(dip);
+      this.cosDip = cos(dip);
+      this.tanDip = tan(dip);
+      this.dipDir = dipDir;
+      this.rowSpacing = rowSpacing;
+
+      sinLats = new double[columns];
+      cosLats = new double[columns];
+      lonRads = new double[columns];
+      traceDepths = new double[columns];
+      int i = 0;
+      for (Location loc : trace) {
+        sinLats[i] = loc.sinLat;
+        cosLats[i] = loc.cosLat;
+        lonRads[i] = loc.lonRad;
+        traceDepths[i] = loc.depth;
+        i++;
+      }
+
+      lats = new double[size];
+      lons = new double[size];
+      depths = new double[size];
+    }
+
+    /* Compute a row, one run of columns of equal trace depth at a time. */
+    void row(int row) {
+      double Δrow = row * rowSpacing;
+      int offset = row * columns;
+      for (int start = 0, end; start < columns; start = end) {
+        double traceDepth = traceDepths[start];
+        for (end = start + 1; end < columns && traceDepths[end] == traceDepth; end++) {}
+        double Δz = upperDepth - traceDepth;
+        Locations.locations(
+            sinLats, cosLats, lonRads, traceDepths,
+            start, end,
+            dipDir,
+            Δz / tanDip + Δrow * cosDip,
+            Δz + Δrow * sinDip,
+            lats, lons, depths,
+            offset + start);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+package org.opensha.util.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public final class DoubleArray2DTests {
+
+  private static double[][] random(Random r, int rows, int columns) {
+    double[][] data = new double[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        data[i][j] = r.nextDouble() * 10.0 - 2.0;
+      }
+    }
+    return data;
+  }
+
+  private static void assertArray(double[][] expect, DoubleArray2D actual) {
+    assertEquals(expect.length, actual.rows());
+    double[][] values = actual.toArray();
+    for (int i = 0; i < expect.length; i++) {
+      assertArrayEquals(expect[i], values[i], 0.0);
+    }
+  }
+
+  @Test
+  public final void create() {
+    DoubleArray2D array = DoubleArray2D.create(3, 4);
+    assertEquals(3, array.rows());
+    assertEquals(4, array.columns());
+    assertEquals(3, array.length(0));
+    assertEquals(4, array.length(1));
+    assertArray(new double[3][4], array);
+    array.set(2, 1, 5.0);
+    assertEquals(5.0, array.get(2, 1), 0.0);
+    assertEquals(5.0, array.sum(), 0.0);
+
+    double[][] data = random(new Random(11L), 5, 7);
+    DoubleArray2D copy = DoubleArray2D.copyOf(data);
+    assertArray(data, copy);
+    assertEquals(copy, copy.copy());
+    assertEquals(copy.hashCode(), copy.copy().hashCode());
+    assertEquals(DoubleData.toString(data), copy.toString());
+    assertEquals(0, DoubleArray2D.copyOf(new double[0][]).rows());
+  }
+
+  @Test
+  public final void arithmetic() {
+    Random r = new Random(13L);
+    double[][] d1 = random(r, 6, 9);
+    double[][] d2 = random(r, 6, 9);
+    DoubleArray2D a1 = DoubleArray2D.copyOf(d1);
+    DoubleArray2D a2 = DoubleArray2D.copyOf(d2);
+
+    assertArray(DoubleData.add(2.5, DoubleData.copyOf(d1)), a1.copy().add(2.5));
+    assertArray(DoubleData.multiply(0.3, DoubleData.copyOf(d1)), a1.copy().multiply(0.3));
+    assertArray(DoubleData.add(DoubleData.copyOf(d1), d2), a1.copy().add(a2));
+
+    double[][] expect = DoubleData.copyOf(d1);
+    for (int i = 0; i < expect.length; i++) {
+      DoubleData.subtract(expect[i], d2[i]);
+    }
+    assertArray(expect, a1.copy().subtract(a2));
+    expect = DoubleData.copyOf(d1);
+    for (int i = 0; i < expect.length; i++) {
+      DoubleData.multiply(expect[i], d2[i]);
+    }
+    assertArray(expect, a1.copy().multiply(a2));
+    expect = DoubleData.copyOf(d1);
+    for (int i = 0; i < expect.length; i++) {
+      DoubleData.divide(expect[i], d2[i]);
+    }
+    assertArray(expect, a1.copy().divide(a2));
+  }
+
+  @Test
+  public final void collapse() {
+    double[][] data = random(new Random(17L), 8, 5);
+    DoubleArray2D array = DoubleArray2D.copyOf(data);
+    assertArrayEquals(DoubleData.collapse(data), array.collapse(1), 0.0);
+    double[] columns = new double[5];
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < 8; i++) {
+        columns[j] += data[i][j];
+      }
+    }
+    assertArrayEquals(columns, array.collapse(0), 0.0);
+    assertArrayEquals(array.collapse(0), array.transpose().collapse(1), 0.0);
+    assertEquals(DoubleData.sum(array.collapse(1)), array.sum(), 1e-12);
+  }
+
+  @Test
+  public final void views() {
+    Random r = new Random(19L);
+    double[][] data = random(r, 7, 6);
+    DoubleArray2D array = DoubleArray2D.copyOf(data);
+
+    // transpose
+    DoubleArray2D transpose = array.transpose();
+    assertEquals(6, transpose.rows());
+    assertEquals(7, transpose.columns());
+    for (int i = 0; i < 7; i++) {
+      for (int j = 0; j < 6; j++) {
+        assertEquals(data[i][j], transpose.get(j, i), 0.0);
+      }
+    }
+    assertEquals(array, transpose.transpose());
+
+    // sub-array views share data
+    DoubleArray2D sub = array.subArray(2, 5, 1, 4);
+    double[][] expect = new double[3][3];
+    for (int i = 0; i < 3; i++) {
+      System.arraycopy(data[i + 2], 1, expect[i], 0, 3);
+    }
+    assertArray(expect, sub);
+    assertArray(expect, sub.copy());
+    sub.add(1.0);
+    assertEquals(data[2][1] + 1.0, array.get(2, 1), 0.0);
+    assertEquals(data[2][0], array.get(2, 0), 0.0);
+
+    // strided arithmetic matches contiguous
+    DoubleArray2D other = DoubleArray2D.copyOf(random(r, 3, 3));
+    assertEquals(sub.copy().multiply(other), sub.multiply(other));
+    assertEquals(other.copy().add(sub), other.add(sub.copy()));
+    assertEquals(
+        other.transpose().copy().divide(sub),
+        other.transpose().divide(sub));
+    assertEquals(sub.copy().sum(), sub.sum(), 0.0);
+    assertArrayEquals(sub.copy().collapse(0), sub.collapse(0), 0.0);
+    assertNotEquals(sub, sub.copy().add(1.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE() {
+    DoubleArray2D.create(-1, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void copyOf_IAE() {
+    DoubleArray2D.copyOf(new double[][] { { 1.0, 2.0 }, { 3.0 } });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void add_IAE() {
+    DoubleArray2D.create(2, 3).add(DoubleArray2D.create(3, 2));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void get_IOOBE() {
+    DoubleArray2D.create(2, 3).subArray(0, 2, 0, 2).get(0, 2);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void collapse_IOOBE() {
+    DoubleArray2D.create(2, 3).collapse(2);
+  }
+
+}
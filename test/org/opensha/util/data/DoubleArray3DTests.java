@@ -0,0 +1,154 @@
+package org.opensha.util.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public final class DoubleArray3DTests {
+
+  private static double[][][] random(Random r, int n0, int n1, int n2) {
+    double[][][] data = new double[n0][n1][n2];
+    for (int i = 0; i < n0; i++) {
+      for (int j = 0; j < n1; j++) {
+        for (int k = 0; k < n2; k++) {
+          data[i][j][k] = r.nextDouble() * 10.0 - 2.0;
+        }
+      }
+    }
+    return data;
+  }
+
+  private static void assertArray(double[][][] expect, DoubleArray3D actual) {
+    double[][][] values = actual.toArray();
+    assertEquals(expect.length, values.length);
+    for (int i = 0; i < expect.length; i++) {
+      assertEquals(expect[i].length, values[i].length);
+      for (int j = 0; j < expect[i].length; j++) {
+        assertArrayEquals(expect[i][j], values[i][j], 0.0);
+      }
+    }
+  }
+
+  @Test
+  public final void create() {
+    DoubleArray3D array = DoubleArray3D.create(2, 3, 4);
+    assertEquals(2, array.length(0));
+    assertEquals(3, array.length(1));
+    assertEquals(4, array.length(2));
+    assertArray(new double[2][3][4], array);
+    array.set(1, 2, 3, 5.0);
+    assertEquals(5.0, array.get(1, 2, 3), 0.0);
+
+    double[][][] data = random(new Random(23L), 4, 3, 5);
+    DoubleArray3D copy = DoubleArray3D.copyOf(data);
+    assertArray(data, copy);
+    assertEquals(copy, copy.copy());
+    assertEquals(copy.hashCode(), copy.copy().hashCode());
+    assertEquals(DoubleData.toString(data), copy.toString());
+  }
+
+  @Test
+  public final void arithmetic() {
+    Random r = new Random(29L);
+    double[][][] d1 = random(r, 3, 4, 5);
+    double[][][] d2 = random(r, 3, 4, 5);
+    DoubleArray3D a1 = DoubleArray3D.copyOf(d1);
+    DoubleArray3D a2 = DoubleArray3D.copyOf(d2);
+    assertArray(DoubleData.add(2.5, DoubleData.copyOf(d1)), a1.copy().add(2.5));
+    assertArray(DoubleData.multiply(0.3, DoubleData.copyOf(d1)), a1.copy().multiply(0.3));
+    assertArray(DoubleData.add(DoubleData.copyOf(d1), d2), a1.copy().add(a2));
+
+    // strided views match contiguous copies
+    DoubleArray3D v1 = a1.subArray(1, 3, 0, 3, 2, 5);
+    DoubleArray3D v2 = a2.subArray(0, 2, 1, 4, 0, 3);
+    assertEquals(v1.copy().multiply(v2.copy()), v1.copy().multiply(v2));
+    assertEquals(v1.copy().divide(v2.copy()), v1.copy().divide(v2));
+    assertEquals(v1.copy().add(1.5), v1.add(1.5).copy());
+    assertEquals(v1.copy().sum(), v1.sum(), 0.0);
+  }
+
+  @Test
+  public final void collapse() {
+    double[][][] data = random(new Random(31L), 4, 3, 6);
+    DoubleArray3D array = DoubleArray3D.copyOf(data);
+
+    // axis 2 matches the jagged implementation
+    double[][] expect = DoubleData.collapse(data);
+    assertArrayEquals(expect[2], array.collapse(2).toArray()[2], 0.0);
+    assertEquals(DoubleArray2D.copyOf(expect), array.collapse(2));
+
+    double[][] axis0 = new double[3][6];
+    double[][] axis1 = new double[4][6];
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 3; j++) {
+        for (int k = 0; k < 6; k++) {
+          axis0[j][k] += data[i][j][k];
+          axis1[i][k] += data[i][j][k];
+        }
+      }
+    }
+    assertEquals(DoubleArray2D.copyOf(axis0), array.collapse(0));
+    assertEquals(DoubleArray2D.copyOf(axis1), array.collapse(1));
+
+    // collapsing a strided view
+    DoubleArray3D view = array.subArray(1, 4, 0, 2, 1, 5);
+    for (int axis = 0; axis < 3; axis++) {
+      assertEquals(view.copy().collapse(axis), view.collapse(axis));
+    }
+  }
+
+  @Test
+  public final void slice() {
+    double[][][] data = random(new Random(37L), 4, 3, 5);
+    DoubleArray3D array = DoubleArray3D.copyOf(data);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(DoubleArray2D.copyOf(data[i]), array.slice(0, i));
+    }
+    for (int j = 0; j < 3; j++) {
+      DoubleArray2D slice = array.slice(1, j);
+      assertEquals(4, slice.rows());
+      assertEquals(5, slice.columns());
+      for (int i = 0; i < 4; i++) {
+        assertArrayEquals(data[i][j], slice.toArray()[i], 0.0);
+      }
+    }
+    for (int k = 0; k < 5; k++) {
+      DoubleArray2D slice = array.slice(2, k);
+      for (int i = 0; i < 4; i++) {
+        for (int j = 0; j < 3; j++) {
+          assertEquals(data[i][j][k], slice.get(i, j), 0.0);
+        }
+      }
+    }
+
+    // slices are views
+    array.slice(2, 4).multiply(0.0);
+    assertEquals(0.0, array.get(3, 2, 4), 0.0);
+    assertEquals(data[3][2][3], array.get(3, 2, 3), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE() {
+    DoubleArray3D.create(2000, 2000, 2000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void copyOf_IAE() {
+    DoubleArray3D.copyOf(new double[][][] { { { 1.0, 2.0 } }, { { 3.0 } } });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void add_IAE() {
+    DoubleArray3D.create(2, 3, 4).add(DoubleArray3D.create(2, 4, 3));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void slice_IOOBE() {
+    DoubleArray3D.create(2, 3, 4).slice(1, 3);
+  }
+
+}
@@ -373,6 +373,65 @@ public final class DoubleDataTests {
     testArrayAndList(expectArray, actualArray, actualList);
   }
 
+  @Test
+  public final void testMap() {
+    double[] expect = { 2.0, 11.0, 101.0 };
+    assertArrayEquals(expect, DoubleData.map(x -> x + 1, valueArray()), 0.0);
+    double[][] d2 = DoubleData.map(x -> x + 1, new double[][] { valueArray(), {} });
+    assertArrayEquals(expect, d2[0], 0.0);
+    assertEquals(0, d2[1].length);
+    double[][][] d3 = DoubleData.map(Math::log10, new double[][][] { { valueArray() } });
+    assertArrayEquals(new double[] { 0.0, 1.0, 2.0 }, d3[0][0], 0.0);
+  }
+
+  @Test
+  public final void testMapIndexed() {
+    assertArrayEquals(
+        new double[] { 1.0, 11.0, 102.0 },
+        DoubleData.mapIndexed((i, x) -> x + i, valueArray()), 0.0);
+    double[][] d2 = DoubleData.mapIndexed(
+        (i, j, x) -> 10 * i + j,
+        new double[][] { { 0, 0 }, { 0, 0, 0 } });
+    assertArrayEquals(new double[] { 0.0, 1.0 }, d2[0], 0.0);
+    assertArrayEquals(new double[] { 10.0, 11.0, 12.0 }, d2[1], 0.0);
+    double[][][] d3 = DoubleData.mapIndexed(
+        (i, j, k, x) -> x + 100 * i + 10 * j + k,
+        new double[2][2][2]);
+    assertArrayEquals(new double[] { 110.0, 111.0 }, d3[1][1], 0.0);
+    assertArrayEquals(new double[] { 10.0, 11.0 }, d3[0][1], 0.0);
+  }
+
+  @Test
+  public final void testCombine() {
+    double[] expect = { 1.0, 100.0, 10000.0 };
+    assertArrayEquals(expect, DoubleData.combine((a, b) -> a * b, valueArray(), valueArray()), 0.0);
+    double[][] d2 = DoubleData.combine(
+        Math::max,
+        new double[][] { valueArray() },
+        new double[][] { { 5.0, 5.0, 5.0 } });
+    assertArrayEquals(new double[] { 5.0, 10.0, 100.0 }, d2[0], 0.0);
+    double[][][] d3 = DoubleData.combine(
+        (a, b) -> a - b,
+        new double[][][] { { valueArray() } },
+        new double[][][] { { valueArray() } });
+    assertArrayEquals(new double[3], d3[0][0], 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testCombine1D_IAE() {
+    DoubleData.combine((a, b) -> a + b, new double[2], new double[3]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testCombine2D_IAE() {
+    DoubleData.combine((a, b) -> a + b, new double[2][2], new double[][] { { 0, 0 }, { 0 } });
+  }
+
+  @Test(expected = NullPointerException.class)
+  public final void testMap_NPE() {
+    DoubleData.map(null, new double[0][]);
+  }
+
   @Test
   public final void testNormalize() {
     double[] expectArray = { 0.2, 0.3, 0.5 };
@@ -393,6 +452,97 @@ public final class DoubleDataTests {
     testArrayAndList(expectArray, actualArray, actualList);
   }
 
+  /* A DoubleList with spare capacity. */
+  private static DoubleList valueDoubleList() {
+    DoubleList list = DoubleList.withCapacity(16);
+    list.addAll(VALUES);
+    return list;
+  }
+
+  @Test
+  public final void testDoubleList() {
+    Function<Double, Double> fn = new Function<Double, Double>() {
+      @Override
+      public Double apply(Double input) {
+        return input * 3 + 1;
+      }
+    };
+    testDoubleList(DoubleData.add(2.5, valueArray()), DoubleData.add(2.5, valueDoubleList()));
+    testDoubleList(
+        DoubleData.add(valueArray(), valueArray()),
+        DoubleData.add(valueDoubleList(), valueDoubleList()));
+    testDoubleList(
+        DoubleData.subtract(valueArray(), DoubleData.flip(valueArray())),
+        DoubleData.subtract(valueDoubleList(), DoubleData.flip(valueDoubleList())));
+    testDoubleList(
+        DoubleData.multiply(0.3, valueArray()),
+        DoubleData.multiply(0.3, valueDoubleList()));
+    testDoubleList(
+        DoubleData.multiply(valueArray(), valueArray()),
+        DoubleData.multiply(valueDoubleList(), valueDoubleList()));
+    testDoubleList(
+        DoubleData.divide(valueArray(), DoubleData.exp(valueArray())),
+        DoubleData.divide(valueDoubleList(), DoubleData.exp(valueDoubleList())));
+    testDoubleList(
+        DoubleData.abs(DoubleData.flip(valueArray())),
+        DoubleData.abs(DoubleData.flip(valueDoubleList())));
+    testDoubleList(DoubleData.exp(valueArray()), DoubleData.exp(valueDoubleList()));
+    testDoubleList(DoubleData.ln(valueArray()), DoubleData.ln(valueDoubleList()));
+    testDoubleList(DoubleData.pow10(valueArray()), DoubleData.pow10(valueDoubleList()));
+    testDoubleList(DoubleData.log(valueArray()), DoubleData.log(valueDoubleList()));
+    testDoubleList(
+        DoubleData.transform(fn, valueArray()),
+        DoubleData.transform(fn, valueDoubleList()));
+    testDoubleList(DoubleData.normalize(valueArray()), DoubleData.normalize(valueDoubleList()));
+    testDoubleList(
+        DoubleData.round(1, DoubleData.ln(valueArray())),
+        DoubleData.round(1, DoubleData.ln(valueDoubleList())));
+    assertEquals(DoubleData.sum(valueArray()), DoubleData.sum(valueDoubleList()), 0.0);
+
+    // mixed list types
+    testDoubleList(
+        DoubleData.add(valueArray(), valueArray()),
+        DoubleData.add(valueDoubleList(), valueList()));
+    double[] sums = DoubleData.add(valueArray(), valueArray());
+    testArrayAndList(sums, sums, DoubleData.add(valueList(), valueDoubleList()));
+
+    // state and preconditions
+    assertTrue(DoubleData.arePositiveAndReal(valueDoubleList()));
+    assertFalse(DoubleData.arePositiveAndReal(DoubleData.add(-1.0, valueDoubleList())));
+    assertTrue(DoubleData.arePositiveAndRealOrZero(DoubleData.add(-1.0, valueDoubleList())));
+    assertFalse(DoubleData.arePositiveAndRealOrZero(DoubleData.flip(valueDoubleList())));
+    assertTrue(DoubleData.areZeroValued(DoubleList.of(0.0, 0.0)));
+    assertFalse(DoubleData.areZeroValued(DoubleList.of(0.0, 1.0)));
+    DoubleList weights = DoubleList.of(0.2, 0.3, 0.5);
+    assertSame(weights, DoubleData.checkWeights(weights));
+    assertSame(weights, DoubleData.checkFinite(weights));
+  }
+
+  private static void testDoubleList(double[] expect, List<Double> actual) {
+    assertTrue(actual instanceof DoubleList);
+    assertArrayEquals(expect, ((DoubleList) actual).toDoubleArray(), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testDoubleListSizes_IAE() {
+    DoubleData.add(valueDoubleList(), DoubleList.of(1.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testDoubleListEmpty_IAE() {
+    DoubleData.arePositiveAndReal(DoubleList.create());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testDoubleListFinite_IAE() {
+    DoubleData.checkFinite(DoubleList.of(1.0, Double.NaN));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testDoubleListWeights_IAE() {
+    DoubleData.checkWeights(DoubleList.of(0.2, 0.3));
+  }
+
   @Test
   public final void testPositivize() {
     double[] empty = {};
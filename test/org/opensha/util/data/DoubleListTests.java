@@ -0,0 +1,108 @@
+package org.opensha.util.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.primitives.Doubles;
+
+@SuppressWarnings("javadoc")
+public final class DoubleListTests {
+
+  @Test
+  public final void create() {
+    DoubleList list = DoubleList.create();
+    assertTrue(list.isEmpty());
+    for (int i = 0; i < 100; i++) {
+      list.addDouble(i);
+    }
+    assertEquals(100, list.size());
+    assertEquals(42.0, list.getDouble(42), 0.0);
+    assertEquals(Double.valueOf(42.0), list.get(42));
+
+    double[] values = { 1.0, -2.0, Double.NaN };
+    DoubleList of = DoubleList.of(values);
+    values[0] = 5.0;
+    assertEquals(1.0, of.getDouble(0), 0.0);
+    assertEquals(Doubles.asList(1.0, -2.0, Double.NaN), of);
+    assertEquals(of, DoubleList.copyOf(Doubles.asList(1.0, -2.0, Double.NaN)));
+    assertEquals(of, DoubleList.copyOf(of));
+  }
+
+  @Test
+  public final void listContract() {
+    List<Double> expect = new ArrayList<>(Doubles.asList(1.0, 2.0, 3.0, 4.0, 5.0, -0.0));
+    DoubleList list = DoubleList.withCapacity(2);
+    list.addAll(expect);
+    assertEquals(expect, list);
+    assertEquals(list, expect);
+    assertEquals(expect.hashCode(), list.hashCode());
+
+    assertEquals(expect.set(1, 7.0), list.set(1, 7.0));
+    assertEquals(3.0, list.setDouble(2, 8.0), 0.0);
+    expect.set(2, 8.0);
+    expect.add(0, 9.0);
+    list.add(0, 9.0);
+    expect.add(expect.size(), 10.0);
+    list.add(list.size(), 10.0);
+    assertEquals(expect.remove(3), list.remove(3));
+    expect.subList(1, 3).clear();
+    list.subList(1, 3).clear();
+    assertEquals(expect, list);
+    assertEquals(expect.hashCode(), list.hashCode());
+
+    // equality follows Double.equals
+    assertTrue(list.contains(-0.0));
+    assertFalse(list.contains(0.0));
+    assertFalse(list.contains("text"));
+    assertEquals(expect.indexOf(-0.0), list.indexOf(-0.0));
+    assertEquals(expect.lastIndexOf(10.0), list.lastIndexOf(10.0));
+    assertFalse(DoubleList.of(0.0).equals(DoubleList.of(-0.0)));
+    assertEquals(DoubleList.of(Double.NaN), DoubleList.of(Double.NaN));
+
+    list.addAll(list);
+    expect.addAll(expect);
+    assertEquals(expect, list);
+    list.trimToSize();
+    list.ensureCapacity(100);
+    assertArrayEquals(Doubles.toArray(expect), list.toDoubleArray(), 0.0);
+    list.clear();
+    assertTrue(list.isEmpty());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public final void iterator_CME() {
+    DoubleList list = DoubleList.of(1.0, 2.0);
+    Iterator<Double> it = list.iterator();
+    it.next();
+    list.addDouble(3.0);
+    it.next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void withCapacity_IAE() {
+    DoubleList.withCapacity(-1);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void getDouble_IOOBE() {
+    // backing array has spare capacity
+    DoubleList list = DoubleList.withCapacity(10);
+    list.addDouble(1.0);
+    list.getDouble(1);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public final void add_NPE() {
+    DoubleList.create().add(null);
+  }
+
+}
@@ -0,0 +1,230 @@
+package org.opensha.util.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.common.primitives.Doubles;
+
+@SuppressWarnings("javadoc")
+public final class DoublePipeTests {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+  private static final ParallelDoubleData PARALLEL = ParallelDoubleData.create(POOL, 100);
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  private static double[] random(Random r, int size) {
+    double[] data = new double[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = r.nextDouble() * 10.0 + 0.1;
+    }
+    return data;
+  }
+
+  /* The serial DoubleData equivalent of pipeline(). */
+  private static double[] expected(double[] data) {
+    double[] values = data.clone();
+    DoubleData.ln(values);
+    DoubleData.multiply(0.7, values);
+    DoubleData.add(-0.2, values);
+    DoubleData.exp(values);
+    DoubleData.log(values);
+    DoubleData.flip(values);
+    DoubleData.abs(values);
+    DoubleData.pow10(values);
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.sqrt(values[i]);
+    }
+    return values;
+  }
+
+  private static <T> DoublePipe<T> pipeline(DoublePipe<T> pipe) {
+    return pipe
+        .ln()
+        .multiply(0.7)
+        .add(-0.2)
+        .exp()
+        .log()
+        .flip()
+        .abs()
+        .pow10()
+        .transform(Math::sqrt);
+  }
+
+  @Test
+  public final void array() {
+    Random r = new Random(59L);
+    for (int size : new int[] { 0, 1, 511, 512, 513, 5000, 20000 }) {
+      double[] data = random(r, size);
+      double[] expect = expected(data);
+
+      for (boolean parallel : new boolean[] { false, true }) {
+        DoublePipe<double[]> pipe = pipeline(DoubleData.pipe(data));
+        if (parallel) {
+          pipe.parallel(PARALLEL);
+        }
+        double[] copy = pipe.toArray();
+        assertNotSame(data, copy);
+        assertArrayEquals(expect, copy, 0.0);
+        double sum = parallel ? PARALLEL.sum(expect.clone()) : DoubleData.sum(expect);
+        assertEquals(sum, pipe.sum(), 0.0);
+        if (size > 0) {
+          assertEquals(Doubles.min(expect), pipe.min(), 0.0);
+          assertEquals(Doubles.max(expect), pipe.max(), 0.0);
+        }
+      }
+
+      // serial and parallel in place
+      double[] values = data.clone();
+      assertSame(values, pipeline(DoubleData.pipe(values)).apply());
+      assertArrayEquals(expect, values, 0.0);
+      values = data.clone();
+      pipeline(DoubleData.pipe(values)).parallel(PARALLEL).apply();
+      assertArrayEquals(expect, values, 0.0);
+    }
+  }
+
+  @Test
+  public final void normalize() {
+    Random r = new Random(61L);
+    double[] data = random(r, 3000);
+    double[] expect = DoubleData.normalize(DoubleData.exp(data.clone()));
+    double[] values = data.clone();
+    assertSame(values, DoubleData.pipe(values).exp().normalize());
+    assertArrayEquals(expect, values, 0.0);
+
+    values = data.clone();
+    DoubleData.pipe(values).exp().parallel(PARALLEL).normalize();
+    double[] parallelExpect = DoubleData.exp(data.clone());
+    DoubleData.multiply(1.0 / PARALLEL.sum(parallelExpect.clone()), parallelExpect);
+    assertArrayEquals(parallelExpect, values, 0.0);
+    assertEquals(1.0, DoubleData.sum(values), 1e-12);
+  }
+
+  @Test
+  public final void packed() {
+    Random r = new Random(67L);
+    double[][][] data = new double[6][7][50];
+    for (double[][] plane : data) {
+      for (double[] row : plane) {
+        System.arraycopy(random(r, row.length), 0, row, 0, row.length);
+      }
+    }
+    DoubleArray3D cube = DoubleArray3D.copyOf(data);
+    DoubleArray3D view = cube.subArray(1, 5, 2, 7, 3, 47);
+    DoubleArray2D slice = cube.slice(2, 9);
+    DoubleArray2D transpose = cube.slice(0, 4).transpose();
+
+    for (boolean parallel : new boolean[] { false, true }) {
+      ParallelDoubleData config = parallel ? PARALLEL : null;
+
+      // 3D contiguous, 3D view, 2D views
+      checkPacked(cube, cube.copy(), config);
+      checkPacked(view, view.copy(), config);
+      checkPacked(slice, slice.copy(), config);
+      checkPacked(transpose, transpose.copy(), config);
+    }
+
+    // in-place writes to views leave other values untouched
+    DoubleArray3D expect = cube.copy();
+    DoubleArray3D expectView = expect.subArray(1, 5, 2, 7, 3, 47);
+    DoubleArray3D piped = pipeline(DoubleData.pipe(view.copy())).apply();
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 5; j++) {
+        for (int k = 0; k < 44; k++) {
+          expectView.set(i, j, k, piped.get(i, j, k));
+        }
+      }
+    }
+    assertSame(view, pipeline(DoubleData.pipe(view)).parallel(PARALLEL).apply());
+    assertEquals(expect, cube);
+  }
+
+  private static void checkPacked(
+      DoubleArray3D data,
+      DoubleArray3D copy,
+      ParallelDoubleData parallel) {
+
+    double[] flat = copy.data.clone();
+    double[] expect = expected(flat);
+    DoublePipe<DoubleArray3D> pipe = pipeline(DoubleData.pipe(data));
+    if (parallel != null) {
+      pipe.parallel(parallel);
+    }
+    DoubleArray3D result = pipe.toArray();
+    assertArrayEquals(expect, result.copy().data, 0.0);
+    assertEquals(data.length(1), result.length(1));
+    assertEquals(copy, data);
+    double sum = (parallel == null) ? DoubleData.sum(expect) : parallel.sum(expect.clone());
+    assertEquals(sum, pipe.sum(), 0.0);
+    assertEquals(Doubles.min(expect), pipe.min(), 0.0);
+    assertEquals(Doubles.max(expect), pipe.max(), 0.0);
+  }
+
+  private static void checkPacked(
+      DoubleArray2D data,
+      DoubleArray2D copy,
+      ParallelDoubleData parallel) {
+
+    double[] expect = expected(copy.data.clone());
+    DoublePipe<DoubleArray2D> pipe = pipeline(DoubleData.pipe(data));
+    if (parallel != null) {
+      pipe.parallel(parallel);
+    }
+    DoubleArray2D result = pipe.toArray();
+    assertEquals(data.rows(), result.rows());
+    assertArrayEquals(expect, result.data, 0.0);
+    assertEquals(copy, data);
+    double sum = (parallel == null) ? DoubleData.sum(expect) : parallel.sum(expect.clone());
+    assertEquals(sum, pipe.sum(), 0.0);
+    assertEquals(Doubles.max(expect), pipe.max(), 0.0);
+  }
+
+  @Test
+  public final void reuse() {
+    // terminal operations may be repeated and operations appended
+    double[] data = { 1.0, 2.0, 3.0 };
+    DoublePipe<double[]> pipe = DoubleData.pipe(data).multiply(2.0);
+    assertEquals(12.0, pipe.sum(), 0.0);
+    assertEquals(12.0, pipe.serial().sum(), 0.0);
+    pipe.add(1.0);
+    assertArrayEquals(new double[] { 3.0, 5.0, 7.0 }, pipe.toArray(), 0.0);
+    assertEquals(3.0, pipe.min(), 0.0);
+    assertArrayEquals(new double[] { 1.0, 2.0, 3.0 }, data, 0.0);
+    assertEquals(Double.NaN, DoubleData.pipe(new double[] { 1.0, -1.0 }).ln().max(), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void min_IAE() {
+    DoubleData.pipe(new double[0]).min();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void normalizeData_IAE() {
+    DoubleData.pipe(new double[] { 1.0, 2.0 }).flip().normalize();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void normalizeSum_IAE() {
+    DoubleData.pipe(new double[] { 1.0, 2.0 }).multiply(0.0).normalize();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void normalizeParallel_IAE() {
+    double[] data = new double[10000];
+    data[9000] = -1.0;
+    DoubleData.pipe(data).add(0.5).parallel(PARALLEL).normalize();
+  }
+
+}
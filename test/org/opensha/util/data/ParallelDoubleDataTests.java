@@ -0,0 +1,242 @@
+package org.opensha.util.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public final class ParallelDoubleDataTests {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  /* Small threshold to force splitting of small test data. */
+  private static final ParallelDoubleData PARALLEL = ParallelDoubleData.create(POOL, 7);
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  private static double[] random(Random r, int size) {
+    double[] data = new double[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = r.nextDouble() * 10.0 + 0.1;
+    }
+    return data;
+  }
+
+  private static double[][] random(Random r, int rows, int columns) {
+    double[][] data = new double[rows][];
+    for (int i = 0; i < rows; i++) {
+      data[i] = random(r, columns + r.nextInt(3));
+    }
+    return data;
+  }
+
+  private static double[][][] random(Random r, int n0, int n1, int n2) {
+    double[][][] data = new double[n0][][];
+    for (int i = 0; i < n0; i++) {
+      data[i] = random(r, n1, n2);
+    }
+    return data;
+  }
+
+  private static double[] copy(double[] data) {
+    return data.clone();
+  }
+
+  private static void assert2D(double[][] expect, double[][] actual) {
+    assertEquals(expect.length, actual.length);
+    for (int i = 0; i < expect.length; i++) {
+      assertArrayEquals(expect[i], actual[i], 0.0);
+    }
+  }
+
+  private static void assert3D(double[][][] expect, double[][][] actual) {
+    assertEquals(expect.length, actual.length);
+    for (int i = 0; i < expect.length; i++) {
+      assert2D(expect[i], actual[i]);
+    }
+  }
+
+  @Test
+  public final void create() {
+    ParallelDoubleData parallel = ParallelDoubleData.create();
+    assertSame(ForkJoinPool.commonPool(), parallel.pool());
+    assertEquals(ParallelDoubleData.DEFAULT_THRESHOLD, parallel.threshold());
+    assertSame(POOL, PARALLEL.pool());
+    assertEquals(7, PARALLEL.threshold());
+  }
+
+  @Test
+  public final void operators1D() {
+    Random r = new Random(41L);
+    for (int size : new int[] { 0, 1, 6, 7, 8, 100, 1001 }) {
+      double[] d1 = random(r, size);
+      double[] d2 = random(r, size);
+      assertArrayEquals(DoubleData.add(2.5, copy(d1)), PARALLEL.add(2.5, copy(d1)), 0.0);
+      assertArrayEquals(DoubleData.add(copy(d1), d2), PARALLEL.add(copy(d1), d2), 0.0);
+      assertArrayEquals(
+          DoubleData.subtract(copy(d1), d2),
+          PARALLEL.subtract(copy(d1), d2), 0.0);
+      assertArrayEquals(
+          DoubleData.multiply(0.3, copy(d1)),
+          PARALLEL.multiply(0.3, copy(d1)), 0.0);
+      assertArrayEquals(
+          DoubleData.multiply(copy(d1), d2),
+          PARALLEL.multiply(copy(d1), d2), 0.0);
+      assertArrayEquals(DoubleData.divide(copy(d1), d2), PARALLEL.divide(copy(d1), d2), 0.0);
+      double[] flipped = DoubleData.flip(copy(d1));
+      assertArrayEquals(DoubleData.abs(copy(flipped)), PARALLEL.abs(copy(flipped)), 0.0);
+      assertArrayEquals(DoubleData.exp(copy(d1)), PARALLEL.exp(copy(d1)), 0.0);
+      assertArrayEquals(DoubleData.ln(copy(d1)), PARALLEL.ln(copy(d1)), 0.0);
+      assertArrayEquals(DoubleData.pow10(copy(d1)), PARALLEL.pow10(copy(d1)), 0.0);
+      assertArrayEquals(DoubleData.log(copy(d1)), PARALLEL.log(copy(d1)), 0.0);
+    }
+  }
+
+  @Test
+  public final void functions1D() {
+    Random r = new Random(59L);
+    DoubleUnaryOperator toG = x -> x / 980.665;
+    for (int size : new int[] { 0, 1, 7, 8, 1001 }) {
+      double[] d1 = random(r, size);
+      double[] d2 = random(r, size);
+      assertArrayEquals(DoubleData.map(toG, copy(d1)), PARALLEL.map(toG, copy(d1)), 0.0);
+      assertArrayEquals(
+          DoubleData.mapIndexed((i, x) -> x * i, copy(d1)),
+          PARALLEL.mapIndexed((i, x) -> x * i, copy(d1)), 0.0);
+      assertArrayEquals(
+          DoubleData.combine(Math::hypot, copy(d1), d2),
+          PARALLEL.combine(Math::hypot, copy(d1), d2), 0.0);
+    }
+  }
+
+  @Test
+  public final void sum() {
+    Random r = new Random(43L);
+    assertEquals(0.0, PARALLEL.sum(), 0.0);
+    double[] small = random(r, 1000);
+    assertEquals(DoubleData.sum(small), PARALLEL.sum(small), 0.0);
+
+    // reproducible for any pool and threshold
+    double[] large = random(r, 100_000);
+    double expect = PARALLEL.sum(large);
+    assertEquals(DoubleData.sum(large), expect, expect * 1e-12);
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      for (int threshold : new int[] { 1, 100, 5000, 1 << 20 }) {
+        ParallelDoubleData parallel = ParallelDoubleData.create(pool, threshold);
+        for (int i = 0; i < 5; i++) {
+          assertEquals(expect, parallel.sum(large), 0.0);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(expect, ParallelDoubleData.create().sum(large), 0.0);
+  }
+
+  @Test
+  public final void operators2D() {
+    Random r = new Random(47L);
+    double[][] d1 = random(r, 50, 9);
+    double[][] d2 = DoubleData.copyOf(d1);
+    DoubleData.multiply(1.7, d2);
+    assert2D(
+        DoubleData.add(1.5, DoubleData.copyOf(d1)),
+        PARALLEL.add(1.5, DoubleData.copyOf(d1)));
+    assert2D(
+        DoubleData.multiply(0.3, DoubleData.copyOf(d1)),
+        PARALLEL.multiply(0.3, DoubleData.copyOf(d1)));
+    assert2D(
+        DoubleData.add(DoubleData.copyOf(d1), d2),
+        PARALLEL.add(DoubleData.copyOf(d1), d2));
+    assertArrayEquals(DoubleData.collapse(d1), PARALLEL.collapse(d1), 0.0);
+  }
+
+  @Test
+  public final void functions2D() {
+    Random r = new Random(61L);
+    double[][] d1 = random(r, 50, 9);
+    double[][] d2 = DoubleData.copyOf(d1);
+    assert2D(
+        DoubleData.map(Math::sqrt, DoubleData.copyOf(d1)),
+        PARALLEL.map(Math::sqrt, DoubleData.copyOf(d1)));
+    assert2D(
+        DoubleData.mapIndexed((i, j, x) -> x * i - j, DoubleData.copyOf(d1)),
+        PARALLEL.mapIndexed((i, j, x) -> x * i - j, DoubleData.copyOf(d1)));
+    assert2D(
+        DoubleData.combine(Math::min, DoubleData.copyOf(d1), d2),
+        PARALLEL.combine(Math::min, DoubleData.copyOf(d1), d2));
+  }
+
+  @Test
+  public final void operators3D() {
+    Random r = new Random(53L);
+    double[][][] d1 = random(r, 12, 5, 4);
+    double[][][] d2 = DoubleData.copyOf(d1);
+    DoubleData.multiply(1.7, d2);
+    assert3D(
+        DoubleData.add(1.5, DoubleData.copyOf(d1)),
+        PARALLEL.add(1.5, DoubleData.copyOf(d1)));
+    assert3D(
+        DoubleData.multiply(0.3, DoubleData.copyOf(d1)),
+        PARALLEL.multiply(0.3, DoubleData.copyOf(d1)));
+    assert3D(
+        DoubleData.add(DoubleData.copyOf(d1), d2),
+        PARALLEL.add(DoubleData.copyOf(d1), d2));
+    assert2D(DoubleData.collapse(d1), PARALLEL.collapse(d1));
+  }
+
+  @Test
+  public final void functions3D() {
+    Random r = new Random(67L);
+    double[][][] d1 = random(r, 12, 5, 4);
+    double[][][] d2 = DoubleData.copyOf(d1);
+    assert3D(
+        DoubleData.map(Math::log, DoubleData.copyOf(d1)),
+        PARALLEL.map(Math::log, DoubleData.copyOf(d1)));
+    assert3D(
+        DoubleData.mapIndexed((i, j, k, x) -> x + i * j * k, DoubleData.copyOf(d1)),
+        PARALLEL.mapIndexed((i, j, k, x) -> x + i * j * k, DoubleData.copyOf(d1)));
+    assert3D(
+        DoubleData.combine((a, b) -> a * b, DoubleData.copyOf(d1), d2),
+        PARALLEL.combine((a, b) -> a * b, DoubleData.copyOf(d1), d2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE() {
+    ParallelDoubleData.create(POOL, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void add1D_IAE() {
+    PARALLEL.add(new double[10], new double[11]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void add3D_IAE() {
+    // inner size mismatch is detected in a forked task
+    double[][][] d1 = new double[20][2][3];
+    double[][][] d2 = new double[20][2][3];
+    d2[17][1] = new double[2];
+    PARALLEL.add(d1, d2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void combine3D_IAE() {
+    double[][][] d1 = new double[20][2][3];
+    double[][][] d2 = new double[20][2][3];
+    d2[11][0] = new double[4];
+    PARALLEL.combine((a, b) -> a + b, d1, d2);
+  }
+
+}
@@ -0,0 +1,118 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class BucketIndexTests {
+
+  /* Jittered grid of nodes with a few duplicates. */
+  private static LocationList nodes(double lat0, double lon0, int rows, int columns, long seed) {
+    Random r = new Random(seed);
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        b.add(
+            lat0 + i * 0.1 + r.nextDouble() * 0.02,
+            lon0 + j * 0.1 + r.nextDouble() * 0.02);
+      }
+    }
+    b.add(lat0, lon0);
+    b.add(lat0, lon0);
+    return b.build();
+  }
+
+  private static void check(LocationList locs, List<Location> sites, double[] cellSizes) {
+    LocationIndex tree = LocationIndex.create(locs);
+    for (double cellSize : cellSizes) {
+      BucketIndex index = BucketIndex.create(locs, cellSize);
+      assertSame(locs, index.locations());
+      assertEquals(cellSize, index.cellSize(), 0.0);
+      for (Location site : sites) {
+        for (double distance : new double[] { 0.0, 5.0, 23.0, 60.0, 200.0, 2000.0 }) {
+          int[] expected = tree.indicesWithin(site, distance);
+          assertArrayEquals(expected, index.indicesWithin(site, distance));
+          BitSet bits = new BitSet();
+          index.forEachWithin(site, distance, i -> {
+            assertTrue(!bits.get(i));
+            bits.set(i);
+          });
+          assertEquals(expected.length, bits.cardinality());
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void indicesWithin() {
+    Random r = new Random(5L);
+    LocationList locs = nodes(34.0, -122.0, 40, 60, 3L);
+    List<Location> sites = new ArrayList<>();
+    sites.add(locs.get(0));
+    sites.add(locs.get(1234));
+    sites.add(Location.create(30.0, -125.0));
+    sites.add(Location.create(50.0, -100.0));
+    for (int i = 0; i < 40; i++) {
+      sites.add(Location.create(
+          32.0 + r.nextDouble() * 8.0,
+          -124.0 + r.nextDouble() * 10.0));
+    }
+    check(locs, sites, new double[] { 0.5, 10.0, 25.0, 1000.0 });
+  }
+
+  @Test
+  public final void polar() {
+    LocationList locs = nodes(85.0, 10.0, 50, 40, 7L);
+    List<Location> sites = new ArrayList<>();
+    sites.add(Location.create(90.0, 12.0));
+    sites.add(Location.create(89.5, 0.0));
+    sites.add(Location.create(87.0, 14.0));
+    sites.add(Location.create(80.0, 25.0));
+    check(locs, sites, new double[] { 2.0, 20.0 });
+  }
+
+  @Test
+  public final void single() {
+    LocationList locs = LocationList.create(Location.create(40.0, -120.0));
+    List<Location> sites = new ArrayList<>();
+    sites.add(Location.create(40.0, -120.0));
+    sites.add(Location.create(40.1, -120.1));
+    sites.add(Location.create(39.0, -121.0));
+    check(locs, sites, new double[] { 10.0 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE1() {
+    BucketIndex.create(LocationList.create(Location.create(40.0, -120.0)), 0.0);
+  }
+
+  @Test
+  public final void sparse() {
+    // cell count is bounded by list size, not extent
+    LocationList locs = LocationList.create(
+        Location.create(-60.0, -120.0),
+        Location.create(60.0, 120.0),
+        Location.create(60.0, 120.001));
+    List<Location> sites = new ArrayList<>();
+    sites.add(Location.create(60.0, 120.0));
+    sites.add(Location.create(-60.0, -120.0));
+    sites.add(Location.create(0.0, 0.0));
+    check(locs, sites, new double[] { 1e-3, 0.1 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void indicesWithin_IAE() {
+    BucketIndex.create(nodes(34.0, -122.0, 5, 5, 1L), 10.0)
+        .indicesWithin(Location.create(34.0, -122.0), Double.NaN);
+  }
+
+}
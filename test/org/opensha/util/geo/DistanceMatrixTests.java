@@ -0,0 +1,133 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensha.util.geo.DistanceMatrix.Metric;
+
+@SuppressWarnings("javadoc")
+public class DistanceMatrixTests {
+
+  private static LocationList sites;
+  private static LocationList points;
+
+  @BeforeClass
+  public static void setUp() {
+    Random r = new Random(29L);
+    LocationList.Builder sb = LocationList.builder();
+    for (int i = 0; i < 150; i++) {
+      sb.add(32 + r.nextDouble() * 8, -124 + r.nextDouble() * 8);
+    }
+    sites = sb.build();
+    // spans more than one column tile
+    LocationList.Builder pb = LocationList.builder();
+    for (int i = 0; i < 1100; i++) {
+      pb.add(33 + r.nextDouble() * 4, -122 + r.nextDouble() * 4, r.nextDouble() * 20);
+    }
+    points = pb.build();
+  }
+
+  private static double expected(Metric metric, Location p1, Location p2) {
+    switch (metric) {
+      case HORIZONTAL:
+        return Locations.horzDistance(p1, p2);
+      case HORIZONTAL_FAST:
+        return Locations.horzDistanceFast(p1, p2);
+      case LINEAR:
+        return Locations.linearDistance(p1, p2);
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  private static double[] expected(Metric metric, double cutoff) {
+    double[] out = new double[sites.size() * points.size()];
+    for (int i = 0; i < sites.size(); i++) {
+      for (int j = 0; j < points.size(); j++) {
+        double r = expected(metric, sites.get(i), points.get(j));
+        out[i * points.size() + j] = (r > cutoff) ? Double.POSITIVE_INFINITY : r;
+      }
+    }
+    return out;
+  }
+
+  @Test
+  public final void compute() {
+    for (Metric metric : Metric.values()) {
+      assertArrayEquals(
+          expected(metric, Double.POSITIVE_INFINITY),
+          DistanceMatrix.compute(sites, points, metric),
+          0.0);
+    }
+  }
+
+  @Test
+  public final void cutoff() {
+    for (Metric metric : Metric.values()) {
+      for (double cutoff : new double[] { 0.0, 25.0, 150.0 }) {
+        assertArrayEquals(
+            expected(metric, cutoff),
+            DistanceMatrix.compute(sites, points, metric, cutoff),
+            0.0);
+      }
+    }
+  }
+
+  @Test
+  public final void small() {
+    // below the sequential threshold
+    LocationList rows = LocationList.create(sites.subList(0, 3));
+    LocationList cols = LocationList.create(points.subList(0, 7));
+    double[] matrix = DistanceMatrix.compute(rows, cols, Metric.LINEAR);
+    assertEquals(21, matrix.length);
+    assertEquals(Locations.linearDistance(rows.get(2), cols.get(4)), matrix[2 * 7 + 4], 0.0);
+  }
+
+  @Test
+  public final void buffer() throws IOException {
+    double[] expected = expected(Metric.HORIZONTAL_FAST, 50.0);
+    DoubleBuffer heap = DoubleBuffer.allocate(expected.length);
+    heap.position(10);
+    DistanceMatrix.compute(sites, points, Metric.HORIZONTAL_FAST, 50.0, heap);
+    assertEquals(10, heap.position());
+    assertArrayEquals(expected, heap.array(), 0.0);
+
+    Path file = Files.createTempFile("distance-matrix", ".bin");
+    try {
+      DoubleBuffer mapped = DistanceMatrix.compute(
+          sites, points, Metric.HORIZONTAL_FAST, 50.0, file);
+      double[] actual = new double[expected.length];
+      mapped.get(actual);
+      assertArrayEquals(expected, actual, 0.0);
+      assertEquals(expected.length * 8L, Files.size(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void cutoff_IAE() {
+    DistanceMatrix.compute(sites, points, Metric.LINEAR, -1.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void cutoffNaN_IAE() {
+    DistanceMatrix.compute(sites, points, Metric.LINEAR, Double.NaN);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void buffer_IAE() {
+    DistanceMatrix.compute(
+        sites, points, Metric.LINEAR, 10.0,
+        DoubleBuffer.allocate(sites.size() * points.size() - 1));
+  }
+
+}
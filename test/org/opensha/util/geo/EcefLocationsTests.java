@@ -0,0 +1,180 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class EcefLocationsTests {
+
+  private static final double HORZ_D = 1e-9;
+  private static final double LINEAR_D = 1e-9;
+  private static final double SEGMENT_D = 1e-3;
+
+  private static LocationList trace;
+  private static LocationList grid;
+  private static Location[] sites;
+
+  @BeforeClass
+  public static void setUp() {
+    Random r = new Random(11L);
+    LocationList.Builder tb = LocationList.builder();
+    double lat = 34.0;
+    double lon = -118.0;
+    for (int i = 0; i < 40; i++) {
+      tb.add(lat, lon, r.nextDouble() * 5.0);
+      lat += (r.nextDouble() - 0.3) * 0.1;
+      lon += (r.nextDouble() - 0.5) * 0.1;
+    }
+    trace = tb.build();
+
+    // includes antipodal, polar, and ±180° separations
+    LocationList.Builder gb = LocationList.builder();
+    for (int i = 0; i < 500; i++) {
+      gb.add(
+          r.nextDouble() * 180.0 - 90.0,
+          r.nextDouble() * 360.0 - 180.0,
+          r.nextDouble() * 30.0);
+    }
+    gb.add(90.0, 0.0).add(-90.0, 0.0).add(0.0, 180.0).add(0.0, -179.9);
+    grid = gb.build();
+
+    sites = new Location[200];
+    for (int i = 0; i < sites.length; i++) {
+      sites[i] = Location.create(
+          32.0 + r.nextDouble() * 4.0,
+          -120.0 + r.nextDouble() * 4.0,
+          r.nextDouble() * 10.0);
+    }
+  }
+
+  @Test
+  public final void horzDistance() {
+    EcefLocations ecef = EcefLocations.create(grid);
+    double[] out = new double[grid.size()];
+    for (Location site : sites) {
+      ecef.horzDistances(site, out);
+      for (int i = 0; i < grid.size(); i++) {
+        double expected = Locations.horzDistance(site, grid.get(i));
+        assertEquals(expected, out[i], HORZ_D);
+        assertEquals(expected, ecef.horzDistance(site, i), HORZ_D);
+      }
+    }
+  }
+
+  @Test
+  public final void linearDistance() {
+    EcefLocations ecef = EcefLocations.create(grid);
+    double[] out = new double[grid.size()];
+    for (Location site : sites) {
+      ecef.linearDistances(site, out);
+      double min = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < grid.size(); i++) {
+        double expected = Locations.linearDistance(site, grid.get(i));
+        assertEquals(expected, out[i], LINEAR_D);
+        assertEquals(expected, ecef.linearDistance(site, i), LINEAR_D);
+        min = Math.min(min, expected);
+      }
+      assertEquals(min, ecef.minLinearDistance(site), LINEAR_D);
+    }
+  }
+
+  @Test
+  public final void distanceToSegment() {
+    EcefLocations ecef = EcefLocations.create(trace);
+    for (Location site : sites) {
+      double min = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < trace.size() - 1; i++) {
+        double expected = EcefLocations.sphericalDistanceToSegment(
+            trace.get(i), trace.get(i + 1), site);
+        assertEquals(expected, ecef.distanceToSegment(site, i), SEGMENT_D);
+        min = Math.min(min, expected);
+      }
+      assertEquals(min, ecef.minDistanceToLine(site), SEGMENT_D);
+    }
+    Location p = trace.first();
+    assertEquals(0.0, ecef.minDistanceToLine(p), HORZ_D);
+    assertEquals(0.0, EcefLocations.create(LocationList.create(p)).minDistanceToLine(p), 0.0);
+  }
+
+  @Test
+  public final void minLinearDistanceToLine() {
+    // resample() ignores depth so compare using a surface trace
+    LocationList.Builder b = LocationList.builder();
+    for (Location loc : trace) {
+      b.add(loc.latitude, loc.longitude);
+    }
+    LocationList surface = b.build();
+    LocationList dense = surface.resample(0.05);
+    EcefLocations ecef = EcefLocations.create(surface);
+    EcefLocations ecefDense = EcefLocations.create(dense);
+    for (Location site : sites) {
+      double rPts = ecef.minLinearDistance(site);
+      double rLine = ecef.minLinearDistanceToLine(site);
+      assertTrue(rLine <= rPts + 1e-12);
+      // densely resampled vertices converge on the line result
+      assertEquals(rLine, ecefDense.minLinearDistance(site), 0.05);
+    }
+    ecef = EcefLocations.create(trace);
+    Location p = trace.get(7);
+    assertEquals(0.0, ecef.minLinearDistanceToLine(p), 1e-9);
+  }
+
+  @Test
+  public final void conversions() {
+    EcefLocations ecef = EcefLocations.create(grid);
+    for (int i = 0; i < grid.size(); i++) {
+      Location expected = grid.get(i);
+      Location actual = ecef.location(i);
+      assertEquals(expected.latitude, actual.latitude, 1e-9);
+      assertEquals(expected.depth, actual.depth, 1e-9);
+      if (Math.abs(expected.latitude) < 90.0) {
+        double dLon = Math.abs(expected.longitude - actual.longitude);
+        assertTrue(dLon < 1e-9 || Math.abs(dLon - 360.0) < 1e-9);
+      }
+      assertArrayEquals(EcefLocations.vector(expected), ecef.vector(i), 0.0);
+    }
+    double[] v = EcefLocations.vector(Location.create(0.0, 90.0, 10.0));
+    assertArrayEquals(
+        new double[] { 0.0, Coordinates.EARTH_RADIUS_MEAN - 10.0, 0.0 },
+        v, 1e-9);
+    Location p = EcefLocations.location(v[0], v[1], v[2]);
+    assertEquals(0.0, p.latitude, 1e-12);
+    assertEquals(90.0, p.longitude, 1e-12);
+    assertEquals(10.0, p.depth, 1e-9);
+    assertEquals(grid.size(), ecef.size());
+    assertEquals(grid, ecef.locations());
+  }
+
+  @Test
+  public final void accuracy() {
+    EcefLocations ecef = EcefLocations.create(trace);
+    for (Location site : sites) {
+      EcefLocations.Accuracy acc = ecef.accuracy(site);
+      assertTrue(acc.toString(), acc.horzDistance < HORZ_D);
+      assertTrue(acc.toString(), acc.linearDistance < LINEAR_D);
+      assertTrue(acc.toString(), acc.segmentDistance < SEGMENT_D);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void distanceToSegment_IAE() {
+    EcefLocations.create(trace).distanceToSegment(sites[0], trace.size() - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void horzDistances_IAE() {
+    EcefLocations.create(trace).horzDistances(sites[0], new double[trace.size() - 1]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void location_IAE() {
+    EcefLocations.location(0.0, 0.0, 1.0);
+  }
+
+}
@@ -0,0 +1,295 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class GridLocationListTests {
+
+  private static final Location ORIGIN = Location.create(34.0, -75.0, 5.0);
+  private static final double ΔLAT = 0.1;
+  private static final double ΔLON = 0.2;
+  private static final int ROWS = 41;
+  private static final int COLUMNS = 51;
+
+  private static GridLocationList grid() {
+    return GridLocationList.create(ORIGIN, ΔLAT, ΔLON, ROWS, COLUMNS);
+  }
+
+  private static List<Location> nodes(BitSet mask) {
+    List<Location> nodes = new ArrayList<>();
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        if (mask == null || mask.get(row * COLUMNS + column)) {
+          nodes.add(Location.create(
+              ORIGIN.latitude + row * ΔLAT,
+              ORIGIN.longitude + column * ΔLON,
+              ORIGIN.depth));
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private static BitSet randomMask(long seed) {
+    Random r = new Random(seed);
+    BitSet mask = new BitSet();
+    for (int i = 0; i < ROWS * COLUMNS; i++) {
+      // bias to the interior so masked bounds differ
+      int row = i / COLUMNS;
+      int column = i % COLUMNS;
+      if (row > 2 && row < ROWS - 5 && column > 3 && column < COLUMNS - 1 &&
+          r.nextDouble() < 0.6) {
+        mask.set(i);
+      }
+    }
+    return mask;
+  }
+
+  @Test
+  public final void grid_() {
+    GridLocationList grid = grid();
+    List<Location> expected = nodes(null);
+    assertEquals(expected.size(), grid.size());
+    assertEquals(expected, grid);
+    assertEquals(LocationList.create(expected), grid);
+    assertEquals(LocationList.create(expected).hashCode(), grid.hashCode());
+    assertEquals(Locations.bounds(expected), grid.bounds());
+    assertEquals(ORIGIN.depth, grid.depth(), 0.0);
+    assertEquals(ROWS, grid.rows());
+    assertEquals(COLUMNS, grid.columns());
+    assertEquals(ΔLAT, grid.latSpacing(), 0.0);
+    assertEquals(ΔLON, grid.lonSpacing(), 0.0);
+    assertFalse(grid.isMasked());
+    assertEquals(
+        LocationList.create(expected).length(),
+        grid.length(),
+        0.0);
+    assertEquals(LocationList.create(expected).resample(30.0), grid.resample(30.0));
+    assertEquals(LocationList.create(expected).partition(500.0), grid.partition(500.0));
+
+    // beyond Bounds restrictions; only bounds() should fail
+    GridLocationList wide = GridLocationList.create(Location.create(0.0, 170.0), 1.0, 1.0, 2, 2);
+    assertEquals(Location.create(1.0, 171.0), wide.get(3));
+  }
+
+  @Test
+  public final void masked() {
+    BitSet mask = randomMask(7L);
+    GridLocationList grid = grid().mask(mask);
+    List<Location> expected = nodes(mask);
+    assertTrue(grid.isMasked());
+    assertEquals(mask.cardinality(), grid.size());
+    assertEquals(expected, grid);
+    assertEquals(Locations.bounds(expected), grid.bounds());
+    for (int i = 0; i < grid.size(); i++) {
+      assertEquals(expected.get(i), grid.get(i));
+      assertEquals(i, grid.nearestIndex(expected.get(i)));
+    }
+    // remasking replaces the mask
+    assertEquals(nodes(null), grid.mask(full()));
+  }
+
+  @Test
+  public final void maskedSparse() {
+    // dense runs mixed with isolated nodes exercise both select paths
+    GridLocationList grid = GridLocationList.create(ORIGIN, ΔLAT, ΔLON, 400, 300);
+    Random r = new Random(11L);
+    BitSet mask = new BitSet();
+    mask.set(0, 5000);
+    for (int i = 5000; i < 120_000; i++) {
+      if (r.nextDouble() < ((i < 60_000) ? 0.002 : 0.7)) {
+        mask.set(i);
+      }
+    }
+    mask.set(119_999);
+    GridLocationList masked = grid.mask(mask);
+    assertEquals(mask.cardinality(), masked.size());
+    for (int i = 0, node = mask.nextSetBit(0); node >= 0; i++, node = mask.nextSetBit(node + 1)) {
+      assertEquals(grid.get(node), masked.get(i));
+      assertEquals(i, masked.nearestIndex(grid.get(node)));
+    }
+  }
+
+  private static BitSet full() {
+    BitSet mask = new BitSet();
+    mask.set(0, ROWS * COLUMNS);
+    return mask;
+  }
+
+  @Test
+  public final void nearestIndex() {
+    GridLocationList grid = grid();
+    assertEquals(0, grid.nearestIndex(ORIGIN));
+    assertEquals(0, grid.nearestIndex(Location.create(33.96, -75.09)));
+    assertEquals(-1, grid.nearestIndex(Location.create(33.94, -75.0)));
+    assertEquals(-1, grid.nearestIndex(Location.create(34.0, -75.11)));
+    assertEquals(grid.size() - 1, grid.nearestIndex(Location.create(38.04, -64.91)));
+    assertEquals(-1, grid.nearestIndex(Location.create(38.06, -65.0)));
+    assertEquals(2 * COLUMNS + 3, grid.nearestIndex(Location.create(34.21, -74.41)));
+
+    BitSet mask = new BitSet();
+    mask.set(5);
+    mask.set(COLUMNS + 1);
+    GridLocationList masked = grid.mask(mask);
+    assertEquals(-1, masked.nearestIndex(ORIGIN));
+    assertEquals(0, masked.nearestIndex(Location.create(34.0, -74.0)));
+    assertEquals(1, masked.nearestIndex(Location.create(34.1, -74.8)));
+  }
+
+  @Test
+  public final void filters() {
+    Random r = new Random(11L);
+    GridLocationList grid = grid();
+    List<LocationList> grids = new ArrayList<>();
+    grids.add(grid);
+    grids.add(grid.mask(randomMask(13L)));
+    for (LocationList locs : grids) {
+      LocationList packed = LocationList.packed(locs);
+      List<Location> origins = new ArrayList<>();
+      // on nodes, off grid, and at random
+      origins.add(ORIGIN);
+      origins.add(locs.get(locs.size() / 2));
+      origins.add(Location.create(30.0, -80.0));
+      for (int i = 0; i < 50; i++) {
+        origins.add(Location.create(
+            32.0 + r.nextDouble() * 8.0,
+            -77.0 + r.nextDouble() * 14.0));
+      }
+      for (Location origin : origins) {
+        for (double distance : new double[] { 0.0, 11.119, 20.0, 55.0, 200.0, 5000.0 }) {
+          assertEquals(
+              Locations.filterByDistance(packed, origin, distance),
+              Locations.filterByDistance(locs, origin, distance));
+          assertEquals(
+              Locations.filterByRectangle(packed, origin, distance),
+              Locations.filterByRectangle(locs, origin, distance));
+          assertEquals(
+              Locations.filterByRectangleAndDistance(packed, origin, distance),
+              Locations.filterByRectangleAndDistance(locs, origin, distance));
+        }
+      }
+    }
+
+    // nodes at the filter distance
+    GridLocationList nodes = GridLocationList.create(Location.create(-1.0, -1.0), 1.0, 1.0, 3, 3);
+    Location center = Location.create(0.0, 0.0);
+    double distance = Locations.horzDistanceFast(center, Location.create(1.0, 0.0));
+    BitSet bits = Locations.filterByDistance(nodes, center, distance);
+    assertEquals(Locations.filterByDistance(LocationList.packed(nodes), center, distance), bits);
+    assertEquals(5, bits.cardinality());
+  }
+
+  @Test
+  public final void polar() {
+    GridLocationList grid = GridLocationList.create(Location.create(80.0, -20.0), 1.0, 5.0, 11, 9);
+    LocationList packed = LocationList.packed(grid);
+    Location origin = Location.create(88.0, 0.0);
+    for (double distance : new double[] { 100.0, 300.0, 1000.0 }) {
+      assertEquals(
+          Locations.filterByDistance(packed, origin, distance),
+          Locations.filterByDistance(grid, origin, distance));
+      assertEquals(
+          Locations.filterByRectangleAndDistance(packed, origin, distance),
+          Locations.filterByRectangleAndDistance(grid, origin, distance));
+    }
+  }
+
+  @Test
+  public final void interior() {
+    Random r = new Random(19L);
+    for (int n = 0; n < 10; n++) {
+      // noisy star-shaped border
+      LocationList.Builder b = LocationList.builder();
+      int size = 5 + r.nextInt(200);
+      for (int i = 0; i < size; i++) {
+        double angle = 2 * Math.PI * i / size;
+        double radius = 1.0 + r.nextDouble() * 2.0;
+        b.add(37.0 + radius * Math.sin(angle), -75.0 + radius * Math.cos(angle));
+      }
+      LocationList border = b.build();
+      double spacing = (n == 0) ? 0.5 : 0.01 + r.nextDouble() * 0.1;
+      Location anchor = (n == 1)
+          ? border.get(0)
+          : Location.create(30.0 + r.nextDouble(), -80.0 + r.nextDouble(), 2.0);
+      GridLocationList grid = GridLocationList.interior(border, spacing, anchor);
+
+      // brute force over all nodes of the covering grid
+      GridLocationList all = grid.mask(fullMask(grid));
+      java.awt.geom.Path2D path = Locations.toPath(border);
+      List<Location> expected = new ArrayList<>();
+      for (Location loc : all) {
+        if (path.contains(loc.longitude, loc.latitude)) {
+          expected.add(loc);
+        }
+      }
+      assertEquals(expected, grid);
+      assertTrue(grid.size() > 0);
+      assertEquals(anchor.depth, grid.depth(), 0.0);
+      PolygonIndex polygon = PolygonIndex.create(border);
+      assertEquals(grid.size(), polygon.contains(grid).cardinality());
+      assertEquals(polygon.contains(LocationList.packed(all)), polygon.contains(all));
+    }
+  }
+
+  private static BitSet fullMask(GridLocationList grid) {
+    BitSet mask = new BitSet();
+    mask.set(0, grid.rows() * grid.columns());
+    return mask;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void interior_IAE() {
+    LocationList border = LocationList.create(
+        Location.create(35.01, -75.01),
+        Location.create(35.01, -75.02),
+        Location.create(35.02, -75.02));
+    GridLocationList.interior(border, 1.0, Location.create(35.0, -75.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE1() {
+    GridLocationList.create(ORIGIN, 0.0, 0.1, 2, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE2() {
+    GridLocationList.create(ORIGIN, 0.1, 0.1, 0, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE3() {
+    GridLocationList.create(ORIGIN, 1.0, 0.1, 60, 2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE4() {
+    GridLocationList.create(ORIGIN, 0.1, 0.1, 100000, 100000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void mask_IAE1() {
+    grid().mask(new BitSet());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void mask_IAE2() {
+    BitSet mask = new BitSet();
+    mask.set(ROWS * COLUMNS);
+    grid().mask(mask);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void get_IOOBE() {
+    grid().mask(randomMask(3L)).get(ROWS * COLUMNS);
+  }
+
+}
@@ -0,0 +1,111 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class LocationIndexTests {
+
+  private static LocationList locs;
+  private static LocationIndex index;
+  private static Location[] sites;
+
+  @BeforeClass
+  public static void setUp() {
+    Random r = new Random(11L);
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < 5000; i++) {
+      b.add(30 + r.nextDouble() * 12, -125 + r.nextDouble() * 12);
+    }
+    // duplicates to exercise tie-breaking
+    b.add(36.0, -119.0).add(36.0, -119.0).add(36.0, -119.0);
+    locs = b.build();
+    index = LocationIndex.create(locs);
+
+    sites = new Location[200];
+    for (int i = 0; i < sites.length - 2; i++) {
+      sites[i] = Location.create(26 + r.nextDouble() * 20, -129 + r.nextDouble() * 20);
+    }
+    sites[sites.length - 2] = Location.create(36.0, -119.0);
+    sites[sites.length - 1] = Location.create(-60.0, 100.0);
+  }
+
+  @Test
+  public final void nearest() {
+    for (Location site : sites) {
+      Location expected = Locations.closestPoint(site, locs);
+      assertSame(expected, index.closestPoint(site));
+      assertSame(expected, locs.get(index.nearestIndex(site)));
+      assertEquals(
+          Locations.minDistanceToLocations(site, locs),
+          index.minDistance(site), 0.0);
+    }
+    // packed lists
+    LocationIndex packedIndex = LocationIndex.create(LocationList.packed(locs));
+    for (Location site : sites) {
+      assertEquals(index.nearestIndex(site), packedIndex.nearestIndex(site));
+    }
+  }
+
+  @Test
+  public final void nearestIndices() {
+    for (Location site : sites) {
+      for (int k : new int[] { 1, 3, 10 }) {
+        assertArrayEquals(bruteNearest(site, k), index.nearestIndices(site, k));
+      }
+    }
+    int[] all = index.nearestIndices(sites[0], locs.size() + 10);
+    assertEquals(locs.size(), all.length);
+    assertArrayEquals(bruteNearest(sites[0], locs.size()), all);
+  }
+
+  @Test
+  public final void indicesWithin() {
+    for (Location site : sites) {
+      for (double distance : new double[] { 0.0, 10.0, 50.0, 200.0 }) {
+        int[] expected = IntStream.range(0, locs.size())
+            .filter(i -> Locations.horzDistanceFast(site, locs.get(i)) <= distance)
+            .toArray();
+        assertArrayEquals(expected, index.indicesWithin(site, distance));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void nearestIndices_IAE() {
+    index.nearestIndices(sites[0], 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void indicesWithin_IAE() {
+    index.indicesWithin(sites[0], Double.NaN);
+  }
+
+  @Test
+  public final void singleton() {
+    Location loc = Location.create(34.0, -118.0);
+    LocationIndex single = LocationIndex.create(LocationList.create(loc));
+    assertSame(loc, single.closestPoint(sites[0]));
+    assertArrayEquals(new int[] { 0 }, single.nearestIndices(sites[0], 5));
+  }
+
+  private static int[] bruteNearest(Location site, int k) {
+    double[] r = new double[locs.size()];
+    for (int i = 0; i < r.length; i++) {
+      r[i] = Locations.horzDistanceFast(site, locs.get(i));
+    }
+    Integer[] order = IntStream.range(0, r.length).boxed().toArray(Integer[]::new);
+    Arrays.sort(order, Comparator.<Integer> comparingDouble(i -> r[i]));
+    return Arrays.stream(order).limit(k).mapToInt(Integer::intValue).toArray();
+  }
+
+}
@@ -1,13 +1,24 @@
 package org.opensha.util.geo;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.opensha.util.Text.NEWLINE;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.BeforeClass;
@@ -15,6 +26,7 @@ import org.junit.Test;
 import org.opensha.util.Maths;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
 // TODO re-enable LocationGrid tests; check coverage
@@ -317,6 +329,236 @@ public class LocationListTests {
     assertEquals(0.3333333333333333, locs.depth(), 0.0);
   }
 
+  /* Packed */
+
+  @Test
+  public final void packed() {
+    LocationList packed = LocationList.packed(locs1);
+    assertEquals(locs1, packed);
+    assertEquals(packed, locs1);
+    assertNotEquals(locs2, packed);
+    assertEquals(locs1.hashCode(), packed.hashCode());
+    assertEquals(locs1.toString(), packed.toString());
+    assertEquals(locs1.reverse(), packed.reverse());
+    assertSame(packed, LocationList.packed(packed));
+    assertEquals(p3, packed.get(2));
+    assertEquals(p7, packed.last());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void packed_IAE() {
+    List<Location> locs = ImmutableList.of();
+    LocationList.packed(locs);
+  }
+
+  @Test
+  public final void packedGeometry() {
+    LocationVector v = LocationVector.create(135 * Maths.TO_RADIANS, 5.0, 5.0);
+    LocationList locs = LocationList.create(
+        p1, p2, p3, Location.create(0.0, 0.0, 2.0), p5, p6, p7)
+        .translate(v);
+    LocationList packed = LocationList.packed(locs);
+    assertEquals(locs.length(), packed.length(), 0.0);
+    assertEquals(locs.depth(), packed.depth(), 0.0);
+    assertArrayEquals(locs.distances(), packed.distances(), 0.0);
+    assertEquals(locs.bounds(), packed.bounds());
+    assertEquals(locs.centroid(), packed.centroid());
+    assertEquals(locs.resample(12.0), packed.resample(12.0));
+    assertEquals(locs.resample(110.0), packed.resample(110.0));
+    assertEquals(locs.partition(100.0), packed.partition(100.0));
+    assertEquals(locs.partition(400.0), packed.partition(400.0));
+
+    // singleton
+    packed = LocationList.packed(ImmutableList.of(p1));
+    assertEquals(0.0, packed.length(), 0.0);
+    assertEquals(0, packed.distances().length);
+    assertSame(packed, packed.resample(1.0));
+  }
+
+  @Test
+  public final void memoize() {
+    LocationVector v = LocationVector.create(135 * Maths.TO_RADIANS, 5.0, 5.0);
+    LocationList locs = LocationList.create(
+        p1, p2, p3, Location.create(0.0, 0.0, 2.0), p5, p6, p7)
+        .translate(v);
+    LocationList memo = locs.memoize();
+    assertSame(memo, memo.memoize());
+    assertEquals(locs, memo);
+    assertEquals(memo, locs);
+    assertEquals(locs.hashCode(), memo.hashCode());
+    assertEquals(locs.toString(), memo.toString());
+    for (int i = 0; i < 2; i++) {
+      assertEquals(locs.length(), memo.length(), 0.0);
+      assertEquals(locs.depth(), memo.depth(), 0.0);
+      assertArrayEquals(locs.distances(), memo.distances(), 0.0);
+      assertEquals(locs.bounds(), memo.bounds());
+      assertEquals(Locations.centroid(locs), memo.centroid());
+    }
+    assertSame(memo.bounds(), memo.bounds());
+    assertSame(memo.centroid(), memo.centroid());
+    // returned distances are defensive copies
+    memo.distances()[0] = -1.0;
+    assertEquals(locs.distances()[0], memo.distances()[0], 0.0);
+    assertEquals(locs.resample(12.0), memo.resample(12.0));
+    assertEquals(locs.partition(100.0), memo.partition(100.0));
+    assertEquals(locs.reverse(), memo.reverse());
+    assertEquals(locs.reverse().length(), memo.reverse().length(), 0.0);
+
+    // packed
+    LocationList packed = LocationList.packed(locs).memoize();
+    assertEquals(locs.length(), packed.length(), 0.0);
+    assertEquals(locs.bounds(), packed.bounds());
+
+    // geometry other than bounds is available for all longitudes
+    locs = LocationList.create(Location.create(34.0, -118.0), Location.create(35.0, -117.0));
+    memo = locs.memoize();
+    assertEquals(locs.length(), memo.length(), 0.0);
+    assertEquals(locs.centroid(), memo.centroid());
+
+    // singleton
+    memo = LocationList.create(p1).memoize();
+    assertEquals(0.0, memo.length(), 0.0);
+    assertEquals(0, memo.distances().length);
+    assertEquals(p1, memo.centroid());
+  }
+
+  @Test
+  public final void mapped() throws IOException {
+    LocationVector v = LocationVector.create(135 * Maths.TO_RADIANS, 5.0, 5.0);
+    LocationList locs = LocationList.create(
+        p1, p2, p3, Location.create(0.0, 0.0, 2.0), p5, p6, p7)
+        .translate(v);
+    Path file = Files.createTempFile("locations", ".bin");
+    try {
+      LocationList.write(locs, file);
+      assertEquals(16 + locs.size() * 24L, Files.size(file));
+      LocationList mapped = LocationList.map(file);
+      assertEquals(locs, mapped);
+      assertEquals(mapped, locs);
+      assertEquals(locs.hashCode(), mapped.hashCode());
+      assertEquals(locs.toString(), mapped.toString());
+      assertEquals(locs.length(), mapped.length(), 0.0);
+      assertEquals(locs.depth(), mapped.depth(), 0.0);
+      assertArrayEquals(locs.distances(), mapped.distances(), 0.0);
+      assertEquals(locs.centroid(), mapped.centroid());
+      assertEquals(locs.resample(12.0), mapped.resample(12.0));
+      assertEquals(locs.partition(100.0), mapped.partition(100.0));
+
+      // foreign byte order
+      ByteOrder order = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN
+          ? ByteOrder.LITTLE_ENDIAN
+          : ByteOrder.BIG_ENDIAN;
+      ByteBuffer bytes = ByteBuffer.allocate(16 + 24).order(order);
+      bytes.putInt(0x4C4F4353).putInt(1).putInt(1).putInt(0);
+      bytes.putDouble(34.0).putDouble(-117.0).putDouble(5.0);
+      Files.write(file, bytes.array());
+      assertEquals(LocationList.create(Location.create(34.0, -117.0, 5.0)), LocationList.map(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public final void mappedRewrite() throws IOException {
+    LocationList locs = LocationList.create(p1, p2, p3);
+    Path file = Files.createTempFile("locations", ".bin");
+    try {
+      LocationList.write(locs, file);
+      LocationList mapped = LocationList.map(file);
+      // writing a mapped list back to its own file preserves it
+      LocationList.write(mapped, file);
+      assertEquals(locs, mapped);
+      assertEquals(locs, LocationList.map(file));
+      LocationList.write(LocationList.map(file).translate(
+          LocationVector.create(0.0, 1.0, 1.0)), file);
+      assertEquals(locs.translate(LocationVector.create(0.0, 1.0, 1.0)), LocationList.map(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+    try (DirectoryStream<Path> tmp = Files.newDirectoryStream(
+        file.getParent(), file.getFileName() + "*.tmp")) {
+      assertFalse(tmp.iterator().hasNext());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public final void mapped_IOE() throws IOException {
+    Path file = Files.createTempFile("locations", ".bin");
+    try {
+      Files.write(file, "-117.0,34.0,5.0 -117.0,34.1,5.0".getBytes(StandardCharsets.US_ASCII));
+      LocationList.map(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public final void resampleSink() {
+    LocationVector v = LocationVector.create(135 * Maths.TO_RADIANS, 5.0, 5.0);
+    LocationList locs = LocationList.create(
+        p1, p2, p3, Location.create(0.0, 0.0, 2.0), p5, p6, p7)
+        .translate(v);
+    for (LocationList list : ImmutableList.of(locs, LocationList.packed(locs))) {
+      for (double spacing : new double[] { 12.0, 110.0, 10000.0 }) {
+        List<LocationList> sunk = sink(sink -> list.resample(spacing, sink));
+        assertEquals(1, sunk.size());
+        assertEquals(list.resample(spacing), sunk.get(0));
+      }
+      for (double length : new double[] { 100.0, 400.0, 10000.0 }) {
+        assertEquals(list.partition(length), sink(sink -> list.partition(length, sink)));
+      }
+    }
+    // original instances are retained
+    List<LocationList> partitions = locs.partition(100.0);
+    assertSame(locs.first(), partitions.get(0).first());
+    assertSame(locs.last(), Iterables.getLast(partitions).last());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void resampleSink_IAE() {
+    locs1.resample(-1.0, (lat, lon, depth) -> {});
+  }
+
+  @Test
+  public final void resampleBulk() {
+    LocationVector v = LocationVector.create(135 * Maths.TO_RADIANS, 5.0, 5.0);
+    LocationList locs = LocationList.create(
+        p1, p2, p3, Location.create(0.0, 0.0, 2.0), p5, p6, p7)
+        .translate(v);
+    List<LocationList> traces = ImmutableList.of(
+        locs, LocationList.packed(locs), locs.reverse(), locs1, locs2);
+    List<LocationList> resampled = Locations.resample(traces, 12.0);
+    assertEquals(traces.size(), resampled.size());
+    for (int i = 0; i < traces.size(); i++) {
+      assertEquals(traces.get(i).resample(12.0), resampled.get(i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void resampleBulk_IAE() {
+    Locations.resample(ImmutableList.of(locs1), Double.NaN);
+  }
+
+  /* Collect the lists emitted to a sink. */
+  private static List<LocationList> sink(Consumer<LocationList.Sink> source) {
+    List<LocationList> lists = new ArrayList<>();
+    source.accept(new LocationList.Sink() {
+      LocationList.Builder list = LocationList.builder();
+
+      @Override
+      public void add(double latitude, double longitude, double depth) {
+        list.add(latitude, longitude, depth);
+      }
+
+      @Override
+      public void end() {
+        lists.add(list.build());
+        list = LocationList.builder();
+      }
+    });
+    return lists;
+  }
+
   /* Builder */
 
   @Test
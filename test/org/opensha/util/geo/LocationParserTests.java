@@ -0,0 +1,146 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
+
+@SuppressWarnings("javadoc")
+public class LocationParserTests {
+
+  /* Values are parsed identically to Double.valueOf(). */
+  @Test
+  public final void parseDouble() {
+    String[] values = {
+        "0", "-0", "+0", "0.0", "-0.0", "00012.5000", ".5", "5.", "-.5",
+        "1e3", "1E-3", "-2.5e+2", "1e22", "1e23", "1e-22", "1e-23",
+        "9007199254740992", "9007199254740993", "123456789012345678901234",
+        "0.1", "0.2", "0.3", "34.05223", "-118.24368", "1.7976931348623157e308",
+        "4.9e-324", "NaN", "-Infinity", "0x1p3", "1d", "2.5f",
+        "0.000000000000000000000000001", "100000000000000000000000" };
+    for (String value : values) {
+      assertParsed(value);
+    }
+    Random r = new Random(13L);
+    for (int i = 0; i < 20000; i++) {
+      double d = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(12) - 4);
+      assertParsed(Double.toString(d));
+      assertParsed(String.format("%.5f", d));
+      assertParsed(String.format("%.3e", d));
+    }
+  }
+
+  /* Mantissas of 19 or more significant digits overflow a long. */
+  @Test
+  public final void longMantissa() {
+    String[] values = {
+        "0.9876543210987654321", "9.500000000000000000", "9.5000000000000000000",
+        "9999999999999999999", "-99999999999999999999", "1.000000000000000000",
+        "123456789012345678", "12345678901234567890", "0.99999999999999999999" };
+    for (String value : values) {
+      assertParsed(value);
+    }
+    Location loc = Location.fromString(
+        "9.500000000000000000,0.9876543210987654321,5.000000000000000000");
+    assertEquals(9.5, loc.longitude, 0.0);
+    assertEquals(0.9876543210987654321, loc.latitude, 0.0);
+    assertEquals(5.0, loc.depth, 0.0);
+  }
+
+  /* Compare the unvalidated values streamed from char and byte input. */
+  private static void assertParsed(String value) {
+    long expected = Double.doubleToLongBits(Double.valueOf(value));
+    String s = " " + value + ",0.0," + value + " ";
+    double[] out = new double[2];
+    LocationList.Sink sink = (lat, lon, depth) -> {
+      out[0] = lon;
+      out[1] = depth;
+    };
+    LocationParser.parse(s, 0, s.length(), sink);
+    assertEquals(value, expected, Double.doubleToLongBits(out[0]));
+    assertEquals(value, expected, Double.doubleToLongBits(out[1]));
+    ByteBuffer bytes = ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    LocationParser.parse(bytes, 0, bytes.limit(), sink);
+    assertEquals(value, expected, Double.doubleToLongBits(out[0]));
+  }
+
+  @Test
+  public final void list() {
+    Random r = new Random(7L);
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < 1000; i++) {
+      b.add(r.nextDouble() * 180.0 - 90.0, r.nextDouble() * 360.0 - 180.0, r.nextDouble() * 20.0);
+    }
+    LocationList locs = b.build();
+    String s = Joiner.on("\n ").join(locs);
+    // reference parse of the 5 decimal place string form
+    LocationList expected = LocationList.create(Iterables.transform(locs, loc -> {
+      String[] values = loc.toString().split(",");
+      return Location.create(
+          Double.valueOf(values[1]),
+          Double.valueOf(values[0]),
+          Double.valueOf(values[2]));
+    }));
+    assertEquals(expected, LocationList.fromString(s));
+    assertEquals(expected, LocationList.fromString(CharBuffer.wrap(s)));
+
+    // bytes; position is not changed
+    byte[] bytes = ("###" + s + "\t").getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.position(3);
+    assertEquals(expected, LocationList.fromBytes(buffer));
+    assertEquals(3, buffer.position());
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+    direct.position(3);
+    assertEquals(expected, LocationList.fromBytes(direct));
+    assertTrue(LocationList.fromString(s) instanceof PackedLocationList);
+  }
+
+  @Test
+  public final void tokens() {
+    Location expected = Location.create(34.0, -117.0, 5.0);
+    assertEquals(expected, Location.fromString(" -117.0 , 34.0,,5.0,99 "));
+    assertEquals(expected, Location.stringConverter().reverse().convert("-117,34,5"));
+    LocationList locs = LocationList.fromString("\n\t-117.0,34.0,5.0,,  -117,34,5,7\r\n");
+    assertEquals(LocationList.create(expected, expected), locs);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public final void location_NFE() {
+    Location.fromString("-117.0,34.0,5.0,x");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public final void list_NFE() {
+    LocationList.fromString("-117.0,34.0,5.0 -117.0,34.0,-");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public final void bytes_NFE() {
+    LocationList.fromBytes(ByteBuffer.wrap("-117.0,3°4.0,5.0".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public final void list_IOOBE() {
+    LocationList.fromString("-117.0,34.0,5.0 -117.0,34.0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void list_IAE() {
+    LocationList.fromString(" \n ");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void range_IAE() {
+    LocationList.fromString("-117.0,94.0,5.0");
+  }
+
+}
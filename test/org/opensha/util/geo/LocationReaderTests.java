@@ -0,0 +1,200 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+@SuppressWarnings("javadoc")
+public class LocationReaderTests {
+
+  private static Path file;
+  private static List<Location> expected;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    Random r = new Random(17L);
+    StringBuilder sb = new StringBuilder("# lon,lat,depth\n\n");
+    // exercises buffer growth
+    sb.append('#').append(Strings.repeat("x", 100000)).append('\n');
+    expected = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      double lon = -75.0 + r.nextDouble() * 10.0;
+      double lat = 35.0 + r.nextDouble() * 10.0;
+      double depth = r.nextDouble() * 20.0;
+      String lonStr = Double.toString(lon);
+      String latStr = String.format("%.5f", lat);
+      String depthStr = String.format("%.3f", depth);
+      switch (i % 5) {
+        case 0:
+          sb.append(lonStr).append(',').append(latStr).append(',').append(depthStr);
+          break;
+        case 1:
+          sb.append("  ").append(lonStr).append('\t').append(latStr).append(' ').append(depthStr);
+          break;
+        case 2:
+          sb.append(lonStr).append(", ").append(latStr);
+          depthStr = "0.0";
+          break;
+        case 3:
+          // extra value and CRLF
+          sb.append(lonStr).append(',').append(latStr).append(',').append(depthStr).append(",4.5\r");
+          break;
+        default:
+          sb.append(lonStr).append(' ').append(latStr).append(' ').append(depthStr).append("\n#");
+      }
+      sb.append('\n');
+      expected.add(Location.create(
+          Double.valueOf(latStr),
+          Double.valueOf(lonStr),
+          Double.valueOf(depthStr)));
+    }
+    // no trailing newline
+    sb.append("-70.0,40.0,1.0");
+    expected.add(Location.create(40.0, -70.0, 1.0));
+    file = Files.createTempFile("locations", ".csv");
+    Files.write(file, sb.toString().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @AfterClass
+  public static void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public final void sequential() throws IOException {
+    for (int batchSize : new int[] { 1, 7, LocationReader.DEFAULT_BATCH_SIZE, 100000 }) {
+      List<Location> actual = new ArrayList<>();
+      LocationReader.Summary summary = new LocationReader.Summary();
+      try (LocationReader reader = LocationReader.open(file, batchSize)) {
+        LocationReader.Batch batch;
+        while ((batch = reader.next()) != null) {
+          assertTrue(batch.size() <= batchSize);
+          assertEquals(batch.size(), batch.latitudes().length);
+          for (int i = 0; i < batch.size(); i++) {
+            actual.add(batch.location(i));
+          }
+          summary.accept(batch);
+        }
+        assertNull(reader.next());
+      }
+      assertEquals(expected, actual);
+      assertEquals(expected.size(), summary.count());
+      assertEquals(Locations.bounds(expected), summary.bounds());
+      assertEquals(Locations.centroid(expected), summary.centroid());
+    }
+  }
+
+  @Test
+  public final void distances() throws IOException {
+    Location origin = Location.create(40.0, -70.0);
+    LocationList locs = LocationList.create(expected);
+    double[] expectedDistances = Locations.horzDistanceFast(origin, locs, new double[locs.size()]);
+    double[] actual = new double[locs.size()];
+    int offset = 0;
+    try (LocationReader reader = LocationReader.open(file, 1000)) {
+      LocationReader.Batch batch;
+      double[] out = new double[1000];
+      while ((batch = reader.next()) != null) {
+        Locations.horzDistanceFast(origin, batch.latitudes(), batch.longitudes(), out);
+        System.arraycopy(out, 0, actual, offset, batch.size());
+        assertEquals(expected.subList(offset, offset + batch.size()), batch.toList());
+        offset += batch.size();
+      }
+    }
+    assertArrayEquals(expectedDistances, actual, 0.0);
+  }
+
+  @Test
+  public final void parallel() throws IOException {
+    for (int chunks : new int[] { 0, 1, 3, 97, 1000, 200000 }) {
+      List<Location> actual = Collections.synchronizedList(new ArrayList<>());
+      List<LocationReader.Summary> summaries = Collections.synchronizedList(new ArrayList<>());
+      LocationReader.parallel(file, 64, batch -> {
+        LocationReader.Summary summary = new LocationReader.Summary();
+        summary.accept(batch);
+        summaries.add(summary);
+        for (int i = 0; i < batch.size(); i++) {
+          actual.add(batch.location(i));
+        }
+      }, chunks);
+      List<Location> sorted = new ArrayList<>(expected);
+      Collections.sort(sorted);
+      Collections.sort(actual);
+      assertEquals(sorted, actual);
+
+      LocationReader.Summary total = new LocationReader.Summary();
+      summaries.forEach(total::combine);
+      assertEquals(expected.size(), total.count());
+      assertEquals(Locations.bounds(expected), total.bounds());
+      Location centroid = Locations.centroid(expected);
+      assertEquals(centroid.latitude, total.centroid().latitude, 1e-9);
+      assertEquals(centroid.longitude, total.centroid().longitude, 1e-9);
+      assertEquals(centroid.depth, total.centroid().depth, 1e-9);
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public final void next_NFE() throws IOException {
+    read("-70.0,40.0,1.0\n-70.0,4O.0,1.0\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void next_IAE1() throws IOException {
+    read("-70.0,40.0,1.0\n-70.0,91.0,1.0\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void next_IAE2() throws IOException {
+    read("-70.0,40.0,1.0\n-70.0\n");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void next_IAE3() throws IOException {
+    // a record of only non-ASCII bytes is invalid, not blank
+    read("-70.0,40.0,1.0\n\u00e9\u00e8\n-70.0,41.0,1.0\n", StandardCharsets.UTF_8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void parallel_IAE() throws IOException {
+    LocationReader.parallel(file, 0, batch -> {});
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public final void summary_ISE() {
+    new LocationReader.Summary().centroid();
+  }
+
+  private static void read(String s) throws IOException {
+    read(s, StandardCharsets.US_ASCII);
+  }
+
+  private static void read(String s, Charset charset) throws IOException {
+    Path tmp = Files.createTempFile("locations", ".csv");
+    try {
+      Files.write(tmp, s.getBytes(charset));
+      try (LocationReader reader = LocationReader.open(tmp)) {
+        while (reader.next() != null) {}
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+}
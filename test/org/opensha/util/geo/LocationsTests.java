@@ -1,5 +1,6 @@
 package org.opensha.util.geo;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.opensha.util.Maths.TO_DEGREES;
@@ -8,8 +9,11 @@ import static org.opensha.util.geo.Coordinates.EARTH_RADIUS_MEAN;
 
 import org.junit.Test;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 
@@ -524,6 +528,101 @@ public class LocationsTests {
     Locations.bounds(locs);
   }
 
+  @Test
+  public void testBatchDistances() {
+    Random r = new Random(7L);
+    Location origin = Location.create(34.2, -118.1, 2.0);
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < 100; i++) {
+      b.add(30 + r.nextDouble() * 8, -122 + r.nextDouble() * 8, r.nextDouble() * 20);
+    }
+    LocationList locs = b.build();
+    LocationList packed = LocationList.packed(locs);
+    int size = locs.size();
+    double[] lats = new double[size];
+    double[] lons = new double[size];
+    double[] depths = new double[size];
+    double[] hdf = new double[size];
+    double[] hd = new double[size];
+    double[] ld = new double[size];
+    double[] az = new double[size];
+    for (int i = 0; i < size; i++) {
+      Location loc = locs.get(i);
+      lats[i] = loc.latitude;
+      lons[i] = loc.longitude;
+      depths[i] = loc.depth;
+      hdf[i] = Locations.horzDistanceFast(origin, loc);
+      hd[i] = Locations.horzDistance(origin, loc);
+      ld[i] = Locations.linearDistance(origin, loc);
+      az[i] = Locations.azimuth(origin, loc);
+    }
+    double[] out = new double[size + 3];
+    for (LocationList list : Lists.newArrayList(locs, packed)) {
+      Locations.horzDistanceFast(origin, list, out);
+      assertArrayEquals(hdf, Arrays.copyOf(out, size), 0.0);
+      Locations.horzDistance(origin, list, out);
+      assertArrayEquals(hd, Arrays.copyOf(out, size), 0.0);
+      Locations.linearDistance(origin, list, out);
+      assertArrayEquals(ld, Arrays.copyOf(out, size), 0.0);
+      Locations.azimuth(origin, list, out);
+      assertArrayEquals(az, Arrays.copyOf(out, size), 0.0);
+    }
+    out = new double[size];
+    assertArrayEquals(hdf, Locations.horzDistanceFast(origin, lats, lons, out), 0.0);
+    assertArrayEquals(hd, Locations.horzDistance(origin, lats, lons, out), 0.0);
+    assertArrayEquals(ld, Locations.linearDistance(origin, lats, lons, depths, out), 0.0);
+    assertArrayEquals(az, Locations.azimuth(origin, lats, lons, out), 0.0);
+
+    // pole origin
+    Location pole = Location.create(90.0, 0.0);
+    assertEquals(180.0, Locations.azimuth(pole, packed, out)[size - 1], 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBatchDistancesIAE() {
+    LocationList locs = LocationList.create(L1, L2, L3);
+    Locations.horzDistanceFast(L4, locs, new double[2]);
+  }
+
+  @Test
+  public void testBulkFilters() {
+    Random r = new Random(31L);
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < 2000; i++) {
+      b.add(33 + r.nextDouble() * 4, -120 + r.nextDouble() * 4);
+    }
+    // include points on rectangle and distance edges
+    Location origin = Location.create(35.0, -118.0);
+    double distance = 100.0;
+    b.add(origin);
+    b.add(Locations.location(origin, 0.0, distance));
+    b.add(Locations.location(origin, Math.PI / 2, distance));
+    LocationList locs = b.build();
+
+    Predicate<Location> rect = Locations.rectangleFilter(origin, distance);
+    Predicate<Location> dist = Locations.distanceFilter(origin, distance);
+    Predicate<Location> both = Locations.distanceAndRectangleFilter(origin, distance);
+
+    for (LocationList list : Arrays.asList(locs, LocationList.packed(locs))) {
+      BitSet rectBits = Locations.filterByRectangle(list, origin, distance);
+      BitSet distBits = Locations.filterByDistance(list, origin, distance);
+      BitSet bothBits = Locations.filterByRectangleAndDistance(list, origin, distance);
+      for (int i = 0; i < list.size(); i++) {
+        Location loc = locs.get(i);
+        assertEquals(rect.apply(loc), rectBits.get(i));
+        assertEquals(dist.apply(loc), distBits.get(i));
+        assertEquals(both.apply(loc), bothBits.get(i));
+      }
+      BitSet and = (BitSet) rectBits.clone();
+      and.and(distBits);
+      assertEquals(bothBits, and);
+      assertTrue(distBits.cardinality() > 0);
+      assertTrue(rectBits.cardinality() > distBits.cardinality());
+      int[] indices = bothBits.stream().toArray();
+      assertEquals(bothBits.cardinality(), indices.length);
+    }
+  }
+
   /**
    * DEVELOPER NOTE
    *
@@ -669,6 +768,40 @@ public class LocationsTests {
       System.out.println("   DTSF: " + T);
     }
 
+    // ==========================================================
+    // Cached Latitude Trig Terms
+    //
+    // Summary: Location caches the sine and cosine of latitude
+    // such that angle() (and horzDistance()) only require
+    // two sin() and one atan2() call per pair.
+    // Results are identical to the uncached form.
+    //
+    // ==========================================================
+
+    System.out.println("\nSPEED TEST -- Cached Latitude Trig\n");
+    System.out.println("angleOLD(): " + angleOLD(L1, L2));
+    for (int i = 0; i < 5; i++) {
+      long T = System.currentTimeMillis();
+      double d;
+      for (int j = 0; j < numIter; j++) {
+        d = (fixedVals) ? angleOLD(L1, L2) : angleOLD(randomLoc(), randomLoc());
+      }
+      T = (System.currentTimeMillis() - T);
+      System.out.println("   ANGo: " + T);
+    }
+
+    System.out.println("angle(): " + Locations.angle(L1, L2));
+    for (int i = 0; i < 5; i++) {
+      long T = System.currentTimeMillis();
+      double d;
+      for (int j = 0; j < numIter; j++) {
+        d = (fixedVals) ? Locations.angle(L1, L2)
+            : Locations.angle(randomLoc(), randomLoc());
+      }
+      T = (System.currentTimeMillis() - T);
+      System.out.println("    ANG: " + T);
+    }
+
     // // ==========================================================
     // // Horizontal (Surface) Distance Methods
     // //
@@ -1075,6 +1208,19 @@ public class LocationsTests {
   /** Degree to Km conversion at equator */
   private final static double D_COEFF = 111.11;
 
+  /**
+   * OLD METHOD
+   *
+   * Haversine angle computed without cached latitude trig terms.
+   */
+  private static double angleOLD(Location p1, Location p2) {
+    double sinDlatBy2 = Math.sin((p2.latRad - p1.latRad) / 2.0);
+    double sinDlonBy2 = Math.sin((p2.lonRad - p1.lonRad) / 2.0);
+    double c = (sinDlatBy2 * sinDlatBy2) +
+        (Math.cos(p1.latRad) * Math.cos(p2.latRad) * sinDlonBy2 * sinDlonBy2);
+    return 2.0 * Math.atan2(Math.sqrt(c), Math.sqrt(1 - c));
+  }
+
   /**
    * OLD METHOD
    */
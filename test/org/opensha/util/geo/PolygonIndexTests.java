@@ -0,0 +1,154 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Path2D;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class PolygonIndexTests {
+
+  /* Star-shaped polygon about a center with noisy radius. */
+  private static LocationList star(Random r, int size) {
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < size; i++) {
+      double angle = 2 * Math.PI * i / size;
+      double radius = 1.0 + r.nextDouble() * 2.0;
+      b.add(37.0 + radius * Math.sin(angle), -120.0 + radius * Math.cos(angle));
+    }
+    return b.build();
+  }
+
+  /* Self-intersecting polygon of random vertices. */
+  private static LocationList random(Random r, int size) {
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < size; i++) {
+      b.add(35.0 + r.nextDouble() * 4.0, -122.0 + r.nextDouble() * 4.0);
+    }
+    return b.build();
+  }
+
+  /* Zig-zag comb of tall teeth above a base. */
+  private static LocationList comb(int teeth) {
+    LocationList.Builder b = LocationList.builder();
+    double width = 4.0 / teeth;
+    for (int i = 0; i < teeth; i++) {
+      double lon = -122.0 + i * width;
+      b.add(35.5, lon);
+      b.add(39.0, lon + width * 0.5);
+    }
+    b.add(35.5, -118.0);
+    b.add(35.0, -118.0);
+    b.add(35.0, -122.0);
+    return b.build();
+  }
+
+  private static void check(LocationList border, Random r) {
+    PolygonIndex index = PolygonIndex.create(border);
+    assertSame(border, index.border());
+    Path2D path = Locations.toPath(border);
+
+    // random points, vertices, edge midpoints, and vertex-aligned points
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i < 5000; i++) {
+      b.add(34.0 + r.nextDouble() * 6.0, -123.0 + r.nextDouble() * 6.0);
+    }
+    for (int i = 0; i < border.size(); i++) {
+      Location p1 = border.get(i);
+      Location p2 = border.get((i + 1) % border.size());
+      b.add(p1);
+      b.add((p1.latitude + p2.latitude) / 2, (p1.longitude + p2.longitude) / 2);
+      b.add(p1.latitude, -123.0 + r.nextDouble() * 6.0);
+      b.add(34.0 + r.nextDouble() * 6.0, p1.longitude);
+    }
+    LocationList points = b.build();
+
+    BitSet expected = new BitSet();
+    for (int i = 0; i < points.size(); i++) {
+      Location p = points.get(i);
+      boolean inside = path.contains(p.longitude, p.latitude);
+      assertEquals(inside, index.contains(p));
+      expected.set(i, inside);
+    }
+    assertTrue(expected.cardinality() > 0);
+    assertEquals(expected, index.contains(points));
+    assertEquals(expected, index.contains(LocationList.packed(points)));
+  }
+
+  @Test
+  public final void contains() {
+    Random r = new Random(23L);
+    for (int size : new int[] { 3, 4, 17, 500, 5000 }) {
+      check(star(r, size), r);
+    }
+    for (int size : new int[] { 5, 40, 300 }) {
+      check(random(r, size), r);
+    }
+  }
+
+  @Test
+  public final void tallEdges() {
+    Random r = new Random(41L);
+    check(comb(300), r);
+
+    // slab entries would grow with the square of the number of edges
+    LocationList border = comb(30000);
+    PolygonIndex index = PolygonIndex.create(border);
+    Path2D path = Locations.toPath(border);
+    for (int i = 0; i < 200; i++) {
+      Location p = Location.create(34.5 + r.nextDouble() * 5.0, -122.5 + r.nextDouble() * 5.0);
+      assertEquals(path.contains(p.longitude, p.latitude), index.contains(p));
+    }
+  }
+
+  @Test
+  public final void rectangle() {
+    // closed border and repeated vertices
+    LocationList border = LocationList.create(
+        Location.create(35.0, -120.0),
+        Location.create(35.0, -119.0),
+        Location.create(35.0, -119.0),
+        Location.create(36.0, -119.0),
+        Location.create(36.0, -120.0),
+        Location.create(35.0, -120.0));
+    PolygonIndex index = PolygonIndex.create(border);
+    assertTrue(index.contains(Location.create(35.5, -119.5)));
+    assertTrue(index.contains(Location.create(35.0, -120.0)));
+    assertFalse(index.contains(Location.create(36.0, -119.5)));
+    assertFalse(index.contains(Location.create(35.5, -119.0)));
+    assertFalse(index.contains(Location.create(34.5, -119.5)));
+    assertFalse(index.contains(Location.create(35.5, -121.0)));
+    check(border, new Random(29L));
+  }
+
+  @Test
+  public final void degenerate() {
+    PolygonIndex point = PolygonIndex.create(LocationList.create(Location.create(35.0, -120.0)));
+    assertFalse(point.contains(Location.create(35.0, -120.0)));
+    PolygonIndex line = PolygonIndex.create(LocationList.create(
+        Location.create(35.0, -120.0),
+        Location.create(35.0, -119.0)));
+    assertFalse(line.contains(Location.create(35.0, -119.5)));
+  }
+
+  @Test
+  public final void bulk() {
+    PolygonIndex index = PolygonIndex.create(star(new Random(31L), 100));
+    double[] lats = { 37.0, 45.0, Double.NaN, 37.5 };
+    double[] lons = { -120.0, -120.0, -120.0, -119.5 };
+    BitSet bits = index.contains(lats, lons);
+    assertEquals(BitSet.valueOf(new long[] { 0b1001 }), bits);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void contains_IAE() {
+    PolygonIndex.create(star(new Random(37L), 10)).contains(new double[2], new double[3]);
+  }
+
+}
@@ -0,0 +1,86 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+@SuppressWarnings("javadoc")
+public class SegmentIndexTests {
+
+  private static List<LocationList> traces;
+  private static Location[] sites;
+
+  @BeforeClass
+  public static void setUp() {
+    Random r = new Random(17L);
+    ImmutableList.Builder<LocationList> b = ImmutableList.builder();
+    for (int i = 0; i < 300; i++) {
+      double lat = 32 + r.nextDouble() * 8;
+      double lon = -124 + r.nextDouble() * 8;
+      int size = 1 + r.nextInt(30);
+      LocationList.Builder trace = LocationList.builder();
+      for (int j = 0; j < size; j++) {
+        trace.add(lat, lon);
+        lat += (r.nextDouble() - 0.3) * 0.1;
+        lon += (r.nextDouble() - 0.5) * 0.1;
+      }
+      b.add(trace.build());
+    }
+    traces = b.build();
+
+    sites = new Location[300];
+    for (int i = 0; i < sites.length; i++) {
+      sites[i] = Location.create(30 + r.nextDouble() * 12, -126 + r.nextDouble() * 12);
+    }
+  }
+
+  @Test
+  public final void singleTrace() {
+    for (LocationList trace : traces.subList(0, 40)) {
+      SegmentIndex index = SegmentIndex.create(trace);
+      for (Location site : sites) {
+        SegmentIndex.Nearest nearest = index.nearest(site);
+        assertEquals(Locations.minDistanceToLine(site, trace), nearest.distance, 0.0);
+        assertEquals(Locations.minDistanceToLine(site, trace), index.minDistance(site), 0.0);
+        assertEquals(0, nearest.trace);
+        if (trace.size() > 1) {
+          assertEquals(Locations.minDistanceIndex(site, trace), nearest.segment);
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void multiTrace() {
+    SegmentIndex index = SegmentIndex.create(traces);
+    for (Location site : sites) {
+      double min = Double.POSITIVE_INFINITY;
+      int minTrace = -1;
+      for (int i = 0; i < traces.size(); i++) {
+        double r = Locations.minDistanceToLine(site, traces.get(i));
+        if (r < min) {
+          min = r;
+          minTrace = i;
+        }
+      }
+      SegmentIndex.Nearest nearest = index.nearest(site);
+      assertEquals(min, nearest.distance, 0.0);
+      assertEquals(minTrace, nearest.trace);
+      LocationList trace = traces.get(minTrace);
+      int segment = (trace.size() > 1) ? Locations.minDistanceIndex(site, trace) : 0;
+      assertEquals(segment, nearest.segment);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE() {
+    SegmentIndex.create(ImmutableList.<LocationList> of());
+  }
+
+}
@@ -0,0 +1,152 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+@SuppressWarnings("javadoc")
+public class SiteFrameTests {
+
+  private static final double POINT_D = 1e-9;
+  private static final double SPHERE_D = 0.02;
+  private static final double FAST_D = 0.1;
+
+  private static List<LocationList> traces;
+  private static Location[] sites;
+
+  @BeforeClass
+  public static void setUp() {
+    Random r = new Random(23L);
+    ImmutableList.Builder<LocationList> b = ImmutableList.builder();
+    for (int i = 0; i < 100; i++) {
+      double lat = 33 + r.nextDouble() * 2;
+      double lon = -119 + r.nextDouble() * 2;
+      int size = 1 + r.nextInt(20);
+      LocationList.Builder trace = LocationList.builder();
+      for (int j = 0; j < size; j++) {
+        trace.add(lat, lon);
+        lat += (r.nextDouble() - 0.3) * 0.1;
+        lon += (r.nextDouble() - 0.5) * 0.1;
+      }
+      b.add(trace.build());
+    }
+    traces = b.build();
+
+    sites = new Location[50];
+    for (int i = 0; i < sites.length; i++) {
+      sites[i] = Location.create(33 + r.nextDouble() * 2, -119 + r.nextDouble() * 2);
+    }
+  }
+
+  @Test
+  public final void points() {
+    for (Location site : sites) {
+      SiteFrame frame = SiteFrame.create(site);
+      assertEquals(site, frame.site());
+      for (LocationList trace : traces) {
+        SiteFrame.Projection p = frame.project(trace);
+        double[] out = p.distances(new double[trace.size()]);
+        for (int i = 0; i < trace.size(); i++) {
+          double expected = Locations.horzDistanceFast(site, trace.get(i));
+          assertEquals(expected, p.distance(i), POINT_D);
+          assertEquals(expected, out[i], POINT_D);
+          assertEquals(expected, frame.distance(trace.get(i)), POINT_D);
+        }
+        assertEquals(
+            Locations.minDistanceToLocations(site, trace),
+            p.minDistance(),
+            POINT_D);
+        assertEquals(
+            Locations.closestPoint(site, trace),
+            trace.get(p.closestIndex()));
+      }
+    }
+  }
+
+  @Test
+  public final void lines() {
+    for (Location site : sites) {
+      SiteFrame frame = SiteFrame.create(site);
+      for (LocationList trace : traces) {
+        SiteFrame.Projection p = frame.project(trace);
+        assertEquals(
+            Locations.minDistanceToLine(site, trace),
+            p.minDistanceToLine(),
+            FAST_D);
+        for (int i = 0; i < trace.size() - 1; i++) {
+          Location p1 = trace.get(i);
+          Location p2 = trace.get(i + 1);
+          double seg = Math.min(
+              Locations.distanceToSegment(p1, p2, site),
+              Locations.distanceToSegment(p2, p1, site));
+          assertEquals(seg, p.distanceToSegment(i), SPHERE_D);
+          assertEquals(seg, frame.distanceToSegment(p1, p2), SPHERE_D);
+          assertEquals(
+              Locations.distanceToSegmentFast(p1, p2, site),
+              p.distanceToSegment(i),
+              FAST_D);
+          // lines extrapolate well beyond their defining points; the frame
+          // should be comparable in accuracy to the existing fast method
+          double line = Locations.distanceToLine(p1, p2, site);
+          double fastError = Math.abs(line - Locations.distanceToLineFast(p1, p2, site));
+          double delta = Math.max(fastError, Math.abs(line) * 0.01) + FAST_D;
+          assertEquals(line, p.distanceToLine(i), delta);
+          assertEquals(line, frame.distanceToLine(p1, p2), delta);
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void minDistanceIndex() {
+    LocationList trace = LocationList.create(
+        Location.create(34.0, -118.0),
+        Location.create(34.2, -118.0),
+        Location.create(34.4, -118.2));
+    Location site = Location.create(34.35, -118.0);
+    SiteFrame.Projection p = SiteFrame.create(site).project(trace);
+    assertEquals(Locations.minDistanceIndex(site, trace), p.minDistanceIndex());
+    assertEquals(1, p.minDistanceIndex());
+    assertEquals(trace, p.locations());
+    assertEquals(3, p.size());
+  }
+
+  @Test
+  public final void projection() {
+    Location site = Location.create(34.0, -118.0);
+    SiteFrame frame = SiteFrame.create(site);
+    assertArrayEquals(new double[] { 0.0, 0.0 }, frame.project(site), 0.0);
+    Location north = Location.create(35.0, -118.0);
+    double[] xy = frame.project(north);
+    assertEquals(0.0, xy[0], 0.0);
+    assertEquals(Locations.horzDistanceFast(site, north), xy[1], POINT_D);
+    Location east = Location.create(34.2, -117.5);
+    xy = frame.project(east);
+    Location inverse = frame.location(xy[0], xy[1]);
+    assertEquals(east.latitude, inverse.latitude, 1e-12);
+    assertEquals(east.longitude, inverse.longitude, 1e-12);
+    SiteFrame.Projection p = frame.project(LocationList.create(east));
+    assertEquals(xy[0], p.x(0), 0.0);
+    assertEquals(xy[1], p.y(0), 0.0);
+    assertEquals(frame, p.frame());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void distanceToSegment_IAE() {
+    LocationList trace = traces.get(0);
+    SiteFrame.create(sites[0]).project(trace).distanceToSegment(trace.size() - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void minDistanceIndex_IAE() {
+    SiteFrame.create(sites[0]).project(LocationList.create(sites[1])).minDistanceIndex();
+  }
+
+}
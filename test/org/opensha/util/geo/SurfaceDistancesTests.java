@@ -0,0 +1,159 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.opensha.util.Maths.TO_RADIANS;
+
+import java.awt.geom.Path2D;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class SurfaceDistancesTests {
+
+  /* Gridded surface from a trace using down-dip LocationVector offsets. */
+  private static LocationList surface(LocationList trace, double dip, double width, int rows) {
+    Location p1 = trace.first();
+    Location p2 = trace.last();
+    double dipDir = Locations.azimuthRad(p1, p2) + Math.PI / 2;
+    LocationList.Builder b = LocationList.builder();
+    for (int row = 0; row < rows; row++) {
+      double distance = (rows == 1) ? 0.0 : row * width / (rows - 1);
+      LocationVector v = LocationVector.createWithPlunge(dipDir, dip * TO_RADIANS, distance);
+      for (Location loc : trace) {
+        b.add(Locations.location(loc, v));
+      }
+    }
+    return b.build();
+  }
+
+  private static LocationList trace(Random r, int size) {
+    Location start = Location.create(34.0 + r.nextDouble(), -118.0 + r.nextDouble(), 1.0);
+    double azimuth = r.nextDouble() * 2 * Math.PI;
+    LocationList.Builder b = LocationList.builder();
+    Location loc = start;
+    for (int i = 0; i < size; i++) {
+      b.add(loc);
+      // gently curving trace
+      azimuth += (r.nextDouble() - 0.5) * 0.2;
+      loc = Locations.location(loc, azimuth, 1.0);
+    }
+    return b.build();
+  }
+
+  /* Brute-force scan of every node. */
+  private static double rRup(LocationList surface, Location site) {
+    double min = Double.MAX_VALUE;
+    for (Location loc : surface) {
+      double h = Locations.horzDistanceFast(site, loc);
+      double v = Locations.vertDistance(site, loc);
+      double d = h * h + v * v;
+      if (d < min) {
+        min = d;
+      }
+    }
+    return Math.sqrt(min);
+  }
+
+  private static double rJB(LocationList surface, int rows, int columns, Location site) {
+    if (rows > 1) {
+      LocationList.Builder b = LocationList.builder();
+      for (int c = 0; c < columns; c++) {
+        b.add(surface.get(c));
+      }
+      for (int r = 1; r < rows; r++) {
+        b.add(surface.get(r * columns + columns - 1));
+      }
+      for (int c = columns - 2; c >= 0; c--) {
+        b.add(surface.get((rows - 1) * columns + c));
+      }
+      for (int r = rows - 2; r > 0; r--) {
+        b.add(surface.get(r * columns));
+      }
+      Path2D path = Locations.toPath(b.build());
+      if (path.contains(site.longitude, site.latitude)) {
+        return 0.0;
+      }
+    }
+    double min = Double.MAX_VALUE;
+    for (Location loc : surface) {
+      min = Math.min(min, Locations.horzDistanceFast(site, loc));
+    }
+    return min;
+  }
+
+  @Test
+  public final void distances() {
+    Random r = new Random(41L);
+    for (int n = 0; n < 12; n++) {
+      int columns = 2 + r.nextInt(120);
+      int rows = (n == 0) ? 1 : 1 + r.nextInt(20);
+      double dip = (n == 1) ? 90.0 : 15.0 + r.nextDouble() * 75.0;
+      LocationList trace = trace(r, columns);
+      LocationList surface = surface(trace, dip, 5.0 + r.nextDouble() * 20.0, rows);
+      SurfaceDistances engine = SurfaceDistances.create(surface, columns);
+      assertEquals(rows, engine.rows());
+      assertEquals(columns, engine.columns());
+
+      LocationList.Builder b = LocationList.builder();
+      // above the surface, nearby, and distant sites at various depths
+      for (int i = 0; i < 100; i++) {
+        Location node = surface.get(r.nextInt(surface.size()));
+        double distance = (i < 50) ? r.nextDouble() * 10.0 : r.nextDouble() * 300.0;
+        Location loc = Locations.location(node, r.nextDouble() * 2 * Math.PI, distance);
+        b.add(loc.latitude, loc.longitude, (i % 3 == 0) ? r.nextDouble() * 10.0 : 0.0);
+      }
+      b.add(surface.get(0));
+      b.add(surface.get(surface.size() - 1));
+      LocationList sites = b.build();
+
+      List<SurfaceDistances.Distance> results = engine.distances(sites);
+      for (int i = 0; i < sites.size(); i++) {
+        Location site = sites.get(i);
+        SurfaceDistances.Distance d = results.get(i);
+        assertEquals(rRup(surface, site), d.rRup, 0.0);
+        assertEquals(rJB(surface, rows, columns, site), d.rJB, 0.0);
+        assertEquals(
+            Locations.distanceToLineFast(surface.get(0), surface.get(columns - 1), site),
+            d.rX, 0.0);
+        assertEquals(d.rRup, engine.rRup(site), 0.0);
+        assertEquals(d.rJB, engine.rJB(site), 0.0);
+        assertEquals(d.rX, engine.rX(site), 0.0);
+      }
+    }
+  }
+
+  @Test
+  public final void hangingWall() {
+    LocationList.Builder b = LocationList.builder();
+    for (int i = 0; i <= 50; i++) {
+      b.add(34.0 + i * 0.01, -118.0);
+    }
+    LocationList surface = surface(b.build(), 45.0, 10.0, 11);
+    SurfaceDistances engine = SurfaceDistances.create(surface, 51);
+    // trace runs north, so surface dips east
+    Location hangingWall = Location.create(34.25, -117.97);
+    Location footWall = Location.create(34.25, -118.03);
+    SurfaceDistances.Distance hw = engine.distance(hangingWall);
+    SurfaceDistances.Distance fw = engine.distance(footWall);
+    assertEquals(0.0, hw.rJB, 0.0);
+    assertEquals(1.0, Math.signum(hw.rX), 0.0);
+    assertEquals(-1.0, Math.signum(fw.rX), 0.0);
+    assertEquals(hw.rX, -fw.rX, 1e-3);
+    assertEquals(fw.rJB, -fw.rX, 0.1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE1() {
+    Random r = new Random(43L);
+    SurfaceDistances.create(trace(r, 10), 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void create_IAE2() {
+    Random r = new Random(47L);
+    SurfaceDistances.create(trace(r, 10), 3);
+  }
+
+}
@@ -0,0 +1,128 @@
+package org.opensha.util.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.opensha.util.Maths.TO_RADIANS;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class SurfaceGridTests {
+
+  private static LocationList trace(Random r, int size, boolean variableDepth) {
+    LocationList.Builder b = LocationList.builder();
+    Location loc = Location.create(34.0 + r.nextDouble(), -118.0 + r.nextDouble());
+    double azimuth = r.nextDouble() * 2 * Math.PI;
+    for (int i = 0; i < size; i++) {
+      double depth = variableDepth ? (i / 3) * 0.5 : 0.0;
+      b.add(loc.latitude, loc.longitude, depth);
+      azimuth += (r.nextDouble() - 0.5) * 0.3;
+      loc = Locations.location(loc, azimuth, 2.0 + r.nextDouble() * 8.0);
+    }
+    return b.build();
+  }
+
+  /* Node-by-node reference using Locations.location(). */
+  private static void check(
+      SurfaceGrid grid,
+      LocationList trace,
+      double spacing,
+      double dip,
+      double dipDir,
+      double upper,
+      double lower) {
+
+    LocationList columns = trace.resample(spacing);
+    double width = (lower - upper) / Math.sin(dip * TO_RADIANS);
+    int rows = (int) Math.max(Math.round(width / spacing), 1) + 1;
+    double rowSpacing = width / (rows - 1);
+    assertEquals(rows, grid.rows());
+    assertEquals(columns.size(), grid.columns());
+    assertEquals(rowSpacing, grid.rowSpacing(), 0.0);
+    LocationList locs = grid.locations();
+    assertEquals(rows * columns.size(), locs.size());
+
+    double dipRad = dip * TO_RADIANS;
+    for (int k = 0; k < rows; k++) {
+      for (int i = 0; i < columns.size(); i++) {
+        Location p = columns.get(i);
+        double Δz = upper - p.depth;
+        LocationVector v = LocationVector.create(
+            dipDir,
+            Δz / Math.tan(dipRad) + k * rowSpacing * Math.cos(dipRad),
+            Δz + k * rowSpacing * Math.sin(dipRad));
+        assertEquals(Locations.location(p, v), locs.get(k * columns.size() + i));
+      }
+    }
+  }
+
+  @Test
+  public final void build() {
+    Random r = new Random(53L);
+    for (int n = 0; n < 8; n++) {
+      LocationList trace = trace(r, 2 + r.nextInt(20), n % 2 == 1);
+      double spacing = 0.5 + r.nextDouble() * 2.0;
+      double dip = (n == 0) ? 90.0 : 10.0 + r.nextDouble() * 80.0;
+      double upper = r.nextDouble() * 5.0;
+      double lower = upper + 1.0 + r.nextDouble() * 15.0;
+      SurfaceGrid.Builder b = SurfaceGrid.builder()
+          .trace(trace)
+          .dip(dip)
+          .depths(upper, lower)
+          .spacing(spacing);
+      double dipDir = Locations.azimuthRad(trace.first(), trace.last()) + Math.PI / 2;
+      if (n % 3 == 2) {
+        dipDir = r.nextDouble() * 360.0;
+        b.dipDirection(dipDir);
+        dipDir *= TO_RADIANS;
+      }
+      check(b.build(), trace, spacing, dip, dipDir, upper, lower);
+    }
+  }
+
+  @Test
+  public final void parallel() {
+    // long fault with more nodes than the parallel threshold
+    Random r = new Random(59L);
+    LocationList trace = trace(r, 300, false);
+    SurfaceGrid grid = SurfaceGrid.builder()
+        .trace(trace)
+        .dip(60.0)
+        .depths(0.0, 20.0)
+        .spacing(0.1)
+        .build();
+    double dipDir = Locations.azimuthRad(trace.first(), trace.last()) + Math.PI / 2;
+    check(grid, trace, 0.1, 60.0, dipDir, 0.0, 20.0);
+    assertEquals(grid.rows(), grid.distances().rows());
+  }
+
+  @Test
+  public final void translate() {
+    Random r = new Random(61L);
+    LocationList trace = trace(r, 50, true);
+    LocationVector v = LocationVector.create(1.2, 3.5, 2.5);
+    LocationList translated = trace.translate(v);
+    assertEquals(trace.size(), translated.size());
+    for (int i = 0; i < trace.size(); i++) {
+      assertEquals(Locations.location(trace.get(i), v), translated.get(i));
+    }
+    assertEquals(translated, LocationList.packed(trace).translate(v));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public final void build_ISE() {
+    SurfaceGrid.builder().dip(45.0).depths(0.0, 10.0).spacing(1.0).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void dip_IAE() {
+    SurfaceGrid.builder().dip(0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void depths_IAE() {
+    SurfaceGrid.builder().depths(10.0, 10.0);
+  }
+
+}